@@ -21,12 +21,16 @@
 package org.wahlzeit.apps;
 
 import org.wahlzeit.main.ServiceMain;
+import org.wahlzeit.model.LruSessionStore;
+import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.webparts.WebPartTemplateService;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import java.io.File;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -38,6 +42,14 @@ public class Wahlzeit implements ServletContextListener {
 
     private static final Logger log = Logger.getLogger(Wahlzeit.class.getName());
 
+    /**
+     *
+     */
+    public static final String SESSION_STORE_PARAM = "sessionStore";
+    public static final String MEMORY_SESSION_STORE = "memory";
+    public static final int MAX_CACHED_SESSIONS = 10000;
+    public static final String MINIFY_TEMPLATES_PARAM = "minifyTemplates";
+
     /**
      *
      */
@@ -48,16 +60,30 @@ public class Wahlzeit implements ServletContextListener {
             // configures logging
             String contextPath = sc.getContextPath();
             System.setProperty("contextPath", contextPath);
-            log.config(LogBuilder.createSystemMessage().
-                    addParameter("System property context path", contextPath).toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addParameter("System property context path", contextPath).log();
 
             // determines file system root path to resources
             File dummyFile = new File(sc.getRealPath("dummy.txt"));
             String rootDir = dummyFile.getParent();
-            log.config(LogBuilder.createSystemMessage().
-                    addParameter("Root directory", rootDir).toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addParameter("Root directory", rootDir).log();
+
+            boolean isMinifying = !"false".equals(sc.getInitParameter(MINIFY_TEMPLATES_PARAM));
+            WebPartTemplateService.getInstance().setMinifying(isMinifying);
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addParameter("Minify templates", isMinifying).log();
 
             ServiceMain.getInstance().startUp(true, rootDir);
+
+            String sessionStore = sc.getInitParameter(SESSION_STORE_PARAM);
+            if (MEMORY_SESSION_STORE.equals(sessionStore)) {
+                LruSessionStore store = new LruSessionStore(MAX_CACHED_SESSIONS);
+                store.startWriter();
+                UserSession.setSharedSessionStore(store);
+            }
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addParameter("Session store", sessionStore).log();
         } catch (Exception ex) {
             log.warning(LogBuilder.createSystemMessage().
                     addException("Initializing context failed", ex).toString());
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+import org.wahlzeit.utils.StringUtil;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for JSON handlers that answer with a page of the visible photos matching some filter conditions, in
+ * ascending id order. A page that is followed by more photos carries a cursor, the id of its last photo; passing it
+ * as cursor argument continues with the next page, without gaps or repeats if photos are added or removed meanwhile.
+ */
+public abstract class AbstractPhotoListJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String CURSOR = "cursor";
+    public static final String MAX = "max";
+    public static final String PHOTOS = "photos";
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_PHOTOS = 20;
+    public static final int MAX_NO_PHOTOS = 100;
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        PhotoManager photoManager = PhotoManager.getInstance();
+        int[] photoIds = photoManager.getVisiblePhotoIds(getFilterConditions(us, args));
+        int max = Math.max(1, getAsInt(us, args, MAX, DEFAULT_NO_PHOTOS, MAX_NO_PHOTOS));
+
+        out.beginObject();
+        writeListProperties(us, args, out);
+        out.name(PHOTOS).beginArray();
+        int i = getPageStart(photoIds, us.getAsString(args, CURSOR));
+        for (int noPhotos = 0; (i < photoIds.length) && (noPhotos < max); i++) {
+            Photo photo = photoManager.getPhotoFromId(PhotoId.getIdFromInt(photoIds[i]));
+            if ((photo != null) && photo.isVisible()) {
+                out.beginObject();
+                writePhotoProperties(us, photo, out);
+                out.endObject();
+                noPhotos++;
+            }
+        }
+        out.endArray();
+        if (i < photoIds.length) {
+            out.property(CURSOR, PhotoId.getFromInt(photoIds[i - 1]));
+        }
+        out.endObject();
+    }
+
+    /**
+     * Returns the conditions the listed photos need to match, as used by the PhotoFilter.
+     */
+    protected abstract List<String> getFilterConditions(UserSession us, Map args);
+
+    /**
+     * Writes the properties describing the list, before its photos.
+     */
+    protected abstract void writeListProperties(UserSession us, Map args, JsonWriter out) throws IOException;
+
+    /**
+     * Returns the position of the first photo id after the cursor, or 0 if there is no cursor.
+     *
+     * @methodtype get
+     */
+    protected static int getPageStart(int[] photoIds, String cursor) {
+        if (StringUtil.isNullOrEmptyString(cursor)) {
+            return 0;
+        }
+
+        int i = Arrays.binarySearch(photoIds, PhotoId.getFromString(cursor));
+        return (i >= 0) ? (i + 1) : -(i + 1);
+    }
+
+}
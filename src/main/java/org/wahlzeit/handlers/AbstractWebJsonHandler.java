@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Client;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.SysConfig;
+import org.wahlzeit.utils.HtmlUtil;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Base class for JSON handlers; checks access rights and well-formedness like the web part handlers do.
+ */
+public abstract class AbstractWebJsonHandler implements WebJsonHandler {
+
+    private static final Logger log = Logger.getLogger(AbstractWebJsonHandler.class.getName());
+
+    /**
+     *
+     */
+    public static final String ERROR = "error";
+    public static final String ILLEGAL_ACCESS_ERROR = "illegalAccess";
+    public static final String ILLEGAL_ARGUMENT_ERROR = "illegalArgument";
+    public static final String INTERNAL_PROCESSING_ERROR = "internalProcessing";
+
+    /**
+     *
+     */
+    protected AccessRights neededRights;
+
+    /**
+     *
+     */
+    protected void initialize(AccessRights myRights) {
+        neededRights = myRights;
+    }
+
+    /**
+     *
+     */
+    public final void handleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        if (!hasAccessRights(us, args)) {
+            log.warning(LogBuilder.createSystemMessage().
+                    addParameter("insufficient rights for JSON request from", us.getEmailAddressAsString()).toString());
+            writeError(out, ILLEGAL_ACCESS_ERROR);
+            return;
+        }
+
+        if (!isWellFormedRequest(us, args, isPost)) {
+            log.warning(LogBuilder.createSystemMessage().
+                    addParameter("received ill-formed JSON request from", us.getEmailAddressAsString()).toString());
+            writeError(out, ILLEGAL_ARGUMENT_ERROR);
+            return;
+        }
+
+        try {
+            // may throw Exception
+            doHandleJson(us, args, isPost, out);
+        } catch (RuntimeException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("Handle JSON request failed", ex).toString());
+            writeError(out, INTERNAL_PROCESSING_ERROR);
+        }
+    }
+
+    /**
+     *
+     */
+    protected boolean hasAccessRights(UserSession us, Map args) {
+        return us.getClient().hasRights(getNeededRights());
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    protected boolean isWellFormedRequest(UserSession us, Map args, boolean isPost) {
+        return true;
+    }
+
+    /**
+     *
+     */
+    protected abstract void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException;
+
+    /**
+     *
+     */
+    protected void writeError(JsonWriter out, String error) throws IOException {
+        out.beginObject().property(ERROR, error).endObject();
+    }
+
+    /**
+     * Writes the properties of the photo a client needs to show it, in the session's photo size.
+     */
+    protected void writePhotoProperties(UserSession us, Photo photo, JsonWriter out) throws IOException {
+        out.property(Photo.ID, photo.getId().asString());
+        out.property(Photo.IMAGE, getPhotoAsRelativeResourcePathString(photo, getPhotoSize(us, photo)));
+        out.property(Photo.THUMB, getPhotoAsRelativeResourcePathString(photo, PhotoSize.THUMB));
+        out.property(Photo.PRAISE, photo.getPraise());
+        out.property(Photo.NO_VOTES, photo.getNoVotes());
+        out.property(Photo.OWNER_ID, photo.getOwnerId());
+    }
+
+    /**
+     * Returns the session's photo size, unless the photo is smaller.
+     *
+     * @methodtype get
+     */
+    protected PhotoSize getPhotoSize(UserSession us, Photo photo) {
+        PhotoSize maxPhotoSize = photo.getMaxPhotoSize();
+        PhotoSize pagePhotoSize = us.getPhotoSize();
+        return (maxPhotoSize.isSmaller(pagePhotoSize)) ? maxPhotoSize : pagePhotoSize;
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected String getPhotoAsRelativeResourcePathString(Photo photo, PhotoSize size) {
+        String path = SysConfig.getPhotosDir().getRelativeDir() + "/?type=image&photoId=" + photo.getId().asString();
+        return HtmlUtil.asPath(path) + "&size=" + size.asInt();
+    }
+
+    /**
+     * Invisible photos are only shown to their owner and to moderators, as on the photo page.
+     *
+     * @methodtype boolean-query
+     */
+    protected boolean isShownPhoto(UserSession us, Photo photo) {
+        if (photo == null) {
+            return false;
+        }
+
+        Client client = us.getClient();
+        return photo.isVisible() || client.hasModeratorRights() || us.isPhotoOwner(photo);
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected int getAsInt(UserSession us, Map args, String key, int defaultValue, int maxValue) {
+        String value = us.getAsString(args, key);
+        int result = defaultValue;
+        try {
+            if (value.length() != 0) {
+                result = Integer.parseInt(value);
+            }
+        } catch (NumberFormatException ex) {
+            // use default value
+        }
+        return Math.max(0, Math.min(result, maxValue));
+    }
+
+    /**
+     *
+     */
+    public final AccessRights getNeededRights() {
+        return neededRights;
+    }
+
+}
@@ -22,17 +22,28 @@ package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.Client;
 import org.wahlzeit.model.UserSession;
-import org.wahlzeit.services.ConfigDir;
+import org.wahlzeit.services.AssetService;
 import org.wahlzeit.services.Language;
-import org.wahlzeit.services.SysConfig;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 /**
  * @author dirkriehle
  */
 public abstract class AbstractWebPageHandler extends AbstractWebPartHandler implements WebPageHandler {
 
+    /**
+     * Keys of the page frame, filled in for every page
+     */
+    protected static final WebPartKey STYLESHEET = WebPartKey.get("stylesheet");
+    protected static final WebPartKey JAVASCRIPT = WebPartKey.get("javascript");
+    protected static final WebPartKey TITLE = WebPartKey.get("title");
+    protected static final WebPartKey HEADING = WebPartKey.get("heading");
+    protected static final WebPartKey FOOTER = WebPartKey.get("footer");
+    protected static final WebPartKey MISSION = WebPartKey.get("mission");
+    protected static final WebPartKey MENU = WebPartKey.get("menu");
+
     /**
      *
      */
@@ -44,31 +55,58 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
      *
      */
     public WebPart makeWebPage(UserSession us) {
+        WebPart result = makeWebPageHead(us);
+        makeWebPageRest(us, result);
+        return result;
+    }
+
+    /**
+     *
+     */
+    public WebPart makeWebPageHead(UserSession us) {
         WebPart result = createWebPart(us);
 
-        ConfigDir staticDir = SysConfig.getStaticDir();
-        String stylesheetUrl = HtmlUtil.asPath(staticDir.getRelativeConfigFileName("wahlzeit.css"));
-        result.addString("stylesheet", stylesheetUrl);
-        String javascriptUrl = HtmlUtil.asPath(staticDir.getRelativeConfigFileName("wahlzeit.js"));
-        result.addString("javascript", javascriptUrl);
+        AssetService assets = AssetService.getInstance();
+        result.addString(STYLESHEET, assets.getPath("wahlzeit.css"));
+        result.addString(JAVASCRIPT, assets.getPath("wahlzeit.js"));
 
         makeWebPageFrame(us, result);
-        makeWebPageMenu(us, result);
-        makeWebPageBody(us, result);
 
         return result;
     }
 
+    /**
+     *
+     */
+    public void makeWebPageRest(UserSession us, WebPart page) {
+        makeWebPageMenu(us, page);
+        makeWebPageBody(us, page);
+    }
+
+    /**
+     * Pages are sent as a whole by default.
+     */
+    public WebPartKey getFlushBoundary(UserSession us) {
+        return null;
+    }
+
+    /**
+     * Pages are made anew for every request by default.
+     */
+    public String getETag(UserSession us, WebPart page) {
+        return null;
+    }
+
     /**
      *
      */
     protected void makeWebPageFrame(UserSession us, WebPart page) {
-        page.addString("title", us.getConfiguration().getPageTitle());
+        page.addString(TITLE, us.getConfiguration().getPageTitle());
 
         makeWebPageHeading(us, page);
 
-        page.addString("footer", us.getConfiguration().getPageFooter(us.getPhotoSize()));
-        page.addString("mission", us.getConfiguration().getPageMission());
+        page.addString(FOOTER, us.getConfiguration().getPageFooter(us.getPhotoSize()));
+        page.addString(MISSION, us.getConfiguration().getPageMission());
     }
 
     /**
@@ -78,7 +116,7 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
         Language langValue = us.getConfiguration().getLanguage();
         String heading = HtmlUtil.asImg(getHeadingImageAsRelativeResourcePathString(langValue));
         heading = HtmlUtil.asHref(us.getSiteUrl(), heading);
-        page.addString("heading", heading);
+        page.addString(HEADING, heading);
     }
 
     /**
@@ -105,7 +143,7 @@ public abstract class AbstractWebPageHandler extends AbstractWebPartHandler impl
             menu = us.getConfiguration().getGuestMenu();
         }
 
-        page.addString("menu", menu.toString());
+        page.addString(MENU, menu.toString());
     }
 
     /**
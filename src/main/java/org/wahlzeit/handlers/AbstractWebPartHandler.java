@@ -26,14 +26,18 @@ import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.PhotoSize;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.AssetService;
 import org.wahlzeit.services.Language;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.Persistent;
 import org.wahlzeit.services.SysConfig;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
+import org.wahlzeit.webparts.FragmentCache;
 import org.wahlzeit.webparts.WebPart;
 import org.wahlzeit.webparts.WebPartTemplate;
 import org.wahlzeit.webparts.WebPartTemplateService;
+import org.wahlzeit.webparts.Writable;
 
 import java.io.File;
 import java.util.Map;
@@ -78,6 +82,46 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
         return new WebPart(tmpl);
     }
 
+    /**
+     * Returns the fragment cached for the template, the session's language, and the current versions of the objects
+     * it shows; or null if there is none. A fragment must not depend on anything else.
+     */
+    protected Writable getCachedFragment(UserSession us, String name, Persistent... objects) {
+        return FragmentCache.getInstance().getFragment(getFragmentKey(us, name, objects));
+    }
+
+    /**
+     * Renders the part and caches it as the fragment of the template for the objects; returns the fragment.
+     */
+    protected Writable cacheFragment(UserSession us, String name, Writable part, Persistent... objects) {
+        return FragmentCache.getInstance().putFragment(getFragmentKey(us, name, objects), part);
+    }
+
+    /**
+     * Returns the fragment of a template without any values.
+     */
+    protected Writable getStaticFragment(UserSession us, String name) {
+        Writable result = getCachedFragment(us, name);
+        if (result == null) {
+            result = cacheFragment(us, name, createWebPart(us, name));
+        }
+        return result;
+    }
+
+    /**
+     * As object versions are unique, the key changes with every change to one of the objects.
+     *
+     * @methodtype conversion
+     */
+    protected String getFragmentKey(UserSession us, String name, Persistent... objects) {
+        StringBuilder result = new StringBuilder(name.length() + 8 + 12 * objects.length);
+        result.append(us.getConfiguration().getLanguageCode()).append('/').append(name);
+        for (Persistent object : objects) {
+            result.append('#').append(object.getVersion());
+        }
+        return result.toString();
+    }
+
     /**
      *
      */
@@ -105,7 +149,7 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
      */
     protected String getEmptyImageAsRelativeResourcePathString(Language lang) {
         String resName = lang.asIsoCode() + File.separator + "empty.png";
-        return HtmlUtil.asPath(SysConfig.getStaticDir().getRelativeConfigFileName(resName));
+        return AssetService.getInstance().getPath(resName);
     }
 
     /**
@@ -257,7 +301,7 @@ public abstract class AbstractWebPartHandler implements WebPartHandler {
      */
     protected String getHeadingImageAsRelativeResourcePathString(Language lang) {
         String resName = lang.asIsoCode() + File.separator + "heading.png";
-        return HtmlUtil.asPath(SysConfig.getStaticDir().getRelativeConfigFileName(resName));
+        return AssetService.getInstance().getPath(resName);
     }
 
     /**
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.FilterResultCache;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers filterCache.json with the size and hit ratio of the shared filter result cache; for administrators only.
+ *
+ * @author dirkriehle
+ */
+public class FilterCacheJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String NO_ENTRIES = "entries";
+    public static final String NO_HITS = "hits";
+    public static final String NO_MISSES = "misses";
+    public static final String HIT_RATIO = "hitRatio";
+
+    /**
+     *
+     */
+    public FilterCacheJsonHandler() {
+        initialize(AccessRights.ADMINISTRATOR);
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        FilterResultCache cache = FilterResultCache.getInstance();
+
+        out.beginObject();
+        out.property(NO_ENTRIES, cache.getNoEntries());
+        out.property(NO_HITS, cache.getNoHits());
+        out.property(NO_MISSES, cache.getNoMisses());
+        out.property(HIT_RATIO, cache.getHitRatio());
+        out.endObject();
+    }
+
+}
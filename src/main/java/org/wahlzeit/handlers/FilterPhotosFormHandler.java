@@ -25,8 +25,10 @@ import org.wahlzeit.model.PhotoFilter;
 import org.wahlzeit.model.Tags;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 import java.util.Map;
 import java.util.logging.Logger;
@@ -38,6 +40,13 @@ public class FilterPhotosFormHandler extends AbstractWebFormHandler {
 
     private static final Logger log = Logger.getLogger(FilterPhotosFormHandler.class.getName());
 
+    /**
+     *
+     */
+    protected static final WebPartKey USER_NAME = WebPartKey.get(PhotoFilter.USER_NAME);
+    protected static final WebPartKey TAGS = WebPartKey.get(PhotoFilter.TAGS);
+    protected static final WebPartKey WEIGHTED = WebPartKey.get(PhotoFilter.WEIGHTED);
+
 
     /**
      *
@@ -52,8 +61,9 @@ public class FilterPhotosFormHandler extends AbstractWebFormHandler {
     protected void doMakeWebPart(UserSession us, WebPart part) {
         PhotoFilter filter = us.getPhotoFilter();
 
-        part.maskAndAddString(PhotoFilter.USER_NAME, filter.getUserName());
-        part.maskAndAddString(PhotoFilter.TAGS, filter.getTags().asString());
+        part.maskAndAddString(USER_NAME, filter.getUserName());
+        part.maskAndAddString(TAGS, filter.getTags().asString());
+        part.addString(WEIGHTED, HtmlUtil.asCheckboxCheck(filter.isWeighted()));
     }
 
     /**
@@ -72,9 +82,13 @@ public class FilterPhotosFormHandler extends AbstractWebFormHandler {
             filter.setTags(new Tags(tags));
         }
 
+        String weighted = us.getAsString(args, PhotoFilter.WEIGHTED);
+        filter.setWeighted((weighted != null) && weighted.equals("on"));
+
         log.info(LogBuilder.createUserMessage().
                 addAction("Filter Photos").
-                addParameter("Tags", filter.getTags().asString()).toString());
+                addParameter("Tags", filter.getTags().asString()).
+                addParameter("Weighted", filter.isWeighted()).toString());
 
 
         return PartUtil.SHOW_PHOTO_PAGE_NAME;
@@ -96,6 +96,8 @@ public class FlagPhotoFormHandler extends AbstractWebFormHandler {
             return PartUtil.FLAG_PHOTO_PAGE_NAME;
         }
 
+        us.ensureClient();
+
         Photo photo = PhotoManager.getPhoto(id);
         photo.setStatus(photo.getStatus().asFlagged(true));
         AsyncTaskExecutor.savePhotoAsync(id);
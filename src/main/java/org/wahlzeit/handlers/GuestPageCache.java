@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoListener;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.model.User;
+import org.wahlzeit.services.DataObject;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.webparts.WebPartTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The GuestPageCache keeps the photo pages shown to guests, rendered up to their session-specific parts, by photo,
+ * language, and photo size. Each page is a WebPartTemplate whose only slots are those session-specific parts.
+ *
+ * As a PhotoListener, it drops the pages of a photo when the photo is praised, retagged, or changes status. Pages
+ * also expire after MAX_AGE, as they show some things (related photos) that change without a photo event.
+ *
+ * @author dirkriehle
+ */
+public class GuestPageCache implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final int MAX_NO_PAGES = 1024;
+    public static final long MAX_AGE = 60 * 1000; // ms
+
+    /**
+     *
+     */
+    protected static final GuestPageCache instance = new GuestPageCache();
+
+    /**
+     * Convenience method...
+     */
+    public static GuestPageCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Pages in least-recently-used order; guarded by this
+     */
+    protected Map<String, Page> pages = new PageMap();
+
+    /**
+     *
+     */
+    protected GuestPageCache() {
+        // do nothing
+    }
+
+    /**
+     * Returns the page if it is still current for the photo and its owner, or null.
+     *
+     * @methodtype get
+     */
+    public synchronized Page getPage(Photo photo, User owner, Language language, PhotoSize size) {
+        String key = getKey(photo.getId(), language, size);
+        Page result = pages.get(key);
+        if ((result != null) && !result.isCurrent(photo, owner, System.currentTimeMillis())) {
+            pages.remove(key);
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype factory
+     */
+    public Page putPage(Photo photo, User owner, Language language, PhotoSize size, WebPartTemplate template) {
+        Page result = new Page(template, photo, owner, System.currentTimeMillis());
+        synchronized (this) {
+            pages.put(getKey(photo.getId(), language, size), result);
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void removePages(PhotoId photoId) {
+        for (Language language : Language.values()) {
+            for (PhotoSize size : PhotoSize.values()) {
+                pages.remove(getKey(photoId, language, size));
+            }
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void clear() {
+        pages.clear();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getNoPages() {
+        return pages.size();
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static String getKey(PhotoId photoId, Language language, PhotoSize size) {
+        return photoId.asString() + "/" + language.asIsoCode() + "/" + size.asInt();
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        removePages(photo.getId());
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        removePages(photo.getId());
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        removePages(photo.getId());
+    }
+
+    /**
+     * A cached page, together with what it was rendered from.
+     */
+    public static class Page {
+
+        /**
+         *
+         */
+        protected final WebPartTemplate template;
+        protected final String tag;
+        protected final long photoVersion;
+        protected final long ownerVersion;
+        protected final long createdAt;
+
+        /**
+         *
+         */
+        protected Page(WebPartTemplate myTemplate, Photo photo, User owner, long now) {
+            template = myTemplate;
+            tag = Long.toString(DataObject.getNextVersion(), Character.MAX_RADIX);
+            photoVersion = photo.getVersion();
+            ownerVersion = (owner != null) ? owner.getVersion() : 0;
+            createdAt = now;
+        }
+
+        /**
+         * @methodtype get
+         */
+        public WebPartTemplate getTemplate() {
+            return template;
+        }
+
+        /**
+         * Returns a tag that no other page has; a basis for entity tags.
+         *
+         * @methodtype get
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        /**
+         * @methodtype boolean-query
+         */
+        protected boolean isCurrent(Photo photo, User owner, long now) {
+            return (photo.getVersion() == photoVersion)
+                    && (((owner != null) ? owner.getVersion() : 0) == ownerVersion)
+                    && ((now - createdAt) < MAX_AGE);
+        }
+    }
+
+    /**
+     * Pages in access order; evicts the least recently used page once full.
+     */
+    protected static class PageMap extends LinkedHashMap<String, Page> {
+
+        /**
+         *
+         */
+        private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+        /**
+         *
+         */
+        protected PageMap() {
+            super(64, 0.75f, true);
+        }
+
+        /**
+         *
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+            return size() > MAX_NO_PAGES;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.LeaderboardManager;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers leaderboard.json?tag=flower&max=10 with the best photos, overall or for the given tag.
+ *
+ * @author dirkriehle
+ */
+public class LeaderboardJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String MAX = "max";
+    public static final String PHOTOS = "photos";
+    public static final String RANK = "rank";
+
+    /**
+     *
+     */
+    public LeaderboardJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        String tag = us.getAsString(args, LeaderboardManager.TAG);
+        int max = getAsInt(us, args, MAX, LeaderboardManager.DEFAULT_NO_PHOTOS, LeaderboardManager.MAX_NO_PHOTOS);
+        List<Photo> photos = LeaderboardManager.getInstance().getTopPhotos(tag, max);
+
+        out.beginObject();
+        out.property(LeaderboardManager.TAG, tag);
+        out.name(PHOTOS).beginArray();
+        int rank = 1;
+        for (Photo photo : photos) {
+            out.beginObject();
+            out.property(RANK, rank++);
+            out.property(Photo.ID, photo.getId().asString());
+            out.property(Photo.PRAISE, photo.getPraise());
+            out.property(Photo.NO_VOTES, photo.getNoVotes());
+            out.property(Photo.OWNER_ID, photo.getOwnerId());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
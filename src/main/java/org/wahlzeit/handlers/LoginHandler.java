@@ -11,6 +11,7 @@ import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.webparts.WebPart;
 
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -46,18 +47,18 @@ public class LoginHandler extends AbstractWebFormHandler {
 
         if (googleUser != null) {
             // googleUser logged in
-            log.config(LogBuilder.createSystemMessage().
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
                     addMessage("Google user exists").
-                    addParameter("E-Mail", googleUser.getEmail()).toString());
+                    addParameter("E-Mail", googleUser.getEmail()).log();
             String userId = googleUser.getUserId();
             UserManager userManager = UserManager.getInstance();
             User user = userManager.getUserById(userId);
             if (user != null) {
                 // Wahlzeit user already exists
                 us.setClient(user);
-                log.config(LogBuilder.createSystemMessage().
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
                         addMessage("Wahlzeit user exists").
-                        addParameter("id", user.getId()).toString());
+                        addParameter("id", user.getId()).log();
             } else {
                 // create new Wahlzeit user
                 String emailAddress = googleUser.getEmail();
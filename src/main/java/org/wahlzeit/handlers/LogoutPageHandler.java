@@ -21,7 +21,6 @@
 package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.AccessRights;
-import org.wahlzeit.model.Guest;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.webparts.WebPart;
@@ -45,7 +44,7 @@ public class LogoutPageHandler extends AbstractWebPageHandler {
      *
      */
     protected String doHandleGet(UserSession us, String link, Map args) {
-        us.setClient(new Guest());
+        us.clearClient();
         us.clearSavedArgs();
         return link;
     }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+import org.wahlzeit.utils.StringUtil;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers nextPhoto.json?prior=x1abz with the next photo to show, chosen by the session's photo filter like on the
+ * photo page, and makes it the session's current photo. The answer has no photo once all photos have been shown.
+ *
+ * @author dirkriehle
+ */
+public class NextPhotoJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String PRIOR = "prior";
+    public static final String PHOTO = "photo";
+
+    /**
+     *
+     */
+    public NextPhotoJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        String prior = us.getAsString(args, PRIOR);
+        if (!StringUtil.isNullOrEmptyString(prior)) {
+            us.setPriorPhoto(PhotoManager.getPhoto(prior));
+        }
+
+        Photo photo = getNextPhoto(us);
+
+        out.beginObject();
+        writeNextPhoto(us, photo, out);
+        out.endObject();
+    }
+
+    /**
+     * Returns the next photo to show and marks it as shown, or null if there is none.
+     */
+    protected Photo getNextPhoto(UserSession us) {
+        Photo result = PhotoManager.getInstance().getVisiblePhoto(us.getPhotoFilter());
+        if (result != null) {
+            us.setPhotoId(result.getId());
+            us.addDisplayedPhoto(result);
+        } else {
+            us.setPhotoId(null);
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected void writeNextPhoto(UserSession us, Photo photo, JsonWriter out) throws IOException {
+        if (photo != null) {
+            out.name(PHOTO).beginObject();
+            writePhotoProperties(us, photo, out);
+            out.property(Photo.CAPTION, photo.getCaption(us.getConfiguration()));
+            out.endObject();
+        }
+    }
+
+}
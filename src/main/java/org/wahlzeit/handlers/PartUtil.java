@@ -44,6 +44,8 @@ public interface PartUtil {
     String BLURP_INFO_FILE = "infos/BlurpInfo";
     String PHOTO_INFO_FILE = "infos/PhotoInfo";
     String LINKS_INFO_FILE = "infos/LinksInfo";
+    String TAG_CLOUD_INFO_FILE = "infos/TagCloudInfo";
+    String RELATED_PHOTOS_INFO_FILE = "infos/RelatedPhotosInfo";
     String BANNER_INFO_FILE = "infos/BannerInfo";
     String FILTER_PHOTOS_FORM_NAME = "filterPhotosForm";
     String FILTER_PHOTOS_FORM_FILE = "forms/FilterPhotosForm";
@@ -150,4 +152,19 @@ public interface PartUtil {
     String ADMIN_USER_PHOTO_FORM_NAME = "adminUserPhotoForm";
     String ADMIN_USER_PHOTO_FORM_FILE = "forms/AdminUserPhotoForm";
 
+    String SHOW_LEADERBOARD_PAGE_NAME = "leaderboard";
+    String SHOW_LEADERBOARD_PAGE_FILE = "pages/ShowLeaderboardPage";
+    String LEADERBOARD_ENTRY_INFO_FILE = "infos/LeaderboardEntryInfo";
+
+    String SUGGEST_TAGS_JSON_NAME = "suggestTags";
+    String LEADERBOARD_JSON_NAME = "leaderboard";
+    String SEARCH_PHOTOS_JSON_NAME = "search";
+    String FILTER_CACHE_JSON_NAME = "filterCache";
+    String NEXT_PHOTO_JSON_NAME = "nextPhoto";
+    String PRAISE_PHOTO_JSON_NAME = "praisePhoto";
+    String PHOTO_JSON_NAME = "photo";
+    String USER_PHOTOS_JSON_NAME = "userPhotos";
+    String TAG_PHOTOS_JSON_NAME = "tagPhotos";
+    String PRAISE_AND_NEXT_JSON_NAME = "praiseAndNext";
+
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers photo.json?id=x1abz with the metadata of the photo.
+ *
+ * @author dirkriehle
+ */
+public class PhotoJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public PhotoJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected boolean isWellFormedRequest(UserSession us, Map args, boolean isPost) {
+        return isShownPhoto(us, PhotoManager.getPhoto(us.getAsString(args, Photo.ID)));
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        Photo photo = PhotoManager.getPhoto(us.getAsString(args, Photo.ID));
+
+        out.beginObject();
+        writePhotoProperties(us, photo, out);
+        out.property(Photo.CAPTION, photo.getCaption(us.getConfiguration()));
+        out.property(Photo.DESCRIPTION, photo.getSummary(us.getConfiguration()));
+        out.property(Photo.TAGS, photo.getTags().asString());
+        out.property(Photo.STATUS, photo.getStatus().asString());
+        out.property(Photo.UPLOADED_ON, photo.getCreationTime());
+        out.endObject();
+    }
+
+}
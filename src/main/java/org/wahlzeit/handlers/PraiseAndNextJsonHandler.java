@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.ModelConfig;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers a POST to praiseAndNext.json with id=x1abz&praise=7 by praising the photo like the praise photo form does,
+ * and with what the photo page would show next: the summary of the praised (prior) photo and the next photo. This
+ * saves the redirect and the page of a praise photo form post.
+ *
+ * @author dirkriehle
+ */
+public class PraiseAndNextJsonHandler extends NextPhotoJsonHandler {
+
+    /**
+     *
+     */
+    public PraiseAndNextJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     * Praise changes the photo, so it is only accepted by POST.
+     */
+    protected boolean isWellFormedRequest(UserSession us, Map args, boolean isPost) {
+        Photo photo = PhotoManager.getPhoto(us.getAsString(args, Photo.ID));
+        return isPost && (photo != null) && photo.isVisible() &&
+                PraisePhotoFormHandler.isValidPraise(us.getAsString(args, Photo.PRAISE));
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        Photo prior = PhotoManager.getPhoto(us.getAsString(args, Photo.ID));
+        boolean wasPraised = PraisePhotoFormHandler.praisePhoto(us, prior, us.getAsString(args, Photo.PRAISE));
+        us.setPriorPhoto(null); // shown with this answer, like on the photo page
+
+        Photo photo = getNextPhoto(us);
+
+        ModelConfig config = us.getConfiguration();
+        out.beginObject();
+        out.property(PraisePhotoJsonHandler.WAS_PRAISED, wasPraised);
+        out.name(PRIOR).beginObject();
+        out.property(Photo.ID, prior.getId().asString());
+        out.property(Photo.THUMB, getPhotoAsRelativeResourcePathString(prior, PhotoSize.THUMB));
+        out.property(Photo.PRAISE, prior.getPraiseAsString(config));
+        out.property(Photo.CAPTION, prior.getCaption(config));
+        out.endObject();
+        writeNextPhoto(us, photo, out);
+        out.endObject();
+    }
+
+    /**
+     * Writes just what the photo page needs to show the next photo.
+     */
+    protected void writeNextPhoto(UserSession us, Photo photo, JsonWriter out) throws IOException {
+        if (photo != null) {
+            out.name(PHOTO).beginObject();
+            out.property(Photo.ID, photo.getId().asString());
+            out.property(Photo.IMAGE, getPhotoAsRelativeResourcePathString(photo, getPhotoSize(us, photo)));
+            out.property(Photo.CAPTION, photo.getCaption(us.getConfiguration()));
+            out.endObject();
+        }
+    }
+
+}
@@ -28,6 +28,7 @@ import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 import java.util.Map;
 import java.util.logging.Logger;
@@ -40,6 +41,17 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
 
     private static final Logger log = Logger.getLogger(PraisePhotoFormHandler.class.getName());
 
+    /**
+     *
+     */
+    protected static final WebPartKey PHOTO_ID = WebPartKey.get(Photo.ID);
+
+    /**
+     * Range of the praise values offered by the form
+     */
+    public static final int MIN_PRAISE = 1;
+    public static final int MAX_PRAISE = 10;
+
 
     /**
      *
@@ -54,7 +66,7 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
     protected void doMakeWebPart(UserSession us, WebPart part) {
         PhotoId photoId = us.getPhotoId();
         if (photoId != null) {
-            part.addString(Photo.ID, photoId.asString());
+            part.addString(PHOTO_ID, photoId.asString());
         }
     }
 
@@ -64,7 +76,25 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
     protected boolean isWellFormedPost(UserSession us, Map args) {
         String photoId = us.getAsString(args, Photo.ID);
         Photo photo = PhotoManager.getPhoto(photoId);
-        return photo != null;
+        return (photo != null) && isValidPraise(us.getAsString(args, Photo.PRAISE));
+    }
+
+    /**
+     * Empty praise skips the photo.
+     *
+     * @methodtype boolean-query
+     */
+    public static boolean isValidPraise(String praise) {
+        if (StringUtil.isNullOrEmptyString(praise)) {
+            return true;
+        }
+
+        try {
+            int value = Integer.parseInt(praise);
+            return (MIN_PRAISE <= value) && (value <= MAX_PRAISE);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
     }
 
     /**
@@ -75,6 +105,16 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
         Photo photo = PhotoManager.getPhoto(photoId);
         String praise = us.getAsString(args, Photo.PRAISE);
 
+        praisePhoto(us, photo, praise);
+
+        return PartUtil.SHOW_PHOTO_PAGE_NAME;
+    }
+
+    /**
+     * Adds the praise to the photo, unless it is empty or the session praised the photo before, and makes the photo
+     * the session's prior photo. Returns whether the praise was added; shared with the JSON handlers.
+     */
+    public static boolean praisePhoto(UserSession us, Photo photo, String praise) {
         boolean wasPraised = false;
         if (!StringUtil.isNullOrEmptyString(praise)) {
             if (!us.hasPraisedPhoto(photo)) {
@@ -89,7 +129,7 @@ public class PraisePhotoFormHandler extends AbstractWebFormHandler {
 
         log.info(LogBuilder.createUserMessage().addAction(wasPraised ? "PraisePhoto" : "SkipPhoto").toString());
 
-        return PartUtil.SHOW_PHOTO_PAGE_NAME;
+        return wasPraised;
     }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Answers a POST to praisePhoto.json with id=x1abz&praise=7 by praising the photo like the praise photo form does,
+ * with the photo's new praise; an empty praise skips the photo.
+ *
+ * @author dirkriehle
+ */
+public class PraisePhotoJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String WAS_PRAISED = "wasPraised";
+
+    /**
+     *
+     */
+    public PraisePhotoJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     * Praise changes the photo, so it is only accepted by POST.
+     */
+    protected boolean isWellFormedRequest(UserSession us, Map args, boolean isPost) {
+        Photo photo = PhotoManager.getPhoto(us.getAsString(args, Photo.ID));
+        return isPost && (photo != null) && photo.isVisible() &&
+                PraisePhotoFormHandler.isValidPraise(us.getAsString(args, Photo.PRAISE));
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        Photo photo = PhotoManager.getPhoto(us.getAsString(args, Photo.ID));
+        boolean wasPraised = PraisePhotoFormHandler.praisePhoto(us, photo, us.getAsString(args, Photo.PRAISE));
+
+        out.beginObject();
+        out.property(Photo.ID, photo.getId().asString());
+        out.property(WAS_PRAISED, wasPraised);
+        out.property(Photo.PRAISE, photo.getPraise());
+        out.property(Photo.NO_VOTES, photo.getNoVotes());
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.model.search.PhotoSearch;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers search.json?q=red+flower&max=20 with the visible photos best matching the query.
+ *
+ * @author dirkriehle
+ */
+public class SearchPhotosJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String QUERY = "q";
+    public static final String MAX = "max";
+    public static final String PHOTOS = "photos";
+
+    /**
+     *
+     */
+    public SearchPhotosJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        String query = us.getAsString(args, QUERY);
+        int max = getAsInt(us, args, MAX, PhotoSearch.DEFAULT_NO_RESULTS, PhotoSearch.MAX_NO_RESULTS);
+        List<Photo> photos = PhotoSearch.getInstance().search(query, max);
+
+        out.beginObject();
+        out.property(QUERY, query);
+        out.name(PHOTOS).beginArray();
+        for (Photo photo : photos) {
+            out.beginObject();
+            out.property(Photo.ID, photo.getId().asString());
+            out.property(Photo.PRAISE, photo.getPraise());
+            out.property(Photo.OWNER_ID, photo.getOwnerId());
+            out.property(Photo.TAGS, photo.getTags().asString());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.LeaderboardManager;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.HtmlUtil;
+import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WritableList;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows the best photos, overall or for a single tag (leaderboard.html?tag=flower).
+ *
+ * @author dirkriehle
+ */
+public class ShowLeaderboardPageHandler extends AbstractWebPageHandler {
+
+    /**
+     *
+     */
+    public static final String RANK = "rank";
+    public static final String LEADERBOARD = "leaderboard";
+
+    /**
+     *
+     */
+    public ShowLeaderboardPageHandler() {
+        initialize(PartUtil.SHOW_LEADERBOARD_PAGE_FILE, AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected String doHandleGet(UserSession us, String link, Map args) {
+        us.getAndSaveAsString(args, LeaderboardManager.TAG);
+        return link;
+    }
+
+    /**
+     *
+     */
+    protected void makeWebPageBody(UserSession us, WebPart page) {
+        Map args = us.getSavedArgs();
+        String tag = (args.get(LeaderboardManager.TAG) != null) ? args.get(LeaderboardManager.TAG).toString() : "";
+        page.maskAndAddString(LeaderboardManager.TAG, tag);
+
+        List<Photo> photos = LeaderboardManager.getInstance().getTopPhotos(tag, LeaderboardManager.DEFAULT_NO_PHOTOS);
+        if (!photos.isEmpty()) {
+            WritableList entries = new WritableList();
+            int rank = 1;
+            for (Photo photo : photos) {
+                entries.append(makeLeaderboardEntry(us, photo, rank++));
+            }
+            page.addWritable(LEADERBOARD, entries);
+        } else {
+            page.addString(LEADERBOARD, HtmlUtil.asP(us.getConfiguration().getNoLeaderboardPhotos()));
+        }
+    }
+
+    /**
+     *
+     */
+    protected WebPart makeLeaderboardEntry(UserSession us, Photo photo, int rank) {
+        WebPart result = createWebPart(us, PartUtil.LEADERBOARD_ENTRY_INFO_FILE);
+
+        String link = getResourceAsRelativeHtmlPathString(photo.getId().asString());
+        result.addString(RANK, String.valueOf(rank));
+        result.addString(Photo.THUMB, HtmlUtil.asHref(link, getPhotoThumb(us, photo)));
+        result.addString(Photo.PRAISE, photo.getPraiseAsString(us.getConfiguration()));
+        result.addString(Photo.CAPTION, getPhotoCaption(us, photo));
+
+        return result;
+    }
+
+}
@@ -23,6 +23,7 @@ package org.wahlzeit.handlers;
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 import org.wahlzeit.webparts.Writable;
 
 import java.util.Map;
@@ -60,6 +61,13 @@ public class ShowPartPageHandler extends AbstractWebPageHandler {
         return partHandler.handleGet(us, link, null);
     }
 
+    /**
+     * The page head only needs the session, so it can go out before the part is made.
+     */
+    public WebPartKey getFlushBoundary(UserSession us) {
+        return HEADING;
+    }
+
     /**
      *
      */
@@ -27,15 +27,25 @@ import org.wahlzeit.model.PhotoFilter;
 import org.wahlzeit.model.PhotoId;
 import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.PhotoSize;
-import org.wahlzeit.model.Tags;
+import org.wahlzeit.model.RelatedPhotos;
+import org.wahlzeit.model.TagCloud;
+import org.wahlzeit.model.TagStatistics;
+import org.wahlzeit.model.User;
+import org.wahlzeit.model.UserManager;
 import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.utils.HtmlUtil;
 import org.wahlzeit.utils.StringUtil;
+import org.wahlzeit.webparts.FragmentCache;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 import org.wahlzeit.webparts.Writable;
 import org.wahlzeit.webparts.WritableList;
 
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -45,6 +55,36 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 
     private static Logger log = Logger.getLogger(ShowPhotoPageHandler.class.getName());
 
+    /**
+     *
+     */
+    protected static final WebPartKey PHOTO_ID = WebPartKey.get(Photo.ID);
+    protected static final WebPartKey PHOTO_DESCRIPTION = WebPartKey.get(Photo.DESCRIPTION);
+    protected static final WebPartKey PHOTO_KEYWORDS = WebPartKey.get(Photo.KEYWORDS);
+    protected static final WebPartKey PHOTO_IMAGE = WebPartKey.get(Photo.IMAGE);
+    protected static final WebPartKey PHOTO_CAPTION = WebPartKey.get(Photo.CAPTION);
+    protected static final WebPartKey PHOTO_PRAISE = WebPartKey.get(Photo.PRAISE);
+    protected static final WebPartKey PHOTO_THUMB = WebPartKey.get(Photo.THUMB);
+    protected static final WebPartKey PHOTO_LINK = WebPartKey.get(Photo.LINK);
+    protected static final WebPartKey MAIN_WIDTH = WebPartKey.get("mainWidth");
+    protected static final WebPartKey SIDEBAR = WebPartKey.get("sidebar");
+    protected static final WebPartKey TAG_CLOUD = WebPartKey.get("tagCloud");
+    protected static final WebPartKey RELATED_PHOTOS = WebPartKey.get("relatedPhotos");
+    protected static final WebPartKey RELATED = WebPartKey.get("related");
+    protected static final WebPartKey ENGAGE_GUEST = WebPartKey.get("engageGuest");
+    protected static final WebPartKey PRAISE_PHOTO = WebPartKey.get("praisePhoto");
+    protected static final WebPartKey PROCESSING_TIME = WebPartKey.get("processingTime");
+
+    /**
+     * The parts of a guest's photo page that differ between sessions or requests
+     */
+    protected static final WebPartKey[] GUEST_PAGE_SLOTS = {HEADING, SIDEBAR, PROCESSING_TIME};
+
+    /**
+     * Tag cloud rendered last; rendered anew only once the bucketed tag counts change
+     */
+    protected volatile RenderedTagCloud renderedTagCloud = null;
+
     /**
      *
      */
@@ -84,6 +124,83 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         return link;
     }
 
+    /**
+     * Guests get their photo page from the GuestPageCache and only have its session-specific parts made anew.
+     */
+    public WebPart makeWebPage(UserSession us) {
+        Photo photo = PhotoManager.getPhoto(us.getPhotoId());
+        if (!isGuestPage(us, photo)) {
+            return super.makeWebPage(us);
+        }
+
+        User owner = UserManager.getInstance().getUserById(photo.getOwnerId());
+        Language language = us.getConfiguration().getLanguage();
+        PhotoSize photoSize = us.getPhotoSize();
+        GuestPageCache pageCache = GuestPageCache.getInstance();
+        GuestPageCache.Page cached = pageCache.getPage(photo, owner, language, photoSize);
+
+        GuestPage result;
+        if (cached == null) {
+            WebPart page = super.makeWebPage(us);
+            cached = pageCache.putPage(photo, owner, language, photoSize, page.asTemplate(tmplName, GUEST_PAGE_SLOTS));
+            result = new GuestPage(cached);
+            result.addString(HEADING, (String) page.getValue(HEADING));
+            result.addWritable(SIDEBAR, FragmentCache.Fragment.render((Writable) page.getValue(SIDEBAR)));
+        } else {
+            result = new GuestPage(cached);
+            makeWebPageHeading(us, result);
+            makeLeftSidebar(us, result);
+            result.addWritable(SIDEBAR, FragmentCache.Fragment.render((Writable) result.getValue(SIDEBAR)));
+            addDisplayedPhoto(us, photo);
+        }
+
+        return result;
+    }
+
+    /**
+     * Guest pages are cached whole instead; they are quick to send and can be revalidated.
+     */
+    public WebPartKey getFlushBoundary(UserSession us) {
+        Photo photo = PhotoManager.getPhoto(us.getPhotoId());
+        return isGuestPage(us, photo) ? null : HEADING;
+    }
+
+    /**
+     * Adds the photo's description and keywords, which are part of the page head.
+     */
+    public WebPart makeWebPageHead(UserSession us) {
+        WebPart result = super.makeWebPageHead(us);
+
+        Photo photo = PhotoManager.getPhoto(us.getPhotoId());
+        if (photo != null && photo.isVisible()) {
+            result.addString(PHOTO_DESCRIPTION, getPhotoSummary(us, photo));
+            result.addString(PHOTO_KEYWORDS, photo.getTags().asString(false, ','));
+        }
+
+        return result;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    protected boolean isGuestPage(UserSession us, Photo photo) {
+        return (photo != null) && photo.isVisible() && !(us.getClient() instanceof User);
+    }
+
+    /**
+     * The entity tag of a guest page changes with the cached page and with its session-specific parts, except for
+     * the processing time.
+     */
+    public String getETag(UserSession us, WebPart page) {
+        if (!(page instanceof GuestPage)) {
+            return null;
+        }
+
+        GuestPage guestPage = (GuestPage) page;
+        int hash = 31 * guestPage.getValue(HEADING).hashCode() + guestPage.getValue(SIDEBAR).hashCode();
+        return "\"" + guestPage.page.getTag() + "-" + Integer.toHexString(hash) + "\"";
+    }
+
     /**
      *
      */
@@ -104,21 +221,25 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 
         if (photo != null && photo.isVisible()) {
             makePhotoCaption(us, page);
+            makeRelatedPhotos(us, page);
             makeEngageGuest(us, page);
 
-            page.addString(Photo.ID, photoId.asString());
-
-            Tags tags = photo.getTags();
-            page.addString(Photo.DESCRIPTION, getPhotoSummary(us, photo));
-            page.addString(Photo.KEYWORDS, tags.asString(false, ','));
+            page.addString(PHOTO_ID, photoId.asString());
 
-            log.info("addProcessedPhoto: " + photoId.asString());
-            us.addDisplayedPhoto(photo);
+            addDisplayedPhoto(us, photo);
         }
 
         makeRightSidebar(us, page);
     }
 
+    /**
+     *
+     */
+    protected void addDisplayedPhoto(UserSession us, Photo photo) {
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("add processed photo", photo.getIdAsString()).log();
+        us.addDisplayedPhoto(photo);
+    }
+
     /**
      *
      */
@@ -129,16 +250,55 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         if (photo != null) {
             parts.append(makePriorPhotoInfo(us));
         } else {
-            parts.append(createWebPart(us, PartUtil.BLURP_INFO_FILE));
+            parts.append(getStaticFragment(us, PartUtil.BLURP_INFO_FILE));
         }
 
         WebFormHandler handler = getFormHandler(PartUtil.FILTER_PHOTOS_FORM_NAME);
         Writable filterPhotos = handler.makeWebPart(us);
         parts.append(filterPhotos);
 
-        parts.append(createWebPart(us, PartUtil.LINKS_INFO_FILE));
+        WebPart tagCloud = makeTagCloudInfo(us);
+        if (tagCloud != null) {
+            parts.append(tagCloud);
+        }
+
+        parts.append(getStaticFragment(us, PartUtil.LINKS_INFO_FILE));
 
-        page.addWritable("sidebar", parts);
+        page.addWritable(SIDEBAR, parts);
+    }
+
+    /**
+     *
+     */
+    protected WebPart makeTagCloudInfo(UserSession us) {
+        TagCloud cloud = TagStatistics.getInstance().getTagCloud(TagStatistics.DEFAULT_NO_CLOUD_TAGS);
+        if (cloud.getSize() == 0) {
+            return null;
+        }
+
+        RenderedTagCloud rendered = renderedTagCloud;
+        if ((rendered == null) || !rendered.cloud.equals(cloud)) {
+            rendered = new RenderedTagCloud(cloud, getTagCloudAsHtml(cloud));
+            renderedTagCloud = rendered;
+        }
+
+        WebPart result = createWebPart(us, PartUtil.TAG_CLOUD_INFO_FILE);
+        result.addString(TAG_CLOUD, rendered.html);
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected String getTagCloudAsHtml(TagCloud cloud) {
+        StringBuilder result = new StringBuilder(cloud.getSize() * 64);
+        for (int i = 0; i < cloud.getSize(); i++) {
+            String tag = HtmlUtil.maskForWeb(cloud.getTag(i));
+            result.append("<span class=\"tag").append(cloud.getBucket(i)).append("\">");
+            result.append(HtmlUtil.asHref("/filter?tags=" + tag, tag));
+            result.append("</span> ");
+        }
+        return result.toString();
     }
 
     /**
@@ -151,24 +311,24 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         Photo photo = PhotoManager.getPhoto(photoId);
 
         if (photo == null) {
-            page.addString("mainWidth", String.valueOf(pagePhotoSize.getMaxPhotoWidth()));
+            page.addString(MAIN_WIDTH, String.valueOf(pagePhotoSize.getMaxPhotoWidth()));
             WebPart done = createWebPart(us, PartUtil.DONE_INFO_FILE);
-            page.addWritable(Photo.IMAGE, done);
+            page.addWritable(PHOTO_IMAGE, done);
             return;
         }
 
         Client client = us.getClient();
         if (!photo.isVisible() && !client.hasModeratorRights() && !us.isPhotoOwner(photo)) {
-            page.addString("mainWidth", String.valueOf(pagePhotoSize.getMaxPhotoWidth()));
+            page.addString(MAIN_WIDTH, String.valueOf(pagePhotoSize.getMaxPhotoWidth()));
             WebPart done = createWebPart(us, PartUtil.HIDDEN_INFO_FILE);
-            page.addWritable(Photo.IMAGE, done);
+            page.addWritable(PHOTO_IMAGE, done);
             return;
         }
 
         PhotoSize maxPhotoSize = photo.getMaxPhotoSize();
         PhotoSize photoSize = (maxPhotoSize.isSmaller(pagePhotoSize)) ? maxPhotoSize : pagePhotoSize;
         String imageLink = getPhotoAsRelativeResourcePathString(photo, photoSize);
-        page.addString(Photo.IMAGE, HtmlUtil.asImg(HtmlUtil.asPath(imageLink)));
+        page.addString(PHOTO_IMAGE, HtmlUtil.asImg(HtmlUtil.asPath(imageLink)));
     }
 
     /**
@@ -179,8 +339,30 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         Photo photo = PhotoManager.getPhoto(photoId);
 
         WebPart caption = createWebPart(us, PartUtil.CAPTION_INFO_FILE);
-        caption.addString(Photo.CAPTION, getPhotoCaption(us, photo));
-        page.addWritable(Photo.CAPTION, caption);
+        caption.addString(PHOTO_CAPTION, getPhotoCaption(us, photo));
+        page.addWritable(PHOTO_CAPTION, caption);
+    }
+
+    /**
+     * Adds a strip of thumbnails of photos tagged like the shown one.
+     */
+    protected void makeRelatedPhotos(UserSession us, WebPart page) {
+        Photo photo = PhotoManager.getPhoto(us.getPhotoId());
+        List<Photo> relatedPhotos = RelatedPhotos.getInstance().getRelatedPhotos(photo, RelatedPhotos.DEFAULT_NO_PHOTOS);
+        if (relatedPhotos.isEmpty()) {
+            return;
+        }
+
+        StringBuilder thumbs = new StringBuilder(relatedPhotos.size() * 160);
+        for (Photo relatedPhoto : relatedPhotos) {
+            String link = getResourceAsRelativeHtmlPathString(relatedPhoto.getId().asString());
+            thumbs.append(HtmlUtil.asHref(link, getPhotoThumb(us, relatedPhoto)));
+            thumbs.append(' ');
+        }
+
+        WebPart related = createWebPart(us, PartUtil.RELATED_PHOTOS_INFO_FILE);
+        related.addString(RELATED_PHOTOS, thumbs.toString());
+        page.addWritable(RELATED, related);
     }
 
     /**
@@ -190,10 +372,10 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         PhotoId photoId = us.getPhotoId();
 
         WebPart engageGuest = createWebPart(us, PartUtil.ENGAGE_GUEST_FORM_FILE);
-        engageGuest.addString(Photo.LINK, HtmlUtil.asHref(getResourceAsRelativeHtmlPathString(photoId.asString())));
-        engageGuest.addString(Photo.ID, photoId.asString());
+        engageGuest.addString(PHOTO_LINK, HtmlUtil.asHref(getResourceAsRelativeHtmlPathString(photoId.asString())));
+        engageGuest.addString(PHOTO_ID, photoId.asString());
 
-        page.addWritable("engageGuest", engageGuest);
+        page.addWritable(ENGAGE_GUEST, engageGuest);
     }
 
     /**
@@ -209,24 +391,27 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
 
         WebFormHandler handler = getFormHandler(handlerName);
         Writable praisePhotoForm = handler.makeWebPart(us);
-        page.addWritable("praisePhoto", praisePhotoForm);
+        page.addWritable(PRAISE_PHOTO, praisePhotoForm);
     }
 
 
     /**
      *
      */
-    protected WebPart makePriorPhotoInfo(UserSession us) {
-        WebPart result = createWebPart(us, PartUtil.PHOTO_INFO_FILE);
-
+    protected Writable makePriorPhotoInfo(UserSession us) {
         Photo photo = us.getPriorPhoto();
-
-        result.addString(Photo.PRAISE, photo.getPraiseAsString(us.getConfiguration()));
-        result.addString(Photo.THUMB, getPhotoThumb(us, photo));
-        result.addString(Photo.CAPTION, getPhotoCaption(us, photo));
-
         us.setPriorPhoto(null); // reset so you don't get repeats
 
+        User owner = UserManager.getInstance().getUserById(photo.getOwnerId()); // for the caption
+        Writable result = getCachedFragment(us, PartUtil.PHOTO_INFO_FILE, photo, owner);
+        if (result == null) {
+            WebPart part = createWebPart(us, PartUtil.PHOTO_INFO_FILE);
+            part.addString(PHOTO_PRAISE, photo.getPraiseAsString(us.getConfiguration()));
+            part.addString(PHOTO_THUMB, getPhotoThumb(us, photo));
+            part.addString(PHOTO_CAPTION, getPhotoCaption(us, photo));
+            result = cacheFragment(us, PartUtil.PHOTO_INFO_FILE, part, photo, owner);
+        }
+
         return result;
     }
 
@@ -251,4 +436,43 @@ public class ShowPhotoPageHandler extends AbstractWebPageHandler implements WebF
         return result;
     }
 
+    /**
+     * A photo page made from a cached guest page
+     */
+    protected static class GuestPage extends WebPart {
+
+        /**
+         *
+         */
+        protected final GuestPageCache.Page page;
+
+        /**
+         *
+         */
+        protected GuestPage(GuestPageCache.Page myPage) {
+            super(myPage.getTemplate());
+            page = myPage;
+        }
+    }
+
+    /**
+     * A tag cloud together with its HTML, replaced as a whole so concurrent requests see a consistent pair
+     */
+    protected static class RenderedTagCloud {
+
+        /**
+         *
+         */
+        protected final TagCloud cloud;
+        protected final String html;
+
+        /**
+         *
+         */
+        protected RenderedTagCloud(TagCloud myCloud, String myHtml) {
+            cloud = myCloud;
+            html = myHtml;
+        }
+    }
+
 }
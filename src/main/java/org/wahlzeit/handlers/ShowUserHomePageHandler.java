@@ -22,19 +22,27 @@ package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.Photo;
-import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.utils.HtmlUtil;
+import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
 import org.wahlzeit.webparts.Writable;
 import org.wahlzeit.webparts.WritableList;
 
+import java.util.Map;
+
 /**
  * @author dirkriehle
  */
 public class ShowUserHomePageHandler extends AbstractWebPageHandler {
 
+    /**
+     *
+     */
+    public static final String PAGE = "page";
+    public static final int PHOTOS_PER_PAGE = 12;
+
     /**
      *
      */
@@ -42,6 +50,14 @@ public class ShowUserHomePageHandler extends AbstractWebPageHandler {
         initialize(PartUtil.SHOW_USER_HOME_PAGE_FILE, AccessRights.USER);
     }
 
+    /**
+     *
+     */
+    protected String doHandleGet(UserSession us, String link, Map args) {
+        us.setRequestArg(PAGE, us.getAsString(args, PAGE)); // not saved: viewing a page must not write the session
+        return link;
+    }
+
     /**
      *
      */
@@ -50,27 +66,61 @@ public class ShowUserHomePageHandler extends AbstractWebPageHandler {
         page.addWritable("profile", part);
 
         User user = (User) us.getClient();
-        Photo[] photos = user.getPhotos();
-        boolean wasEmpty = true;
-        if (photos.length != 0) {
-            WritableList list = new WritableList();
-            for (Photo photo : photos) {
-                // load it from the PhotoManager to make sure the same copy is used
-                photo = PhotoManager.getInstance().getPhotoFromId(photo.getId());
-                if (!photo.getStatus().isDeleted()) {
-                    part = makeUserPhotoForm(us, photo);
-                    list.append(part);
-                    wasEmpty = false;
-                }
-            }
-            page.addWritable("photos", list);
+        int noPhotos = user.getNoOfDisplayablePhotos();
+        if (noPhotos == 0) {
+            page.addString("photos", HtmlUtil.asP(us.getConfiguration().getNoPhotoUploaded()));
+            return;
         }
 
-        if (wasEmpty) {
-            page.addString("photos", HtmlUtil.asP(us.getConfiguration().getNoPhotoUploaded()));
+        int noPages = (noPhotos + PHOTOS_PER_PAGE - 1) / PHOTOS_PER_PAGE;
+        int pageNo = Math.min(Math.max(getPageNo(us), 1), noPages);
+
+        WritableList list = new WritableList();
+        for (Photo photo : user.getDisplayablePhotos((pageNo - 1) * PHOTOS_PER_PAGE, PHOTOS_PER_PAGE)) {
+            part = makeUserPhotoForm(us, photo);
+            list.append(part);
+        }
+        page.addWritable("photos", list);
+
+        if (noPages > 1) {
+            page.addString("pages", makePageLinks(pageNo, noPages));
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    protected int getPageNo(UserSession us) {
+        String value = us.getRequestArg(PAGE);
+        try {
+            return !StringUtil.isNullOrEmptyString(value) ? Integer.parseInt(value) : 1;
+        } catch (NumberFormatException ex) {
+            return 1;
         }
     }
 
+    /**
+     * Returns links to all pages like [ 1 | 2 | 3 ], the current page in bold.
+     */
+    protected String makePageLinks(int pageNo, int noPages) {
+        StringBuffer result = new StringBuffer(16 + noPages * 40);
+        result.append("[ ");
+        for (int i = 1; i <= noPages; i++) {
+            if (i > 1) {
+                result.append(" | ");
+            }
+            String label = String.valueOf(i);
+            if (i == pageNo) {
+                result.append(HtmlUtil.asBold(label));
+            } else {
+                String link = getResourceAsRelativeHtmlPathString(PartUtil.SHOW_USER_HOME_PAGE_NAME) + "?" + PAGE + "=" + i;
+                result.append(HtmlUtil.asHref(link, label));
+            }
+        }
+        result.append(" ]");
+        return result.toString();
+    }
+
     /**
      *
      */
@@ -85,8 +135,12 @@ public class ShowUserHomePageHandler extends AbstractWebPageHandler {
      */
     protected Writable makeUserPhotoForm(UserSession us, Photo photo) {
         us.setPhotoId(photo.getId());
-        WebFormHandler handler = getFormHandler(PartUtil.SHOW_USER_PHOTO_FORM_NAME);
-        return handler.makeWebPart(us);
+        Writable result = getCachedFragment(us, PartUtil.SHOW_USER_PHOTO_FORM_FILE, photo);
+        if (result == null) {
+            WebFormHandler handler = getFormHandler(PartUtil.SHOW_USER_PHOTO_FORM_NAME);
+            result = cacheFragment(us, PartUtil.SHOW_USER_PHOTO_FORM_FILE, handler.makeWebPart(us), photo);
+        }
+        return result;
     }
 
 }
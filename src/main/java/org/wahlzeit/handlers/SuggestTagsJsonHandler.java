@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.TagSuggester;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers tag autocompletion requests like suggestTags.json?prefix=flo with the most used matching tags.
+ */
+public class SuggestTagsJsonHandler extends AbstractWebJsonHandler {
+
+    /**
+     *
+     */
+    public static final String PREFIX = "prefix";
+    public static final String MAX = "max";
+    public static final String TAGS = "tags";
+    public static final String TAG = "tag";
+    public static final String COUNT = "count";
+
+    /**
+     *
+     */
+    public SuggestTagsJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected void doHandleJson(UserSession us, Map args, boolean isPost, JsonWriter out) throws IOException {
+        TagSuggester suggester = TagSuggester.getInstance();
+        String prefix = us.getAsString(args, PREFIX);
+        int max = getAsInt(us, args, MAX, TagSuggester.DEFAULT_NO_SUGGESTIONS, TagSuggester.MAX_NO_SUGGESTIONS);
+
+        List<String> tags = suggester.getSuggestions(prefix, max);
+
+        out.beginObject();
+        out.property(PREFIX, prefix);
+        out.name(TAGS).beginArray();
+        for (String tag : tags) {
+            out.beginObject().property(TAG, tag).property(COUNT, suggester.getNoPhotos(tag)).endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Tags;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers tagPhotos.json?tag=flower&max=20&cursor=x1abz with a page of the visible photos carrying the tag.
+ *
+ * @author dirkriehle
+ */
+public class TagPhotosJsonHandler extends AbstractPhotoListJsonHandler {
+
+    /**
+     *
+     */
+    public static final String TAG = "tag";
+
+    /**
+     *
+     */
+    public TagPhotosJsonHandler() {
+        initialize(AccessRights.GUEST);
+    }
+
+    /**
+     *
+     */
+    protected boolean isWellFormedRequest(UserSession us, Map args, boolean isPost) {
+        return Tags.asTag(us.getAsString(args, TAG)).length() != 0;
+    }
+
+    /**
+     *
+     */
+    protected List<String> getFilterConditions(UserSession us, Map args) {
+        return Collections.singletonList("tg:" + Tags.asTag(us.getAsString(args, TAG)));
+    }
+
+    /**
+     *
+     */
+    protected void writeListProperties(UserSession us, Map args, JsonWriter out) throws IOException {
+        out.property(TAG, Tags.asTag(us.getAsString(args, TAG)));
+    }
+
+}
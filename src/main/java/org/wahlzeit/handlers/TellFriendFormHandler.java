@@ -100,6 +100,8 @@ public class TellFriendFormHandler extends AbstractWebFormHandler {
             return PartUtil.TELL_FRIEND_PAGE_NAME;
         }
 
+        us.ensureClient();
+
         EmailAddress to = EmailAddress.getFromString(friendsEmailAddress);
 
         EmailService emailService = EmailServiceManager.getDefaultService();
@@ -23,7 +23,11 @@ package org.wahlzeit.handlers;
 import com.google.appengine.api.images.Image;
 import org.wahlzeit.agents.AsyncTaskExecutor;
 import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.DuplicatePhotoDetector;
+import org.wahlzeit.model.FlagReason;
 import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoCase;
+import org.wahlzeit.model.PhotoCaseManager;
 import org.wahlzeit.model.PhotoManager;
 import org.wahlzeit.model.Tags;
 import org.wahlzeit.model.User;
@@ -32,7 +36,9 @@ import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.utils.StringUtil;
 import org.wahlzeit.webparts.WebPart;
 
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -81,15 +87,22 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 
             photo.setTags(new Tags(tags));
 
-            log.config(LogBuilder.createUserMessage().
+            LogBuilder.createUserMessage(log, Level.CONFIG).
                     addAction("Upload Photo").
                     addParameter("Photo", photo.getId().asString()).
-                    addParameter("tags", photo.getTags().asString()).toString());
+                    addParameter("tags", photo.getTags().asString()).log();
 
-            us.setTwoLineMessage(us.getConfiguration().getPhotoUploadSucceeded(), us.getConfiguration().getKeepGoing());
-            log.config(LogBuilder.createSystemMessage().
+            List<Photo> duplicates = DuplicatePhotoDetector.getInstance().findNearDuplicates(photo);
+            if (duplicates.isEmpty()) {
+                us.setTwoLineMessage(us.getConfiguration().getPhotoUploadSucceeded(), us.getConfiguration().getKeepGoing());
+            } else {
+                flagAsNearDuplicate(us, photo, duplicates.get(0));
+                us.setTwoLineMessage(us.getConfiguration().getPhotoUploadSucceeded(), us.getConfiguration().getPhotoUploadIsNearDuplicate());
+            }
+
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
                     addAction("Calling async task to save Photo").
-                    addParameter("ID", photo.getId().asString()).toString());
+                    addParameter("ID", photo.getId().asString()).log();
 
             AsyncTaskExecutor.savePhotoAsync(photo.getId().asString());
         } catch (Exception ex) {
@@ -99,4 +112,23 @@ public class UploadPhotoFormHandler extends AbstractWebFormHandler {
 
         return PartUtil.UPLOAD_PHOTO_PAGE_NAME;
     }
+
+    /**
+     * Flags the photo for moderation, so that copies do not enter the rating pool unchecked.
+     */
+    protected void flagAsNearDuplicate(UserSession us, Photo photo, Photo original) {
+        photo.setStatus(photo.getStatus().asFlagged(true));
+
+        PhotoCase photoCase = new PhotoCase(photo);
+        photoCase.setFlagger(us.getConfiguration().getAuditEmailAddress().asString());
+        photoCase.setReason(FlagReason.COPYRIGHT);
+        photoCase.setExplanation("Near-duplicate of photo " + original.getId().asString() + " of user " + original.getOwnerId());
+        PhotoCaseManager.getInstance().addPhotoCase(photoCase);
+
+        log.info(LogBuilder.createUserMessage().
+                addAction("Flag Near-Duplicate Photo").
+                addParameter("Photo", photo.getId().asString()).
+                addParameter("Original", original.getId().asString()).toString());
+    }
+
 }
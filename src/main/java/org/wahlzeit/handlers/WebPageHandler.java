@@ -22,6 +22,7 @@ package org.wahlzeit.handlers;
 
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 
 /**
@@ -34,5 +35,24 @@ public interface WebPageHandler extends WebPartHandler {
      */
     public WebPart makeWebPart(UserSession us);
 
+    /**
+     * Returns the entity tag of a page made by makeWebPart, or null if the page cannot be revalidated.
+     */
+    public String getETag(UserSession us, WebPart page);
+
+    /**
+     * Returns the slot up to which a page may be sent before its body is made, or null if it may not.
+     */
+    public WebPartKey getFlushBoundary(UserSession us);
+
+    /**
+     * Makes a page with everything before its flush boundary filled in; makeWebPageRest then completes it.
+     */
+    public WebPart makeWebPageHead(UserSession us);
+
+    /**
+     *
+     */
+    public void makeWebPageRest(UserSession us, WebPart page);
 
 }
@@ -24,6 +24,7 @@ import org.wahlzeit.services.LogBuilder;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -42,6 +43,11 @@ public class WebPartHandlerManager {
      */
     protected Map<String, WebPartHandler> handler = new HashMap<String, WebPartHandler>();
 
+    /**
+     *
+     */
+    protected Map<String, WebJsonHandler> jsonHandler = new HashMap<String, WebJsonHandler>();
+
     /**
      *
      */
@@ -94,6 +100,20 @@ public class WebPartHandlerManager {
         return (WebFormHandler) result;
     }
 
+    /**
+     *
+     */
+    public static WebJsonHandler getWebJsonHandler(String name) {
+        return instance.getWebJsonHandlerFor(name);
+    }
+
+    /**
+     * Returns null for unknown names; there is no default JSON handler.
+     */
+    public WebJsonHandler getWebJsonHandlerFor(String name) {
+        return jsonHandler.get(name);
+    }
+
     /**
      *
      */
@@ -106,10 +126,22 @@ public class WebPartHandlerManager {
      */
     public WebPartHandler addWebPartHandler(String name, WebPartHandler myHandler) {
         handler.put(name, myHandler);
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("add WebPartHandler").
                 addParameter("name", name).
-                addParameter("handler", myHandler).toString());
+                addParameter("handler", myHandler).log();
+        return myHandler;
+    }
+
+    /**
+     *
+     */
+    public WebJsonHandler addWebJsonHandler(String name, WebJsonHandler myHandler) {
+        jsonHandler.put(name, myHandler);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("add WebJsonHandler").
+                addParameter("name", name).
+                addParameter("handler", myHandler).log();
         return myHandler;
     }
 
@@ -20,18 +20,29 @@
 
 package org.wahlzeit.main;
 
+import org.wahlzeit.model.DuplicatePhotoDetector;
+import org.wahlzeit.model.FilterResultCache;
 import org.wahlzeit.model.GlobalsManager;
+import org.wahlzeit.model.LeaderboardManager;
 import org.wahlzeit.model.PhotoCaseManager;
 import org.wahlzeit.model.PhotoFactory;
 import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.PhotoSampler;
+import org.wahlzeit.model.RelatedPhotos;
+import org.wahlzeit.model.SessionStore;
+import org.wahlzeit.model.TagStatistics;
+import org.wahlzeit.model.TagSuggester;
 import org.wahlzeit.model.User;
 import org.wahlzeit.model.UserManager;
+import org.wahlzeit.model.UserSession;
 import org.wahlzeit.model.persistance.GcsAdapter;
 import org.wahlzeit.model.persistance.ImageStorage;
+import org.wahlzeit.model.search.PhotoSearch;
 import org.wahlzeit.services.LogBuilder;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -50,20 +61,30 @@ public abstract class ModelMain extends AbstractMain {
         super.startUp(rootDir);
         log.info("AbstractMain.startUp completed");
 
-        log.config(LogBuilder.createSystemMessage().addAction("load image storage").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("load image storage").log();
         GcsAdapter.Builder gcsAdapterBuilder = new GcsAdapter.Builder();
         ImageStorage.setInstance(gcsAdapterBuilder.build());
 
-        log.config(LogBuilder.createSystemMessage().addAction("load globals").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("load globals").log();
         GlobalsManager.getInstance().loadGlobals();
 
-        log.config(LogBuilder.createSystemMessage().addAction("load user").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("load user").log();
         UserManager.getInstance().init();
 
-        log.config(LogBuilder.createSystemMessage().addAction("init PhotoFactory").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("init PhotoFactory").log();
         PhotoFactory.initialize();
 
-        log.config(LogBuilder.createSystemMessage().addAction("load Photos").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("load Photos").log();
+        PhotoManager.getInstance().addPhotoListener(TagSuggester.getInstance());
+        PhotoManager.getInstance().addPhotoListener(PhotoSampler.getInstance());
+        PhotoManager.getInstance().addPhotoListener(LeaderboardManager.getInstance());
+        PhotoManager.getInstance().addPhotoListener(UserManager.getInstance());
+        PhotoManager.getInstance().addPhotoListener(FilterResultCache.getInstance());
+        PhotoManager.getInstance().addPhotoListener(TagStatistics.getInstance());
+        PhotoManager.getInstance().addPhotoListener(RelatedPhotos.getInstance());
+        PhotoManager.getInstance().addPhotoListener(DuplicatePhotoDetector.getInstance());
+        PhotoSearch.getInstance().init();
+        PhotoManager.getInstance().addPhotoListener(PhotoSearch.getInstance());
         PhotoManager.getInstance().init();
     }
 
@@ -85,6 +106,12 @@ public abstract class ModelMain extends AbstractMain {
         PhotoManager.getInstance().savePhotos();
         UserManager.getInstance().saveClients();
         GlobalsManager.getInstance().saveGlobals();
+        PhotoSearch.getInstance().flush();
+
+        SessionStore sessionStore = UserSession.getSharedSessionStore();
+        if (sessionStore != null) {
+            sessionStore.flush();
+        }
     }
 
     /**
@@ -25,12 +25,16 @@ import org.wahlzeit.model.AccessRights;
 import org.wahlzeit.model.EnglishModelConfig;
 import org.wahlzeit.model.GermanModelConfig;
 import org.wahlzeit.model.LanguageConfigs;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.services.AssetService;
 import org.wahlzeit.services.ConfigDir;
 import org.wahlzeit.services.Language;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.SysConfig;
 import org.wahlzeit.webparts.WebPartTemplateService;
 
+import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -93,27 +97,33 @@ public class ServiceMain extends ModelMain {
     public void startUp(boolean inProduction, String rootDir) throws Exception {
         isInProduction = inProduction;
 
-        log.config(LogBuilder.createSystemMessage().addAction("Start up ModelMain").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("Start up ModelMain").log();
         super.startUp(rootDir);
 
-        log.config(LogBuilder.createSystemMessage().addAction("Configure WebPartTemplateService").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("Configure AssetService").log();
+        AssetService.getInstance().loadAssets(SysConfig.getStaticDir());
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("Configure WebPartTemplateService").log();
         configureWebPartTemplateService();
 
-        log.config(LogBuilder.createSystemMessage().addAction("Configure WebPartHandler").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("Configure WebPartHandler").log();
         configureWebPartHandlers();
+        PhotoManager.getInstance().addPhotoListener(GuestPageCache.getInstance());
 
-        log.config(LogBuilder.createSystemMessage().addAction("Configure LanguageModels").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("Configure LanguageModels").log();
         configureLanguageModels();
 
-        log.config(LogBuilder.createSystemMessage().addMessage("StartUp complete.").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addMessage("StartUp complete.").log();
     }
 
     /**
      *
      */
-    public void configureWebPartTemplateService() {
+    public void configureWebPartTemplateService() throws IOException {
         ConfigDir templatesDir = SysConfig.getTemplatesDir();
-        WebPartTemplateService.getInstance().setTemplatesDir(templatesDir);
+        WebPartTemplateService wpts = WebPartTemplateService.getInstance();
+        wpts.setTemplatesDir(templatesDir);
+        wpts.loadAllTemplates();
     }
 
     /**
@@ -200,6 +210,21 @@ public class ServiceMain extends ModelMain {
         manager.addWebPartHandler(PartUtil.SHOW_ADMIN_MENU_FORM_NAME, temp);
         manager.addWebPartHandler(PartUtil.ADMIN_USER_PROFILE_FORM_NAME, new AdminUserProfileFormHandler());
         manager.addWebPartHandler(PartUtil.ADMIN_USER_PHOTO_FORM_NAME, new AdminUserPhotoFormHandler());
+
+        // Leaderboard page
+        manager.addWebPartHandler(PartUtil.SHOW_LEADERBOARD_PAGE_NAME, new ShowLeaderboardPageHandler());
+
+        // JSON requests
+        manager.addWebJsonHandler(PartUtil.SUGGEST_TAGS_JSON_NAME, new SuggestTagsJsonHandler());
+        manager.addWebJsonHandler(PartUtil.LEADERBOARD_JSON_NAME, new LeaderboardJsonHandler());
+        manager.addWebJsonHandler(PartUtil.SEARCH_PHOTOS_JSON_NAME, new SearchPhotosJsonHandler());
+        manager.addWebJsonHandler(PartUtil.FILTER_CACHE_JSON_NAME, new FilterCacheJsonHandler());
+        manager.addWebJsonHandler(PartUtil.NEXT_PHOTO_JSON_NAME, new NextPhotoJsonHandler());
+        manager.addWebJsonHandler(PartUtil.PRAISE_PHOTO_JSON_NAME, new PraisePhotoJsonHandler());
+        manager.addWebJsonHandler(PartUtil.PHOTO_JSON_NAME, new PhotoJsonHandler());
+        manager.addWebJsonHandler(PartUtil.USER_PHOTOS_JSON_NAME, new UserPhotosJsonHandler());
+        manager.addWebJsonHandler(PartUtil.TAG_PHOTOS_JSON_NAME, new TagPhotosJsonHandler());
+        manager.addWebJsonHandler(PartUtil.PRAISE_AND_NEXT_JSON_NAME, new PraiseAndNextJsonHandler());
     }
 
     /**
@@ -558,6 +558,13 @@ public abstract class AbstractModelConfig extends AbstractConfig implements Mode
         return doGetValue("PhotoUploadSucceeded");
     }
 
+    /**
+     *
+     */
+    public String getPhotoUploadIsNearDuplicate() {
+        return doGetValue("PhotoUploadIsNearDuplicate");
+    }
+
     /**
      *
      */
@@ -572,6 +579,13 @@ public abstract class AbstractModelConfig extends AbstractConfig implements Mode
         return doGetValue("NoFlaggedPhotoCases");
     }
 
+    /**
+     *
+     */
+    public String getNoLeaderboardPhotos() {
+        return doGetValue("NoLeaderboardPhotos");
+    }
+
     /**
      *
      */
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.Random;
+
+/**
+ * An AliasTable samples indices 0..n-1 in proportion to given non-negative weights in constant time, using Walker's
+ * alias method (in Vose's numerically stable variant). Building the table takes linear time; the table is immutable.
+ *
+ * @author dirkriehle
+ */
+public class AliasTable {
+
+    /**
+     *
+     */
+    protected final double[] probability;
+    protected final int[] alias;
+
+    /**
+     * @param weights non-negative weights, at least one of them positive
+     */
+    public AliasTable(double[] weights) {
+        int n = weights.length;
+        double totalWeight = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (!(weights[i] >= 0.0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException("illegal weight: " + weights[i]);
+            }
+            totalWeight += weights[i];
+        }
+        if (totalWeight <= 0.0) {
+            throw new IllegalArgumentException("no positive weight given");
+        }
+
+        probability = new double[n];
+        alias = new int[n];
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int noSmall = 0;
+        int noLarge = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / totalWeight;
+            if (scaled[i] < 1.0) {
+                small[noSmall++] = i;
+            } else {
+                large[noLarge++] = i;
+            }
+        }
+
+        while ((noSmall > 0) && (noLarge > 0)) {
+            int less = small[--noSmall];
+            int more = large[--noLarge];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[noSmall++] = more;
+            } else {
+                large[noLarge++] = more;
+            }
+        }
+
+        // leftovers are (up to rounding errors) exactly full columns
+        while (noLarge > 0) {
+            int i = large[--noLarge];
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+        while (noSmall > 0) {
+            int i = small[--noSmall];
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getSize() {
+        return probability.length;
+    }
+
+    /**
+     * Returns an index with probability proportional to its weight.
+     */
+    public int sample(Random random) {
+        int column = random.nextInt(probability.length);
+        return (random.nextDouble() < probability[column]) ? column : alias[column];
+    }
+
+}
@@ -25,11 +25,13 @@ import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Ignore;
 import com.googlecode.objectify.annotation.Parent;
+import org.wahlzeit.services.DataObject;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.ObjectManager;
 import org.wahlzeit.services.Persistent;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * A Client uses the system. It is an abstract superclass. This package defines guest, user, moderator, and
@@ -64,6 +66,18 @@ public abstract class Client implements Serializable, Persistent {
     @Ignore
     protected int writeCount = 0;
 
+    /**
+     * 0 until first asked for or changed, see {@link DataObject#getVersion()}
+     */
+    @Ignore
+    protected transient volatile long version = 0;
+
+    /**
+     *
+     */
+    private static final AtomicLongFieldUpdater<Client> versionUpdater =
+            AtomicLongFieldUpdater.newUpdater(Client.class, "version");
+
     private String httpSessionId;
 
 
@@ -180,6 +194,7 @@ public abstract class Client implements Serializable, Persistent {
      */
     public void incWriteCount() {
         writeCount++;
+        DataObject.incVersion(this, versionUpdater);
     }
 
     /**
@@ -189,6 +204,13 @@ public abstract class Client implements Serializable, Persistent {
         writeCount = 0;
     }
 
+    /**
+     * @methodtype get
+     */
+    public long getVersion() {
+        return DataObject.getVersion(this, versionUpdater);
+    }
+
     /**
      *
      */
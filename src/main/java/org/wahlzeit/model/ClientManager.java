@@ -4,9 +4,11 @@ import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.ObjectManager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -73,7 +75,7 @@ public abstract class ClientManager extends ObjectManager {
         idClientMap.put(client.getId(), client);
         writeObject(client);
         listOfUsedNicknames.add(client.getNickName());
-        log.config(LogBuilder.createSystemMessage().addParameter("Added new user", client.getId()).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Added new user", client.getId()).log();
     }
 
     /**
@@ -126,9 +128,9 @@ public abstract class ClientManager extends ObjectManager {
     public void doAddHttpSessionIdToClientMapping(String httpSessionId, Client client) {
         httpSessionIdToClientMap.put(httpSessionId, client);
         client.setHttpSessionId(httpSessionId);
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addParameter("client name", client.getNickName()).
-                addParameter("httpSessionId", httpSessionId).toString());
+                addParameter("httpSessionId", httpSessionId).log();
     }
 
 
@@ -209,6 +211,25 @@ public abstract class ClientManager extends ObjectManager {
         assertIsUnknownUserAsIllegalState(client);
     }
 
+    /**
+     * Deletes all given clients, writing to the datastore only once.
+     *
+     * @methodtype set
+     */
+    public void deleteClients(Collection<? extends Client> clients) {
+        assertIsNonNullArgument(clients);
+        if (clients.isEmpty()) {
+            return;
+        }
+
+        for (Client client : clients) {
+            assert idClientMap.containsValue(client);
+            removeHttpSessionIdToClientMapping(client.getHttpSessionId());
+            idClientMap.remove(client.getId());
+        }
+        deleteObjects(clients);
+    }
+
     /**
      * @methodtype set
      */
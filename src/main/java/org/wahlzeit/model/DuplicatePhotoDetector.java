@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The DuplicatePhotoDetector finds photos that look like copies of a given photo, i.e. whose perceptual hashes are
+ * within MAX_DISTANCE bits. The hashes of all non-deleted photos are kept in a HammingIndex, maintained as a
+ * PhotoListener of the PhotoManager.
+ *
+ * @author dirkriehle
+ */
+public class DuplicatePhotoDetector implements PhotoListener {
+
+    /**
+     * Resized or re-encoded copies typically differ in fewer bits, unrelated photos in about 32
+     */
+    public static final int MAX_DISTANCE = 6;
+
+    /**
+     *
+     */
+    protected static final DuplicatePhotoDetector instance = new DuplicatePhotoDetector();
+
+    /**
+     *
+     */
+    protected HammingIndex index = new HammingIndex();
+
+    /**
+     *
+     */
+    protected DuplicatePhotoDetector() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static DuplicatePhotoDetector getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the other non-deleted photos that look like copies of photo, closest first.
+     *
+     * @methodtype get
+     */
+    public List<Photo> findNearDuplicates(Photo photo) {
+        List<Photo> result = new ArrayList<Photo>();
+        long hash = photo.getPerceptualHash();
+        if (hash == PerceptualHash.NO_HASH) {
+            return result;
+        }
+
+        for (Integer id : index.find(hash, MAX_DISTANCE)) {
+            Photo candidate = PhotoManager.getPhoto(PhotoId.getIdFromInt(id));
+            if ((candidate != null) && (candidate != photo) && !candidate.getStatus().isDeleted()) {
+                result.add(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        if (oldTags.isEmpty()) {
+            update(photo);
+        }
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        update(photo);
+    }
+
+    /**
+     *
+     */
+    protected void update(Photo photo) {
+        int id = photo.getId().asInt();
+        if ((photo.getPerceptualHash() == PerceptualHash.NO_HASH) || photo.getStatus().isDeleted()) {
+            index.remove(id);
+        } else {
+            index.add(id, photo.getPerceptualHash());
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The FilterResultCache shares the ids of the visible photos matching a set of filter conditions across all
+ * sessions, as sorted int arrays keyed by the normalized conditions. Session-specific exclusions (photos already
+ * seen) are applied by the caller. As a PhotoListener it drops exactly those entries whose conditions are affected
+ * by a tag or status change of a photo.
+ *
+ * @author dirkriehle
+ */
+public class FilterResultCache implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final int MAX_NO_ENTRIES = 1024;
+
+    /**
+     * Pseudo condition that every entry depends on if it has no conditions at all, i.e. lists all photos
+     */
+    protected static final String ALL_PHOTOS = "";
+
+    /**
+     *
+     */
+    protected static final FilterResultCache instance = new FilterResultCache();
+
+    /**
+     * Entries in least-recently-used order; guarded by this
+     */
+    protected Map<String, int[]> entries = new EntryMap(this);
+
+    /**
+     * Keys of the entries depending on each condition; guarded by this
+     */
+    protected Map<String, Set<String>> dependents = new HashMap<String, Set<String>>();
+
+    /**
+     * Incremented on every invalidation, so results computed concurrently with one are not cached
+     */
+    protected long generation = 0;
+
+    /**
+     *
+     */
+    protected AtomicLong noHits = new AtomicLong();
+    protected AtomicLong noMisses = new AtomicLong();
+
+    /**
+     *
+     */
+    protected FilterResultCache() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static FilterResultCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the canonical key for the filter conditions, independent of their order and duplicates.
+     *
+     * @methodtype conversion
+     */
+    public static String asKey(Collection<String> conditions) {
+        List<String> sorted = new ArrayList<String>(new HashSet<String>(conditions));
+        Collections.sort(sorted);
+
+        StringBuilder result = new StringBuilder();
+        for (String condition : sorted) {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(condition);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the cached photo ids for key, or null if the caller has to compute (and put) them.
+     *
+     * @methodtype get
+     */
+    public synchronized int[] get(String key) {
+        int[] result = entries.get(key);
+        if (result != null) {
+            noHits.incrementAndGet();
+        } else {
+            noMisses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Generation to pass to put for results computed after this call.
+     *
+     * @methodtype get
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Caches the sorted photo ids unless an invalidation happened since the given generation was obtained.
+     *
+     * @methodtype command
+     */
+    public synchronized void put(String key, int[] photoIds, long computedAt) {
+        if (computedAt != generation) {
+            return;
+        }
+
+        entries.put(key, photoIds);
+        for (String condition : asConditions(key)) {
+            Set<String> keys = dependents.get(condition);
+            if (keys == null) {
+                keys = new HashSet<String>();
+                dependents.put(condition, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Drops all entries depending on the given condition.
+     *
+     * @methodtype command
+     */
+    public synchronized void invalidate(String condition) {
+        generation++;
+        Set<String> keys = dependents.remove(condition);
+        if (keys != null) {
+            for (String key : keys) {
+                entries.remove(key);
+                removeDependencies(key);
+            }
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        dependents.clear();
+    }
+
+    /**
+     *
+     */
+    protected void removeDependencies(String key) {
+        for (String condition : asConditions(key)) {
+            Set<String> keys = dependents.get(condition);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    dependents.remove(condition);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    protected static String[] asConditions(String key) {
+        return (key.length() == 0) ? new String[]{ALL_PHOTOS} : key.split(" ");
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getNoEntries() {
+        return entries.size();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public long getNoHits() {
+        return noHits.get();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public long getNoMisses() {
+        return noMisses.get();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public double getHitRatio() {
+        long hits = noHits.get();
+        long lookups = hits + noMisses.get();
+        return (lookups == 0) ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Only conditions gained or lost matter; a photo indexed the first time also changes the list of all photos.
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        if (oldTags.isEmpty()) {
+            invalidate(ALL_PHOTOS);
+        }
+
+        for (String tag : oldTags) {
+            if (!newTags.contains(tag)) {
+                invalidate(tag);
+            }
+        }
+
+        for (String tag : newTags) {
+            if (!oldTags.contains(tag)) {
+                invalidate(tag);
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     * A photo becoming (in)visible changes every entry it matches.
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        if (oldStatus.isDisplayable() == photo.getStatus().isDisplayable()) {
+            return;
+        }
+
+        invalidate(ALL_PHOTOS);
+        for (String tag : PhotoManager.getInstance().getIndexedTags(photo.getId())) {
+            invalidate(tag);
+        }
+    }
+
+    /**
+     * Entries in access order; evicts the least recently used entry, and its dependencies, once full.
+     */
+    protected static class EntryMap extends LinkedHashMap<String, int[]> {
+
+        /**
+         *
+         */
+        private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+        /**
+         *
+         */
+        protected FilterResultCache cache;
+
+        /**
+         *
+         */
+        protected EntryMap(FilterResultCache myCache) {
+            super(64, 0.75f, true);
+            cache = myCache;
+        }
+
+        /**
+         *
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            if (size() > MAX_NO_ENTRIES) {
+                cache.removeDependencies(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    }
+
+}
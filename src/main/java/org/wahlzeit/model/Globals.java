@@ -22,6 +22,7 @@ public class Globals extends DataObject {
     private Long lastUserId;
     private int lastSessionId;
     private int lastCaseId;
+    private String guestCookieSecret;
 
     public Globals() {
         id = DEAULT_ID;
@@ -44,6 +45,10 @@ public class Globals extends DataObject {
         return lastSessionId;
     }
 
+    public String getGuestCookieSecret() {
+        return guestCookieSecret;
+    }
+
     public void setLastPhotoId(int lastPhotoId) {
         this.lastPhotoId = lastPhotoId;
         incWriteCount();
@@ -64,6 +69,11 @@ public class Globals extends DataObject {
         incWriteCount();
     }
 
+    public void setGuestCookieSecret(String guestCookieSecret) {
+        this.guestCookieSecret = guestCookieSecret;
+        incWriteCount();
+    }
+
     public String asString() {
         StringBuilder builder = new StringBuilder();
         builder.append("Globals with ID ").append(id);
@@ -4,7 +4,9 @@ import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.Work;
 import org.wahlzeit.services.ObjectManager;
 import org.wahlzeit.servlets.AbstractServlet;
+import org.wahlzeit.servlets.GuestCookie;
 
+import javax.xml.bind.DatatypeConverter;
 import java.util.logging.Logger;
 
 import static org.wahlzeit.services.OfyService.ofy;
@@ -25,6 +27,11 @@ public class GlobalsManager extends ObjectManager {
      */
     private static GlobalsManager instance = new GlobalsManager();
 
+    /**
+     * The guest cookie secret as stored with the globals; shared by all instances, so only ever written once
+     */
+    private String guestCookieSecret = null;
+
     /**
      * @methodtype command
      * Loads all global variables and stores them in their corresponding classes.
@@ -43,6 +50,37 @@ public class GlobalsManager extends ObjectManager {
         PhotoId.setCurrentIdFromInt(globals.getLastPhotoId());
         Case.setLastCaseId(new CaseId(globals.getLastCaseId()));
         AbstractServlet.setLastSessionId(globals.getLastSessionId());
+        String secret = globals.getGuestCookieSecret();
+        if (secret == null) {
+            secret = createGuestCookieSecret();
+        }
+        guestCookieSecret = secret;
+        GuestCookie.setSecret(DatatypeConverter.parseBase64Binary(secret));
+    }
+
+    /**
+     * @methodtype command
+     * Adds a guest cookie secret to globals stored without one. Runs in a transaction, so that all instances doing
+     * this at the same time end up with the secret stored first; returns that secret.
+     */
+    private String createGuestCookieSecret() {
+        return ObjectifyService.run(new Work<String>() {
+            @Override
+            public String run() {
+                return ofy().transact(new Work<String>() {
+                    @Override
+                    public String run() {
+                        Globals globals = ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now();
+                        if (globals.getGuestCookieSecret() == null) {
+                            byte[] secret = GuestCookie.createSecret();
+                            globals.setGuestCookieSecret(DatatypeConverter.printBase64Binary(secret));
+                            ofy().save().entity(globals).now();
+                        }
+                        return globals.getGuestCookieSecret();
+                    }
+                });
+            }
+        });
     }
 
     /**
@@ -85,6 +123,7 @@ public class GlobalsManager extends ObjectManager {
                 globals.setLastPhotoId(0);
                 globals.setLastCaseId(0);
                 globals.setLastSessionId(0);
+                globals.setGuestCookieSecret(DatatypeConverter.printBase64Binary(GuestCookie.createSecret()));
                 ofy().save().entity(globals).now();
                 return null;
             }
@@ -93,7 +132,7 @@ public class GlobalsManager extends ObjectManager {
 
     /**
      * @methodtype command
-     * Saves all global variables.
+     * Saves all global variables; the guest cookie secret is kept as loaded.
      */
     public synchronized void saveGlobals() {
         final Globals globals = new Globals();
@@ -101,6 +140,7 @@ public class GlobalsManager extends ObjectManager {
         globals.setLastPhotoId(PhotoId.getCurrentIdAsInt());
         globals.setLastCaseId(Case.getLastCaseId().asInt());
         globals.setLastSessionId(AbstractServlet.getLastSessionId());
+        globals.setGuestCookieSecret(guestCookieSecret);
         log.info(globals.asString());
 
         ObjectifyService.run(new Work<Void>() {
@@ -36,6 +36,11 @@ public class Guest extends Client {
      */
     public static final String GUEST_PREFIX = "guest#";
 
+    /**
+     * The client of all sessions without a client record of their own; it is never stored
+     */
+    public static final Guest ANONYMOUS = new Guest(UserSession.ANONYMOUS_CLIENT);
+
     /**
      *
      */
@@ -43,4 +48,13 @@ public class Guest extends Client {
         String userId = GUEST_PREFIX + UserManager.getInstance().getNextClientId();
         initialize(userId, userId, EmailAddress.EMPTY, AccessRights.GUEST);
     }
+
+    /**
+     * Creates a guest that is not known to the UserManager.
+     */
+    protected Guest(String myId) {
+        id = myId;
+        nickName = myId;
+        accessRights = AccessRights.GUEST;
+    }
 }
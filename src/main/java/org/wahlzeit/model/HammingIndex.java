@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A HammingIndex finds the 64-bit hashes within a small Hamming distance of a query hash, using multi-index hashing:
+ * every hash is split into NO_CHUNKS chunks of 16 bits, each indexed in its own table. Two hashes at distance r
+ * agree on at least one chunk up to r / NO_CHUNKS bits, so a query only probes the chunk values that close to its
+ * own, and buckets stay small even for millions of hashes.
+ *
+ * @author dirkriehle
+ */
+public class HammingIndex {
+
+    /**
+     *
+     */
+    public static final int NO_CHUNKS = 4;
+    public static final int CHUNK_BITS = 64 / NO_CHUNKS;
+    public static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /**
+     *
+     */
+    protected static final int[] NO_IDS = new int[0];
+
+    /**
+     *
+     */
+    protected Map<Integer, Long> hashes = new HashMap<Integer, Long>();
+
+    /**
+     * Per chunk table, the ids of all hashes with the given chunk value
+     */
+    protected List<Map<Integer, int[]>> tables = new ArrayList<Map<Integer, int[]>>(NO_CHUNKS);
+
+    /**
+     *
+     */
+    public HammingIndex() {
+        for (int i = 0; i < NO_CHUNKS; i++) {
+            tables.add(new HashMap<Integer, int[]>());
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getSize() {
+        return hashes.size();
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void add(int id, long hash) {
+        remove(id);
+        hashes.put(id, hash);
+        for (int i = 0; i < NO_CHUNKS; i++) {
+            Map<Integer, int[]> table = tables.get(i);
+            int chunk = getChunk(hash, i);
+            int[] ids = table.get(chunk);
+            if (ids == null) {
+                ids = NO_IDS;
+            }
+            int[] newIds = Arrays.copyOf(ids, ids.length + 1);
+            newIds[ids.length] = id;
+            table.put(chunk, newIds);
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void remove(int id) {
+        Long hash = hashes.remove(id);
+        if (hash == null) {
+            return;
+        }
+
+        for (int i = 0; i < NO_CHUNKS; i++) {
+            Map<Integer, int[]> table = tables.get(i);
+            int chunk = getChunk(hash, i);
+            int[] ids = table.get(chunk);
+            if (ids == null) {
+                continue;
+            }
+
+            int[] newIds = new int[ids.length - 1];
+            int j = 0;
+            for (int other : ids) {
+                if ((other != id) && (j < newIds.length)) {
+                    newIds[j++] = other;
+                }
+            }
+            if (j == 0) {
+                table.remove(chunk);
+            } else {
+                table.put(chunk, newIds);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of all hashes within maxDistance of hash, closest first.
+     *
+     * @methodtype get
+     */
+    public synchronized List<Integer> find(long hash, int maxDistance) {
+        final Map<Integer, Integer> distances = new HashMap<Integer, Integer>();
+        int chunkDistance = maxDistance / NO_CHUNKS;
+        for (int i = 0; i < NO_CHUNKS; i++) {
+            probe(tables.get(i), getChunk(hash, i), 0, chunkDistance, hash, maxDistance, distances);
+        }
+
+        List<Integer> result = new ArrayList<Integer>(distances.keySet());
+        Collections.sort(result, new Comparator<Integer>() {
+            public int compare(Integer id1, Integer id2) {
+                int compare = distances.get(id1).compareTo(distances.get(id2));
+                return (compare != 0) ? compare : id1.compareTo(id2);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Visits all chunk values differing from chunk in at most flipsLeft bits at positions from firstBit on.
+     */
+    protected void probe(Map<Integer, int[]> table, int chunk, int firstBit, int flipsLeft, long hash, int maxDistance, Map<Integer, Integer> result) {
+        int[] ids = table.get(chunk);
+        if (ids != null) {
+            for (int id : ids) {
+                if (!result.containsKey(id)) {
+                    int distance = PerceptualHash.getDistance(hash, hashes.get(id));
+                    if (distance <= maxDistance) {
+                        result.put(id, distance);
+                    }
+                }
+            }
+        }
+
+        if (flipsLeft > 0) {
+            for (int bit = firstBit; bit < CHUNK_BITS; bit++) {
+                probe(table, chunk ^ (1 << bit), bit + 1, flipsLeft - 1, hash, maxDistance, result);
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    protected static int getChunk(long hash, int i) {
+        return (int) (hash >>> (i * CHUNK_BITS)) & CHUNK_MASK;
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * The HttpSessionStore keeps attributes in the HttpSession of the current request, which on Google App Engine is
+ * written to the datastore and memcache whenever an attribute was set. It serves a single session and is created
+ * per request.
+ *
+ * @author dirkriehle
+ */
+public class HttpSessionStore implements SessionStore {
+
+    /**
+     *
+     */
+    protected HttpSession httpSession;
+
+    /**
+     *
+     */
+    public HttpSessionStore(HttpSession myHttpSession) {
+        httpSession = myHttpSession;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Object getAttribute(String sessionId, String name) {
+        assertIsOwnSessionId(sessionId);
+        return httpSession.getAttribute(name);
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setAttribute(String sessionId, String name, Object value) {
+        assertIsOwnSessionId(sessionId);
+        if (value != null) {
+            httpSession.setAttribute(name, value);
+        } else {
+            httpSession.removeAttribute(name);
+        }
+    }
+
+    /**
+     *
+     */
+    public void flush() {
+        // do nothing
+    }
+
+    /**
+     * @methodtype assertion
+     */
+    protected void assertIsOwnSessionId(String sessionId) {
+        String ownId = httpSession.getId();
+        if ((sessionId != ownId) && ((sessionId == null) || !sessionId.equals(ownId))) {
+            throw new IllegalArgumentException("not the session of this store: " + sessionId);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.SortedIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A Leaderboard keeps photos ordered by praise (then number of votes) in a SortedIndex. Updating a photo takes
+ * O(log n); reading the top n photos takes O(n) and needs no lock.
+ *
+ * @author dirkriehle
+ */
+public class Leaderboard {
+
+    /**
+     * Higher praise first, then more votes, then older (smaller) id.
+     */
+    protected static final Comparator<Entry> RANK_ORDER = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            int result = Double.compare(e2.praise, e1.praise);
+            if (result == 0) {
+                result = (e1.noVotes > e2.noVotes) ? -1 : ((e1.noVotes < e2.noVotes) ? 1 : 0);
+            }
+            if (result == 0) {
+                int id1 = e1.id.asInt();
+                int id2 = e2.id.asInt();
+                result = (id1 < id2) ? -1 : ((id1 > id2) ? 1 : 0);
+            }
+            return result;
+        }
+    };
+
+    /**
+     *
+     */
+    protected SortedIndex<PhotoId, Entry> entries = new SortedIndex<PhotoId, Entry>(RANK_ORDER);
+
+    /**
+     *
+     */
+    public Leaderboard() {
+        // do nothing
+    }
+
+    /**
+     * Adds the photo or moves it to the place matching its current praise.
+     *
+     * @methodtype command
+     */
+    public void update(Photo photo) {
+        entries.put(photo.getId(), new Entry(photo.getId(), photo.getPraise(), photo.getNoVotes()));
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void remove(PhotoId id) {
+        entries.remove(id);
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean contains(PhotoId id) {
+        return entries.contains(id);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getSize() {
+        return entries.getSize();
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Returns the ids of the (up to) max best photos, best first.
+     *
+     * @methodtype get
+     */
+    public List<PhotoId> getTop(int max) {
+        List<Entry> top = entries.getValues(0, max);
+        List<PhotoId> result = new ArrayList<PhotoId>(top.size());
+        for (Entry entry : top) {
+            result.add(entry.id);
+        }
+        return result;
+    }
+
+    /**
+     * An immutable snapshot of the ranking-relevant values of a photo.
+     */
+    protected static class Entry {
+
+        /**
+         *
+         */
+        protected final PhotoId id;
+        protected final double praise;
+        protected final int noVotes;
+
+        /**
+         *
+         */
+        protected Entry(PhotoId myId, double myPraise, int myNoVotes) {
+            id = myId;
+            praise = myPraise;
+            noVotes = myNoVotes;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The LeaderboardManager maintains a global leaderboard of all visible photos and one leaderboard per tag. As a
+ * PhotoListener, it moves a photo within its leaderboards whenever the photo is praised, retagged, or changes status,
+ * so that top-n lists never require scanning and sorting all photos.
+ *
+ * @author dirkriehle
+ */
+public class LeaderboardManager implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final String TAG = "tag";
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_PHOTOS = 10;
+    public static final int MAX_NO_PHOTOS = 100;
+
+    /**
+     *
+     */
+    protected static final LeaderboardManager instance = new LeaderboardManager();
+
+    /**
+     *
+     */
+    protected Leaderboard globalLeaderboard = new Leaderboard();
+    protected Map<String, Leaderboard> tagLeaderboards = new ConcurrentHashMap<String, Leaderboard>();
+
+    /**
+     *
+     */
+    protected LeaderboardManager() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static LeaderboardManager getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the (up to) max best visible photos, either overall (tag is null or empty) or for the given tag.
+     *
+     * @methodtype get
+     */
+    public List<Photo> getTopPhotos(String tag, int max) {
+        int noPhotos = Math.min(Math.max(max, 0), MAX_NO_PHOTOS);
+        Leaderboard leaderboard = getLeaderboard(tag);
+
+        List<Photo> result = new ArrayList<Photo>(noPhotos);
+        if (leaderboard != null) {
+            for (PhotoId id : leaderboard.getTop(noPhotos)) {
+                Photo photo = PhotoManager.getPhoto(id);
+                if ((photo != null) && photo.isVisible()) {
+                    result.add(photo);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Leaderboard getLeaderboard(String tag) {
+        if ((tag == null) || (tag.length() == 0)) {
+            return globalLeaderboard;
+        }
+
+        return tagLeaderboards.get(Tags.asTag(tag));
+    }
+
+    /**
+     *
+     */
+    public synchronized void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        for (String tag : oldTags) {
+            if (tag.startsWith(TagSuggester.TAG_PREFIX) && !newTags.contains(tag)) {
+                removeFromTagLeaderboard(tag.substring(TagSuggester.TAG_PREFIX.length()), photo.getId());
+            }
+        }
+
+        if (photo.isVisible()) {
+            update(photo, newTags);
+        }
+    }
+
+    /**
+     *
+     */
+    public synchronized void photoPraised(Photo photo) {
+        if (photo.isVisible()) {
+            update(photo, PhotoManager.getInstance().getIndexedTags(photo.getId()));
+        }
+    }
+
+    /**
+     *
+     */
+    public synchronized void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        Set<String> tags = PhotoManager.getInstance().getIndexedTags(photo.getId());
+        if (photo.isVisible()) {
+            update(photo, tags);
+        } else {
+            globalLeaderboard.remove(photo.getId());
+            for (String tag : tags) {
+                if (tag.startsWith(TagSuggester.TAG_PREFIX)) {
+                    removeFromTagLeaderboard(tag.substring(TagSuggester.TAG_PREFIX.length()), photo.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    protected void update(Photo photo, Set<String> tags) {
+        globalLeaderboard.update(photo);
+        for (String tag : tags) {
+            if (tag.startsWith(TagSuggester.TAG_PREFIX)) {
+                String key = tag.substring(TagSuggester.TAG_PREFIX.length());
+                Leaderboard leaderboard = tagLeaderboards.get(key);
+                if (leaderboard == null) {
+                    leaderboard = new Leaderboard();
+                    tagLeaderboards.put(key, leaderboard);
+                }
+                leaderboard.update(photo);
+            }
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    protected void removeFromTagLeaderboard(String tag, PhotoId id) {
+        Leaderboard leaderboard = tagLeaderboards.get(tag);
+        if (leaderboard != null) {
+            leaderboard.remove(id);
+            if (leaderboard.isEmpty()) {
+                tagLeaderboards.remove(tag);
+            }
+        }
+    }
+
+}
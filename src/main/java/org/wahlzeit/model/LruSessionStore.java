@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import org.wahlzeit.services.LogBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The LruSessionStore keeps the sessions of a standalone deployment in memory, up to a maximum number of recently
+ * used ones. Changed sessions are written to the datastore in the background, in batches, and evicted sessions are
+ * reloaded from there on their next request. The SessionCleanupServlet deletes session data that has not been written
+ * for MAX_SESSION_DATA_AGE.
+ *
+ * The cache is split into segments, each a LinkedHashMap in access order guarded by its own lock, so that requests
+ * for different sessions rarely wait for each other.
+ *
+ * @author dirkriehle
+ */
+public class LruSessionStore implements SessionStore {
+
+    private static final Logger log = Logger.getLogger(LruSessionStore.class.getName());
+
+    /**
+     *
+     */
+    public static final String SESSION_ENTITY_TYPE = "UserSessionData";
+    public static final String DATA_PROP = "data";
+    public static final String LAST_WRITTEN_PROP = "lastWritten";
+
+    /**
+     * Session data not written for this long is deleted by the session cleanup; well beyond the session timeout, as
+     * reading a session does not write it
+     */
+    public static final long MAX_SESSION_DATA_AGE = 24 * 60 * 60 * 1000; // ms
+
+    /**
+     *
+     */
+    protected static final int NO_SEGMENTS = 16;
+    protected static final int BATCH_SIZE = 500; // most entities per datastore batch put
+    protected static final long FLUSH_INTERVAL = 1000; // ms
+
+    /**
+     *
+     */
+    protected Segment[] segments = new Segment[NO_SEGMENTS];
+
+    /**
+     * Sessions changed since their last write, by session id; the latest change wins
+     */
+    protected Map<String, Map<String, Object>> pendingWrites = new ConcurrentHashMap<String, Map<String, Object>>();
+
+    /**
+     * Sessions taken from pendingWrites by a flush that is still writing them
+     */
+    protected Map<String, Map<String, Object>> currentWrites = new ConcurrentHashMap<String, Map<String, Object>>();
+
+    /**
+     *
+     */
+    protected ScheduledExecutorService writer = null;
+
+    /**
+     *
+     */
+    public LruSessionStore(int maxSessions) {
+        int maxPerSegment = Math.max(1, maxSessions / NO_SEGMENTS);
+        for (int i = 0; i < NO_SEGMENTS; i++) {
+            segments[i] = new Segment(maxPerSegment);
+        }
+    }
+
+    /**
+     * Starts writing changed sessions in the background; without it, changes are only written by flush().
+     *
+     * @methodtype command
+     */
+    public synchronized void startWriter() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread result = new Thread(runnable, "LruSessionStore writer");
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+            writer.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            }, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void stopWriter() {
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+        flush();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Object getAttribute(String sessionId, String name) {
+        Map<String, Object> attributes = getAttributes(sessionId, false);
+        return (attributes != null) ? attributes.get(name) : null;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setAttribute(String sessionId, String name, Object value) {
+        Map<String, Object> attributes = getAttributes(sessionId, true);
+        if (value != null) {
+            attributes.put(name, value);
+        } else {
+            attributes.remove(name);
+        }
+        pendingWrites.put(sessionId, attributes);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoCachedSessions() {
+        int result = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoPendingWrites() {
+        return pendingWrites.size();
+    }
+
+    /**
+     * Returns the attributes of the session, loading them on a cache miss; creates them if asked to.
+     */
+    protected Map<String, Object> getAttributes(String sessionId, boolean create) {
+        Segment segment = getSegment(sessionId);
+        synchronized (segment) {
+            Map<String, Object> result = segment.get(sessionId);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        Map<String, Object> loaded = pendingWrites.get(sessionId); // evicted before being written
+        if (loaded == null) {
+            loaded = currentWrites.get(sessionId);
+        }
+        if (loaded == null) {
+            loaded = loadAttributes(sessionId);
+        }
+        if ((loaded == null) && !create) {
+            return null;
+        }
+
+        synchronized (segment) {
+            Map<String, Object> result = segment.get(sessionId); // a concurrent request may have been faster
+            if (result == null) {
+                result = new ConcurrentHashMap<String, Object>();
+                if (loaded != null) {
+                    result.putAll(loaded);
+                }
+                segment.put(sessionId, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    protected Segment getSegment(String sessionId) {
+        int hash = sessionId.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[hash & (NO_SEGMENTS - 1)];
+    }
+
+    /**
+     * Writes all pending changes, in batches.
+     *
+     * @methodtype command
+     */
+    public synchronized void flush() {
+        Map<String, Map<String, Object>> batch = new HashMap<String, Map<String, Object>>();
+        for (Iterator<Map.Entry<String, Map<String, Object>>> i = pendingWrites.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<String, Map<String, Object>> entry = i.next();
+            currentWrites.put(entry.getKey(), entry.getValue());
+            i.remove();
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() == BATCH_SIZE) {
+                writeBatch(batch);
+                batch = new HashMap<String, Map<String, Object>>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     *
+     */
+    protected void writeBatch(Map<String, Map<String, Object>> batch) {
+        try {
+            saveAttributes(batch);
+        } catch (RuntimeException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not write sessions", ex).toString());
+            for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+                if (!pendingWrites.containsKey(entry.getKey())) {
+                    pendingWrites.put(entry.getKey(), entry.getValue()); // retry with next flush
+                }
+            }
+        } finally {
+            currentWrites.keySet().removeAll(batch.keySet());
+        }
+    }
+
+    /**
+     * Loads the attributes of a session from the datastore; returns null if there are none.
+     */
+    protected Map<String, Object> loadAttributes(String sessionId) {
+        try {
+            DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+            Entity entity = datastore.get(asKey(sessionId));
+            return asAttributes(((Blob) entity.getProperty(DATA_PROP)).getBytes());
+        } catch (EntityNotFoundException ex) {
+            return null;
+        } catch (IOException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not read session", ex).toString());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the attributes of all sessions in the batch to the datastore with a single call.
+     */
+    protected void saveAttributes(Map<String, Map<String, Object>> batch) {
+        long now = System.currentTimeMillis();
+        List<Entity> entities = new ArrayList<Entity>(batch.size());
+        for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+            Entity entity = new Entity(asKey(entry.getKey()));
+            entity.setUnindexedProperty(DATA_PROP, new Blob(asBytes(entry.getValue())));
+            entity.setProperty(LAST_WRITTEN_PROP, now);
+            entities.add(entity);
+        }
+
+        DatastoreServiceFactory.getDatastoreService().put(entities);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("write sessions").
+                addParameter("number of sessions", entities.size()).log();
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static Key asKey(String sessionId) {
+        return KeyFactory.createKey(SESSION_ENTITY_TYPE, sessionId);
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static byte[] asBytes(Map<String, Object> attributes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(new HashMap<String, Object>(attributes));
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("session attributes are not serializable", ex);
+        }
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    @SuppressWarnings("unchecked")
+    protected static Map<String, Object> asAttributes(byte[] data) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return (Map<String, Object>) in.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * One segment of the cache; evicts its least recently used session once full. Evicted sessions need no write,
+     * as all changes have already been queued in pendingWrites.
+     */
+    protected static class Segment extends LinkedHashMap<String, Map<String, Object>> {
+
+        /**
+         *
+         */
+        private static final long serialVersionUID = 42L; // any one does; class never serialized
+
+        /**
+         *
+         */
+        protected int maxSize;
+
+        /**
+         *
+         */
+        protected Segment(int myMaxSize) {
+            super(16, 0.75f, true);
+            maxSize = myMaxSize;
+        }
+
+        /**
+         *
+         */
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A MinHashIndex finds items with similar tag sets (Jaccard similarity) by locality-sensitive hashing. Each item gets
+ * a MinHash signature of NO_BANDS * NO_ROWS values; items agreeing on all rows of any band share a bucket and become
+ * candidates for each other. Only a bounded number of candidates is looked at per query, so query time does not
+ * grow with the number of items.
+ *
+ * @author dirkriehle
+ */
+public class MinHashIndex {
+
+    /**
+     * With 16 bands of 4 rows, pairs of similarity 0.5 are found with probability ~0.65, of 0.7 with ~0.99
+     */
+    public static final int NO_BANDS = 16;
+    public static final int NO_ROWS = 4;
+    public static final int NO_HASHES = NO_BANDS * NO_ROWS;
+
+    /**
+     * Upper bound of candidates scored per query
+     */
+    public static final int MAX_NO_CANDIDATES = 64;
+
+    /**
+     *
+     */
+    protected static final int[] SEEDS = new int[NO_HASHES];
+
+    static {
+        Random random = new Random(0x5EED);
+        for (int i = 0; i < NO_HASHES; i++) {
+            SEEDS[i] = random.nextInt();
+        }
+    }
+
+    /**
+     *
+     */
+    protected Map<Integer, int[]> signatures = new HashMap<Integer, int[]>();
+    protected Map<Long, Set<Integer>> buckets = new HashMap<Long, Set<Integer>>();
+
+    /**
+     *
+     */
+    public MinHashIndex() {
+        // do nothing
+    }
+
+    /**
+     * Returns the MinHash signature of the tags, or null for no tags.
+     *
+     * @methodtype conversion
+     */
+    public static int[] asSignature(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return null;
+        }
+
+        int[] result = new int[NO_HASHES];
+        for (int i = 0; i < NO_HASHES; i++) {
+            result[i] = Integer.MAX_VALUE;
+        }
+
+        for (String tag : tags) {
+            int tagHash = tag.hashCode();
+            for (int i = 0; i < NO_HASHES; i++) {
+                result[i] = Math.min(result[i], hash(tagHash ^ SEEDS[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the Jaccard similarity as the fraction of equal signature values.
+     *
+     * @methodtype get
+     */
+    public static double getSimilarity(int[] signature1, int[] signature2) {
+        int noEqual = 0;
+        for (int i = 0; i < NO_HASHES; i++) {
+            if (signature1[i] == signature2[i]) {
+                noEqual++;
+            }
+        }
+        return (double) noEqual / NO_HASHES;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getSize() {
+        return signatures.size();
+    }
+
+    /**
+     * Indexes (or re-indexes) the item under the given tags; no tags removes it.
+     *
+     * @methodtype command
+     */
+    public synchronized void update(int id, Collection<String> tags) {
+        remove(id);
+
+        int[] signature = asSignature(tags);
+        if (signature == null) {
+            return;
+        }
+
+        signatures.put(id, signature);
+        for (int band = 0; band < NO_BANDS; band++) {
+            Long key = getBucketKey(signature, band);
+            Set<Integer> bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new LinkedHashSet<Integer>();
+                buckets.put(key, bucket);
+            }
+            bucket.add(id);
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void remove(int id) {
+        int[] signature = signatures.remove(id);
+        if (signature == null) {
+            return;
+        }
+
+        for (int band = 0; band < NO_BANDS; band++) {
+            Long key = getBucketKey(signature, band);
+            Set<Integer> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns up to max ids of items similar to the item, most similar first.
+     *
+     * @methodtype get
+     */
+    public List<Integer> getSimilar(int id, int max) {
+        int[] signature;
+        synchronized (this) {
+            signature = signatures.get(id);
+        }
+        return (signature != null) ? getSimilar(signature, id, max) : Collections.<Integer>emptyList();
+    }
+
+    /**
+     * Returns up to max ids of items similar to the tags, most similar first.
+     *
+     * @methodtype get
+     */
+    public List<Integer> getSimilar(Collection<String> tags, int max) {
+        int[] signature = asSignature(tags);
+        return (signature != null) ? getSimilar(signature, null, max) : Collections.<Integer>emptyList();
+    }
+
+    /**
+     * Collects candidates band by band, spreading the candidate budget over the bands, then ranks them.
+     */
+    protected List<Integer> getSimilar(int[] signature, Integer excludedId, int max) {
+        final Map<Integer, Double> similarities = new HashMap<Integer, Double>();
+        synchronized (this) {
+            Set<Integer> candidates = new HashSet<Integer>();
+            int perBand = Math.max(1, MAX_NO_CANDIDATES / NO_BANDS);
+            for (int band = 0; band < NO_BANDS; band++) {
+                Set<Integer> bucket = buckets.get(getBucketKey(signature, band));
+                if (bucket != null) {
+                    int noTaken = 0;
+                    for (Integer candidate : bucket) {
+                        if (noTaken++ >= perBand) {
+                            break;
+                        }
+                        candidates.add(candidate);
+                    }
+                }
+            }
+            candidates.remove(excludedId);
+
+            for (Integer candidate : candidates) {
+                similarities.put(candidate, getSimilarity(signature, signatures.get(candidate)));
+            }
+        }
+
+        List<Integer> result = new ArrayList<Integer>(similarities.keySet());
+        Collections.sort(result, new Comparator<Integer>() {
+            public int compare(Integer id1, Integer id2) {
+                int compare = Double.compare(similarities.get(id2), similarities.get(id1));
+                return (compare != 0) ? compare : id1.compareTo(id2);
+            }
+        });
+        return (result.size() > max) ? new ArrayList<Integer>(result.subList(0, Math.max(max, 0))) : result;
+    }
+
+    /**
+     *
+     */
+    protected static Long getBucketKey(int[] signature, int band) {
+        int hash = band;
+        for (int row = band * NO_ROWS; row < (band + 1) * NO_ROWS; row++) {
+            hash = 31 * hash + signature[row];
+        }
+        return ((long) band << 32) | (hash & 0xffffffffL);
+    }
+
+    /**
+     * Murmur3 finalizer; spreads similar inputs over the whole int range.
+     */
+    protected static int hash(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
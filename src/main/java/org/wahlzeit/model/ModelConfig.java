@@ -184,12 +184,17 @@ public interface ModelConfig extends Configuration, Serializable {
 
     String getPhotoUploadSucceeded();
 
+    String getPhotoUploadIsNearDuplicate();
+
     // LOGOUT_PAGE
     String getLogoutSucceeded();
 
     // SHOW_PHOTO_CASE_FORM
     String getNoFlaggedPhotoCases();
 
+    // SHOW_LEADERBOARD_PAGE
+    String getNoLeaderboardPhotos();
+
     // SHOW_ADMIN_MENU_FORM
     String getPhotoIsUnknown();
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.images.Image;
+import com.google.appengine.api.images.ImagesService;
+import com.google.appengine.api.images.ImagesServiceFactory;
+import com.google.appengine.api.images.OutputSettings;
+import com.google.appengine.api.images.Transform;
+import org.wahlzeit.utils.PngReader;
+
+import java.io.IOException;
+
+/**
+ * PerceptualHash computes 64-bit difference hashes (dHash) of images: the image is shrunk to 9x8 gray pixels and
+ * each bit tells whether a pixel is brighter than its right neighbour. Resized or re-encoded copies of an image
+ * get hashes that differ in only a few bits, unlike cryptographic hashes of the file.
+ *
+ * @author dirkriehle
+ */
+public class PerceptualHash {
+
+    /**
+     *
+     */
+    public static final int HASH_WIDTH = 8;
+    public static final int HASH_HEIGHT = 8;
+
+    /**
+     * Hash of images that could not be hashed
+     */
+    public static final long NO_HASH = 0L;
+
+    /**
+     * Returns the dHash of the image, scaled by the images service.
+     *
+     * @methodtype conversion
+     */
+    public static long getDifferenceHash(Image image) throws IOException {
+        ImagesService imagesService = ImagesServiceFactory.getImagesService();
+        Transform resize = ImagesServiceFactory.makeResize(HASH_WIDTH + 1, HASH_HEIGHT, true);
+        OutputSettings png = new OutputSettings(ImagesService.OutputEncoding.PNG);
+        Image small = imagesService.applyTransform(resize, ImagesServiceFactory.makeImage(image.getImageData()), png);
+
+        PngReader reader = new PngReader(small.getImageData());
+        if ((reader.getWidth() != HASH_WIDTH + 1) || (reader.getHeight() != HASH_HEIGHT)) {
+            throw new IOException("unexpected size of scaled image");
+        }
+        return getDifferenceHash(reader.getGrayPixels());
+    }
+
+    /**
+     * Returns the dHash of (HASH_WIDTH + 1) x HASH_HEIGHT gray pixels given row by row.
+     *
+     * @methodtype conversion
+     */
+    public static long getDifferenceHash(int[] grayPixels) {
+        long result = 0;
+        for (int y = 0; y < HASH_HEIGHT; y++) {
+            int row = y * (HASH_WIDTH + 1);
+            for (int x = 0; x < HASH_WIDTH; x++) {
+                result <<= 1;
+                if (grayPixels[row + x] > grayPixels[row + x + 1]) {
+                    result |= 1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public static int getDistance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+}
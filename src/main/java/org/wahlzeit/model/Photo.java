@@ -114,6 +114,10 @@ public class Photo extends DataObject {
      * The default type is jpg
      */
     protected String ending = "jpg";
+    /**
+     * Difference hash of the thumbnail, see PerceptualHash
+     */
+    protected long perceptualHash = PerceptualHash.NO_HASH;
     /**
      *
      */
@@ -334,6 +338,15 @@ public class Photo extends DataObject {
         praiseSum += value;
         noVotes += 1;
         incWriteCount();
+
+        PhotoManager.getInstance().notifyPhotoPraised(this);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoVotes() {
+        return noVotes;
     }
 
     /**
@@ -354,8 +367,13 @@ public class Photo extends DataObject {
      * @methodtype set
      */
     public void setStatus(PhotoStatus newStatus) {
+        PhotoStatus oldStatus = status;
         status = newStatus;
         incWriteCount();
+
+        if (oldStatus != newStatus) {
+            PhotoManager.getInstance().notifyPhotoStatusChanged(this, oldStatus);
+        }
     }
 
     /**
@@ -387,6 +405,21 @@ public class Photo extends DataObject {
         return creationTime;
     }
 
+    /**
+     * @methodtype get
+     */
+    public long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPerceptualHash(long newHash) {
+        perceptualHash = newHash;
+        incWriteCount();
+    }
+
 
     public String getEnding() {
         return ending;
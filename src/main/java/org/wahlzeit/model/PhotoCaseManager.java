@@ -91,6 +91,13 @@ public class PhotoCaseManager extends ObjectManager {
         return result;
     }
 
+    /**
+     * @methodtype get
+     */
+    public PhotoCase getOpenPhotoCase(CaseId id) {
+        return openPhotoCases.get(id);
+    }
+
     /**
      * @methodtype command
      */
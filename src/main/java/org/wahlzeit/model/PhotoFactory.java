@@ -22,6 +22,7 @@ package org.wahlzeit.model;
 
 import org.wahlzeit.services.LogBuilder;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -55,7 +56,7 @@ public class PhotoFactory {
      */
     public static synchronized PhotoFactory getInstance() {
         if (instance == null) {
-            log.config(LogBuilder.createSystemMessage().addAction("setting generic PhotoFactory").toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("setting generic PhotoFactory").log();
             setInstance(new PhotoFactory());
         }
 
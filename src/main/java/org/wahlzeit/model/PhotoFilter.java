@@ -20,14 +20,18 @@
 
 package org.wahlzeit.model;
 
+import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.utils.StringUtil;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -42,12 +46,14 @@ public class PhotoFilter implements Serializable {
      */
     public static final String USER_NAME = "userName";
     public static final String TAGS = "tags";
+    public static final String WEIGHTED = "weighted";
 
     /**
      *
      */
     protected String userName = "";
     protected Tags tags = Tags.EMPTY_TAGS;
+    protected boolean isWeighted = false;
 
     /**
      *
@@ -55,6 +61,11 @@ public class PhotoFilter implements Serializable {
     protected List<PhotoId> displayablePhotoIds;
     protected List<PhotoId> processedPhotoIds = new LinkedList<PhotoId>();
 
+    /**
+     * Lookup set for displayablePhotoIds; built on demand by weighted sampling
+     */
+    protected transient Set<PhotoId> displayablePhotoIdSet = null;
+
     /**
      *
      */
@@ -80,6 +91,7 @@ public class PhotoFilter implements Serializable {
     public void clear() {
         setUserName("");
         setTags(Tags.EMPTY_TAGS);
+        setWeighted(false);
         displayablePhotoIds.clear();
         processedPhotoIds.clear();
     }
@@ -107,6 +119,22 @@ public class PhotoFilter implements Serializable {
         resetDisplayablePhotoIds();
     }
 
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isWeighted() {
+        return isWeighted;
+    }
+
+    /**
+     * In weighted mode, photos are drawn in proportion to their PhotoSampler score rather than uniformly.
+     *
+     * @methodtype set
+     */
+    public void setWeighted(boolean weighted) {
+        isWeighted = weighted;
+    }
+
     /**
      *
      */
@@ -137,6 +165,13 @@ public class PhotoFilter implements Serializable {
      *
      */
     public PhotoId getRandomDisplayablePhotoId() {
+        if (isWeighted && !displayablePhotoIds.isEmpty()) {
+            PhotoId result = PhotoSampler.getInstance().sample(this, randomNumber);
+            if (result != null) {
+                return result;
+            }
+        }
+
         if (!displayablePhotoIds.isEmpty()) {
             int size = displayablePhotoIds.size();
             int index = ((randomNumber.nextInt() % size) + size) / 2;
@@ -158,6 +193,7 @@ public class PhotoFilter implements Serializable {
      */
     public void setDisplayablePhotoIds(List<PhotoId> newPhotoIds) {
         displayablePhotoIds = newPhotoIds;
+        displayablePhotoIdSet = null;
     }
 
     /**
@@ -165,6 +201,17 @@ public class PhotoFilter implements Serializable {
      */
     public void resetDisplayablePhotoIds() {
         displayablePhotoIds = new ArrayList<PhotoId>();
+        displayablePhotoIdSet = null;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isDisplayablePhotoId(PhotoId photoId) {
+        if (displayablePhotoIdSet == null) {
+            displayablePhotoIdSet = new HashSet<PhotoId>(displayablePhotoIds);
+        }
+        return displayablePhotoIdSet.contains(photoId);
     }
 
     /**
@@ -178,11 +225,12 @@ public class PhotoFilter implements Serializable {
      *
      */
     public boolean isProcessedPhotoId(PhotoId photoId) {
-        log.info("photoId: " + photoId.asString());
-        for (PhotoId id : processedPhotoIds) {
-            log.info("Processed id: " + id.asString());
-        }
-        return processedPhotoIds.contains(photoId);
+        boolean result = processedPhotoIds.contains(photoId);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("photoId", photoId.asString()).
+                addParameter("is processed", result).
+                addParameter("processed photos", processedPhotoIds.size()).log();
+        return result;
     }
 
     /**
@@ -193,6 +241,9 @@ public class PhotoFilter implements Serializable {
         if (displayablePhotoIds != null) {
             displayablePhotoIds.remove(photo.getId());
         }
+        if (displayablePhotoIdSet != null) {
+            displayablePhotoIdSet.remove(photo.getId());
+        }
     }
 
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.Set;
+
+/**
+ * A PhotoListener gets informed by the PhotoManager about changes to the photos it manages. Listeners maintain
+ * in-memory structures derived from photos (indices, statistics) incrementally instead of rescanning all photos.
+ *
+ * @author dirkriehle
+ */
+public interface PhotoListener {
+
+    /**
+     * Called whenever the tags of a photo have been (re-)indexed. Tags are given as collected by the
+     * PhotoTagCollector, i.e. with their "tg:" or "un:" prefix. oldTags is empty for photos indexed the first time.
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags);
+
+    /**
+     * Called after a photo received a vote; see Photo.addToPraise.
+     */
+    public void photoPraised(Photo photo);
+
+    /**
+     * Called after the status of a photo changed, e.g. when it got flagged, hidden, or deleted.
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus);
+
+}
@@ -31,7 +31,9 @@ import org.wahlzeit.services.Persistent;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,6 +41,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -65,6 +70,16 @@ public class PhotoManager extends ObjectManager {
      */
     protected PhotoTagCollector photoTagCollector = null;
 
+    /**
+     * Tags of each photo as last announced to the photo listeners
+     */
+    protected Map<PhotoId, Set<String>> indexedTags = new ConcurrentHashMap<PhotoId, Set<String>>();
+
+    /**
+     *
+     */
+    protected List<PhotoListener> photoListeners = new CopyOnWriteArrayList<PhotoListener>();
+
     /**
      *
      */
@@ -143,6 +158,21 @@ public class PhotoManager extends ObjectManager {
         return getPhoto(PhotoId.getIdFromString(id));
     }
 
+    /**
+     * @methodtype command
+     */
+    public void addPhotoListener(PhotoListener listener) {
+        assertIsNonNullArgument(listener, "listener");
+        photoListeners.add(listener);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void removePhotoListener(PhotoListener listener) {
+        photoListeners.remove(listener);
+    }
+
     /**
      * @methodtype init Loads all Photos from the Datastore and holds them in the cache
      */
@@ -165,17 +195,18 @@ public class PhotoManager extends ObjectManager {
 
         for (Photo photo : existingPhotos) {
             if (!doHasPhoto(photo.getId())) {
-                log.config(LogBuilder.createSystemMessage().
-                        addParameter("Load Photo with ID", photo.getIdAsString()).toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
+                        addParameter("Load Photo with ID", photo.getIdAsString()).log();
                 loadScaledImages(photo);
                 doAddPhoto(photo);
+                indexTags(photo);
                 try {
                     String ownerName = photo.getOwnerId();
                     User user = UserManager.getInstance().getUserById(ownerName);
                     if (user != null) {
                         user.addPhoto(photo);
-                        log.config(LogBuilder.createSystemMessage().
-                                addParameter("Found owner", user.getId()).toString());
+                        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                                addParameter("Found owner", user.getId()).log();
                     } else {
                         log.warning(LogBuilder.createSystemMessage().
                                 addParameter("missing owner", ownerName).toString());
@@ -185,8 +216,8 @@ public class PhotoManager extends ObjectManager {
                             addException("Problem when loading owner", e).toString());
                 }
             } else {
-                log.config(LogBuilder.createSystemMessage().
-                        addParameter("Already loaded Photo", photo.getIdAsString()).toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
+                        addParameter("Already loaded Photo", photo.getIdAsString()).log();
             }
         }
 
@@ -211,10 +242,10 @@ public class PhotoManager extends ObjectManager {
         ImageStorage imageStorage = ImageStorage.getInstance();
 
         for (PhotoSize photoSize : PhotoSize.values()) {
-            log.config(LogBuilder.createSystemMessage().
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
                     addAction("loading image").
                     addParameter("image size", photoSize.asString()).
-                    addParameter("photo ID", photoIdAsString).toString());
+                    addParameter("photo ID", photoIdAsString).log();
             if (imageStorage.doesImageExist(photoIdAsString, photoSize.asInt())) {
                 try {
                     Serializable rawImage = imageStorage.readImage(photoIdAsString, photoSize.asInt());
@@ -228,8 +259,8 @@ public class PhotoManager extends ObjectManager {
                             addException("Could not load image although it exists", e).toString());
                 }
             } else {
-                log.config(LogBuilder.createSystemMessage().
-                        addParameter("Size does not exist", photoSize.asString()).toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
+                        addParameter("Size does not exist", photoSize.asString()).log();
             }
         }
     }
@@ -273,8 +304,8 @@ public class PhotoManager extends ObjectManager {
                             addException("Problem storing image", e).toString());
                 }
             } else {
-                log.config(LogBuilder.createSystemMessage().
-                        addParameter("No image for size", photoSize.asString()).toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
+                        addParameter("No image for size", photoSize.asString()).log();
             }
         }
     }
@@ -288,15 +319,72 @@ public class PhotoManager extends ObjectManager {
         deleteObjects(Tag.class, Tag.PHOTO_ID, photo.getId().asString());
 
         // add all current tags to the datastore
-        Set<String> tags = new HashSet<String>();
-        photoTagCollector.collect(tags, photo);
+        Set<String> tags = indexTags(photo);
         for (Iterator<String> i = tags.iterator(); i.hasNext(); ) {
             Tag tag = new Tag(i.next(), photo.getId().asString());
-            log.config(LogBuilder.createSystemMessage().addParameter("Writing Tag", tag.asString()).toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Writing Tag", tag.asString()).log();
             writeObject(tag);
         }
     }
 
+    /**
+     * Collects the current tags of the photo and informs all photo listeners about the difference to the tags the
+     * photo had when it was indexed the last time.
+     *
+     * @methodtype command
+     */
+    protected Set<String> indexTags(Photo photo) {
+        Set<String> newTags = new HashSet<String>();
+        photoTagCollector.collect(newTags, photo);
+
+        Set<String> oldTags = indexedTags.put(photo.getId(), Collections.unmodifiableSet(newTags));
+        if (oldTags == null) {
+            oldTags = Collections.emptySet();
+        }
+
+        if (!oldTags.equals(newTags)) {
+            for (PhotoListener listener : photoListeners) {
+                listener.photoTagsChanged(photo, oldTags, newTags);
+            }
+        }
+
+        return newTags;
+    }
+
+    /**
+     * Informs all photo listeners about a new vote for a managed photo.
+     */
+    public void notifyPhotoPraised(Photo photo) {
+        if (doGetPhotoFromId(photo.getId()) != photo) {
+            return; // not (yet) managed, e.g. while being created
+        }
+
+        for (PhotoListener listener : photoListeners) {
+            listener.photoPraised(photo);
+        }
+    }
+
+    /**
+     * Informs all photo listeners about a status change of a managed photo.
+     */
+    public void notifyPhotoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        if (doGetPhotoFromId(photo.getId()) != photo) {
+            return; // not (yet) managed, e.g. while being created
+        }
+
+        for (PhotoListener listener : photoListeners) {
+            listener.photoStatusChanged(photo, oldStatus);
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Set<String> getIndexedTags(PhotoId id) {
+        Set<String> result = indexedTags.get(id);
+        return (result != null) ? result : Collections.<String>emptySet();
+    }
+
     /**
      *
      */
@@ -343,8 +431,8 @@ public class PhotoManager extends ObjectManager {
             id = filter.getRandomDisplayablePhotoId();
             result = getPhotoFromId(id);
             if ((result != null) && !result.isVisible()) {
-                log.config(LogBuilder.createSystemMessage().
-                        addParameter("add processed photo", result.getId().asString()).toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).
+                        addParameter("add processed photo", result.getId().asString()).log();
                 filter.addProcessedPhoto(result);
             }
         }
@@ -353,43 +441,77 @@ public class PhotoManager extends ObjectManager {
     }
 
     /**
-     *
+     * Returns the ids of the visible photos matching the filter that the filter's session has not seen yet. The
+     * matching ids are shared across sessions through the FilterResultCache.
      */
     protected List<PhotoId> getFilteredPhotoIds(PhotoFilter filter) {
-        // get all tags that match the filter conditions
-        List<PhotoId> result = new LinkedList<PhotoId>();
-        int noFilterConditions = filter.getFilterConditions().size();
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("Number of filter conditions", String.valueOf(noFilterConditions)).toString());
-
-        if (noFilterConditions == 0) {
-            Collection<PhotoId> candidates = photoCache.keySet();
-            int newPhotos = 0;
-            for (PhotoId candidate : candidates) {
-                if (!filter.processedPhotoIds.contains(candidate)) {
-                    result.add(candidate);
-                    ++newPhotos;
-                }
+        List<String> filterConditions = filter.getFilterConditions();
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Number of filter conditions", filterConditions.size()).log();
+
+        int[] photoIds = getVisiblePhotoIds(filterConditions);
+
+        Set<PhotoId> processedPhotoIds = new HashSet<PhotoId>(filter.getProcessedPhotoIds());
+        List<PhotoId> result = new ArrayList<PhotoId>(photoIds.length);
+        for (int photoId : photoIds) {
+            PhotoId candidate = PhotoId.getIdFromInt(photoId);
+            if (!processedPhotoIds.contains(candidate)) {
+                result.add(candidate);
             }
+        }
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Number of photos to show", result.size()).log();
+        return result;
+    }
+
+    /**
+     * Returns the sorted ids of all visible photos carrying any of the filter conditions as a tag, or of all visible
+     * photos if there are no conditions. The result is shared through the FilterResultCache and must not be changed.
+     */
+    public int[] getVisiblePhotoIds(List<String> filterConditions) {
+        FilterResultCache cache = FilterResultCache.getInstance();
+        String key = FilterResultCache.asKey(filterConditions);
+        int[] result = cache.get(key);
+        if (result == null) {
+            long generation = cache.getGeneration();
+            result = findVisiblePhotoIds(filterConditions);
+            cache.put(key, result, generation);
+        }
+        return result;
+    }
 
-            log.config(LogBuilder.createSystemMessage().addParameter("Number of photos to show", newPhotos).toString());
+    /**
+     * Returns the sorted ids of all visible photos carrying any of the filter conditions as a tag, or of all visible
+     * photos if there are no conditions.
+     */
+    protected int[] findVisiblePhotoIds(List<String> filterConditions) {
+        BitSet photoIds = new BitSet();
+        if (filterConditions.isEmpty()) {
+            for (Photo photo : new ArrayList<Photo>(photoCache.values())) {
+                if (photo.isVisible()) {
+                    photoIds.set(photo.getId().asInt());
+                }
+            }
         } else {
             List<Tag> tags = new LinkedList<Tag>();
-            for (String condition : filter.getFilterConditions()) {
+            for (String condition : filterConditions) {
                 readObjects(tags, Tag.class, Tag.TEXT, condition);
             }
 
-            // get the list of all photo ids that correspond to the tags
             for (Tag tag : tags) {
                 PhotoId photoId = PhotoId.getIdFromString(tag.getPhotoId());
-                if (!filter.isProcessedPhotoId(photoId)) {
-                    result.add(PhotoId.getIdFromString(tag.getPhotoId()));
-                    log.config(LogBuilder.createSystemMessage().
-                            addParameter("Add photo to filter, ID", tag.getPhotoId()).toString());
+                Photo photo = getPhotoFromId(photoId);
+                if ((photo != null) && photo.isVisible()) {
+                    photoIds.set(photoId.asInt());
                 }
             }
         }
 
+        int[] result = new int[photoIds.cardinality()];
+        int i = 0;
+        for (int id = photoIds.nextSetBit(0); id >= 0; id = photoIds.nextSetBit(id + 1)) {
+            result[i++] = id;
+        }
         return result;
     }
 
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.google.appengine.api.ThreadManager;
+import org.wahlzeit.services.LogBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The PhotoSampler draws photos in proportion to a score built from praise, number of votes, and freshness. Sampling
+ * uses an AliasTable and takes constant time. Scores are kept up-to-date as a PhotoListener; the table itself is only
+ * rebuilt, off the sampling path, once the accumulated score changes exceed a threshold or the table got too old.
+ *
+ * @author dirkriehle
+ */
+public class PhotoSampler implements PhotoListener {
+
+    private static final Logger log = Logger.getLogger(PhotoSampler.class.getName());
+
+    /**
+     * Rebuild once scores drifted by more than this fraction of the total score of the table
+     */
+    public static final double DRIFT_THRESHOLD = 0.1;
+
+    /**
+     * Rebuild at least once an hour, as freshness decays with time
+     */
+    public static final long MAX_TABLE_AGE = 60 * 60 * 1000L;
+
+    /**
+     *
+     */
+    public static final long FRESHNESS_HALF_LIFE = 30 * 24 * 60 * 60 * 1000L;
+    public static final double MIN_FRESHNESS = 0.25;
+
+    /**
+     * Number of draws before giving up on finding a photo that the filter displays
+     */
+    public static final int MAX_NO_TRIES = 16;
+
+    /**
+     *
+     */
+    protected static final PhotoSampler instance = new PhotoSampler();
+
+    /**
+     * Score of each sampleable photo at the time of its last change
+     */
+    protected Map<PhotoId, Double> scores = new ConcurrentHashMap<PhotoId, Double>();
+
+    /**
+     *
+     */
+    protected volatile Table table = null;
+    protected double drift = 0.0; // guarded by this
+    protected AtomicBoolean isRebuilding = new AtomicBoolean(false);
+
+    /**
+     *
+     */
+    protected PhotoSampler() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static PhotoSampler getInstance() {
+        return instance;
+    }
+
+    /**
+     * Score is the praise (1..10), boosted by the logarithm of the number of votes, and decaying with age.
+     *
+     * @methodtype get
+     */
+    public static double getScore(Photo photo, long now) {
+        if (!photo.isVisible()) {
+            return 0.0;
+        }
+
+        double praise = Math.max(photo.getPraise(), 0.0);
+        double votes = 1.0 + Math.log(1.0 + photo.getNoVotes());
+        long age = Math.max(now - photo.getCreationTime(), 0L);
+        double freshness = MIN_FRESHNESS + (1.0 - MIN_FRESHNESS) * Math.pow(0.5, (double) age / FRESHNESS_HALF_LIFE);
+        return praise * votes * freshness;
+    }
+
+    /**
+     * Returns a photo id displayable by the filter, or null if none was found within MAX_NO_TRIES draws.
+     */
+    public PhotoId sample(PhotoFilter filter, Random random) {
+        rebuildIfStale();
+
+        Table current = table;
+        if (current == null) {
+            return null;
+        }
+
+        for (int i = 0; i < MAX_NO_TRIES; i++) {
+            PhotoId id = current.ids[current.aliasTable.sample(random)];
+            if (filter.isDisplayablePhotoId(id)) {
+                return id;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoPhotos() {
+        return scores.size();
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        updateScore(photo);
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        updateScore(photo);
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        updateScore(photo);
+    }
+
+    /**
+     * @methodtype command
+     */
+    protected void updateScore(Photo photo) {
+        double newScore = getScore(photo, System.currentTimeMillis());
+        Double oldScore;
+        if (newScore > 0.0) {
+            oldScore = scores.put(photo.getId(), newScore);
+        } else {
+            oldScore = scores.remove(photo.getId());
+        }
+
+        addDrift(Math.abs(newScore - ((oldScore != null) ? oldScore : 0.0)));
+    }
+
+    /**
+     * @methodtype command
+     */
+    protected synchronized void addDrift(double delta) {
+        drift += delta;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isStale() {
+        Table current = table;
+        if (current == null) {
+            return !scores.isEmpty();
+        }
+
+        synchronized (this) {
+            if (drift > DRIFT_THRESHOLD * current.totalScore) {
+                return true;
+            }
+        }
+
+        return (System.currentTimeMillis() - current.creationTime) > MAX_TABLE_AGE;
+    }
+
+    /**
+     * Starts a rebuild of the alias table if needed and none is running yet. The rebuild runs in a request thread
+     * of its own where the runtime allows that, else on the calling thread.
+     *
+     * @methodtype command
+     */
+    public void rebuildIfStale() {
+        if (!isStale() || !isRebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        Runnable rebuild = new Runnable() {
+            public void run() {
+                try {
+                    rebuild();
+                } finally {
+                    isRebuilding.set(false);
+                }
+            }
+        };
+
+        Thread thread = null;
+        try {
+            thread = ThreadManager.currentRequestThreadFactory().newThread(rebuild);
+            thread.start();
+        } catch (RuntimeException ex) {
+            // not within a request, e.g. in tools or tests
+            thread = null;
+        }
+
+        if (thread == null) {
+            rebuild.run();
+        }
+    }
+
+    /**
+     * Recomputes all scores with the current time and replaces the alias table.
+     *
+     * @methodtype command
+     */
+    public void rebuild() {
+        long startTime = System.currentTimeMillis();
+        synchronized (this) {
+            drift = 0.0;
+        }
+
+        List<PhotoId> ids = new ArrayList<PhotoId>(scores.size());
+        List<Double> weights = new ArrayList<Double>(scores.size());
+        double totalScore = 0.0;
+        for (PhotoId id : scores.keySet()) {
+            Photo photo = PhotoManager.getPhoto(id);
+            double score = (photo != null) ? getScore(photo, startTime) : 0.0;
+            if (score > 0.0) {
+                scores.put(id, score);
+                ids.add(id);
+                weights.add(score);
+                totalScore += score;
+            } else {
+                scores.remove(id);
+            }
+        }
+
+        if (ids.isEmpty()) {
+            table = null;
+            return;
+        }
+
+        double[] weightArray = new double[weights.size()];
+        for (int i = 0; i < weightArray.length; i++) {
+            weightArray[i] = weights.get(i);
+        }
+
+        table = new Table(ids.toArray(new PhotoId[ids.size()]), new AliasTable(weightArray), totalScore, startTime);
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("rebuild photo sampler").
+                addParameter("photos", ids.size()).
+                addParameter("millis", System.currentTimeMillis() - startTime).log();
+    }
+
+    /**
+     * An immutable snapshot of the sampleable photos with their alias table.
+     */
+    protected static class Table {
+
+        /**
+         *
+         */
+        protected final PhotoId[] ids;
+        protected final AliasTable aliasTable;
+        protected final double totalScore;
+        protected final long creationTime;
+
+        /**
+         *
+         */
+        protected Table(PhotoId[] myIds, AliasTable myAliasTable, double myTotalScore, long myCreationTime) {
+            ids = myIds;
+            aliasTable = myAliasTable;
+            totalScore = myTotalScore;
+            creationTime = myCreationTime;
+        }
+    }
+
+}
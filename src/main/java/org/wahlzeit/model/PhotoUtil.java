@@ -26,6 +26,7 @@ import com.google.appengine.api.images.ImagesServiceFactory;
 import com.google.appengine.api.images.Transform;
 import org.wahlzeit.services.LogBuilder;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -105,8 +106,23 @@ public class PhotoUtil {
         Image newImage = imagesService.applyTransform(resize, source);
 
         photo.setImage(size, newImage);
+        if (size == PhotoSize.THUMB) {
+            setPerceptualHash(newImage, photo);
+        }
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Scaled image to size", size.asString()).log();
+    }
 
-        log.config(LogBuilder.createSystemMessage().addParameter("Scaled image to size", size.asString()).toString());
+    /**
+     * @methodtype command
+     * Hash the thumbnail for near-duplicate detection; a photo that cannot be hashed is simply not checked.
+     */
+    protected static void setPerceptualHash(Image thumb, Photo photo) {
+        try {
+            photo.setPerceptualHash(PerceptualHash.getDifferenceHash(thumb));
+        } catch (Exception ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not hash thumbnail", ex).toString());
+        }
     }
 
 }
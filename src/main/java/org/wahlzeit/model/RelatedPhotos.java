@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The RelatedPhotos find visible photos whose tags are similar to those of a given photo ("more like this"). Photos
+ * are indexed in a MinHashIndex whenever their tags are (re-)indexed; see PhotoListener.
+ *
+ * @author dirkriehle
+ */
+public class RelatedPhotos implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_PHOTOS = 5;
+
+    /**
+     *
+     */
+    protected static final RelatedPhotos instance = new RelatedPhotos();
+
+    /**
+     *
+     */
+    protected MinHashIndex index = new MinHashIndex();
+
+    /**
+     *
+     */
+    protected RelatedPhotos() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static RelatedPhotos getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns up to max visible photos with tags similar to those of photo, most similar first.
+     *
+     * @methodtype get
+     */
+    public List<Photo> getRelatedPhotos(Photo photo, int max) {
+        List<Photo> result = new ArrayList<Photo>(max);
+        for (Integer id : index.getSimilar(photo.getId().asInt(), 2 * max)) {
+            Photo candidate = PhotoManager.getPhoto(PhotoId.getIdFromInt(id));
+            if ((candidate != null) && candidate.isVisible()) {
+                result.add(candidate);
+                if (result.size() == max) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        index.update(photo.getId().asInt(), Arrays.asList(photo.getTags().asArray()));
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        // do nothing; invisible photos are skipped when asked for related photos
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+/**
+ * A SessionStore keeps the attributes of user sessions between requests. A UserSession reads and writes its
+ * attributes only through a SessionStore, so that deployments can choose where session state lives.
+ *
+ * @author dirkriehle
+ */
+public interface SessionStore {
+
+    /**
+     * Returns the value stored for the session under name, or null if there is none.
+     */
+    public Object getAttribute(String sessionId, String name);
+
+    /**
+     * Stores the value for the session under name; a null value removes the attribute. Values need to be
+     * Serializable, as stores may write them out.
+     */
+    public void setAttribute(String sessionId, String name, Object value);
+
+    /**
+     * Writes out all changes that have not been persisted yet; a no-op for stores that write through.
+     */
+    public void flush();
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A TagCloud is an immutable list of popular tags in alphabetical order, each with a weight bucket from 1 (least
+ * used) to NO_BUCKETS (most used). Two clouds are equal if they would render the same, so renderers can reuse
+ * their output as long as the cloud stays equal.
+ *
+ * @author dirkriehle
+ */
+public class TagCloud {
+
+    /**
+     *
+     */
+    public static final int NO_BUCKETS = 5;
+
+    /**
+     *
+     */
+    public static final TagCloud EMPTY_CLOUD = new TagCloud(Collections.<String>emptyList(), new int[0]);
+
+    /**
+     *
+     */
+    protected final List<String> tags;
+    protected final int[] buckets;
+
+    /**
+     *
+     */
+    public TagCloud(List<String> myTags, int[] myBuckets) {
+        tags = Collections.unmodifiableList(myTags);
+        buckets = myBuckets;
+    }
+
+    /**
+     * Returns the bucket of count on a logarithmic scale up to maxCount.
+     *
+     * @methodtype conversion
+     */
+    public static int asBucket(int count, int maxCount) {
+        if ((count <= 1) || (maxCount <= 1)) {
+            return 1;
+        }
+        return 1 + (int) ((NO_BUCKETS - 1) * Math.log(count) / Math.log(maxCount));
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getSize() {
+        return tags.size();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getTag(int i) {
+        return tags.get(i);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getBucket(int i) {
+        return buckets[i];
+    }
+
+    /**
+     *
+     */
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof TagCloud)) return false;
+
+        TagCloud other = (TagCloud) obj;
+        return tags.equals(other.tags) && Arrays.equals(buckets, other.buckets);
+    }
+
+    /**
+     *
+     */
+    public int hashCode() {
+        return 31 * tags.hashCode() + Arrays.hashCode(buckets);
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The TagStatistics keep the number of visible photos per tag and per pair of tags (co-occurrence). Tags are mapped
+ * to dense int ids, so counts live in an int array and pair counts in a LongIntHashMap keyed by both ids. It is
+ * kept up-to-date as a PhotoListener of the PhotoManager, i.e. whenever PhotoManager.updateTags runs.
+ *
+ * @author dirkriehle
+ */
+public class TagStatistics implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final String TAG_PREFIX = "tg:";
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_CLOUD_TAGS = 30;
+
+    /**
+     *
+     */
+    protected static final TagStatistics instance = new TagStatistics();
+
+    /**
+     *
+     */
+    protected Map<String, Integer> tagIds = new HashMap<String, Integer>();
+    protected List<String> tagNames = new ArrayList<String>();
+    protected int[] counts = new int[64];
+    protected LongIntHashMap pairCounts = new LongIntHashMap();
+
+    /**
+     * Incremented on every change of the counts
+     */
+    protected int version = 0;
+
+    /**
+     * Last computed cloud and the version it was computed for
+     */
+    protected TagCloud tagCloud = TagCloud.EMPTY_CLOUD;
+    protected int tagCloudVersion = 0;
+    protected int tagCloudSize = 0;
+
+    /**
+     *
+     */
+    protected TagStatistics() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static TagStatistics getInstance() {
+        return instance;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getCount(String tag) {
+        Integer id = tagIds.get(tag);
+        return (id != null) ? counts[id] : 0;
+    }
+
+    /**
+     * Returns the number of visible photos carrying both tags.
+     *
+     * @methodtype get
+     */
+    public synchronized int getCount(String tag1, String tag2) {
+        Integer id1 = tagIds.get(tag1);
+        Integer id2 = tagIds.get(tag2);
+        if ((id1 == null) || (id2 == null) || id1.equals(id2)) {
+            return 0;
+        }
+        return pairCounts.get(asPairKey(id1, id2));
+    }
+
+    /**
+     * Returns the max most used tags with their weight buckets; unchanged counts yield the identical cloud.
+     *
+     * @methodtype get
+     */
+    public synchronized TagCloud getTagCloud(int max) {
+        if ((tagCloudVersion != version) || (tagCloudSize != max)) {
+            TagCloud newCloud = computeTagCloud(max);
+            if (!newCloud.equals(tagCloud)) {
+                tagCloud = newCloud;
+            }
+            tagCloudVersion = version;
+            tagCloudSize = max;
+        }
+        return tagCloud;
+    }
+
+    /**
+     *
+     */
+    protected TagCloud computeTagCloud(int max) {
+        PriorityQueue<Integer> top = new PriorityQueue<Integer>(max + 1, new Comparator<Integer>() {
+            public int compare(Integer id1, Integer id2) {
+                int result = (counts[id1] < counts[id2]) ? -1 : ((counts[id1] == counts[id2]) ? 0 : 1);
+                return (result != 0) ? result : tagNames.get(id2).compareTo(tagNames.get(id1));
+            }
+        });
+
+        for (int id = 0; id < tagNames.size(); id++) {
+            if (counts[id] > 0) {
+                top.add(id);
+                if (top.size() > max) {
+                    top.poll();
+                }
+            }
+        }
+
+        if (top.isEmpty()) {
+            return TagCloud.EMPTY_CLOUD;
+        }
+
+        int maxCount = 0;
+        List<String> tags = new ArrayList<String>(top.size());
+        for (Integer id : top) {
+            maxCount = Math.max(maxCount, counts[id]);
+            tags.add(tagNames.get(id));
+        }
+        Collections.sort(tags);
+
+        int[] buckets = new int[tags.size()];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = TagCloud.asBucket(counts[tagIds.get(tags.get(i))], maxCount);
+        }
+        return new TagCloud(tags, buckets);
+    }
+
+    /**
+     * Invisible photos are not counted; they are added or removed as a whole when their visibility changes.
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        if (photo.isVisible()) {
+            update(oldTags, newTags);
+        }
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        boolean wasVisible = oldStatus.isDisplayable();
+        if (wasVisible != photo.isVisible()) {
+            Set<String> tags = PhotoManager.getInstance().getIndexedTags(photo.getId());
+            Set<String> noTags = Collections.emptySet();
+            if (wasVisible) {
+                update(tags, noTags);
+            } else {
+                update(noTags, tags);
+            }
+        }
+    }
+
+    /**
+     * Removes the counts of oldTags and adds those of newTags, touching only tags and pairs that differ.
+     */
+    protected synchronized void update(Set<String> oldTags, Set<String> newTags) {
+        int[] oldIds = asTagIds(oldTags);
+        int[] newIds = asTagIds(newTags);
+
+        boolean hasChanged = updateCounts(oldIds, newIds, -1);
+        hasChanged |= updateCounts(newIds, oldIds, 1);
+        if (hasChanged) {
+            version++;
+        }
+    }
+
+    /**
+     * Adds delta to the counts of all tags and pairs of ids that are not also in otherIds.
+     */
+    protected boolean updateCounts(int[] ids, int[] otherIds, int delta) {
+        boolean result = false;
+        for (int i = 0; i < ids.length; i++) {
+            boolean isShared = Arrays.binarySearch(otherIds, ids[i]) >= 0;
+            if (!isShared) {
+                counts[ids[i]] = Math.max(0, counts[ids[i]] + delta);
+                result = true;
+            }
+
+            for (int j = i + 1; j < ids.length; j++) {
+                if (!isShared || (Arrays.binarySearch(otherIds, ids[j]) < 0)) {
+                    long key = asPairKey(ids[i], ids[j]);
+                    pairCounts.put(key, Math.max(0, pairCounts.get(key) + delta));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sorted ids of the "tg:" tags, assigning ids to new tags.
+     */
+    protected int[] asTagIds(Set<String> tags) {
+        int[] result = new int[tags.size()];
+        int size = 0;
+        for (String tag : tags) {
+            if (tag.startsWith(TAG_PREFIX)) {
+                result[size++] = getOrCreateTagId(tag.substring(TAG_PREFIX.length()));
+            }
+        }
+
+        result = Arrays.copyOf(result, size);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected int getOrCreateTagId(String tag) {
+        Integer result = tagIds.get(tag);
+        if (result == null) {
+            result = tagNames.size();
+            tagIds.put(tag, result);
+            tagNames.add(tag);
+            if (result >= counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected static long asPairKey(int id1, int id2) {
+        int low = Math.min(id1, id2);
+        int high = Math.max(id1, id2);
+        return ((long) low << 32) | (high & 0xffffffffL);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The TagSuggester answers tag prefix queries (autocompletion) from an in-memory TagTrie of all known tags,
+ * ranked by the number of photos carrying the tag. It is kept up-to-date as a PhotoListener of the PhotoManager.
+ *
+ * @author dirkriehle
+ */
+public class TagSuggester implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final String TAG_PREFIX = "tg:";
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_SUGGESTIONS = 10;
+    public static final int MAX_NO_SUGGESTIONS = 50;
+
+    /**
+     *
+     */
+    protected static final TagSuggester instance = new TagSuggester();
+
+    /**
+     *
+     */
+    protected TagTrie tagTrie = new TagTrie();
+
+    /**
+     *
+     */
+    protected TagSuggester() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static TagSuggester getInstance() {
+        return instance;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public List<String> getSuggestions(String prefix, int max) {
+        String tagPrefix = Tags.asTag(prefix);
+        int noSuggestions = Math.min(Math.max(max, 0), MAX_NO_SUGGESTIONS);
+        return tagTrie.suggest(tagPrefix, noSuggestions);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoPhotos(String tag) {
+        return tagTrie.getCount(tag);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoTags() {
+        return tagTrie.getSize();
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        for (String tag : oldTags) {
+            if (tag.startsWith(TAG_PREFIX) && !newTags.contains(tag)) {
+                tagTrie.decrement(tag.substring(TAG_PREFIX.length()));
+            }
+        }
+
+        for (String tag : newTags) {
+            if (tag.startsWith(TAG_PREFIX) && !oldTags.contains(tag)) {
+                tagTrie.increment(tag.substring(TAG_PREFIX.length()));
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        // do nothing
+    }
+
+}
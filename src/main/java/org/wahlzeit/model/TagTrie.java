@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A TagTrie is a compressed (radix) trie of tags, each tag carrying the number of photos tagged with it. Every node
+ * also remembers the highest count found in its subtree, so that the most frequent completions of a prefix can be
+ * found best-first without visiting the whole subtree.
+ *
+ * @author dirkriehle
+ */
+public class TagTrie {
+
+    /**
+     *
+     */
+    protected static final char[] EMPTY_LABEL = new char[0];
+    protected static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     *
+     */
+    protected Node root = new Node(EMPTY_LABEL);
+
+    /**
+     * Number of distinct tags with a positive count
+     */
+    protected int size = 0;
+
+    /**
+     *
+     */
+    public TagTrie() {
+        // do nothing
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getCount(String tag) {
+        Node node = root;
+        int i = 0;
+        while (i < tag.length()) {
+            Node child = node.getChild(tag.charAt(i));
+            if ((child == null) || !child.isLabelPrefixOf(tag, i)) {
+                return 0;
+            }
+            i += child.label.length;
+            node = child;
+        }
+
+        return node.count;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void increment(String tag) {
+        add(tag, 1);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void decrement(String tag) {
+        add(tag, -1);
+    }
+
+    /**
+     * Changes the count of tag by delta; tags whose count drops to zero are removed from the trie.
+     *
+     * @methodtype command
+     */
+    public synchronized void add(String tag, int delta) {
+        if ((tag == null) || (tag.length() == 0) || (delta == 0)) {
+            return;
+        }
+
+        List<Node> path = new ArrayList<Node>(8);
+        path.add(root);
+
+        Node node = root;
+        int i = 0;
+        while (i < tag.length()) {
+            Node child = node.getChild(tag.charAt(i));
+            if (child == null) {
+                if (delta < 0) {
+                    return; // unknown tag
+                }
+                child = new Node(tag.substring(i).toCharArray());
+                node.addChild(child);
+                node = child;
+                path.add(node);
+                break;
+            }
+
+            int common = child.getCommonPrefixLength(tag, i);
+            if (common < child.label.length) {
+                if (delta < 0) {
+                    return; // unknown tag
+                }
+                child = node.splitChild(child, common);
+            }
+
+            i += common;
+            node = child;
+            path.add(node);
+        }
+
+        int oldCount = node.count;
+        node.count = Math.max(0, oldCount + delta);
+        if ((oldCount == 0) && (node.count > 0)) {
+            size++;
+        } else if ((oldCount > 0) && (node.count == 0)) {
+            size--;
+        }
+
+        for (int j = path.size() - 1; j > 0; j--) {
+            Node current = path.get(j);
+            Node parent = path.get(j - 1);
+            if (current.count == 0) {
+                if (current.children.length == 0) {
+                    parent.removeChild(current);
+                } else if (current.children.length == 1) {
+                    parent.replaceChild(current, current.mergeWithOnlyChild());
+                }
+            }
+            current.updateMaxCount();
+        }
+        root.updateMaxCount();
+    }
+
+    /**
+     * Returns up to max tags starting with prefix, most frequently used first.
+     *
+     * @methodtype get
+     */
+    public synchronized List<String> suggest(String prefix, int max) {
+        List<String> result = new ArrayList<String>(Math.max(0, max));
+        if (max <= 0) {
+            return result;
+        }
+
+        Node node = root;
+        StringBuilder path = new StringBuilder(prefix.length() + 16);
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.getChild(prefix.charAt(i));
+            if (child == null) {
+                return result;
+            }
+
+            int common = child.getCommonPrefixLength(prefix, i);
+            if ((common < child.label.length) && (i + common < prefix.length())) {
+                return result; // prefix diverges within the edge label
+            }
+
+            path.append(child.label);
+            i += child.label.length;
+            node = child;
+        }
+
+        PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16, Candidate.BY_RANK);
+        queue.add(new Candidate(node, path.toString(), false));
+        while (!queue.isEmpty() && (result.size() < max)) {
+            Candidate candidate = queue.poll();
+            if (candidate.isTag) {
+                result.add(candidate.text);
+            } else {
+                Node current = candidate.node;
+                if (current.count > 0) {
+                    queue.add(new Candidate(current, candidate.text, true));
+                }
+                for (Node child : current.children) {
+                    queue.add(new Candidate(child, candidate.text + new String(child.label), false));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * A node of the trie; the label is the part of the tag on the edge leading to this node.
+     */
+    protected static class Node {
+
+        /**
+         *
+         */
+        protected char[] label;
+        protected Node[] children = NO_CHILDREN; // sorted by first label char
+        protected int count = 0;
+        protected int maxCount = 0;
+
+        /**
+         *
+         */
+        protected Node(char[] myLabel) {
+            label = myLabel;
+        }
+
+        /**
+         * @methodtype get
+         */
+        protected Node getChild(char first) {
+            int index = indexOf(first);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        /**
+         * Binary search over the first characters of the children's labels.
+         */
+        protected int indexOf(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label[0];
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * @methodtype command
+         */
+        protected void addChild(Node child) {
+            int insertAt = -(indexOf(child.label[0]) + 1);
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newChildren[insertAt] = child;
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            children = newChildren;
+        }
+
+        /**
+         * @methodtype command
+         */
+        protected void removeChild(Node child) {
+            int index = indexOf(child.label[0]);
+            if (index < 0) {
+                return;
+            }
+
+            Node[] newChildren = (children.length == 1) ? NO_CHILDREN : new Node[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            children = newChildren;
+        }
+
+        /**
+         * @methodtype command
+         */
+        protected void replaceChild(Node oldChild, Node newChild) {
+            children[indexOf(oldChild.label[0])] = newChild;
+        }
+
+        /**
+         * Splits child after the first length chars of its label and returns the new intermediate node.
+         */
+        protected Node splitChild(Node child, int length) {
+            int index = indexOf(child.label[0]);
+            char[] head = new char[length];
+            System.arraycopy(child.label, 0, head, 0, length);
+            char[] tail = new char[child.label.length - length];
+            System.arraycopy(child.label, length, tail, 0, tail.length);
+
+            Node middle = new Node(head);
+            child.label = tail;
+            middle.children = new Node[]{child};
+            middle.maxCount = child.maxCount;
+
+            children[index] = middle; // same first char, so same slot
+            return middle;
+        }
+
+        /**
+         * Returns a node combining this label with that of the only child; used once this node holds no tag.
+         */
+        protected Node mergeWithOnlyChild() {
+            Node child = children[0];
+            char[] merged = new char[label.length + child.label.length];
+            System.arraycopy(label, 0, merged, 0, label.length);
+            System.arraycopy(child.label, 0, merged, label.length, child.label.length);
+            child.label = merged;
+            return child;
+        }
+
+        /**
+         * @methodtype get
+         */
+        protected int getCommonPrefixLength(String text, int offset) {
+            int max = Math.min(label.length, text.length() - offset);
+            int i = 0;
+            while ((i < max) && (label[i] == text.charAt(offset + i))) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * @methodtype boolean-query
+         */
+        protected boolean isLabelPrefixOf(String text, int offset) {
+            return getCommonPrefixLength(text, offset) == label.length;
+        }
+
+        /**
+         * @methodtype command
+         */
+        protected void updateMaxCount() {
+            int result = count;
+            for (Node child : children) {
+                result = Math.max(result, child.maxCount);
+            }
+            maxCount = result;
+        }
+    }
+
+    /**
+     * A queue entry of the best-first search; either a subtree (ranked by its best count) or a finished tag.
+     */
+    protected static class Candidate {
+
+        /**
+         *
+         */
+        protected static final Comparator<Candidate> BY_RANK = new Comparator<Candidate>() {
+            public int compare(Candidate c1, Candidate c2) {
+                int r1 = c1.getRank();
+                int r2 = c2.getRank();
+                if (r1 != r2) {
+                    return (r1 > r2) ? -1 : 1;
+                }
+                if (c1.isTag != c2.isTag) {
+                    return c1.isTag ? -1 : 1; // emit finished tags before equally ranked subtrees
+                }
+                return c1.text.compareTo(c2.text);
+            }
+        };
+
+        /**
+         *
+         */
+        protected Node node;
+        protected String text;
+        protected boolean isTag;
+
+        /**
+         *
+         */
+        protected Candidate(Node myNode, String myText, boolean myIsTag) {
+            node = myNode;
+            text = myText;
+            isTag = myIsTag;
+        }
+
+        /**
+         * @methodtype get
+         */
+        protected int getRank() {
+            return isTag ? node.count : node.maxCount;
+        }
+    }
+
+}
@@ -20,6 +20,7 @@
 
 package org.wahlzeit.model;
 
+import com.googlecode.objectify.annotation.Ignore;
 import com.googlecode.objectify.annotation.Subclass;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.Language;
@@ -29,7 +30,9 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -74,6 +77,13 @@ public class User extends Client {
      */
     protected Photo userPhoto = null;
     protected Set<Photo> photos = new HashSet<Photo>();
+
+    /**
+     * Sorted view of photos for display; built on first use, then maintained incrementally
+     */
+    @Ignore
+    transient protected UserPhotoIndex photoIndex = null;
+
     /**
      *
      */
@@ -100,11 +110,11 @@ public class User extends Client {
     protected void initialize(String id, String nickName, EmailAddress emailAddress, AccessRights accessRights) {
         super.initialize(id, nickName, emailAddress, accessRights);
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("initialize user").
                 addParameter("id", id).
                 addParameter("name", nickName).
-                addParameter("E-Mail", emailAddress.asString()).toString());
+                addParameter("E-Mail", emailAddress.asString()).log();
         incWriteCount();
     }
 
@@ -236,6 +246,9 @@ public class User extends Client {
      */
     public void addPhoto(Photo newPhoto) {
         photos.add(newPhoto);
+        if (photoIndex != null) {
+            photoIndex.update(newPhoto);
+        }
 
         newPhoto.setOwnerId(id);
         newPhoto.setOwnerNotifyAboutPraise(notifyAboutPraise);
@@ -250,6 +263,9 @@ public class User extends Client {
      */
     public void removePhoto(Photo notMyPhoto) {
         photos.remove(notMyPhoto);
+        if (photoIndex != null) {
+            photoIndex.remove(notMyPhoto.getId());
+        }
         incWriteCount();
     }
 
@@ -267,6 +283,50 @@ public class User extends Client {
         return getPhotosReverseOrderedByPraise();
     }
 
+    /**
+     * Returns (up to) max non-deleted photos starting at offset, visible ones first, by descending praise and then
+     * upload time. Takes O(offset + max), see {@link UserPhotoIndex}.
+     *
+     * @methodtype get
+     */
+    public List<Photo> getDisplayablePhotos(int offset, int max) {
+        return getPhotoIndex().getPhotos(offset, max);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoOfDisplayablePhotos() {
+        return getPhotoIndex().getSize();
+    }
+
+    /**
+     * Moves the photo to its current place in the sorted photo index, e.g. after it was praised.
+     *
+     * @methodtype command
+     */
+    public void updatePhotoIndex(Photo photo) {
+        if (photoIndex != null) {
+            photoIndex.update(photo);
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    protected synchronized UserPhotoIndex getPhotoIndex() {
+        if (photoIndex == null) {
+            UserPhotoIndex result = new UserPhotoIndex();
+            for (Photo photo : photos.toArray(new Photo[0])) {
+                // use the PhotoManager's copy, which receives praise and status changes
+                Photo current = PhotoManager.getInstance().getPhotoFromId(photo.getId());
+                result.update((current != null) ? current : photo);
+            }
+            photoIndex = result;
+        }
+        return photoIndex;
+    }
+
     /**
      * @methodtype conversion
      */
@@ -285,9 +345,9 @@ public class User extends Client {
                 double sc1 = p1.getPraise();
                 double sc2 = p2.getPraise();
                 if (sc1 == sc2) {
-                    String id1 = String.valueOf(p1.getId());
-                    String id2 = String.valueOf(p2.getId());
-                    return id1.compareTo(id2);
+                    int id1 = p1.getId().asInt();
+                    int id2 = p2.getId().asInt();
+                    return (id1 < id2) ? -1 : ((id1 == id2) ? 0 : 1);
                 } else if (sc1 < sc2) {
                     return 1;
                 } else {
@@ -31,6 +31,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -39,7 +41,7 @@ import java.util.logging.Logger;
  *
  * @author dirkriehle
  */
-public class UserManager extends ClientManager {
+public class UserManager extends ClientManager implements PhotoListener {
 
     private static final Logger log = Logger.getLogger(UserManager.class.getName());
     /**
@@ -94,7 +96,7 @@ public class UserManager extends ClientManager {
                     if (!hasClientById(user.getId())) {
                         doAddClient(user);
                     } else {
-                        log.config(LogBuilder.createSystemMessage().addParameter("user has been loaded", user.getId()).toString());
+                        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("user has been loaded", user.getId()).log();
                     }
                 }
                 return null;
@@ -165,4 +167,36 @@ public class UserManager extends ClientManager {
         }
     }
 
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        // do nothing; tags do not affect the order of a user's photos
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        updatePhotoIndex(photo);
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        updatePhotoIndex(photo);
+    }
+
+    /**
+     * Keeps the sorted photo index of the photo's owner up-to-date, if the owner is loaded.
+     */
+    protected void updatePhotoIndex(Photo photo) {
+        String ownerId = photo.getOwnerId();
+        Client owner = (ownerId != null) ? doGetClientById(ownerId) : null;
+        if (owner instanceof User) {
+            ((User) owner).updatePhotoIndex(photo);
+        }
+    }
+
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.utils.SortedIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A UserPhotoIndex keeps the non-deleted photos of a user sorted for display: visible photos first, then by praise
+ * (highest first), then by upload time (newest first). Adding, removing, or re-sorting a photo takes O(log n), so
+ * photos need not be sorted on every request. Reading a page still walks past the photos of all pages before it.
+ *
+ * @author dirkriehle
+ */
+public class UserPhotoIndex {
+
+    /**
+     *
+     */
+    protected static final Comparator<Entry> DISPLAY_ORDER = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            if (e1.isVisible != e2.isVisible) {
+                return e1.isVisible ? -1 : 1;
+            }
+
+            int result = Double.compare(e2.praise, e1.praise);
+            if (result == 0) {
+                result = (e1.creationTime > e2.creationTime) ? -1 : ((e1.creationTime < e2.creationTime) ? 1 : 0);
+            }
+            if (result == 0) {
+                result = (e1.id < e2.id) ? -1 : ((e1.id > e2.id) ? 1 : 0);
+            }
+            return result;
+        }
+    };
+
+    /**
+     *
+     */
+    protected SortedIndex<PhotoId, Entry> entries = new SortedIndex<PhotoId, Entry>(DISPLAY_ORDER);
+
+    /**
+     *
+     */
+    public UserPhotoIndex() {
+        // do nothing
+    }
+
+    /**
+     * Adds the photo or moves it to its current place; deleted photos are removed.
+     *
+     * @methodtype command
+     */
+    public void update(Photo photo) {
+        if (photo.getStatus().isDeleted()) {
+            entries.remove(photo.getId());
+        } else {
+            entries.put(photo.getId(), new Entry(photo));
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void remove(PhotoId id) {
+        entries.remove(id);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getSize() {
+        return entries.getSize();
+    }
+
+    /**
+     * Returns (up to) max photos starting at position offset; takes O(offset + max).
+     *
+     * @methodtype get
+     */
+    public List<Photo> getPhotos(int offset, int max) {
+        List<Entry> page = entries.getValues(offset, max);
+        List<Photo> result = new ArrayList<Photo>(page.size());
+        for (Entry entry : page) {
+            result.add(entry.photo);
+        }
+        return result;
+    }
+
+    /**
+     * An immutable snapshot of the sort keys of a photo.
+     */
+    protected static class Entry {
+
+        /**
+         *
+         */
+        protected final Photo photo;
+        protected final boolean isVisible;
+        protected final double praise;
+        protected final long creationTime;
+        protected final int id;
+
+        /**
+         *
+         */
+        protected Entry(Photo myPhoto) {
+            photo = myPhoto;
+            isVisible = myPhoto.isVisible();
+            praise = myPhoto.getPraise();
+            creationTime = myPhoto.getCreationTime();
+            id = myPhoto.getId().asInt();
+        }
+    }
+
+}
@@ -22,59 +22,131 @@ package org.wahlzeit.model;
 
 import com.google.appengine.api.images.Image;
 import org.wahlzeit.services.Language;
+import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.Session;
 import org.wahlzeit.utils.HtmlUtil;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import java.io.Serializable;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Wrapper class for {@link HttpSession} to provide a readable interface for Wahlzeit.
  *
- * {@link HttpSession}s are managed automatically by Google App Engine.
+ * {@link HttpSession}s are managed automatically by Google App Engine, which writes a session back to the datastore
+ * and memcache whenever one of its attributes was set. Hence, all state lives in a single {@link UserSessionState}
+ * attribute that is read once per request and only written back by {@link #saveState()} if it changed. Attributes
+ * are read and written through a {@link SessionStore}; by default that is the HttpSession itself.
+ *
+ * Anonymous guests have no {@link HttpSession} at all; their state is kept by the servlet layer in a signed cookie.
+ * The session moves to the server only once the guest logs in or writes something, see {@link #ensureClient()}.
  *
  * @author dirkriehle
  */
 public class UserSession extends Session implements Serializable {
 
     /**
-     * Keys to store the according properties in the <code>HttpSession</code>
+     * Keys to store the according properties in the <code>SessionStore</code>
      */
+    public static final String STATE = "state";
     public static final String UPLOADED_IMAGE = "uploadedImage";
-    public static final String PRIOR_PHOTO = "priorPhoto";
-    public static final String PHOTO_CASE = "photoCase";
-    public static final String PHOTO_SIZE = "photoSize";
-    public static final String PHOTO_FILTER = "photoFilter";
-    public static final String PRAISED_PHOTOS = "praisedPhotos";
+
+    /**
+     *
+     */
     public static final String MESSAGE = "message";
-    public static final String HEADING = "heading";
-    public static final String CLIENT_ID = "clientId";
-    public static final String SITE_URL = "siteUrl";
-    public static final String CONFIGURATION = "configuration";
-    public static final String CONFIRMATION_CODE = "confirmationCode";
-    public static final String SAVED_ARGS = "savedArgs";
-    public static final String INITIALIZED = "initialized";
     public static final String ANONYMOUS_CLIENT = "anon";
 
 
     private static Logger log = Logger.getLogger(UserSession.class.getName());
 
+    /**
+     * The store of all sessions, if sessions are not kept in their HttpSession
+     */
+    protected static SessionStore sharedSessionStore = null;
+
+    /**
+     *
+     */
     protected HttpSession httpSession;
+    protected transient SessionStore sessionStore;
+
+    /**
+     * The current request; only needed to create an HttpSession for a stateless session
+     */
+    protected transient HttpServletRequest request;
+
+    /**
+     *
+     */
+    protected UserSessionState state;
+
+    /**
+     * Request-local objects recreated from state on first use
+     */
+    protected transient ModelConfig configuration;
+    protected transient PhotoFilter photoFilter;
+
+    /**
+     * Args of the current GET that the page made for it needs; unlike saved args, they are not part of the state
+     */
+    protected transient Map<String, String> requestArgs = null;
 
     /**
      *
      */
     public UserSession(String myName, String mySiteUrl, HttpSession myHttpSession, String myLanguage) {
         httpSession = myHttpSession;
+        sessionStore = getSessionStore(httpSession);
         initialize(myName);
-        if (httpSession.getAttribute(INITIALIZED) == null) {
-            httpSession.setAttribute(SITE_URL, mySiteUrl);
-            httpSession.setAttribute(PHOTO_FILTER, PhotoFactory.getInstance().createPhotoFilter());
+        initState((UserSessionState) sessionStore.getAttribute(httpSession.getId(), STATE), mySiteUrl, myLanguage);
+    }
+
+    /**
+     * Creates a stateless session, whose state (possibly null for a first visit) is kept by the client.
+     */
+    public UserSession(String myName, String mySiteUrl, UserSessionState myState, HttpServletRequest myRequest,
+                       String myLanguage) {
+        request = myRequest;
+        initialize(myName);
+        initState(myState, mySiteUrl, myLanguage);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public static SessionStore getSharedSessionStore() {
+        return sharedSessionStore;
+    }
+
+    /**
+     * Makes all sessions keep their attributes in the given store rather than in their HttpSession.
+     *
+     * @methodtype set
+     */
+    public static void setSharedSessionStore(SessionStore newSessionStore) {
+        sharedSessionStore = newSessionStore;
+    }
+
+    /**
+     * @methodtype factory
+     */
+    protected static SessionStore getSessionStore(HttpSession httpSession) {
+        return (sharedSessionStore != null) ? sharedSessionStore : new HttpSessionStore(httpSession);
+    }
+
+    /**
+     * @methodtype init
+     */
+    protected void initState(UserSessionState myState, String mySiteUrl, String myLanguage) {
+        state = myState;
+        if (state == null) {
+            state = new UserSessionState();
+            state.setSiteUrl(mySiteUrl);
 
             Language language;
             try {
@@ -83,15 +155,67 @@ public class UserSession extends Session implements Serializable {
                 language = Language.ENGLISH;
             }
             setConfiguration(LanguageConfigs.get(language));
+        }
+    }
 
-            initPhotoSize();
-            clearDisplayedPhotos();
-            clearPraisedPhotos();
-            clearSavedArgs();
-            clearConfirmationCode();
-            setClient(new Guest());
-            httpSession.setAttribute(INITIALIZED, INITIALIZED);
+    /**
+     * Writes the state back to the session store, if the session is not stateless and the state changed.
+     *
+     * @methodtype command
+     */
+    public void saveState() {
+        UserSessionState current = getState();
+        if ((httpSession != null) && current.isDirty()) {
+            current.resetDirty();
+            sessionStore.setAttribute(httpSession.getId(), STATE, current);
+        }
+    }
+
+    /**
+     * Returns the state, including all changes made to the photo filter so far.
+     *
+     * @methodtype get
+     */
+    public UserSessionState getState() {
+        if (photoFilter != null) {
+            state.setPhotoFilter(photoFilter);
+        }
+        return state;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isStateless() {
+        return httpSession == null;
+    }
+
+    /**
+     * Moves a stateless session to a new HttpSession; its state is stored there by the next {@link #saveState()}.
+     *
+     * @methodtype command
+     */
+    public void ensureHttpSession() {
+        if (httpSession == null) {
+            httpSession = request.getSession(true);
+            sessionStore = getSessionStore(httpSession);
+            initialize(httpSession.getId());
+            state.setDirty();
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addAction("move session to server").
+                    addParameter("httpSessionId", httpSession.getId()).log();
+        }
+    }
 
+    /**
+     * Makes sure the session has a client record, creating a Guest if needed. Called before writing on behalf of an
+     * anonymous guest, so that the write can be traced back.
+     *
+     * @methodtype command
+     */
+    public void ensureClient() {
+        if (state.getClientId() == null) {
+            setClient(new Guest());
         }
     }
 
@@ -106,27 +230,21 @@ public class UserSession extends Session implements Serializable {
      *
      */
     public void clearDisplayedPhotos() {
-        PhotoFilter photoFilter = (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
-        if (photoFilter != null) {
-            photoFilter.clear();
-            httpSession.setAttribute(PHOTO_FILTER, photoFilter);
-        } else {
-            log.warning("No PhotoFilter found in HttpSession to clear.");
-        }
+        getPhotoFilter().clear();
     }
 
     /**
      *
      */
     public void clearPraisedPhotos() {
-        httpSession.setAttribute(PRAISED_PHOTOS, new HashSet<Photo>());
+        state.clearPraisedPhotoIds();
     }
 
     /**
      * @methodtype init
      */
     public void clearSavedArgs() {
-        httpSession.setAttribute(SAVED_ARGS, new HashMap<String, Object>());
+        state.clearSavedArgs();
     }
 
     /**
@@ -157,38 +275,32 @@ public class UserSession extends Session implements Serializable {
      * @methodtype get
      */
     public ModelConfig getConfiguration() {
-        return (ModelConfig) httpSession.getAttribute(CONFIGURATION);
+        if (configuration == null) {
+            configuration = LanguageConfigs.get(state.getLanguage());
+        }
+        return configuration;
     }
 
     /**
      * @methodtype set
      */
     public void setConfiguration(ModelConfig cfg) {
-        httpSession.setAttribute(CONFIGURATION, cfg);
+        configuration = cfg;
+        state.setLanguage(cfg.getLanguage());
     }
 
     /**
      * @methodtype get
      */
     public String getSiteUrl() {
-        return (String) httpSession.getAttribute(SITE_URL);
-    }
-
-    @Override
-    protected void notifyNameChanged() {
-        httpSession.setAttribute(Session.NAME, super.getName());
+        return state.getSiteUrl();
     }
 
     /**
      * @methodtype convert Returns some signifier of current user
      */
     public String getClientId() {
-        return (String) httpSession.getAttribute(CLIENT_ID);
-    }
-
-    @Override
-    protected void notifyProcessingTimeChanged() {
-        httpSession.setAttribute(Session.PROCESSING_TIME, super.getProcessingTime());
+        return state.getClientId();
     }
 
     /**
@@ -207,15 +319,31 @@ public class UserSession extends Session implements Serializable {
      * @methodtype get
      */
     public Client getClient() {
-        String clientName = (String) httpSession.getAttribute(CLIENT_ID);
-        return UserManager.getInstance().getClientById(clientName);
+        String clientId = state.getClientId();
+        if (clientId == null) {
+            return Guest.ANONYMOUS;
+        }
+        return UserManager.getInstance().getClientById(clientId);
     }
 
     /**
      * @methodtype set
      */
     public void setClient(Client newClient) {
-        String previousClientId = (String) httpSession.getAttribute(CLIENT_ID);
+        ensureHttpSession();
+        clearClient();
+
+        state.setClientId(newClient.getId());
+        UserManager.getInstance().addHttpSessionIdToClientMapping(httpSession.getId(), newClient);
+    }
+
+    /**
+     * Turns the session back into that of an anonymous guest, deleting a previous Guest record.
+     *
+     * @methodtype command
+     */
+    public void clearClient() {
+        String previousClientId = state.getClientId();
         if (previousClientId != null) {
             Client previousClient = UserManager.getInstance().getClientById(previousClientId);
             if (previousClient instanceof Guest) {
@@ -223,82 +351,66 @@ public class UserSession extends Session implements Serializable {
             }
         }
 
-        httpSession.setAttribute(CLIENT_ID, newClient.getId());
-        UserManager.getInstance().addHttpSessionIdToClientMapping(httpSession.getId(), newClient);
+        state.setClientId(null);
     }
 
     /**
      * @methodtype get
      */
     public PhotoSize getPhotoSize() {
-        return (PhotoSize) httpSession.getAttribute(PHOTO_SIZE);
+        return state.getPhotoSize();
     }
 
     /**
      * @methodtype set
      */
     public void setPhotoSize(PhotoSize newPhotoSize) {
-        httpSession.setAttribute(PHOTO_SIZE, newPhotoSize);
+        state.setPhotoSize(newPhotoSize);
     }
 
     /**
      * @methodtype boolean query
      */
     public boolean hasConfirmationCode() {
-        Long confirmationCode = getConfirmationCode();
-        if (confirmationCode != null) {
-            return confirmationCode != -1;
-        } else {
-            log.warning("No configuration code found.");
-            return false;
-        }
+        return getConfirmationCode() != -1;
     }
 
     /**
      * @methodtype get
      */
     public Long getConfirmationCode() {
-        return (Long) httpSession.getAttribute(CONFIRMATION_CODE);
+        return state.getConfirmationCode();
     }
 
     /**
      * @methodtype set
      */
     public void setConfirmationCode(Long vc) {
-        httpSession.setAttribute(CONFIRMATION_CODE, vc);
+        state.setConfirmationCode(vc);
     }
 
     /**
-     *
+     * Changes to the returned filter are written back to the state by {@link #saveState()}.
      */
     public PhotoFilter getPhotoFilter() {
-        return (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
+        if (photoFilter == null) {
+            photoFilter = state.createPhotoFilter();
+        }
+        return photoFilter;
     }
 
     /**
      * @methodtype boolean query
      */
     public boolean hasPraisedPhoto(Photo photo) {
-        Set praisedPhotos = (Set) httpSession.getAttribute(PRAISED_PHOTOS);
-        if (praisedPhotos != null) {
-            return praisedPhotos.contains(photo);
-        } else {
-            log.warning("Found no set of praised Photos to search for Photo.");
-            return false;
-        }
+        return state.hasPraisedPhotoId(photo.getId());
     }
 
     /**
      *
      */
     public void addPraisedPhoto(Photo photo) {
-        Set<Photo> praisedPhotos = (Set<Photo>) httpSession.getAttribute(PRAISED_PHOTOS);
-        if (praisedPhotos != null) {
-            praisedPhotos.add(photo);
-            httpSession.setAttribute(PRAISED_PHOTOS, praisedPhotos);
-        } else {
-            log.warning("Found no set of praised Photos to add Photo.");
-        }
+        state.addPraisedPhotoId(photo.getId());
         addDisplayedPhoto(photo);
     }
 
@@ -306,111 +418,110 @@ public class UserSession extends Session implements Serializable {
      *
      */
     public void addDisplayedPhoto(Photo photo) {
-        PhotoFilter photoFilter = (PhotoFilter) httpSession.getAttribute(PHOTO_FILTER);
-        if (photoFilter != null) {
-            photoFilter.addProcessedPhoto(photo);
-            httpSession.setAttribute(PHOTO_FILTER, photoFilter);
-        } else {
-            log.warning("No PhotoFilter found in HttpSession to add Photo.");
-        }
+        getPhotoFilter().addProcessedPhoto(photo);
     }
 
     /**
      * @methodtype get
      */
     public String getHeading() {
-        return (String) httpSession.getAttribute(HEADING);
+        return state.getHeading();
     }
 
     /**
      * @methodtype set
      */
     public void setHeading(String myHeading) {
-        httpSession.setAttribute(HEADING, myHeading);
+        state.setHeading(myHeading);
     }
 
     /**
      * @methodtype get
      */
     public String getMessage() {
-        return (String) httpSession.getAttribute(MESSAGE);
+        return state.getMessage();
     }
 
     /**
      * @methodtype set
      */
     public void setMessage(String myMessage) {
-        httpSession.setAttribute(MESSAGE, HtmlUtil.asP(myMessage));
+        state.setMessage(HtmlUtil.asP(myMessage));
     }
 
     /**
      * @methodtype set
      */
     public void setTwoLineMessage(String msg1, String msg2) {
-        httpSession.setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2));
+        state.setMessage(HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2));
     }
 
     /**
      * @methodtype set
      */
     public void setThreeLineMessage(String msg1, String msg2, String msg3) {
-        httpSession.setAttribute(MESSAGE, HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2) + HtmlUtil.asP(msg3));
+        state.setMessage(HtmlUtil.asP(msg1) + HtmlUtil.asP(msg2) + HtmlUtil.asP(msg3));
     }
 
     /**
      * @methodtype get
      */
     public PhotoId getPhotoId() {
-        return (PhotoId) httpSession.getAttribute(Photo.ID);
+        return state.getPhotoId();
     }
 
     /**
      * @methodtype set
      */
     public void setPhotoId(PhotoId newPhotoId) {
-        httpSession.setAttribute(Photo.ID, newPhotoId);
+        state.setPhotoId(newPhotoId);
     }
 
     /**
      * @methodtype get
      */
     public Image getUploadedImage() {
-        return (Image) httpSession.getAttribute(UPLOADED_IMAGE);
+        return (httpSession != null) ? (Image) sessionStore.getAttribute(httpSession.getId(), UPLOADED_IMAGE) : null;
     }
 
     /**
+     * The uploaded image is kept in an attribute of its own, so that it is only written once when uploading.
+     *
      * @methodtype set
      */
     public void setUploadedImage(Image image) {
-        httpSession.setAttribute(UPLOADED_IMAGE, image);
+        ensureHttpSession();
+        sessionStore.setAttribute(httpSession.getId(), UPLOADED_IMAGE, image);
     }
 
     /**
      * @methodtype get
      */
     public Photo getPriorPhoto() {
-        return (Photo) httpSession.getAttribute(PRIOR_PHOTO);
+        PhotoId id = state.getPriorPhotoId();
+        return (id != null) ? PhotoManager.getPhoto(id) : null;
     }
 
     /**
      * @methodtype set
      */
     public void setPriorPhoto(Photo oldPhoto) {
-        httpSession.setAttribute(PRIOR_PHOTO, oldPhoto);
+        state.setPriorPhotoId((oldPhoto != null) ? oldPhoto.getId() : null);
     }
 
     /**
      * @methodtype get
      */
     public PhotoCase getPhotoCase() {
-        return (PhotoCase) httpSession.getAttribute(PHOTO_CASE);
+        CaseId id = state.getPhotoCaseId();
+        return (id != null) ? PhotoCaseManager.getInstance().getOpenPhotoCase(id) : null;
     }
 
     /**
      * @methodtype set
      */
     public void setPhotoCase(PhotoCase photoCase) {
-        httpSession.setAttribute(PHOTO_CASE, photoCase);
+        state.setPhotoCaseId((photoCase != null) ? photoCase.getId() : null);
     }
 
     /**
@@ -430,8 +541,7 @@ public class UserSession extends Session implements Serializable {
      * @methodtype get
      */
     public Object getSavedArg(String key) {
-        Map<String, Object> savedArgs = (Map<String, Object>) httpSession.getAttribute(SAVED_ARGS);
-        return savedArgs.get(key);
+        return state.getSavedArgs().get(key);
     }
 
     /**
@@ -476,16 +586,31 @@ public class UserSession extends Session implements Serializable {
      * @methodtype set
      */
     public void setSavedArg(String key, Object value) {
-        Map<String, Object> savedArgs = getSavedArgs();
-        savedArgs.put(key, value);
-        httpSession.setAttribute(SAVED_ARGS, savedArgs);
+        state.setSavedArg(key, value);
     }
 
     /**
      * @methodtype get
      */
     public Map<String, Object> getSavedArgs() {
-        return (Map<String, Object>) httpSession.getAttribute(SAVED_ARGS);
+        return state.getSavedArgs();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getRequestArg(String key) {
+        return (requestArgs != null) ? requestArgs.get(key) : null;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setRequestArg(String key, String value) {
+        if (requestArgs == null) {
+            requestArgs = new HashMap<String, String>();
+        }
+        requestArgs.put(key, value);
     }
 
 }
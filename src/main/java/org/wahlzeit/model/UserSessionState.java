@@ -0,0 +1,578 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.wahlzeit.services.Language;
+import org.wahlzeit.utils.VarInt;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The UserSessionState holds everything a UserSession needs to remember between requests in a single HttpSession
+ * attribute. It only keeps ids and strings, never entities, and has its own compact binary encoding. It tracks
+ * whether it changed, so that it needs to be written back to the HttpSession at most once per request.
+ *
+ * @author dirkriehle
+ */
+public class UserSessionState implements Externalizable {
+
+    /**
+     *
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     *
+     */
+    protected static final int VERSION = 1;
+    protected static final int NO_ID = 0;
+    protected static final int[] NO_IDS = new int[0];
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     *
+     */
+    protected String siteUrl;
+    protected String clientId;
+    protected Language language = Language.ENGLISH;
+    protected PhotoSize photoSize = PhotoSize.MEDIUM;
+
+    /**
+     * The photo filter, minus its displayable photo ids, which are cheap to recompute
+     */
+    protected String filterUserName = "";
+    protected String filterTags = "";
+    protected boolean isFilterWeighted = false;
+    protected int[] processedPhotoIds = NO_IDS; // sorted
+
+    /**
+     *
+     */
+    protected int[] praisedPhotoIds = NO_IDS; // sorted
+
+    /**
+     *
+     */
+    protected String message;
+    protected String heading;
+    protected int photoId = NO_ID;
+    protected int priorPhotoId = NO_ID;
+    protected int photoCaseId = NO_ID;
+    protected long confirmationCode = -1L;
+    protected Map<String, Object> savedArgs = new HashMap<String, Object>();
+
+    /**
+     *
+     */
+    protected transient boolean isDirty = false;
+
+    /**
+     * Public no-args constructor, as required by Externalizable
+     */
+    public UserSessionState() {
+        // do nothing
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isDirty() {
+        return isDirty;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setDirty() {
+        isDirty = true;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void resetDirty() {
+        isDirty = false;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getSiteUrl() {
+        return siteUrl;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setSiteUrl(String newSiteUrl) {
+        if (!isEqual(siteUrl, newSiteUrl)) {
+            siteUrl = newSiteUrl;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setClientId(String newClientId) {
+        if (!isEqual(clientId, newClientId)) {
+            clientId = newClientId;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Language getLanguage() {
+        return language;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setLanguage(Language newLanguage) {
+        if (language != newLanguage) {
+            language = newLanguage;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public PhotoSize getPhotoSize() {
+        return photoSize;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPhotoSize(PhotoSize newPhotoSize) {
+        if (photoSize != newPhotoSize) {
+            photoSize = newPhotoSize;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * Creates a new PhotoFilter from the state; its displayable photo ids are left to be recomputed.
+     *
+     * @methodtype factory
+     */
+    public PhotoFilter createPhotoFilter() {
+        PhotoFilter result = PhotoFactory.getInstance().createPhotoFilter();
+        result.setUserName(filterUserName);
+        result.setTags(new Tags(filterTags));
+        result.setWeighted(isFilterWeighted);
+        for (int id : processedPhotoIds) {
+            result.getProcessedPhotoIds().add(PhotoId.getIdFromInt(id));
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPhotoFilter(PhotoFilter filter) {
+        String newUserName = filter.getUserName();
+        if (!isEqual(filterUserName, newUserName)) {
+            filterUserName = newUserName;
+            isDirty = true;
+        }
+
+        String newTags = filter.getTags().asString(false, Tags.SEPARATOR_CHAR);
+        if (!isEqual(filterTags, newTags)) {
+            filterTags = newTags;
+            isDirty = true;
+        }
+
+        if (isFilterWeighted != filter.isWeighted()) {
+            isFilterWeighted = filter.isWeighted();
+            isDirty = true;
+        }
+
+        int[] newProcessedIds = asSortedIntArray(filter.getProcessedPhotoIds().toArray(new PhotoId[0]));
+        if (!Arrays.equals(processedPhotoIds, newProcessedIds)) {
+            processedPhotoIds = newProcessedIds;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean hasPraisedPhotoId(PhotoId id) {
+        return Arrays.binarySearch(praisedPhotoIds, id.asInt()) >= 0;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void addPraisedPhotoId(PhotoId id) {
+        int index = Arrays.binarySearch(praisedPhotoIds, id.asInt());
+        if (index < 0) {
+            int insertAt = -(index + 1);
+            int[] newIds = new int[praisedPhotoIds.length + 1];
+            System.arraycopy(praisedPhotoIds, 0, newIds, 0, insertAt);
+            newIds[insertAt] = id.asInt();
+            System.arraycopy(praisedPhotoIds, insertAt, newIds, insertAt + 1, praisedPhotoIds.length - insertAt);
+            praisedPhotoIds = newIds;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void clearPraisedPhotoIds() {
+        if (praisedPhotoIds.length > 0) {
+            praisedPhotoIds = NO_IDS;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setMessage(String newMessage) {
+        if (!isEqual(message, newMessage)) {
+            message = newMessage;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getHeading() {
+        return heading;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setHeading(String newHeading) {
+        if (!isEqual(heading, newHeading)) {
+            heading = newHeading;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public PhotoId getPhotoId() {
+        return asPhotoId(photoId);
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPhotoId(PhotoId newPhotoId) {
+        int newId = asInt(newPhotoId);
+        if (photoId != newId) {
+            photoId = newId;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public PhotoId getPriorPhotoId() {
+        return asPhotoId(priorPhotoId);
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPriorPhotoId(PhotoId newPhotoId) {
+        int newId = asInt(newPhotoId);
+        if (priorPhotoId != newId) {
+            priorPhotoId = newId;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public CaseId getPhotoCaseId() {
+        return (photoCaseId == NO_ID) ? null : new CaseId(photoCaseId);
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setPhotoCaseId(CaseId newCaseId) {
+        int newId = (newCaseId == null) ? NO_ID : newCaseId.asInt();
+        if (photoCaseId != newId) {
+            photoCaseId = newId;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public long getConfirmationCode() {
+        return confirmationCode;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void setConfirmationCode(long newCode) {
+        if (confirmationCode != newCode) {
+            confirmationCode = newCode;
+            isDirty = true;
+        }
+    }
+
+    /**
+     * Returns the saved args; callers must not modify the map but use setSavedArg instead.
+     *
+     * @methodtype get
+     */
+    public Map<String, Object> getSavedArgs() {
+        return savedArgs;
+    }
+
+    /**
+     * Saved args are kept as strings, which is what all form handlers put and read.
+     *
+     * @methodtype set
+     */
+    public void setSavedArg(String key, Object value) {
+        String newValue = (value == null) ? null : value.toString();
+        if (!isEqual(savedArgs.get(key), newValue)) {
+            if (newValue == null) {
+                savedArgs.remove(key);
+            } else {
+                savedArgs.put(key, newValue);
+            }
+            isDirty = true;
+        }
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void clearSavedArgs() {
+        if (!savedArgs.isEmpty()) {
+            savedArgs = new HashMap<String, Object>();
+            isDirty = true;
+        }
+    }
+
+    /**
+     *
+     */
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(VERSION);
+        writeString(siteUrl, out);
+        writeString(clientId, out);
+        VarInt.write(language.asInt(), out);
+        VarInt.write(photoSize.asInt(), out);
+
+        writeString(filterUserName, out);
+        writeString(filterTags, out);
+        out.writeBoolean(isFilterWeighted);
+        writeSortedIds(processedPhotoIds, out);
+        writeSortedIds(praisedPhotoIds, out);
+
+        writeString(message, out);
+        writeString(heading, out);
+        VarInt.write(photoId, out);
+        VarInt.write(priorPhotoId, out);
+        VarInt.write(photoCaseId, out);
+        out.writeLong(confirmationCode);
+
+        VarInt.write(savedArgs.size(), out);
+        for (Map.Entry<String, Object> entry : savedArgs.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeString(entry.getValue().toString(), out);
+        }
+    }
+
+    /**
+     *
+     */
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException("unknown user session state version: " + version);
+        }
+
+        siteUrl = readString(in);
+        clientId = readString(in);
+        language = Language.getFromInt(VarInt.read(in));
+        photoSize = PhotoSize.getFromInt(VarInt.read(in));
+
+        filterUserName = readString(in);
+        filterTags = readString(in);
+        isFilterWeighted = in.readBoolean();
+        processedPhotoIds = readSortedIds(in);
+        praisedPhotoIds = readSortedIds(in);
+
+        message = readString(in);
+        heading = readString(in);
+        photoId = VarInt.read(in);
+        priorPhotoId = VarInt.read(in);
+        photoCaseId = VarInt.read(in);
+        confirmationCode = in.readLong();
+
+        int noSavedArgs = VarInt.read(in);
+        savedArgs = new HashMap<String, Object>(noSavedArgs * 2);
+        for (int i = 0; i < noSavedArgs; i++) {
+            String key = readString(in);
+            savedArgs.put(key, readString(in));
+        }
+
+        isDirty = false;
+    }
+
+    /**
+     * Strings are written as their UTF-8 length plus one (zero for null) followed by the bytes.
+     */
+    protected static void writeString(String value, ObjectOutput out) throws IOException {
+        if (value == null) {
+            VarInt.write(0, out);
+        } else {
+            byte[] bytes = value.getBytes(UTF8);
+            VarInt.write(bytes.length + 1, out);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     *
+     */
+    protected static String readString(ObjectInput in) throws IOException {
+        int length = VarInt.read(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Sorted ids are written as their number followed by the gaps between them.
+     */
+    protected static void writeSortedIds(int[] ids, ObjectOutput out) throws IOException {
+        VarInt.write(ids.length, out);
+        int last = 0;
+        for (int id : ids) {
+            VarInt.write(id - last, out);
+            last = id;
+        }
+    }
+
+    /**
+     *
+     */
+    protected static int[] readSortedIds(ObjectInput in) throws IOException {
+        int length = VarInt.read(in);
+        if (length == 0) {
+            return NO_IDS;
+        }
+
+        int[] result = new int[length];
+        int last = 0;
+        for (int i = 0; i < length; i++) {
+            last += VarInt.read(in);
+            result[i] = last;
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected static int[] asSortedIntArray(PhotoId[] ids) {
+        if (ids.length == 0) {
+            return NO_IDS;
+        }
+
+        int[] result = new int[ids.length];
+        int length = 0;
+        for (PhotoId id : ids) {
+            result[length++] = id.asInt();
+        }
+        Arrays.sort(result);
+
+        int unique = 1;
+        for (int i = 1; i < length; i++) {
+            if (result[i] != result[unique - 1]) {
+                result[unique++] = result[i];
+            }
+        }
+        return (unique == length) ? result : Arrays.copyOf(result, unique);
+    }
+
+    /**
+     *
+     */
+    protected static int asInt(PhotoId id) {
+        return ((id == null) || id.isNullId()) ? NO_ID : id.asInt();
+    }
+
+    /**
+     *
+     */
+    protected static PhotoId asPhotoId(int id) {
+        return (id == NO_ID) ? null : PhotoId.getIdFromInt(id);
+    }
+
+    /**
+     *
+     */
+    protected static boolean isEqual(Object o1, Object o2) {
+        return (o1 == null) ? (o2 == null) : o1.equals(o2);
+    }
+
+}
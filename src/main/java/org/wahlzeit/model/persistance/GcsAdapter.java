@@ -18,6 +18,7 @@ import java.io.Serializable;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
 import java.security.InvalidParameterException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -53,13 +54,13 @@ public class GcsAdapter extends ImageStorage {
             throws IOException, InvalidParameterException {
 
         GcsFilename gcsFilename = getGcsFileName(photoIdAsString, size);
-        log.config(LogBuilder.createSystemMessage().addParameter("gcsFileName", gcsFilename).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("gcsFileName", gcsFilename).log();
 
         String fileType = URLConnection.guessContentTypeFromName(gcsFilename.getObjectName());
         GcsFileOptions.Builder fileOptionsBuilder = new GcsFileOptions.Builder();
         if (fileType != null) {
             fileOptionsBuilder.mimeType(fileType);
-            log.config(LogBuilder.createSystemMessage().addParameter("found file type", fileType).toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("found file type", fileType).log();
         } else {
             fileOptionsBuilder.mimeType(defaultImageMimeTypeName);
             log.warning(LogBuilder.createSystemMessage().
@@ -73,7 +74,7 @@ public class GcsAdapter extends ImageStorage {
             Image imageObject = (Image) image;
             outputChannel.write(ByteBuffer.wrap(imageObject.getImageData()));
             outputChannel.close();
-            log.config(LogBuilder.createSystemMessage().addMessage("image successfully written").toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addMessage("image successfully written").log();
         } else {
             throw new InvalidParameterException("not an Image object!");
         }
@@ -82,7 +83,7 @@ public class GcsAdapter extends ImageStorage {
     @Override
     protected Image doReadImage(String filename, int size) throws IOException {
         GcsFilename gcsFilename = getGcsFileName(filename, size);
-        log.config(LogBuilder.createSystemMessage().addParameter("gcsFileName", gcsFilename).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("gcsFileName", gcsFilename).log();
 
         GcsInputChannel readChannel = gcsService.openReadChannel(gcsFilename, 0);
         ByteBuffer bb = ByteBuffer.allocate(bufferLength);
@@ -91,7 +92,7 @@ public class GcsAdapter extends ImageStorage {
         if (result == null) {
             log.warning(LogBuilder.createSystemMessage().addMessage("does not exist!").toString());
         } else {
-            log.config(LogBuilder.createSystemMessage().addMessage("image successfully read").toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addMessage("image successfully read").log();
         }
         return result;
     }
@@ -106,7 +107,7 @@ public class GcsAdapter extends ImageStorage {
         } catch (IOException e) {
             result = false;
         }
-        log.config(LogBuilder.createSystemMessage().addParameter("does image exist", result).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("does image exist", result).log();
         return result;
     }
 
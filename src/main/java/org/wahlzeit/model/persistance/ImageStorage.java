@@ -6,6 +6,7 @@ import org.wahlzeit.services.LogBuilder;
 import java.io.IOException;
 import java.io.Serializable;
 import java.security.InvalidParameterException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -34,9 +35,9 @@ public abstract class ImageStorage {
      * @methodtype set
      */
     public static void setInstance(ImageStorage newInstance) {
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("set ImageStorage instance").
-                addParameter("instance", newInstance).toString());
+                addParameter("instance", newInstance).log();
         instance = newInstance;
     }
 
@@ -57,11 +58,11 @@ public abstract class ImageStorage {
         assertValidPhotoId(photoIdAsString);
         PhotoSize.assertIsValidPhotoSizeAsInt(size);
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("write image to storage").
                 addParameter("image", image).
                 addParameter("photo id", photoIdAsString).
-                addParameter("size", size).toString());
+                addParameter("size", size).log();
 
         doWriteImage(image, photoIdAsString, size);
     }
@@ -115,10 +116,10 @@ public abstract class ImageStorage {
         assertValidPhotoId(photoIdAsString);
         PhotoSize.assertIsValidPhotoSizeAsInt(size);
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("read image from storage").
                 addParameter("photo id", photoIdAsString).
-                addParameter("size", size).toString());
+                addParameter("size", size).log();
 
         return doReadImage(photoIdAsString, size);
     }
@@ -147,10 +148,10 @@ public abstract class ImageStorage {
         assertValidPhotoId(photoIdAsString);
         PhotoSize.assertIsValidPhotoSizeAsInt(size);
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("check if image exists in storage").
                 addParameter("photo id", photoIdAsString).
-                addParameter("size", size).toString());
+                addParameter("size", size).log();
 
         return doDoesImageExist(photoIdAsString, size);
     }
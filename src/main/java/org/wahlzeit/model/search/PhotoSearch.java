@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoListener;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.services.SysConfig;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The PhotoSearch answers full-text queries over all visible photos. A photo is indexed with the words of its tags
+ * and of its owner's name, as collected for the tag index of the PhotoManager; it is kept up-to-date as a
+ * PhotoListener of the PhotoManager.
+ *
+ * @author dirkriehle
+ */
+public class PhotoSearch implements PhotoListener {
+
+    /**
+     *
+     */
+    public static final int DEFAULT_NO_RESULTS = 20;
+    public static final int MAX_NO_RESULTS = 100;
+
+    /**
+     *
+     */
+    protected static final String SEARCH_DIR = "search";
+
+    /**
+     *
+     */
+    protected static final PhotoSearch instance = new PhotoSearch();
+
+    /**
+     *
+     */
+    protected SearchIndex index = new SearchIndex(null);
+
+    /**
+     *
+     */
+    protected PhotoSearch() {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public static PhotoSearch getInstance() {
+        return instance;
+    }
+
+    /**
+     * Loads the index persisted in the temp dir; photos loaded afterwards are only re-indexed if they changed.
+     *
+     * @methodtype initialization
+     */
+    public void init() {
+        SearchIndex newIndex = new SearchIndex(new File(SysConfig.getTempDir().asString(), SEARCH_DIR));
+        newIndex.load();
+        index = newIndex;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void flush() {
+        index.flush();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public SearchIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the (up to) max visible photos best matching the query, best match first.
+     *
+     * @methodtype get
+     */
+    public List<Photo> search(String query, int max) {
+        List<String> terms = Tokenizer.tokenize(query);
+        int noResults = Math.min(Math.max(max, 0), MAX_NO_RESULTS);
+        if (terms.isEmpty() || (noResults == 0)) {
+            return Collections.emptyList();
+        }
+
+        List<Photo> result = new ArrayList<Photo>(noResults);
+        for (SearchResult hit : index.search(terms, noResults)) {
+            Photo photo = PhotoManager.getPhoto(PhotoId.getIdFromInt(hit.getDocId()));
+            if ((photo != null) && photo.isVisible()) {
+                result.add(photo);
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    public void photoTagsChanged(Photo photo, Set<String> oldTags, Set<String> newTags) {
+        if (photo.isVisible()) {
+            index.updateDocument(photo.getId().asInt(), asTerms(newTags));
+        } else {
+            index.deleteDocument(photo.getId().asInt());
+        }
+    }
+
+    /**
+     *
+     */
+    public void photoPraised(Photo photo) {
+        // do nothing
+    }
+
+    /**
+     *
+     */
+    public void photoStatusChanged(Photo photo, PhotoStatus oldStatus) {
+        if (photo.isVisible()) {
+            Set<String> tags = PhotoManager.getInstance().getIndexedTags(photo.getId());
+            index.updateDocument(photo.getId().asInt(), asTerms(tags));
+        } else {
+            index.deleteDocument(photo.getId().asInt());
+        }
+    }
+
+    /**
+     * Splits the "tg:" tags (which include the owner's name) into words, in a canonical order.
+     */
+    protected static List<String> asTerms(Set<String> tags) {
+        List<String> result = new ArrayList<String>();
+        for (String tag : tags) {
+            if (tag.startsWith("tg:")) {
+                Tokenizer.tokenize(tag.substring(3), result);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+}
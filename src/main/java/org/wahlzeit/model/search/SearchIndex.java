@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.utils.VarInt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A SearchIndex is a small embedded full-text index with BM25 ranking. New documents are buffered in memory and
+ * flushed into immutable segments; updates and deletes mark the old version as deleted; segments are merged once
+ * there are too many of them. If given a directory, the index persists its segments there together with a manifest
+ * listing live segments, deletion marks, and a fingerprint of each document, so unchanged documents need not be
+ * re-indexed after a restart.
+ *
+ * @author dirkriehle
+ */
+public class SearchIndex {
+
+    private static final Logger log = Logger.getLogger(SearchIndex.class.getName());
+
+    /**
+     *
+     */
+    public static final int MAX_BUFFERED_DOCS = 256;
+    public static final int MAX_SEGMENTS = 8;
+
+    /**
+     * BM25 parameters
+     */
+    public static final double K1 = 1.2;
+    public static final double B = 0.75;
+
+    /**
+     *
+     */
+    protected static final String MANIFEST_FILE = "segments.idx";
+    protected static final String SEGMENT_SUFFIX = ".seg";
+    protected static final int MANIFEST_VERSION = 1;
+
+    /**
+     *
+     */
+    protected static final Comparator<SearchResult> BY_SCORE = new Comparator<SearchResult>() {
+        public int compare(SearchResult r1, SearchResult r2) {
+            int result = Double.compare(r1.getScore(), r2.getScore());
+            return (result != 0) ? result : ((r1.getDocId() > r2.getDocId()) ? -1 : ((r1.getDocId() < r2.getDocId()) ? 1 : 0));
+        }
+    };
+
+    /**
+     * Directory to persist segments to; null for a purely in-memory index
+     */
+    protected File dir;
+
+    /**
+     * Current segments; replaced as a whole on change, so searches can use it without locking
+     */
+    protected volatile List<Segment> segments = Collections.emptyList();
+    protected SegmentBuilder buffer = new SegmentBuilder();
+    protected int nextSegmentNo = 1;
+    protected boolean isDirty = false;
+
+    /**
+     * Fingerprint of the terms of each indexed document
+     */
+    protected Map<Integer, Integer> fingerprints = new ConcurrentHashMap<Integer, Integer>();
+
+    /**
+     *
+     */
+    public SearchIndex(File myDir) {
+        dir = myDir;
+    }
+
+    /**
+     * Loads the segments persisted in dir, if any; returns false if there was nothing (usable) to load.
+     *
+     * @methodtype command
+     */
+    public synchronized boolean load() {
+        if (dir == null) {
+            return false;
+        }
+
+        File manifest = new File(dir, MANIFEST_FILE);
+        if (!manifest.exists()) {
+            return false;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+            if (in.readInt() != MANIFEST_VERSION) {
+                throw new IOException("unknown manifest version");
+            }
+
+            int segmentNo = in.readInt();
+            List<Segment> loadedSegments = new ArrayList<Segment>();
+            int noSegments = VarInt.read(in);
+            for (int i = 0; i < noSegments; i++) {
+                Segment segment = readSegment(in.readUTF());
+                int noDeleted = VarInt.read(in);
+                for (int j = 0; j < noDeleted; j++) {
+                    segment.deleteDocument(VarInt.read(in));
+                }
+                loadedSegments.add(segment);
+            }
+
+            Map<Integer, Integer> loadedFingerprints = new HashMap<Integer, Integer>();
+            int noFingerprints = VarInt.read(in);
+            for (int i = 0; i < noFingerprints; i++) {
+                loadedFingerprints.put(VarInt.read(in), in.readInt());
+            }
+
+            nextSegmentNo = segmentNo;
+            segments = Collections.unmodifiableList(loadedSegments);
+            fingerprints.clear();
+            fingerprints.putAll(loadedFingerprints);
+            buffer = new SegmentBuilder();
+            isDirty = false;
+        } catch (IOException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not load search index", ex).toString());
+            return false;
+        } finally {
+            close(in);
+        }
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("load search index").
+                addParameter("segments", segments.size()).
+                addParameter("documents", fingerprints.size()).log();
+        return true;
+    }
+
+    /**
+     * Indexes the document under docId, replacing an earlier version. Returns false if the terms are unchanged.
+     *
+     * @methodtype command
+     */
+    public synchronized boolean updateDocument(int docId, List<String> terms) {
+        int fingerprint = terms.hashCode();
+        Integer oldFingerprint = fingerprints.get(docId);
+        if ((oldFingerprint != null) && (oldFingerprint == fingerprint)) {
+            return false;
+        }
+
+        doDeleteDocument(docId);
+        buffer.addDocument(docId, terms);
+        fingerprints.put(docId, fingerprint);
+        isDirty = true;
+
+        if (buffer.getNoDocuments() >= MAX_BUFFERED_DOCS) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized boolean deleteDocument(int docId) {
+        boolean result = doDeleteDocument(docId);
+        fingerprints.remove(docId);
+        isDirty |= result;
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected boolean doDeleteDocument(int docId) {
+        boolean result = buffer.removeDocument(docId);
+        for (Segment segment : segments) {
+            result |= segment.deleteDocument(docId);
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean hasDocument(int docId) {
+        return fingerprints.containsKey(docId);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoDocuments() {
+        return fingerprints.size();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoSegments() {
+        return segments.size();
+    }
+
+    /**
+     * Turns buffered documents into a new segment, merges segments if needed, and persists the changes.
+     *
+     * @methodtype command
+     */
+    public synchronized void flush() {
+        if (!buffer.isEmpty()) {
+            Segment segment = buffer.build(newSegmentName());
+            buffer = new SegmentBuilder();
+            writeSegment(segment);
+
+            List<Segment> newSegments = new ArrayList<Segment>(segments);
+            newSegments.add(segment);
+            segments = Collections.unmodifiableList(newSegments);
+        }
+
+        if (segments.size() > MAX_SEGMENTS) {
+            merge();
+        }
+
+        if (isDirty) {
+            writeManifest();
+            isDirty = false;
+        }
+    }
+
+    /**
+     * Merges the smaller half of all segments into one, dropping deleted documents.
+     *
+     * @methodtype command
+     */
+    public synchronized void merge() {
+        if (segments.size() < 2) {
+            return;
+        }
+
+        List<Segment> bySize = new ArrayList<Segment>(segments);
+        Collections.sort(bySize, new Comparator<Segment>() {
+            public int compare(Segment s1, Segment s2) {
+                return (s1.getNoLiveDocuments() < s2.getNoLiveDocuments()) ? -1 : ((s1.getNoLiveDocuments() == s2.getNoLiveDocuments()) ? 0 : 1);
+            }
+        });
+        int noToMerge = Math.max(2, bySize.size() / 2 + 1);
+        Set<Segment> toMerge = new LinkedHashSet<Segment>(bySize.subList(0, noToMerge));
+
+        SegmentBuilder builder = new SegmentBuilder();
+        for (Segment segment : toMerge) {
+            segment.addLivePostingsTo(builder);
+        }
+
+        List<Segment> newSegments = new ArrayList<Segment>();
+        for (Segment segment : segments) {
+            if (!toMerge.contains(segment)) {
+                newSegments.add(segment);
+            }
+        }
+        if (!builder.isEmpty()) {
+            Segment merged = builder.build(newSegmentName());
+            writeSegment(merged);
+            newSegments.add(merged);
+        }
+        segments = Collections.unmodifiableList(newSegments);
+        isDirty = true;
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("merge search segments").
+                addParameter("merged", toMerge.size()).
+                addParameter("segments", newSegments.size()).log();
+
+        writeManifest();
+        for (Segment segment : toMerge) {
+            deleteSegmentFile(segment);
+        }
+    }
+
+    /**
+     * Returns the (up to) max best matching documents for the query terms, ranked by BM25.
+     *
+     * @methodtype get
+     */
+    public List<SearchResult> search(List<String> terms, int max) {
+        if (!buffer.isEmpty()) {
+            flush();
+        }
+
+        List<Segment> current = segments;
+        long noDocs = 0;
+        long totalLength = 0;
+        for (Segment segment : current) {
+            noDocs += segment.getNoLiveDocuments();
+            totalLength += segment.getLiveLength();
+        }
+        if ((noDocs == 0) || (max <= 0)) {
+            return Collections.emptyList();
+        }
+        double avgLength = Math.max((double) totalLength / noDocs, 1.0);
+
+        Map<Integer, Double> scores = new HashMap<Integer, Double>();
+        for (String term : new LinkedHashSet<String>(terms)) {
+            int docFreq = 0;
+            for (Segment segment : current) {
+                docFreq += segment.getDocFreq(term);
+            }
+            if (docFreq == 0) {
+                continue;
+            }
+
+            double idf = Math.log(1.0 + (noDocs - docFreq + 0.5) / (docFreq + 0.5));
+            for (Segment segment : current) {
+                Segment.PostingsIterator i = segment.getPostings(term);
+                while (i.next()) {
+                    int docId = i.getDocId();
+                    if (segment.deletedDocIds.contains(docId)) {
+                        continue;
+                    }
+                    double tf = i.getFrequency();
+                    double norm = K1 * (1.0 - B + B * segment.getDocLength(docId) / avgLength);
+                    double score = idf * tf * (K1 + 1.0) / (tf + norm);
+                    Double oldScore = scores.get(docId);
+                    scores.put(docId, (oldScore == null) ? score : oldScore + score);
+                }
+            }
+        }
+
+        PriorityQueue<SearchResult> best = new PriorityQueue<SearchResult>(max + 1, BY_SCORE);
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            best.add(new SearchResult(entry.getKey(), entry.getValue()));
+            if (best.size() > max) {
+                best.poll();
+            }
+        }
+
+        List<SearchResult> result = new ArrayList<SearchResult>(best);
+        Collections.sort(result, Collections.reverseOrder(BY_SCORE));
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected String newSegmentName() {
+        return "segment-" + (nextSegmentNo++);
+    }
+
+    /**
+     *
+     */
+    protected Segment readSegment(String name) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(dir, name + SEGMENT_SUFFIX))));
+        try {
+            return Segment.readFrom(name, in);
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Persistence is best effort; on failure (e.g. a read-only file system) the index stays in memory only.
+     */
+    protected void writeSegment(Segment segment) {
+        if (dir == null) {
+            return;
+        }
+
+        DataOutputStream out = null;
+        try {
+            dir.mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, segment.getName() + SEGMENT_SUFFIX))));
+            segment.writeOn(out);
+        } catch (IOException ex) {
+            disablePersistence(ex);
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Writes the manifest to a temporary file first, then renames it, so a crash never leaves a half-written one.
+     */
+    protected void writeManifest() {
+        if (dir == null) {
+            return;
+        }
+
+        File tempFile = new File(dir, MANIFEST_FILE + ".tmp");
+        DataOutputStream out = null;
+        try {
+            dir.mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MANIFEST_VERSION);
+            out.writeInt(nextSegmentNo);
+
+            List<Segment> current = segments;
+            VarInt.write(current.size(), out);
+            for (Segment segment : current) {
+                out.writeUTF(segment.getName());
+                List<Integer> deleted = new ArrayList<Integer>(segment.getDeletedDocIds());
+                VarInt.write(deleted.size(), out);
+                for (Integer docId : deleted) {
+                    VarInt.write(docId, out);
+                }
+            }
+
+            Map<Integer, Integer> currentFingerprints = new HashMap<Integer, Integer>(fingerprints);
+            VarInt.write(currentFingerprints.size(), out);
+            for (Map.Entry<Integer, Integer> entry : currentFingerprints.entrySet()) {
+                VarInt.write(entry.getKey(), out);
+                out.writeInt(entry.getValue());
+            }
+            out.close();
+            out = null;
+
+            File manifest = new File(dir, MANIFEST_FILE);
+            if (manifest.exists() && !manifest.delete()) {
+                throw new IOException("could not replace " + manifest);
+            }
+            if (!tempFile.renameTo(manifest)) {
+                throw new IOException("could not rename " + tempFile);
+            }
+        } catch (IOException ex) {
+            disablePersistence(ex);
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     *
+     */
+    protected void deleteSegmentFile(Segment segment) {
+        if (dir != null) {
+            new File(dir, segment.getName() + SEGMENT_SUFFIX).delete();
+        }
+    }
+
+    /**
+     *
+     */
+    protected void disablePersistence(IOException ex) {
+        log.warning(LogBuilder.createSystemMessage().
+                addException("could not persist search index to " + dir + "; keeping it in memory", ex).toString());
+        dir = null;
+    }
+
+    /**
+     *
+     */
+    protected static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+/**
+ * A document id with its relevance score for a query.
+ *
+ * @author dirkriehle
+ */
+public class SearchResult {
+
+    /**
+     *
+     */
+    protected final int docId;
+    protected final double score;
+
+    /**
+     *
+     */
+    public SearchResult(int myDocId, double myScore) {
+        docId = myDocId;
+        score = myScore;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getDocId() {
+        return docId;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public double getScore() {
+        return score;
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import org.wahlzeit.utils.VarInt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Segment is an immutable inverted index over a set of documents. Each term maps to a posting list of (document id
+ * gap, term frequency) pairs, both varint-encoded. Documents are never removed from a segment; deleting a document
+ * only marks it, and merging segments drops marked documents for good.
+ *
+ * @author dirkriehle
+ */
+public class Segment {
+
+    /**
+     *
+     */
+    protected static final int MAGIC = 0x57534547; // "WSEG"
+    protected static final int VERSION = 1;
+
+    /**
+     *
+     */
+    protected final String name;
+    protected final int[] docIds; // ascending
+    protected final int[] docLengths;
+    protected final Map<String, byte[]> postings;
+    protected final Map<String, Integer> docFreqs;
+
+    /**
+     *
+     */
+    protected final Set<Integer> deletedDocIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    protected volatile long liveLength;
+
+    /**
+     *
+     */
+    protected Segment(String myName, int[] myDocIds, int[] myDocLengths, Map<String, byte[]> myPostings, Map<String, Integer> myDocFreqs) {
+        name = myName;
+        docIds = myDocIds;
+        docLengths = myDocLengths;
+        postings = myPostings;
+        docFreqs = myDocFreqs;
+
+        long length = 0;
+        for (int docLength : docLengths) {
+            length += docLength;
+        }
+        liveLength = length;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoDocuments() {
+        return docIds.length;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoLiveDocuments() {
+        return docIds.length - deletedDocIds.size();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public long getLiveLength() {
+        return liveLength;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Collection<Integer> getDeletedDocIds() {
+        return Collections.unmodifiableSet(deletedDocIds);
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isLiveDocument(int docId) {
+        return (indexOf(docId) >= 0) && !deletedDocIds.contains(docId);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getDocLength(int docId) {
+        int index = indexOf(docId);
+        return (index >= 0) ? docLengths[index] : 0;
+    }
+
+    /**
+     * Number of documents containing the term, including deleted ones (until the next merge).
+     *
+     * @methodtype get
+     */
+    public int getDocFreq(String term) {
+        Integer result = docFreqs.get(term);
+        return (result != null) ? result : 0;
+    }
+
+    /**
+     * Marks the document as deleted; returns false if it is not (or no longer) part of this segment.
+     *
+     * @methodtype command
+     */
+    public synchronized boolean deleteDocument(int docId) {
+        int index = indexOf(docId);
+        if ((index < 0) || !deletedDocIds.add(docId)) {
+            return false;
+        }
+        liveLength -= docLengths[index];
+        return true;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public PostingsIterator getPostings(String term) {
+        return new PostingsIterator(postings.get(term));
+    }
+
+    /**
+     * @methodtype get
+     */
+    public Collection<String> getTerms() {
+        return postings.keySet();
+    }
+
+    /**
+     *
+     */
+    protected int indexOf(int docId) {
+        return Arrays.binarySearch(docIds, docId);
+    }
+
+    /**
+     * Adds all live postings to builder, e.g. for merging.
+     */
+    public void addLivePostingsTo(SegmentBuilder builder) {
+        for (String term : postings.keySet()) {
+            PostingsIterator i = getPostings(term);
+            while (i.next()) {
+                if (!deletedDocIds.contains(i.getDocId())) {
+                    builder.addPosting(i.getDocId(), term, i.getFrequency());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the segment (without deletion marks, which change over time) to out.
+     */
+    public void writeOn(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        VarInt.write(docIds.length, out);
+        int lastDocId = 0;
+        for (int i = 0; i < docIds.length; i++) {
+            VarInt.write(docIds[i] - lastDocId, out);
+            VarInt.write(docLengths[i], out);
+            lastDocId = docIds[i];
+        }
+
+        VarInt.write(postings.size(), out);
+        for (Map.Entry<String, byte[]> entry : postings.entrySet()) {
+            out.writeUTF(entry.getKey());
+            VarInt.write(docFreqs.get(entry.getKey()), out);
+            VarInt.write(entry.getValue().length, out);
+            out.write(entry.getValue());
+        }
+    }
+
+    /**
+     *
+     */
+    public static Segment readFrom(String name, DataInput in) throws IOException {
+        if ((in.readInt() != MAGIC) || (in.readInt() != VERSION)) {
+            throw new IOException("not a search segment: " + name);
+        }
+
+        int noDocs = VarInt.read(in);
+        int[] docIds = new int[noDocs];
+        int[] docLengths = new int[noDocs];
+        int lastDocId = 0;
+        for (int i = 0; i < noDocs; i++) {
+            lastDocId += VarInt.read(in);
+            docIds[i] = lastDocId;
+            docLengths[i] = VarInt.read(in);
+        }
+
+        int noTerms = VarInt.read(in);
+        Map<String, byte[]> postings = new HashMap<String, byte[]>(noTerms * 2);
+        Map<String, Integer> docFreqs = new HashMap<String, Integer>(noTerms * 2);
+        for (int i = 0; i < noTerms; i++) {
+            String term = in.readUTF();
+            docFreqs.put(term, VarInt.read(in));
+            byte[] data = new byte[VarInt.read(in)];
+            in.readFully(data);
+            postings.put(term, data);
+        }
+
+        return new Segment(name, docIds, docLengths, postings, docFreqs);
+    }
+
+    /**
+     * Iterates over a posting list: call next() until it returns false, reading docId and frequency in between.
+     */
+    public static class PostingsIterator {
+
+        /**
+         *
+         */
+        protected final byte[] data;
+        protected final int[] position = new int[1];
+        protected int docId = 0;
+        protected int frequency = 0;
+
+        /**
+         *
+         */
+        protected PostingsIterator(byte[] myData) {
+            data = myData;
+        }
+
+        /**
+         * @methodtype command
+         */
+        public boolean next() {
+            if ((data == null) || (position[0] >= data.length)) {
+                return false;
+            }
+            docId += VarInt.read(data, position);
+            frequency = VarInt.read(data, position);
+            return true;
+        }
+
+        /**
+         * @methodtype get
+         */
+        public int getDocId() {
+            return docId;
+        }
+
+        /**
+         * @methodtype get
+         */
+        public int getFrequency() {
+            return frequency;
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import org.wahlzeit.utils.VarInt;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A SegmentBuilder collects documents in memory and turns them into an immutable Segment. It is used both for newly
+ * indexed documents and for merging segments.
+ *
+ * @author dirkriehle
+ */
+public class SegmentBuilder {
+
+    /**
+     * Term frequencies per document
+     */
+    protected Map<Integer, Map<String, Integer>> documents = new HashMap<Integer, Map<String, Integer>>();
+
+    /**
+     *
+     */
+    public SegmentBuilder() {
+        // do nothing
+    }
+
+    /**
+     * Adds (or replaces) the document with the given terms.
+     *
+     * @methodtype command
+     */
+    public void addDocument(int docId, List<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (String term : terms) {
+            Integer frequency = frequencies.get(term);
+            frequencies.put(term, (frequency == null) ? 1 : frequency + 1);
+        }
+        documents.put(docId, frequencies);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void addPosting(int docId, String term, int frequency) {
+        Map<String, Integer> frequencies = documents.get(docId);
+        if (frequencies == null) {
+            frequencies = new HashMap<String, Integer>();
+            documents.put(docId, frequencies);
+        }
+        frequencies.put(term, frequency);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public boolean removeDocument(int docId) {
+        return documents.remove(docId) != null;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoDocuments() {
+        return documents.size();
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    /**
+     * Encodes all documents into a Segment with delta-varint posting lists.
+     */
+    public Segment build(String name) {
+        int noDocs = documents.size();
+        int[] docIds = new int[noDocs];
+        int i = 0;
+        for (Integer docId : documents.keySet()) {
+            docIds[i++] = docId;
+        }
+        Arrays.sort(docIds);
+
+        int[] docLengths = new int[noDocs];
+        Map<String, List<int[]>> postingsByTerm = new TreeMap<String, List<int[]>>();
+        for (i = 0; i < noDocs; i++) {
+            int length = 0;
+            for (Map.Entry<String, Integer> posting : documents.get(docIds[i]).entrySet()) {
+                length += posting.getValue();
+                List<int[]> postings = postingsByTerm.get(posting.getKey());
+                if (postings == null) {
+                    postings = new ArrayList<int[]>();
+                    postingsByTerm.put(posting.getKey(), postings);
+                }
+                postings.add(new int[]{docIds[i], posting.getValue()}); // docIds ascend, so postings do, too
+            }
+            docLengths[i] = length;
+        }
+
+        Map<String, byte[]> encodedPostings = new HashMap<String, byte[]>(postingsByTerm.size() * 2);
+        Map<String, Integer> docFreqs = new HashMap<String, Integer>(postingsByTerm.size() * 2);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        for (Map.Entry<String, List<int[]>> entry : postingsByTerm.entrySet()) {
+            buffer.reset();
+            int lastDocId = 0;
+            for (int[] posting : entry.getValue()) {
+                VarInt.write(posting[0] - lastDocId, buffer);
+                VarInt.write(posting[1], buffer);
+                lastDocId = posting[0];
+            }
+            encodedPostings.put(entry.getKey(), buffer.toByteArray());
+            docFreqs.put(entry.getKey(), entry.getValue().size());
+        }
+
+        return new Segment(name, docIds, docLengths, encodedPostings, docFreqs);
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The Tokenizer splits text into lower-case terms of letters and digits; everything else separates terms.
+ *
+ * @author dirkriehle
+ */
+public class Tokenizer {
+
+    /**
+     *
+     */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    /**
+     *
+     */
+    public static List<String> tokenize(String text) {
+        List<String> result = new ArrayList<String>();
+        tokenize(text, result);
+        return result;
+    }
+
+    /**
+     * Appends the terms of text to result.
+     */
+    public static void tokenize(String text, List<String> result) {
+        if (text == null) {
+            return;
+        }
+
+        int start = -1;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            boolean isTermChar = (i < length) && Character.isLetterOrDigit(text.charAt(i));
+            if (isTermChar && (start < 0)) {
+                start = i;
+            } else if (!isTermChar && (start >= 0)) {
+                int end = Math.min(i, start + MAX_TERM_LENGTH);
+                result.add(text.substring(start, end).toLowerCase(Locale.ENGLISH));
+                start = -1;
+            }
+        }
+    }
+
+}
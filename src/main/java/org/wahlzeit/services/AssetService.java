@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.services;
+
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The AssetService gives each file below the static config directory a fingerprinted name, with a hash of its
+ * content before the extension, e.g. config/static/default/wahlzeit.0c8e4f3a91d2.css. A changed file gets a new name,
+ * so that clients can cache files under their fingerprinted names for good. Paths are relative to the root dir and
+ * separated by '/', as in URLs.
+ *
+ * @author dirkriehle
+ */
+public class AssetService {
+
+    private static final Logger log = Logger.getLogger(AssetService.class.getName());
+
+    /**
+     *
+     */
+    protected static final AssetService instance = new AssetService();
+
+    /**
+     *
+     */
+    protected static final String HASH_ALGORITHM = "SHA-1";
+    protected static final int HASH_LENGTH = 12; // hex digits
+
+    /**
+     *
+     */
+    protected ConfigDir staticDir = null;
+
+    /**
+     * Fingerprinted paths by path
+     */
+    protected Map<String, String> fingerprintedPaths = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Files by fingerprinted path
+     */
+    protected Map<String, File> files = new ConcurrentHashMap<String, File>();
+
+    /**
+     *
+     */
+    protected AssetService() {
+        // do nothing
+    }
+
+    /**
+     * Convenience method...
+     */
+    public static AssetService getInstance() {
+        return instance;
+    }
+
+    /**
+     * Fingerprints all files below the static dir, in its default and custom subdirectories.
+     *
+     * @methodtype command
+     */
+    public void loadAssets(ConfigDir newStaticDir) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        staticDir = newStaticDir;
+        fingerprintedPaths.clear();
+        files.clear();
+        addAssets(new File(staticDir.asString(), ConfigDir.DEFAULT_DIR_NAME));
+        addAssets(new File(staticDir.asString(), ConfigDir.CUSTOM_DIR_NAME));
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("fingerprint static files").
+                addParameter("number of files", files.size()).
+                addParameter("time (ms)", System.currentTimeMillis() - startTime).log();
+    }
+
+    /**
+     *
+     */
+    protected void addAssets(File dir) throws IOException {
+        File[] dirFiles = dir.listFiles();
+        if (dirFiles == null) {
+            return;
+        }
+
+        for (File file : dirFiles) {
+            if (file.isDirectory()) {
+                addAssets(file);
+            } else if (!file.getName().endsWith(".gz")) {
+                String path = asPath(file);
+                String fingerprintedPath = asFingerprintedPath(path, getHash(Files.toByteArray(file)));
+                fingerprintedPaths.put(path, fingerprintedPath);
+                files.put(fingerprintedPath, file);
+            }
+        }
+    }
+
+    /**
+     * Returns the fingerprinted path of a static file, given by its name below the default or custom static dir;
+     * returns the plain path of files added after loading.
+     *
+     * @methodtype get
+     */
+    public String getPath(String shortFileName) {
+        ConfigDir dir = (staticDir != null) ? staticDir : SysConfig.getStaticDir();
+        String path = dir.getRelativeConfigFileName(shortFileName).replace(File.separatorChar, '/');
+        String result = fingerprintedPaths.get(path);
+        return (result != null) ? result : path;
+    }
+
+    /**
+     * Returns the file with the fingerprinted path, or null if there is none.
+     *
+     * @methodtype get
+     */
+    public File getFile(String fingerprintedPath) {
+        return files.get(fingerprintedPath);
+    }
+
+    /**
+     * Replaces all plain paths of static files in source by their fingerprinted ones.
+     *
+     * @methodtype conversion
+     */
+    public String rewritePaths(String source) {
+        if (staticDir == null) {
+            return source;
+        }
+
+        String prefix = staticDir.getRelativeDir().replace(File.separatorChar, '/') + "/";
+        if (!source.contains(prefix)) {
+            return source;
+        }
+
+        String result = source;
+        for (Map.Entry<String, String> entry : fingerprintedPaths.entrySet()) {
+            result = result.replace(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected String asPath(File file) {
+        String dir = new File(staticDir.asString()).getAbsolutePath();
+        String path = staticDir.getRelativeDir() + file.getAbsolutePath().substring(dir.length());
+        return path.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static String asFingerprintedPath(String path, String hash) {
+        int dot = path.lastIndexOf('.');
+        if (dot <= path.lastIndexOf('/')) {
+            return path + "." + hash;
+        }
+        return path.substring(0, dot) + "." + hash + path.substring(dot);
+    }
+
+    /**
+     * Returns the path without its fingerprint, if it has one; for requests by pages from before a file changed.
+     *
+     * @methodtype conversion
+     */
+    public static String asPlainPath(String path) {
+        return path.replaceFirst("\\.[0-9a-f]{" + HASH_LENGTH + "}(?=(\\.[^./]*)?$)", "");
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static String getHash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(data);
+            StringBuilder result = new StringBuilder(HASH_LENGTH);
+            for (int i = 0; result.length() < HASH_LENGTH; i++) {
+                result.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                result.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("no " + HASH_ALGORITHM, ex);
+        }
+    }
+
+}
@@ -21,10 +21,13 @@
 package org.wahlzeit.services;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * A simple abstract implementation of Persistent with write count and dirty bit.
  * Also defines (but does not use) the field "ID" for subclass use.
+ * Every change also gives the object a new version, unique across all objects, that caches can key on.
  *
  * @author dirkriehle
  */
@@ -40,6 +43,22 @@ public abstract class DataObject implements Persistent, Serializable {
      */
     protected transient int writeCount = 0;
 
+    /**
+     * The last version handed out to any object
+     */
+    protected static final AtomicLong lastVersion = new AtomicLong(0);
+
+    /**
+     * 0 until first asked for or changed
+     */
+    protected transient volatile long version = 0;
+
+    /**
+     *
+     */
+    private static final AtomicLongFieldUpdater<DataObject> versionUpdater =
+            AtomicLongFieldUpdater.newUpdater(DataObject.class, "version");
+
     /**
      *
      */
@@ -59,6 +78,50 @@ public abstract class DataObject implements Persistent, Serializable {
      */
     public final void incWriteCount() {
         writeCount++;
+        incVersion(this, versionUpdater);
+    }
+
+    /**
+     * Returns a version that changes with every change of the object, and that no other object ever has.
+     *
+     * @methodtype get
+     */
+    public final long getVersion() {
+        return getVersion(this, versionUpdater);
+    }
+
+    /**
+     * Hands out versions for all Persistent objects.
+     *
+     * @methodtype factory
+     */
+    public static long getNextVersion() {
+        return lastVersion.incrementAndGet();
+    }
+
+    /**
+     * Gives the object a new version after a change, right away, so that no version handed out before the change
+     * can be handed out after it.
+     *
+     * @methodtype command
+     */
+    public static <T> void incVersion(T object, AtomicLongFieldUpdater<T> version) {
+        version.set(object, getNextVersion());
+    }
+
+    /**
+     * Returns the version of the object; one unchanged since it was loaded gets its first version here. Only sets it
+     * if still 0, so that a version set by a concurrent change is kept.
+     *
+     * @methodtype get
+     */
+    public static <T> long getVersion(T object, AtomicLongFieldUpdater<T> version) {
+        long result = version.get(object);
+        if (result == 0) {
+            long next = getNextVersion();
+            result = version.compareAndSet(object, 0, next) ? next : version.get(object);
+        }
+        return result;
     }
 
     /**
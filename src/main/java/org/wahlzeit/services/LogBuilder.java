@@ -6,6 +6,8 @@ import org.wahlzeit.model.UserSession;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Builder class for log messages, that ensures that log messages are all formatted equally.
@@ -15,6 +17,10 @@ import java.io.StringWriter;
  * <p/>
  * (see https://stackoverflow.com/questions/30345665/how-to-customize-logging-for-google-app-engine-java).
  * <p/>
+ * On hot paths, create the message for a logger and level and finish it with {@link #log()}. If the level is off, the
+ * shared DISABLED builder is returned and ignores everything added to it, so nothing is allocated or formatted. The
+ * session and client of a message are only looked up when the message is put together.
+ * <p/>
  * Created by Lukas Hahmann on 26.05.15.
  */
 public class LogBuilder {
@@ -31,7 +37,16 @@ public class LogBuilder {
     protected static final String EXCEPTION_REASON = "exception reason";
     protected static final String STACKTRACE = "stacktrace";
 
+    /**
+     * Builder for messages whose level is off; ignores everything added to it
+     */
+    protected static final LogBuilder DISABLED = new DisabledLogBuilder();
+
     protected StringBuilder logMessage;
+    protected String level;
+    protected Session session;
+    protected Logger logger;
+    protected Level logLevel;
 
 
     protected LogBuilder() {
@@ -51,6 +66,16 @@ public class LogBuilder {
         return doCreateMessage(USER_LEVEL);
     }
 
+    /**
+     * @methodtype factory
+     * <p/>
+     * Like {@link #createUserMessage()}, for a message to be logged by {@link #log()}; returns the DISABLED builder
+     * if the logger does not log the level.
+     */
+    public static LogBuilder createUserMessage(Logger logger, Level logLevel) {
+        return doCreateMessage(USER_LEVEL, logger, logLevel);
+    }
+
     /**
      * @methodtype factory
      * <p/>
@@ -59,12 +84,37 @@ public class LogBuilder {
      */
     protected static LogBuilder doCreateMessage(String level) {
         LogBuilder result = new LogBuilder();
-        Session session = SessionManager.getThreadLocalSession();
+        result.level = level;
+        result.session = SessionManager.getThreadLocalSession();
+        return result;
+    }
+
+    /**
+     * @methodtype factory
+     */
+    protected static LogBuilder doCreateMessage(String level, Logger logger, Level logLevel) {
+        if (!logger.isLoggable(logLevel)) {
+            return DISABLED;
+        }
+
+        LogBuilder result = doCreateMessage(level);
+        result.logger = logger;
+        result.logLevel = logLevel;
+        return result;
+    }
+
+    /**
+     * @methodtype conversion
+     * <p/>
+     * Appends the Level, the session's name, and the clients name.
+     */
+    protected void appendHeader(StringBuilder result) {
         String sessionName;
         String clientName;
         if (session != null) {
             sessionName = session.getName();
-            Client client = UserManager.getInstance().getClientById(session.getClientId());
+            String clientId = session.getClientId();
+            Client client = (clientId != null) ? UserManager.getInstance().getClientById(clientId) : null;
             if (client != null) {
                 clientName = client.getNickName();
             } else {
@@ -75,11 +125,9 @@ public class LogBuilder {
             clientName = UserSession.ANONYMOUS_CLIENT;
         }
 
-        result.add(LEVEL + NAME_VALUE_SEPARATOR + level);
-        result.add(SESSION + NAME_VALUE_SEPARATOR + sessionName);
-        result.add(CLIENT + NAME_VALUE_SEPARATOR + clientName);
-
-        return result;
+        result.append(LEVEL).append(NAME_VALUE_SEPARATOR).append(level);
+        result.append(INFO_SEPARATOR).append(SESSION).append(NAME_VALUE_SEPARATOR).append(sessionName);
+        result.append(INFO_SEPARATOR).append(CLIENT).append(NAME_VALUE_SEPARATOR).append(clientName);
     }
 
     /**
@@ -89,12 +137,17 @@ public class LogBuilder {
 
         assert logMessage != null;
 
-        if (logMessage.length() == 0) {
-            logMessage.append(logMessagePart);
-        } else {
-            logMessage.append(INFO_SEPARATOR);
-            logMessage.append(logMessagePart);
-        }
+        logMessage.append(INFO_SEPARATOR);
+        logMessage.append(logMessagePart);
+    }
+
+    /**
+     * @methodtype set
+     * <p/>
+     * Starts a part of the form "<name>=", to which the value is appended.
+     */
+    protected StringBuilder addName(String name) {
+        return logMessage.append(INFO_SEPARATOR).append(name).append(NAME_VALUE_SEPARATOR);
     }
 
 
@@ -110,13 +163,23 @@ public class LogBuilder {
         return doCreateMessage(SYSTEM_LEVEL);
     }
 
+    /**
+     * @methodtype factory
+     * <p/>
+     * Like {@link #createSystemMessage()}, for a message to be logged by {@link #log()}; returns the DISABLED builder
+     * if the logger does not log the level.
+     */
+    public static LogBuilder createSystemMessage(Logger logger, Level logLevel) {
+        return doCreateMessage(SYSTEM_LEVEL, logger, logLevel);
+    }
+
     /**
      * @methodtype mutate
      * <p/>
      * Adds the following to the LogMessage: ", <name>=<value>".
      */
     public LogBuilder addParameter(String name, int value) {
-        add(name + NAME_VALUE_SEPARATOR + String.valueOf(value));
+        addName(name).append(value);
         return this;
     }
 
@@ -126,7 +189,17 @@ public class LogBuilder {
      * Adds the following to the LogMessage: ", <name>=<value>".
      */
     public LogBuilder addParameter(String name, boolean value) {
-        add(name + NAME_VALUE_SEPARATOR + String.valueOf(value));
+        addName(name).append(value);
+        return this;
+    }
+
+    /**
+     * @methodtype mutate
+     * <p/>
+     * Adds the following to the LogMessage: ", <name>=<value>".
+     */
+    public LogBuilder addParameter(String name, long value) {
+        addName(name).append(value);
         return this;
     }
 
@@ -136,7 +209,7 @@ public class LogBuilder {
      * Adds the following to the LogMessage: ", <name>=<value>".
      */
     public LogBuilder addParameter(String name, String value) {
-        add(name + NAME_VALUE_SEPARATOR + value);
+        addName(name).append(value);
         return this;
     }
 
@@ -146,7 +219,7 @@ public class LogBuilder {
      * Adds the following to the LogMessage: ", <name>=<value>.toString()".
      */
     public LogBuilder addParameter(String name, Object value) {
-        add(name + NAME_VALUE_SEPARATOR + value.toString());
+        addName(name).append(value);
         return this;
     }
 
@@ -166,10 +239,10 @@ public class LogBuilder {
      * Adds the stacktrace and the <code>exceptionMessage</code> to the log message.
      */
     public LogBuilder addException(String exceptionMessage, Throwable throwable) {
-        add(EXCEPTION_REASON + NAME_VALUE_SEPARATOR + exceptionMessage);
+        addName(EXCEPTION_REASON).append(exceptionMessage);
         StringWriter sw = new StringWriter();
         throwable.printStackTrace(new PrintWriter(sw));
-        add(STACKTRACE + NAME_VALUE_SEPARATOR + sw.toString());
+        addName(STACKTRACE).append(sw.toString());
         return this;
     }
 
@@ -182,7 +255,7 @@ public class LogBuilder {
      * Adds the info that the action is performed the log message: "action=<action>".
      */
     public LogBuilder addAction(String action) {
-        add(ACTION + NAME_VALUE_SEPARATOR + action);
+        addName(ACTION).append(action);
         return this;
     }
 
@@ -198,8 +271,84 @@ public class LogBuilder {
     public String toString() {
 
         assert logMessage != null;
-        assert logMessage.length() > 0;
 
-        return logMessage.toString();
+        StringBuilder result = new StringBuilder(96 + logMessage.length());
+        appendHeader(result);
+        result.append(logMessage);
+        return result.toString();
+    }
+
+    /**
+     * @methodtype command
+     * <p/>
+     * Logs the message with the logger and level it was created for. The source class is the logger's name, as
+     * loggers are named after their class.
+     */
+    public void log() {
+
+        assert logger != null;
+
+        logger.logp(logLevel, logger.getName(), null, toString());
+    }
+
+    /**
+     * LogBuilder returned for messages whose level is off.
+     */
+    protected static class DisabledLogBuilder extends LogBuilder {
+
+        @Override
+        protected void add(String logMessagePart) {
+            // do nothing
+        }
+
+        @Override
+        public LogBuilder addParameter(String name, int value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addParameter(String name, boolean value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addParameter(String name, long value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addParameter(String name, String value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addParameter(String name, Object value) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addMessage(String message) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addException(String exceptionMessage, Throwable throwable) {
+            return this;
+        }
+
+        @Override
+        public LogBuilder addAction(String action) {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "";
+        }
+
+        @Override
+        public void log() {
+            // do nothing
+        }
     }
 }
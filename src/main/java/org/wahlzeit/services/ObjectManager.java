@@ -25,6 +25,7 @@ import com.google.appengine.api.datastore.KeyFactory;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -50,8 +51,9 @@ public abstract class ObjectManager {
         assertIsNonNullArgument(type, "type");
         assertIsNonNullArgument(id, "id");
 
-        log.config(LogBuilder.createSystemMessage().
-                addMessage("Load Type " + type.toString() + " with ID " + id + " from datastore.").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: load entity of type", type.getName()).
+                addParameter("id", id).log();
         return OfyService.ofy().load().type(type).id(id).now();
     }
 
@@ -71,8 +73,9 @@ public abstract class ObjectManager {
         assertIsNonNullArgument(type, "type");
         assertIsNonNullArgument(id, "id");
 
-        log.config(LogBuilder.createSystemMessage().
-                addMessage("Load Type " + type.toString() + " with ID " + id + " from datastore.").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: load entity of type", type.getName()).
+                addParameter("id", id).log();
         return OfyService.ofy().load().type(type).id(id).now();
     }
 
@@ -85,9 +88,9 @@ public abstract class ObjectManager {
         assertIsNonNullArgument(parameterName, "parameterName");
         assertIsNonNullArgument(value, "value");
 
-        log.config(LogBuilder.createSystemMessage().
-                addMessage("Load Type " + type.toString() + " with parameter " +
-                        parameterName + " == " + value + " from datastore.").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: load entity of type", type.getName()).
+                addParameter(parameterName, value).log();
 
         return OfyService.ofy().load().type(type).ancestor(applicationRootKey).filter(parameterName, value).first().now();
     }
@@ -99,11 +102,11 @@ public abstract class ObjectManager {
         assertIsNonNullArgument(result, "result");
         assertIsNonNullArgument(type, "type");
 
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("Datastore: load all entities of type", type.getName()).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: load all entities of type", type.getName()).log();
         List<E> objects = OfyService.ofy().load().type(type).ancestor(applicationRootKey).list();
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("Datastore: number of loaded objects", objects.size()).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: number of loaded objects", objects.size()).log();
         result.addAll(objects);
     }
 
@@ -122,8 +125,8 @@ public abstract class ObjectManager {
                         + propertyName + " = " + value.toString() + " from datastore.").toString());
         List<E> objects = OfyService.ofy().load().type(type).
                 ancestor(applicationRootKey).filter(propertyName, value).list();
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("Datastore: number of loaded objects", objects.size()).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: number of loaded objects", objects.size()).log();
         result.addAll(objects);
     }
 
@@ -174,10 +177,21 @@ public abstract class ObjectManager {
     protected <E> void deleteObject(E object) {
         assertIsNonNullArgument(object, "object");
 
-        log.config(LogBuilder.createSystemMessage().addParameter("Datastore: delete entity", object).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Datastore: delete entity", object).log();
         OfyService.ofy().delete().entity(object).now();
     }
 
+    /**
+     * Deletes all given entities from the datastore in one batch.
+     */
+    protected <E> void deleteObjects(Collection<E> objects) {
+        assertIsNonNullArgument(objects, "objects");
+
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("Datastore: delete number of entities", objects.size()).log();
+        OfyService.ofy().delete().entities(objects).now();
+    }
+
     /**
      * Deletes all entities of the type that have a property with the specified value, e.g.
      * deleteObjects(PhotoCase.class, "wasDecided", true) to delete all cases that have been decided.
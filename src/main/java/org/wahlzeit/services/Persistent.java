@@ -22,7 +22,7 @@ package org.wahlzeit.services;
 
 /**
  * A Persistent object is one that can be read from and written to a RDMBS.
- * Also, it has a write count, which serves as a dirty flag.
+ * Also, it has a write count, which serves as a dirty flag, and a version that changes with every write.
  *
  * @author dirkriehle
  */
@@ -43,4 +43,9 @@ public interface Persistent {
      */
     public void resetWriteCount();
 
+    /**
+     *
+     */
+    public long getVersion();
+
 }
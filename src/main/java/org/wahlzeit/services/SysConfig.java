@@ -21,6 +21,7 @@
 package org.wahlzeit.services;
 
 import java.io.File;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -81,7 +82,7 @@ public class SysConfig extends AbstractConfig {
      * Drop singleton instance to cope with repeated startup/shutdown scenarios
      */
     public static synchronized void dropInstance() {
-        log.config(LogBuilder.createSystemMessage().addAction("drop SysConfig instance").toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("drop SysConfig instance").log();
         instance = null;
     }
 
@@ -97,7 +98,7 @@ public class SysConfig extends AbstractConfig {
      */
     public static SysConfig getInstance() {
         if (instance == null) {
-            log.config(LogBuilder.createSystemMessage().addAction("create generic SysConfig").toString());
+            LogBuilder.createSystemMessage(log, Level.CONFIG).addAction("create generic SysConfig").log();
             setInstance(new SysConfig(""));
         }
         return instance;
@@ -23,6 +23,7 @@ package org.wahlzeit.services.mailing;
 import org.wahlzeit.services.EmailAddress;
 import org.wahlzeit.services.LogBuilder;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -53,10 +54,10 @@ public class LoggingEmailService implements EmailService {
         String toString = (to == null) ? "null" : to.asString();
         String subjectString = (subject == null) ? "null" : subject;
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("Send E-Mail").
                 addParameter("to", toString).
-                addParameter("subject", subjectString).toString());
+                addParameter("subject", subjectString).log();
 
         decorated.sendEmail(to, subject, body);
     }
@@ -84,11 +85,11 @@ public class LoggingEmailService implements EmailService {
         String bccString = (bcc == null) ? "null" : bcc.asString();
         String subjectString = (subject == null) ? "null" : subject;
 
-        log.config(LogBuilder.createSystemMessage().
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
                 addAction("Send E-Mail").
                 addParameter("to", toString).
                 addParameter("bcc", bccString).
-                addParameter("subject", subjectString).toString());
+                addParameter("subject", subjectString).log();
 
         decorated.sendEmail(to, bcc, subject, body);
     }
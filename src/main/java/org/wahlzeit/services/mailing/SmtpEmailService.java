@@ -37,6 +37,7 @@ import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.io.UnsupportedEncodingException;
 import java.util.Properties;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -126,9 +127,9 @@ public class SmtpEmailService extends AbstractEmailService {
     protected void doSendEmail(Message msg) throws MailingException {
         try {
             Transport.send(msg);
-            log.config(LogBuilder.createSystemMessage().
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
                     addMessage("email send").
-                    addParameter("subject", msg.getSubject()).toString());
+                    addParameter("subject", msg.getSubject()).log();
         } catch (MessagingException ex) {
             throw new MailingException("Sending email failed", ex);
         }
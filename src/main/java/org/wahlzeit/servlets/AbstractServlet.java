@@ -22,11 +22,14 @@ package org.wahlzeit.servlets;
 
 import org.wahlzeit.main.ServiceMain;
 import org.wahlzeit.model.UserSession;
+import org.wahlzeit.model.UserSessionState;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.Session;
 import org.wahlzeit.services.SessionManager;
 import org.wahlzeit.utils.StringUtil;
+import org.wahlzeit.webparts.Utf8Writer;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -38,6 +41,7 @@ import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -47,6 +51,12 @@ public abstract class AbstractServlet extends HttpServlet {
 
     private static final Logger log = Logger.getLogger(AbstractServlet.class.getName());
     private static final long serialVersionUID = 42L; // any does; class never serialized
+
+    /**
+     *
+     */
+    protected static final WebPartKey PROCESSING_TIME = WebPartKey.get("processingTime");
+
     /**
      *
      */
@@ -86,7 +96,12 @@ public abstract class AbstractServlet extends HttpServlet {
         if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
             displayNullPage(request, response);
         } else {
-            myGet(request, response);
+            GzipResponse gzipResponse = new GzipResponse(request, response);
+            GuestCookieResponse guestCookieResponse = new GuestCookieResponse(request, gzipResponse, us);
+            myGet(request, guestCookieResponse);
+            guestCookieResponse.writeCookie();
+            gzipResponse.finish();
+            us.saveState();
         }
 
         SessionManager.dropThreadLocalSession();
@@ -105,7 +120,12 @@ public abstract class AbstractServlet extends HttpServlet {
         if (ServiceMain.getInstance().isShuttingDown() || (us == null)) {
             displayNullPage(request, response);
         } else {
-            myPost(request, response);
+            GzipResponse gzipResponse = new GzipResponse(request, response);
+            GuestCookieResponse guestCookieResponse = new GuestCookieResponse(request, gzipResponse, us);
+            myPost(request, guestCookieResponse);
+            guestCookieResponse.writeCookie();
+            gzipResponse.finish();
+            us.saveState();
         }
 
         SessionManager.dropThreadLocalSession();
@@ -122,14 +142,17 @@ public abstract class AbstractServlet extends HttpServlet {
      *
      */
     protected UserSession ensureUserSession(HttpServletRequest request) {
-        HttpSession httpSession = request.getSession();
-
-        String sessionName = httpSession.getId();
         String siteUrl = getSiteUrl(request); // @TODO Application
+        String language = request.getLocale().getLanguage();
 
-        UserSession result = new UserSession(sessionName, siteUrl, httpSession, request.getLocale().getLanguage());
+        HttpSession httpSession = request.getSession(false);
+        if (httpSession != null) {
+            return new UserSession(httpSession.getId(), siteUrl, httpSession, language);
+        }
 
-        return result;
+        // anonymous guests get a server-side session only once they need one
+        UserSessionState state = GuestCookie.readState(request);
+        return new UserSession(UserSession.ANONYMOUS_CLIENT, siteUrl, state, request, language);
     }
 
     /**
@@ -167,7 +190,7 @@ public abstract class AbstractServlet extends HttpServlet {
     protected void redirectRequest(HttpServletResponse response, String link) throws IOException {
         response.setContentType("text/html");
         String newTarget = new String("/" + link + ".html");
-        log.config(LogBuilder.createSystemMessage().addParameter("Redirect to", newTarget).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Redirect to", newTarget).log();
         response.sendRedirect(newTarget);
     }
 
@@ -176,19 +199,33 @@ public abstract class AbstractServlet extends HttpServlet {
      */
     protected void configureResponse(Session ctx, HttpServletResponse response, WebPart result) throws IOException {
         long processingTime = ctx.getProcessingTime();
-        result.addString("processingTime", StringUtil.asStringInSeconds((processingTime == 0) ? 1 : processingTime));
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("proctime", String.valueOf(processingTime)).toString());
+        result.addString(PROCESSING_TIME, StringUtil.asStringInSeconds((processingTime == 0) ? 1 : processingTime));
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("proctime", processingTime).log();
 
-        response.setContentType("text/html");
+        response.setContentType("text/html; charset=UTF-8");
 
-        PrintWriter out = response.getWriter();
+        Utf8Writer out = new Utf8Writer(response.getOutputStream());
         result.writeOn(out);
         out.close();
 
         response.setStatus(HttpServletResponse.SC_OK);
     }
 
+    /**
+     * Sends the page up to boundary right away; configureResponse sends the rest.
+     */
+    protected void writeHead(HttpServletResponse response, WebPart result, WebPartKey boundary, long startTime)
+            throws IOException {
+        response.setContentType("text/html; charset=UTF-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+
+        Utf8Writer out = new Utf8Writer(response.getOutputStream());
+        result.writeHeadOn(out, boundary);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addParameter("time to first byte (ms)", System.currentTimeMillis() - startTime).log();
+    }
+
     /**
      *
      */
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.model.UserSessionState;
+import org.wahlzeit.services.LogBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.bind.DatatypeConverter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.logging.Logger;
+
+/**
+ * The GuestCookie keeps the UserSessionState of an anonymous guest on the client, so that guests need neither an
+ * HttpSession nor a Guest record on the server. The cookie value is the url-safe Base64 encoding of an expiry time,
+ * the binary state, and an HMAC over both; a cookie with a wrong HMAC or past its expiry is ignored.
+ *
+ * @author dirkriehle
+ */
+public class GuestCookie {
+
+    private static final Logger log = Logger.getLogger(GuestCookie.class.getName());
+
+    /**
+     *
+     */
+    public static final String NAME = "guest";
+
+    /**
+     *
+     */
+    protected static final int MAX_AGE = 30 * 24 * 60 * 60; // seconds
+    protected static final int MAX_LENGTH = 3072; // browsers accept about 4K per cookie
+
+    /**
+     *
+     */
+    protected static final String MAC_ALGORITHM = "HmacSHA256";
+    protected static final int MAC_LENGTH = 16;
+    protected static final int SECRET_LENGTH = 32;
+
+    /**
+     * Shared by all servers; loaded with the globals, see {@link #setSecret(byte[])}
+     */
+    protected static byte[] secret = null;
+
+    /**
+     * @methodtype get
+     */
+    public static synchronized byte[] getSecret() {
+        if (secret == null) {
+            secret = createSecret();
+        }
+        return secret;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public static synchronized void setSecret(byte[] newSecret) {
+        secret = newSecret;
+    }
+
+    /**
+     * @methodtype factory
+     */
+    public static byte[] createSecret() {
+        byte[] result = new byte[SECRET_LENGTH];
+        new SecureRandom().nextBytes(result);
+        return result;
+    }
+
+    /**
+     * Returns the state carried by the request's guest cookie, or null if there is no valid one.
+     */
+    public static UserSessionState readState(HttpServletRequest request) {
+        String value = getValue(request);
+        if (value == null) {
+            return null;
+        }
+
+        byte[] payload = decode(value, System.currentTimeMillis());
+        if (payload == null) {
+            return null;
+        }
+
+        try {
+            UserSessionState result = new UserSessionState();
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(payload));
+            result.readExternal(in);
+            return result;
+        } catch (IOException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not read guest cookie", ex).toString());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the state of a stateless session into the guest cookie, if it changed. A state that has outgrown the
+     * cookie is moved to an HttpSession instead. Needs to be called before the response is committed.
+     */
+    public static void writeState(UserSession us, HttpServletRequest request, HttpServletResponse response) {
+        if (!us.isStateless()) {
+            if (getValue(request) != null) {
+                addCookie(response, "", 0);
+            }
+            return;
+        }
+
+        UserSessionState state = us.getState();
+        if (!state.isDirty()) {
+            return;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            state.writeExternal(out);
+            out.close();
+
+            String value = encode(bytes.toByteArray(), System.currentTimeMillis() + MAX_AGE * 1000L);
+            if (value.length() <= MAX_LENGTH) {
+                state.resetDirty();
+                addCookie(response, value, MAX_AGE);
+            } else {
+                us.ensureHttpSession();
+                addCookie(response, "", 0);
+            }
+        } catch (IOException ex) {
+            log.warning(LogBuilder.createSystemMessage().addException("could not write guest cookie", ex).toString());
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    protected static String getValue(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (NAME.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Servlet API 2.5 cookies cannot be marked HttpOnly, hence the hand-made header.
+     */
+    protected static void addCookie(HttpServletResponse response, String value, int maxAge) {
+        response.addHeader("Set-Cookie", NAME + "=" + value + "; Max-Age=" + maxAge + "; Path=/; HttpOnly");
+    }
+
+    /**
+     * @methodtype conversion
+     */
+    protected static String encode(byte[] payload, long expiresAt) {
+        byte[] data = new byte[8 + payload.length + MAC_LENGTH];
+        for (int i = 0; i < 8; i++) {
+            data[i] = (byte) (expiresAt >>> (56 - 8 * i));
+        }
+        System.arraycopy(payload, 0, data, 8, payload.length);
+        System.arraycopy(getMac(data, 8 + payload.length), 0, data, 8 + payload.length, MAC_LENGTH);
+
+        String result = DatatypeConverter.printBase64Binary(data);
+        return result.replace('+', '-').replace('/', '_').replace("=", "");
+    }
+
+    /**
+     * Returns the payload of an encoded value, or null if the value is malformed, forged, or expired.
+     *
+     * @methodtype conversion
+     */
+    protected static byte[] decode(String value, long now) {
+        byte[] data;
+        try {
+            String base64 = value.replace('-', '+').replace('_', '/');
+            while ((base64.length() % 4) != 0) {
+                base64 += "=";
+            }
+            data = DatatypeConverter.parseBase64Binary(base64);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        int length = data.length - MAC_LENGTH;
+        if (length < 8) {
+            return null;
+        }
+
+        byte[] mac = new byte[MAC_LENGTH];
+        System.arraycopy(data, length, mac, 0, MAC_LENGTH);
+        if (!MessageDigest.isEqual(mac, getMac(data, length))) {
+            return null;
+        }
+
+        long expiresAt = 0;
+        for (int i = 0; i < 8; i++) {
+            expiresAt = (expiresAt << 8) | (data[i] & 0xFF);
+        }
+        if (expiresAt < now) {
+            return null;
+        }
+
+        byte[] result = new byte[length - 8];
+        System.arraycopy(data, 8, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Returns the first MAC_LENGTH bytes of the HMAC over the first length bytes of data.
+     */
+    protected static byte[] getMac(byte[] data, int length) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(getSecret(), MAC_ALGORITHM));
+            mac.update(data, 0, length);
+            byte[] result = new byte[MAC_LENGTH];
+            System.arraycopy(mac.doFinal(), 0, result, 0, MAC_LENGTH);
+            return result;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("no " + MAC_ALGORITHM, ex);
+        }
+    }
+
+}
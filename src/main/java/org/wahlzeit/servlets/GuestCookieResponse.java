@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import org.wahlzeit.model.UserSession;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * A response that writes the guest cookie just before anything is sent, since headers cannot be set afterwards.
+ *
+ * @author dirkriehle
+ */
+public class GuestCookieResponse extends HttpServletResponseWrapper {
+
+    /**
+     *
+     */
+    protected HttpServletRequest request;
+    protected UserSession userSession;
+    protected boolean isCookieWritten = false;
+
+    /**
+     *
+     */
+    public GuestCookieResponse(HttpServletRequest myRequest, HttpServletResponse myResponse, UserSession myUserSession) {
+        super(myResponse);
+        request = myRequest;
+        userSession = myUserSession;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void writeCookie() {
+        if (!isCookieWritten) {
+            isCookieWritten = true;
+            GuestCookie.writeState(userSession, request, (HttpServletResponse) getResponse());
+        }
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        writeCookie();
+        return super.getWriter();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        writeCookie();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        writeCookie();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        writeCookie();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        writeCookie();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        writeCookie();
+        super.flushBuffer();
+    }
+
+}
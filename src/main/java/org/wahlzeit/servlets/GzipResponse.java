@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A response that gzips text written to its output stream if the client accepts it. Output is held back until it
+ * reaches MIN_SIZE bytes, as smaller responses are not worth the gzip overhead; if the stream is closed before,
+ * it is sent as is.
+ *
+ * Each thread keeps one Deflater and its buffers for all of its responses, so that compressing a page allocates
+ * neither native zlib memory nor any buffer.
+ *
+ * @author dirkriehle
+ */
+public class GzipResponse extends HttpServletResponseWrapper {
+
+    /**
+     *
+     */
+    public static final int MIN_SIZE = 1024; // bytes
+    public static final int LEVEL = Deflater.BEST_SPEED; // half the time of the default level for 8% more bytes
+
+    /**
+     *
+     */
+    protected static final String GZIP = "gzip";
+    protected static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     *
+     */
+    protected static final ThreadLocal<Compressor> compressors = new ThreadLocal<Compressor>() {
+        @Override
+        protected Compressor initialValue() {
+            return new Compressor(LEVEL);
+        }
+    };
+
+    /**
+     *
+     */
+    protected boolean isGzipAccepted;
+    protected GzipOutputStream gzipStream = null;
+
+    /**
+     * The length set by the servlet, held back with the output until it is known whether it gets compressed
+     */
+    protected int contentLength = -1;
+
+    /**
+     *
+     */
+    public GzipResponse(HttpServletRequest request, HttpServletResponse response) {
+        super(response);
+        isGzipAccepted = isGzipAccepted(request);
+    }
+
+    /**
+     * Returns whether the request's Accept-Encoding lists gzip without a q of 0.
+     *
+     * @methodtype boolean-query
+     */
+    public static boolean isGzipAccepted(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim();
+            if (name.equalsIgnoreCase(GZIP) || name.equals("*")) {
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].replace(" ", "");
+                    if (param.startsWith("q=") && param.matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns whether content of the given type shrinks when compressed; images and the like do not.
+     *
+     * @methodtype boolean-query
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.startsWith("application/javascript")
+                || type.startsWith("application/json") || type.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Returns data gzipped as a whole, as tightly as possible; for data that is compressed once and sent often.
+     *
+     * @methodtype conversion
+     */
+    public static byte[] compress(byte[] data) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 3 + 64);
+        Compressor compressor = new Compressor(Deflater.BEST_COMPRESSION);
+        try {
+            compressor.start(result);
+            compressor.write(data, 0, data.length, result);
+            compressor.finish(result);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // a ByteArrayOutputStream does not throw
+        } finally {
+            compressor.end();
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Returns whether the response body is being gzipped.
+     *
+     * @methodtype boolean-query
+     */
+    public boolean isCompressing() {
+        return (gzipStream != null) && gzipStream.isStarted();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (gzipStream != null) {
+            return gzipStream;
+        }
+
+        if (!isCompressible(getContentType())) {
+            return super.getOutputStream();
+        }
+
+        addHeader("Vary", "Accept-Encoding");
+        if (!isGzipAccepted) {
+            return super.getOutputStream();
+        }
+
+        gzipStream = new GzipOutputStream(super.getOutputStream());
+        return gzipStream;
+    }
+
+    /**
+     * The length is unknown up front for compressed content; it is set once the output is sent as is.
+     */
+    @Override
+    public void setContentLength(int length) {
+        if (!isGzipAccepted || !isCompressible(getContentType())) {
+            super.setContentLength(length);
+        } else if (!isCompressing()) {
+            contentLength = length;
+        }
+    }
+
+    /**
+     * Ends the gzip stream, if the servlet did not close it.
+     *
+     * @methodtype command
+     */
+    public void finish() throws IOException {
+        if (gzipStream != null) {
+            gzipStream.close();
+        }
+    }
+
+    /**
+     * The output stream, holding back the first MIN_SIZE bytes to decide whether to compress.
+     */
+    protected class GzipOutputStream extends ServletOutputStream {
+
+        /**
+         *
+         */
+        protected OutputStream out;
+        protected byte[] pending = new byte[MIN_SIZE];
+        protected int noPending = 0;
+        protected Compressor compressor = null;
+        protected boolean isClosed = false;
+
+        /**
+         *
+         */
+        protected GzipOutputStream(OutputStream myOut) {
+            out = myOut;
+        }
+
+        /**
+         * @methodtype boolean-query
+         */
+        protected boolean isStarted() {
+            return compressor != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if ((compressor == null) && (noPending < MIN_SIZE)) {
+                pending[noPending++] = (byte) b;
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (compressor == null) {
+                if ((noPending + len) <= MIN_SIZE) {
+                    System.arraycopy(b, off, pending, noPending, len);
+                    noPending += len;
+                    return;
+                }
+                start();
+            }
+            compressor.write(b, off, len, out);
+        }
+
+        /**
+         * Flushing commits the response, so compression needs to start now, whatever the size.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (isClosed) {
+                return;
+            }
+            if (compressor == null) {
+                start();
+            }
+            compressor.flush(out);
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+
+            if (compressor != null) {
+                compressor.finish(out);
+            } else {
+                if (contentLength != -1) {
+                    GzipResponse.super.setContentLength(contentLength);
+                }
+                out.write(pending, 0, noPending);
+            }
+            out.close();
+        }
+
+        /**
+         *
+         */
+        protected void start() throws IOException {
+            setHeader("Content-Encoding", GZIP);
+            compressor = compressors.get();
+            compressor.start(out);
+            compressor.write(pending, 0, noPending, out);
+            noPending = 0;
+        }
+    }
+
+    /**
+     * The deflater and buffers of a thread; serves one stream at a time.
+     */
+    protected static class Compressor {
+
+        /**
+         *
+         */
+        protected Deflater deflater;
+        protected CRC32 crc = new CRC32();
+        protected byte[] buffer = new byte[8192];
+
+        /**
+         *
+         */
+        protected Compressor(int level) {
+            deflater = new Deflater(level, true);
+        }
+
+        /**
+         * Resets the deflater and writes the gzip header.
+         */
+        protected void start(OutputStream out) throws IOException {
+            deflater.reset();
+            crc.reset();
+            out.write(GZIP_HEADER);
+        }
+
+        /**
+         *
+         */
+        protected void write(byte[] b, int off, int len, OutputStream out) throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            crc.update(b, off, len);
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drain(out, Deflater.NO_FLUSH);
+            }
+        }
+
+        /**
+         * Writes out all input so far, so that the client can already decode it.
+         */
+        protected void flush(OutputStream out) throws IOException {
+            int length;
+            do {
+                length = drain(out, Deflater.SYNC_FLUSH);
+            } while (length == buffer.length);
+        }
+
+        /**
+         * Writes the rest of the data and the gzip trailer.
+         */
+        protected void finish(OutputStream out) throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(out, Deflater.NO_FLUSH);
+            }
+
+            int checksum = (int) crc.getValue();
+            int size = (int) deflater.getBytesRead();
+            byte[] trailer = {
+                    (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                    (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+            };
+            out.write(trailer);
+        }
+
+        /**
+         * Frees the native memory of the deflater; the compressor cannot be used after.
+         */
+        protected void end() {
+            deflater.end();
+        }
+
+        /**
+         *
+         */
+        protected int drain(OutputStream out, int flush) throws IOException {
+            int length = deflater.deflate(buffer, 0, buffer.length, flush);
+            if (length > 0) {
+                out.write(buffer, 0, length);
+            }
+            return length;
+        }
+    }
+
+}
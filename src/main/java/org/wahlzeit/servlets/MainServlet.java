@@ -29,22 +29,28 @@ import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.wahlzeit.handlers.PartUtil;
 import org.wahlzeit.handlers.WebFormHandler;
+import org.wahlzeit.handlers.WebJsonHandler;
 import org.wahlzeit.handlers.WebPageHandler;
 import org.wahlzeit.handlers.WebPartHandlerManager;
 import org.wahlzeit.model.UserSession;
 import org.wahlzeit.services.LogBuilder;
 import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.utils.JsonWriter;
 import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -59,6 +65,11 @@ public class MainServlet extends AbstractServlet {
      */
     private static final long serialVersionUID = 42L; // any one does; class never serialized
 
+    /**
+     *
+     */
+    protected static final String JSON_EXTENSION = ".json";
+
     /**
      *
      */
@@ -66,6 +77,13 @@ public class MainServlet extends AbstractServlet {
         long startTime = System.currentTimeMillis();
 
         UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+        if (request.getRequestURI().endsWith(JSON_EXTENSION)) {
+            handleJsonRequest(request, response, us, true);
+            us.addProcessingTime(System.currentTimeMillis() - startTime);
+            SessionManager.dropThreadLocalSession();
+            return;
+        }
+
         String link = request.getRequestURI();
         int linkStart = link.lastIndexOf("/") + 1;
         int linkEnd = link.indexOf(".form");
@@ -98,6 +116,13 @@ public class MainServlet extends AbstractServlet {
         long startTime = System.currentTimeMillis();
 
         UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+        if (request.getRequestURI().endsWith(JSON_EXTENSION)) {
+            handleJsonRequest(request, response, us, false);
+            us.addProcessingTime(System.currentTimeMillis() - startTime);
+            SessionManager.dropThreadLocalSession();
+            return;
+        }
+
         String link = request.getRequestURI();
         int linkStart = link.lastIndexOf("/") + 1;
         int linkEnd = link.indexOf(".html");
@@ -119,10 +144,27 @@ public class MainServlet extends AbstractServlet {
         }
 
         if (newLink.equals(link)) { // no redirect necessary
-            WebPart result = handler.makeWebPart(us);
+            WebPartKey boundary = isToFlushHead(request, us) ? handler.getFlushBoundary(us) : null;
+            WebPart result;
+            if (boundary != null) {
+                result = handler.makeWebPageHead(us);
+                writeHead(response, result, boundary, startTime);
+                handler.makeWebPageRest(us, result);
+            } else {
+                result = handler.makeWebPart(us);
+            }
+            us.clearSavedArgs(); // saved args go from post to next get; before the guest cookie is written
             us.addProcessingTime(System.currentTimeMillis() - startTime);
-            configureResponse(us, response, result);
-            us.clearSavedArgs(); // saved args go from post to next get
+            String etag = (boundary == null) ? handler.getETag(us, result) : null;
+            if (etag != null) {
+                response.setHeader("ETag", etag);
+                response.setHeader("Cache-Control", "private, no-cache");
+            }
+            if ((etag != null) && etag.equals(request.getHeader("If-None-Match"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            } else {
+                configureResponse(us, response, result);
+            }
             us.resetProcessingTime();
         } else {
             redirectRequest(response, newLink);
@@ -131,6 +173,58 @@ public class MainServlet extends AbstractServlet {
         SessionManager.dropThreadLocalSession();
     }
 
+    /**
+     * Sending the head first commits the response, so it must not be needed for revalidation, and the session state
+     * must not need to go into the guest cookie after it.
+     *
+     * @methodtype boolean-query
+     */
+    protected boolean isToFlushHead(HttpServletRequest request, UserSession us) {
+        return (request.getHeader("If-None-Match") == null) && !us.isStateless();
+    }
+
+    /**
+     * Answers requests like /suggestTags.json with the JSON written by the respective WebJsonHandler.
+     */
+    protected void handleJsonRequest(HttpServletRequest request, HttpServletResponse response, UserSession us, boolean isPost)
+            throws IOException, ServletException {
+        String link = request.getRequestURI();
+        int linkStart = link.lastIndexOf("/") + 1;
+        int linkEnd = link.length() - JSON_EXTENSION.length();
+        link = (linkStart <= linkEnd) ? link.substring(linkStart, linkEnd) : "";
+        log.info(LogBuilder.createUserMessage().addParameter("requested JSON", link).toString());
+
+        WebJsonHandler handler = WebPartHandlerManager.getWebJsonHandler(link);
+        if (handler == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Map args = getRequestArgs(request, us);
+        log.info(LogBuilder.createSystemMessage().
+                addParameter("JSON arguments", getRequestArgsAsString(us, args)).toString());
+
+        response.setContentType("application/json");
+        response.setHeader("Cache-Control", "no-cache");
+
+        if (us.isStateless()) {
+            // the guest cookie is written with the first output, so changes of the handler must come first
+            CharArrayWriter buffer = new CharArrayWriter(512);
+            JsonWriter jsonOut = new JsonWriter(buffer);
+            handler.handleJson(us, args, isPost, jsonOut);
+            jsonOut.flush();
+            PrintWriter out = response.getWriter();
+            buffer.writeTo(out);
+            out.close();
+        } else {
+            PrintWriter out = response.getWriter();
+            JsonWriter jsonOut = new JsonWriter(out);
+            handler.handleJson(us, args, isPost, jsonOut);
+            jsonOut.flush();
+            out.close();
+        }
+    }
+
     /**
      *
      */
@@ -163,15 +257,15 @@ public class MainServlet extends AbstractServlet {
                     Image image = getImage(inputStream);
                     us.setUploadedImage(image);
                     result.put("fileName", filename);
-                    log.config(LogBuilder.createSystemMessage().addParameter("Uploaded image", filename).toString());
+                    LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Uploaded image", filename).log();
                 } else {
                     String key = fileItemStream.getFieldName();
                     InputStream is = fileItemStream.openStream();
                     String value = CharStreams.toString(new InputStreamReader(is, Charsets.UTF_8));
                     result.put(key, value);
-                    log.config(LogBuilder.createSystemMessage().
+                    LogBuilder.createSystemMessage(log, Level.CONFIG).
                             addParameter("Key of uploaded parameter", key).
-                            addParameter("value", value).toString());
+                            addParameter("value", value).log();
                 }
             }
         } catch (Exception ex) {
@@ -9,6 +9,7 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -29,12 +30,12 @@ public class PersistPhotoAsynchronousServlet extends HttpServlet {
             throws ServletException, IOException {
 
         String id = request.getParameter(Photo.ID);
-        log.config(LogBuilder.createSystemMessage().addParameter("Try to persist PhotoId", id).toString());
+        LogBuilder.createSystemMessage(log, Level.CONFIG).addParameter("Try to persist PhotoId", id).log();
         if(id != null && !"".equals(id)) {
             Photo photo = PhotoManager.getPhoto(id);
             if(photo != null) {
                 PhotoManager.getInstance().savePhoto(photo);
-                log.config(LogBuilder.createSystemMessage().addMessage("Photo saved.").toString());
+                LogBuilder.createSystemMessage(log, Level.CONFIG).addMessage("Photo saved.").log();
             }
             else {
                 response.setStatus(299);
@@ -1,32 +1,66 @@
 package org.wahlzeit.servlets;
 
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
 import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Text;
 import org.wahlzeit.model.Client;
 import org.wahlzeit.model.Guest;
+import org.wahlzeit.model.LruSessionStore;
 import org.wahlzeit.model.UserManager;
 import org.wahlzeit.services.LogBuilder;
-import org.wahlzeit.services.OfyService;
 
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This servlet is run to cleanup expired sessions.
+ *
+ * It pages through the expired sessions with a keys-only query and deletes them (and their guests) in batches. If
+ * it runs out of time, it saves a checkpoint of where it stopped, and the next run continues from there with the
+ * same expiry cutoff, so that the query cursor stays valid. Once done, it also deletes the session data that the
+ * LruSessionStore of a standalone deployment has not written for too long.
  */
 public class SessionCleanupServlet extends HttpServlet {
 
-    private static final String SESSION_ENTITY_TYPE = "_ah_SESSION";
-    private static final String EXPIRES_PROP = "_expires";
+    protected static final String SESSION_ENTITY_TYPE = "_ah_SESSION";
+    protected static final String EXPIRES_PROP = "_expires";
+
+    /**
+     * The checkpoint is kept in a datastore entity of its own
+     */
+    protected static final String CHECKPOINT_ENTITY_TYPE = "SessionCleanupCheckpoint";
+    protected static final String CUTOFF_PROP = "cutoff";
+    protected static final String CURSOR_PROP = "cursor";
+    protected static final Key CHECKPOINT_KEY = KeyFactory.createKey(CHECKPOINT_ENTITY_TYPE, 1L);
+
+    /**
+     * A batch delete takes at most 500 keys; cron requests may run for ten minutes
+     */
+    protected static final int BATCH_SIZE = 500;
+    protected static final long MAX_DURATION = 5 * 60 * 1000;
 
     private static final Logger log = Logger.getLogger(SessionCleanupServlet.class.getName());
 
     @Override
-    public void service(HttpServletRequest request, HttpServletResponse response) {
+    public void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
         if ("clear".equals(request.getQueryString())) {
             clearAll(response);
         }
@@ -36,35 +70,170 @@ public class SessionCleanupServlet extends HttpServlet {
      * Clears all {@link HttpSession}s in the datastore that are expired and if they are guest sessions, deletes the
      * corresponding {@link Guest} object, too.
      */
-    private void clearAll(HttpServletResponse response) {
+    private void clearAll(HttpServletResponse response) throws IOException {
+        long startTime = System.currentTimeMillis();
+        DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+        AsyncDatastoreService asyncDatastore = DatastoreServiceFactory.getAsyncDatastoreService();
 
-        List<Object> killList = OfyService.ofy().load().
-                kind(SESSION_ENTITY_TYPE).
-                filter(EXPIRES_PROP + " <", System.currentTimeMillis()).list();
+        long cutoff = startTime;
+        Cursor cursor = null;
+        Entity checkpoint = getCheckpoint(datastore);
+        if (checkpoint != null) {
+            cutoff = (Long) checkpoint.getProperty(CUTOFF_PROP);
+            cursor = Cursor.fromWebSafeString(((Text) checkpoint.getProperty(CURSOR_PROP)).getValue());
+        }
 
-        log.config(LogBuilder.createSystemMessage().
-                addParameter("number of old sessions to delete from datastore", killList.size()).toString());
+        Query query = new Query(SESSION_ENTITY_TYPE).setKeysOnly().
+                setFilter(new Query.FilterPredicate(EXPIRES_PROP, Query.FilterOperator.LESS_THAN, cutoff));
 
+        int noSessions = 0;
+        int noGuests = 0;
+        int noSessionData = 0;
+        boolean isDone = false;
+        Future<Void> pendingDelete = null;
         try {
-            for (Object o : killList) {
-                Entity httpSessionEntity = (Entity) o;
-                Key key = httpSessionEntity.getKey();
-                // GAE does not use session id as key name, instead "_ahs<sessionId>"
-                String sessionId = key.getName().substring(4);
-                log.config(LogBuilder.createSystemMessage().
-                        addAction("delete session").
-                        addParameter("session id", sessionId).toString());
-                Client client = UserManager.getInstance().getClientByHttpSessionId(sessionId);
-                if (client != null && client instanceof Guest) {
-                    UserManager.getInstance().deleteClient(client);
+            while (!isDone) {
+                FetchOptions options = FetchOptions.Builder.withLimit(BATCH_SIZE);
+                if (cursor != null) {
+                    options.startCursor(cursor);
+                }
+                QueryResultList<Entity> page = datastore.prepare(query).asQueryResultList(options);
+
+                List<Key> sessionKeys = new ArrayList<Key>(page.size());
+                List<Client> guests = new ArrayList<Client>();
+                for (Entity httpSessionEntity : page) {
+                    Key key = httpSessionEntity.getKey();
+                    sessionKeys.add(key);
+                    // GAE does not use session id as key name, instead "_ahs<sessionId>"
+                    String sessionId = key.getName().substring(4);
+                    Client client = UserManager.getInstance().getClientByHttpSessionId(sessionId);
+                    if (client instanceof Guest) {
+                        guests.add(client);
+                    }
+                }
+
+                if (pendingDelete != null) {
+                    pendingDelete.get();
+                }
+                pendingDelete = asyncDatastore.delete(sessionKeys); // overlaps with fetching the next page
+                deleteGuests(guests);
+                noSessions += sessionKeys.size();
+                noGuests += guests.size();
+
+                cursor = page.getCursor();
+                isDone = page.size() < BATCH_SIZE;
+                if (!isDone && (System.currentTimeMillis() - startTime > getMaxDuration())) {
+                    break;
                 }
-                OfyService.ofy().delete().entity(httpSessionEntity).now();
             }
-            response.setStatus(HttpServletResponse.SC_OK);
+
+            if (pendingDelete != null) {
+                pendingDelete.get();
+            }
+
+            if (isDone) {
+                datastore.delete(CHECKPOINT_KEY);
+                noSessionData = clearStaleSessionData(datastore, startTime);
+            } else {
+                putCheckpoint(datastore, cutoff, cursor);
+            }
         } catch (Exception e) {
-            log.config(LogBuilder.createSystemMessage().
+            log.warning(LogBuilder.createSystemMessage().
                     addException("problem when deleting session and guest", e).toString());
+            if (cursor != null) {
+                putCheckpoint(datastore, cutoff, cursor);
+            }
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        String report = LogBuilder.createSystemMessage().
+                addAction("clear expired sessions").
+                addParameter("deleted sessions", noSessions).
+                addParameter("deleted guests", noGuests).
+                addParameter("deleted session data", noSessionData).
+                addParameter("duration in ms", duration).
+                addParameter("done", isDone).toString();
+        log.info(report);
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/plain");
+        PrintWriter out = response.getWriter();
+        out.println(report);
+        out.close();
+    }
+
+    /**
+     * @methodtype command
+     */
+    protected void deleteGuests(List<Client> guests) {
+        UserManager.getInstance().deleteClients(guests);
+    }
+
+    /**
+     * Returns how long a run may delete before it saves a checkpoint and stops.
+     *
+     * @methodtype get
+     */
+    protected long getMaxDuration() {
+        return MAX_DURATION;
+    }
+
+    /**
+     * Deletes the session data not written for LruSessionStore.MAX_SESSION_DATA_AGE, in batches, until done or out of
+     * time; returns how many were deleted. Needs no checkpoint, as the next run no longer finds what was deleted.
+     */
+    private int clearStaleSessionData(DatastoreService datastore, long startTime) {
+        long cutoff = startTime - LruSessionStore.MAX_SESSION_DATA_AGE;
+        Query query = new Query(LruSessionStore.SESSION_ENTITY_TYPE).setKeysOnly().
+                setFilter(new Query.FilterPredicate(LruSessionStore.LAST_WRITTEN_PROP, Query.FilterOperator.LESS_THAN,
+                        cutoff));
+
+        int result = 0;
+        Cursor cursor = null;
+        boolean isDone = false;
+        while (!isDone && (System.currentTimeMillis() - startTime <= getMaxDuration())) {
+            FetchOptions options = FetchOptions.Builder.withLimit(BATCH_SIZE);
+            if (cursor != null) {
+                options.startCursor(cursor);
+            }
+            QueryResultList<Entity> page = datastore.prepare(query).asQueryResultList(options);
+
+            List<Key> keys = new ArrayList<Key>(page.size());
+            for (Entity entity : page) {
+                keys.add(entity.getKey());
+            }
+            datastore.delete(keys);
+            result += keys.size();
+
+            cursor = page.getCursor();
+            isDone = page.size() < BATCH_SIZE;
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype get
+     */
+    private Entity getCheckpoint(DatastoreService datastore) {
+        try {
+            return datastore.get(CHECKPOINT_KEY);
+        } catch (EntityNotFoundException e) {
+            return null;
         }
     }
+
+    /**
+     * @methodtype set
+     */
+    private void putCheckpoint(DatastoreService datastore, long cutoff, Cursor cursor) {
+        Entity checkpoint = new Entity(CHECKPOINT_KEY);
+        checkpoint.setUnindexedProperty(CUTOFF_PROP, cutoff);
+        checkpoint.setUnindexedProperty(CURSOR_PROP, new Text(cursor.toWebSafeString()));
+        datastore.put(checkpoint);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("save session cleanup checkpoint").
+                addParameter("cutoff", cutoff).log();
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import com.google.common.io.Files;
+import org.wahlzeit.services.AssetService;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.SysConfig;
+import org.wahlzeit.utils.HtmlUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The StaticFileServlet serves the files below the static config directory, such as the stylesheet, the script,
+ * and the heading images. Text files go out gzipped to clients accepting that: from a precompressed .gz file next
+ * to the original if there is an up-to-date one, else compressed on first request and kept in memory.
+ *
+ * Files requested by their fingerprinted name, see {@link AssetService}, never change and may be cached for a year;
+ * files requested by their plain name are revalidated after a few minutes.
+ *
+ * @author dirkriehle
+ */
+public class StaticFileServlet extends AbstractServlet {
+
+    private static final Logger log = Logger.getLogger(StaticFileServlet.class.getName());
+    private static final long serialVersionUID = 42L; // any does; class never serialized
+
+    /**
+     *
+     */
+    protected static final String GZIP_SUFFIX = ".gz";
+    protected static final int MAX_AGE = 600; // seconds, as App Engine has for static files
+    protected static final int FINGERPRINTED_MAX_AGE = 365 * 24 * 60 * 60; // seconds
+
+    /**
+     *
+     */
+    protected static final Map<String, String> contentTypes = new HashMap<String, String>();
+
+    static {
+        contentTypes.put("css", "text/css; charset=UTF-8");
+        contentTypes.put("js", "application/javascript; charset=UTF-8");
+        contentTypes.put("html", "text/html; charset=UTF-8");
+        contentTypes.put("svg", "image/svg+xml");
+        contentTypes.put("png", "image/png");
+        contentTypes.put("gif", "image/gif");
+        contentTypes.put("jpg", "image/jpeg");
+        contentTypes.put("ico", "image/x-icon");
+    }
+
+    /**
+     * Files compressed on first request, by path
+     */
+    protected Map<String, CompressedFile> compressedFiles = new ConcurrentHashMap<String, CompressedFile>();
+
+    /**
+     *
+     */
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null) { // the servlet path itself, no file
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File file = AssetService.getInstance().getFile(HtmlUtil.asPath(SysConfig.getStaticDir().getRelativeDir()) + pathInfo);
+        boolean isFingerprinted = (file != null);
+        if (!isFingerprinted) {
+            file = getFile(AssetService.asPlainPath(pathInfo));
+        }
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long lastModified = (file.lastModified() / 1000) * 1000; // as precise as the header
+        response.setDateHeader("Last-Modified", lastModified);
+        if (isFingerprinted) {
+            response.setHeader("Cache-Control", "public, max-age=" + FINGERPRINTED_MAX_AGE + ", immutable");
+        } else {
+            response.setHeader("Cache-Control", "public, max-age=" + MAX_AGE);
+        }
+        String contentType = getContentType(file.getName());
+        response.setContentType(contentType);
+        if (GzipResponse.isCompressible(contentType)) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        if ((ifModifiedSince != -1) && (lastModified <= ifModifiedSince)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (GzipResponse.isCompressible(contentType) && GzipResponse.isGzipAccepted(request)) {
+            response.setHeader("Content-Encoding", GzipResponse.GZIP);
+            File gzipFile = new File(file.getPath() + GZIP_SUFFIX);
+            if (gzipFile.isFile() && (gzipFile.lastModified() >= file.lastModified())) {
+                response.setContentLength((int) gzipFile.length());
+                Files.copy(gzipFile, out);
+            } else {
+                byte[] data = getCompressedFile(file).data;
+                response.setContentLength(data.length);
+                out.write(data);
+            }
+        } else {
+            response.setContentLength((int) file.length());
+            Files.copy(file, out);
+        }
+        out.close();
+    }
+
+    /**
+     * Returns the file for the path, or null if there is none; paths leading out of the static dir find nothing.
+     */
+    protected File getFile(String path) {
+        if ((path == null) || path.contains("..") || path.endsWith(GZIP_SUFFIX)) {
+            return null;
+        }
+
+        File result = new File(SysConfig.getStaticDir().asString(), path.replace('/', File.separatorChar));
+        return result.isFile() ? result : null;
+    }
+
+    /**
+     *
+     */
+    protected String getContentType(String fileName) {
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase();
+        String result = contentTypes.get(extension);
+        return (result != null) ? result : "application/octet-stream";
+    }
+
+    /**
+     * Returns the file compressed, compressing it again if it changed since.
+     */
+    protected CompressedFile getCompressedFile(File file) throws IOException {
+        String path = file.getPath();
+        CompressedFile result = compressedFiles.get(path);
+        if ((result == null) || (result.lastModified != file.lastModified())) {
+            long lastModified = file.lastModified();
+            byte[] source = Files.toByteArray(file);
+            result = new CompressedFile(lastModified, GzipResponse.compress(source));
+            compressedFiles.put(path, result);
+            LogBuilder.createSystemMessage(log, Level.CONFIG).
+                    addAction("compress static file").
+                    addParameter("file name", path).
+                    addParameter("original size", source.length).
+                    addParameter("compressed size", result.data.length).log();
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected static class CompressedFile {
+
+        /**
+         *
+         */
+        protected final long lastModified;
+        protected final byte[] data;
+
+        /**
+         *
+         */
+        protected CompressedFile(long myLastModified, byte[] myData) {
+            lastModified = myLastModified;
+            data = myData;
+        }
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A JsonWriter streams JSON text to a Writer without building an intermediate object tree. It only keeps track of
+ * whether a separating comma is needed at the current nesting level.
+ *
+ * @author dirkriehle
+ */
+public class JsonWriter {
+
+    /**
+     *
+     */
+    protected static final int MAX_DEPTH = 32;
+
+    /**
+     *
+     */
+    protected Writer out;
+
+    /**
+     * needsComma[depth] is true if a value has already been written at that nesting level
+     */
+    protected boolean[] needsComma = new boolean[MAX_DEPTH];
+    protected int depth = 0;
+    protected boolean isAfterName = false;
+
+    /**
+     *
+     */
+    public JsonWriter(Writer myOut) {
+        out = myOut;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter beginObject() throws IOException {
+        return begin('{');
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter beginArray() throws IOException {
+        return begin('[');
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter name(String name) throws IOException {
+        writeSeparator();
+        writeQuoted(name);
+        out.write(':');
+        isAfterName = true;
+        return this;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter value(String value) throws IOException {
+        writeSeparator();
+        if (value == null) {
+            out.write("null");
+        } else {
+            writeQuoted(value);
+        }
+        return this;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter value(long value) throws IOException {
+        writeSeparator();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter value(double value) throws IOException {
+        writeSeparator();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.write("null");
+        } else {
+            out.write(Double.toString(value));
+        }
+        return this;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        writeSeparator();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * @methodtype command
+     * @methodproperties convenience
+     */
+    public JsonWriter property(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * @methodtype command
+     * @methodproperties convenience
+     */
+    public JsonWriter property(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * @methodtype command
+     * @methodproperties convenience
+     */
+    public JsonWriter property(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * @methodtype command
+     * @methodproperties convenience
+     */
+    public JsonWriter property(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     *
+     */
+    protected JsonWriter begin(char bracket) throws IOException {
+        writeSeparator();
+        out.write(bracket);
+        if (++depth >= MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        needsComma[depth] = false;
+        return this;
+    }
+
+    /**
+     *
+     */
+    protected JsonWriter end(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("no JSON object or array to close");
+        }
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+
+    /**
+     * Writes a comma if needed; a value following a name never needs one.
+     */
+    protected void writeSeparator() throws IOException {
+        if (isAfterName) {
+            isAfterName = false;
+        } else {
+            if (needsComma[depth]) {
+                out.write(',');
+            }
+            needsComma[depth] = true;
+        }
+    }
+
+    /**
+     *
+     */
+    protected void writeQuoted(String value) throws IOException {
+        out.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape = null;
+            if (c == '"') {
+                escape = "\\\"";
+            } else if (c == '\\') {
+                escape = "\\\\";
+            } else if (c == '\n') {
+                escape = "\\n";
+            } else if (c == '\r') {
+                escape = "\\r";
+            } else if (c == '\t') {
+                escape = "\\t";
+            } else if ((c < 0x20) || (c == 0x2028) || (c == 0x2029) || (c == '<')) {
+                escape = String.format("\\u%04x", (int) c); // '<' so JSON can never close a script tag
+            }
+
+            if (escape != null) {
+                out.write(value, start, i - start);
+                out.write(escape);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, length - start);
+        out.write('"');
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+/**
+ * A LongIntHashMap maps primitive long keys to int values without boxing, using open addressing with linear
+ * probing. Absent keys have the value 0, and storing 0 removes a key, which suits counters.
+ *
+ * @author dirkriehle
+ */
+public class LongIntHashMap {
+
+    /**
+     *
+     */
+    protected static final int MIN_CAPACITY = 16;
+
+    /**
+     *
+     */
+    protected long[] keys;
+    protected int[] values; // 0 marks a free slot
+    protected int size = 0;
+
+    /**
+     *
+     */
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     *
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < expectedSize * 4) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = indexFor(key, mask); values[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @methodtype set
+     */
+    public void put(long key, int value) {
+        int mask = keys.length - 1;
+        int i = indexFor(key, mask);
+        while (values[i] != 0) {
+            if (keys[i] == key) {
+                if (value == 0) {
+                    removeAt(i);
+                } else {
+                    values[i] = value;
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if (value != 0) {
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 4 > keys.length * 3) {
+                resize(keys.length << 1);
+            }
+        }
+    }
+
+    /**
+     * Adds delta to the value of key and returns the new value.
+     *
+     * @methodtype command
+     */
+    public int add(long key, int delta) {
+        int result = get(key) + delta;
+        put(key, result);
+        return result;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new int[MIN_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Frees slot i and moves later entries of the probe sequence up, so lookups need no tombstones.
+     */
+    protected void removeAt(int i) {
+        int mask = keys.length - 1;
+        int free = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == 0) {
+                break;
+            }
+
+            int home = indexFor(keys[j], mask);
+            boolean canMove = (free <= j) ? ((home <= free) || (home > j)) : ((home <= free) && (home > j));
+            if (canMove) {
+                keys[free] = keys[j];
+                values[free] = values[j];
+                free = j;
+            }
+        }
+        values[free] = 0;
+        size--;
+    }
+
+    /**
+     *
+     */
+    protected void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != 0) {
+                int i = indexFor(oldKeys[j], mask);
+                while (values[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    protected static int indexFor(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+}
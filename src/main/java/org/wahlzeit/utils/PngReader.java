@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A PngReader decodes small, non-interlaced 8-bit PNG images into grayscale pixels. It exists because java.awt is not
+ * available on App Engine, while the images service can produce PNGs of any size.
+ *
+ * @author dirkriehle
+ */
+public class PngReader {
+
+    /**
+     *
+     */
+    protected static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+    protected static final int MAX_NO_PIXELS = 1 << 22;
+
+    /**
+     *
+     */
+    protected static final int GRAY = 0;
+    protected static final int RGB = 2;
+    protected static final int PALETTE = 3;
+    protected static final int GRAY_ALPHA = 4;
+    protected static final int RGB_ALPHA = 6;
+
+    /**
+     *
+     */
+    protected int width;
+    protected int height;
+    protected int[] grayPixels;
+
+    /**
+     *
+     */
+    public PngReader(byte[] data) throws IOException {
+        read(data);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the luminance (0..255) of each pixel, row by row.
+     *
+     * @methodtype get
+     */
+    public int[] getGrayPixels() {
+        return grayPixels;
+    }
+
+    /**
+     *
+     */
+    protected void read(byte[] data) throws IOException {
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if ((data.length <= i) || (data[i] != SIGNATURE[i])) {
+                throw new IOException("not a PNG image");
+            }
+        }
+
+        int colorType = -1;
+        byte[] palette = null;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length);
+        int pos = SIGNATURE.length;
+        while (pos + 8 <= data.length) {
+            int length = readInt(data, pos);
+            String type = new String(data, pos + 4, 4, "US-ASCII");
+            int start = pos + 8;
+            if ((length < 0) || (start + length > data.length)) {
+                throw new IOException("truncated PNG chunk " + type);
+            }
+
+            if (type.equals("IHDR")) {
+                width = readInt(data, start);
+                height = readInt(data, start + 4);
+                int bitDepth = data[start + 8];
+                colorType = data[start + 9];
+                int interlace = data[start + 12];
+                if ((bitDepth != 8) || (interlace != 0) || (width <= 0) || (height <= 0) || ((long) width * height > MAX_NO_PIXELS)) {
+                    throw new IOException("unsupported PNG format");
+                }
+            } else if (type.equals("PLTE")) {
+                palette = new byte[length];
+                System.arraycopy(data, start, palette, 0, length);
+            } else if (type.equals("IDAT")) {
+                compressed.write(data, start, length);
+            } else if (type.equals("IEND")) {
+                break;
+            }
+            pos = start + length + 4; // skip CRC
+        }
+
+        int channels = getNoChannels(colorType);
+        if ((colorType == PALETTE) && (palette == null)) {
+            throw new IOException("PNG palette missing");
+        }
+
+        byte[] raw = unfilter(inflate(compressed.toByteArray(), height * (1 + width * channels)), channels);
+        grayPixels = new int[width * height];
+        for (int i = 0; i < grayPixels.length; i++) {
+            grayPixels[i] = getGray(raw, i * channels, colorType, palette);
+        }
+    }
+
+    /**
+     *
+     */
+    protected static int getNoChannels(int colorType) throws IOException {
+        switch (colorType) {
+            case GRAY:
+            case PALETTE:
+                return 1;
+            case GRAY_ALPHA:
+                return 2;
+            case RGB:
+                return 3;
+            case RGB_ALPHA:
+                return 4;
+            default:
+                throw new IOException("unsupported PNG color type " + colorType);
+        }
+    }
+
+    /**
+     *
+     */
+    protected static byte[] inflate(byte[] compressed, int size) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] result = new byte[size];
+            int length = 0;
+            while (length < size) {
+                int n = inflater.inflate(result, length, size - length);
+                if ((n == 0) && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("truncated PNG image data");
+                }
+                length += n;
+            }
+            return result;
+        } catch (DataFormatException ex) {
+            throw new IOException("corrupt PNG image data", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Reverses the per-row PNG filters and returns the pixel bytes without the filter type bytes.
+     */
+    protected byte[] unfilter(byte[] filtered, int channels) throws IOException {
+        int stride = width * channels;
+        byte[] result = new byte[height * stride];
+        for (int y = 0; y < height; y++) {
+            int filter = filtered[y * (stride + 1)];
+            int in = y * (stride + 1) + 1;
+            int out = y * stride;
+            for (int x = 0; x < stride; x++) {
+                int raw = filtered[in + x] & 0xff;
+                int a = (x >= channels) ? result[out + x - channels] & 0xff : 0;
+                int b = (y > 0) ? result[out + x - stride] & 0xff : 0;
+                int c = ((x >= channels) && (y > 0)) ? result[out + x - stride - channels] & 0xff : 0;
+                int value;
+                switch (filter) {
+                    case 0:
+                        value = raw;
+                        break;
+                    case 1:
+                        value = raw + a;
+                        break;
+                    case 2:
+                        value = raw + b;
+                        break;
+                    case 3:
+                        value = raw + ((a + b) >>> 1);
+                        break;
+                    case 4:
+                        value = raw + paeth(a, b, c);
+                        break;
+                    default:
+                        throw new IOException("unknown PNG filter " + filter);
+                }
+                result[out + x] = (byte) value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        return ((pa <= pb) && (pa <= pc)) ? a : ((pb <= pc) ? b : c);
+    }
+
+    /**
+     * ITU-R BT.601 luma, in integer arithmetic
+     */
+    protected static int getGray(byte[] raw, int i, int colorType, byte[] palette) {
+        int r, g, b;
+        if ((colorType == GRAY) || (colorType == GRAY_ALPHA)) {
+            return raw[i] & 0xff;
+        } else if (colorType == PALETTE) {
+            int entry = 3 * (raw[i] & 0xff);
+            if (entry + 2 >= palette.length) {
+                return 0;
+            }
+            r = palette[entry] & 0xff;
+            g = palette[entry + 1] & 0xff;
+            b = palette[entry + 2] & 0xff;
+        } else {
+            r = raw[i] & 0xff;
+            g = raw[i + 1] & 0xff;
+            b = raw[i + 2] & 0xff;
+        }
+        return (299 * r + 587 * g + 114 * b) / 1000;
+    }
+
+    /**
+     *
+     */
+    protected static int readInt(byte[] data, int pos) {
+        return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A SortedIndex keeps one value per key, sorted by a comparator, in a skip list. Putting or removing a value takes
+ * O(log n) and is synchronized; reading needs no lock. Reading starts at the first value, so reading max values at
+ * position offset takes O(offset + max); it is meant for the first few pages.
+ *
+ * The comparator must never find the values of different keys equal, e.g. by breaking ties on the key.
+ *
+ * @author dirkriehle
+ */
+public class SortedIndex<K, V> {
+
+    /**
+     *
+     */
+    protected NavigableSet<V> values;
+    protected Map<K, V> valueMap = new ConcurrentHashMap<K, V>();
+
+    /**
+     *
+     */
+    public SortedIndex(Comparator<? super V> comparator) {
+        values = new ConcurrentSkipListSet<V>(comparator);
+    }
+
+    /**
+     * Adds the value for the key, or moves the key to the place of its new value.
+     *
+     * @methodtype command
+     */
+    public synchronized void put(K key, V value) {
+        V oldValue = valueMap.put(key, value);
+        if (oldValue != null) {
+            values.remove(oldValue);
+        }
+        values.add(value);
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void remove(K key) {
+        V oldValue = valueMap.remove(key);
+        if (oldValue != null) {
+            values.remove(oldValue);
+        }
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean contains(K key) {
+        return valueMap.containsKey(key);
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getSize() {
+        return valueMap.size();
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isEmpty() {
+        return valueMap.isEmpty();
+    }
+
+    /**
+     * Returns (up to) max values starting at position offset; walks past the values before it.
+     *
+     * @methodtype get
+     */
+    public List<V> getValues(int offset, int max) {
+        List<V> result = new ArrayList<V>(Math.max(0, Math.min(max, 64)));
+        int position = 0;
+        for (Iterator<V> i = values.iterator(); i.hasNext() && (result.size() < max); position++) {
+            V value = i.next();
+            if (position >= offset) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+}
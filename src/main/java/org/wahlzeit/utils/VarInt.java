@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length encoding of non-negative ints, seven bits per byte, low bits first; small numbers (like the gaps
+ * between sorted document ids) take a single byte.
+ *
+ * @author dirkriehle
+ */
+public class VarInt {
+
+    /**
+     *
+     */
+    public static void write(int value, ByteArrayOutputStream out) {
+        assertIsNonNegative(value);
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     *
+     */
+    public static void write(int value, DataOutput out) throws IOException {
+        assertIsNonNegative(value);
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     *
+     */
+    public static int read(DataInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /**
+     * Reads a varint from data at position[0] and advances position[0] past it.
+     */
+    public static int read(byte[] data, int[] position) {
+        int result = 0;
+        int i = position[0];
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data[i++] & 0xFF;
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                position[0] = i;
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    /**
+     * @methodtype assertion
+     */
+    protected static void assertIsNonNegative(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("varint must not be negative: " + value);
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * The FragmentCache keeps rendered parts of pages as UTF-8 bytes, so that parts which are the same for many
+ * requests are filled in and encoded only once. Keys are chosen by the caller and need to change whenever the
+ * rendered part would; entries that are no longer asked for are evicted once the cache exceeds its size.
+ *
+ * @author dirkriehle
+ */
+public class FragmentCache {
+
+    /**
+     *
+     */
+    public static final int MAX_SIZE = 4 * 1024 * 1024; // bytes of rendered fragments
+
+    /**
+     *
+     */
+    protected static final FragmentCache instance = new FragmentCache(MAX_SIZE);
+
+    /**
+     * Convenience method...
+     */
+    public static FragmentCache getInstance() {
+        return instance;
+    }
+
+    /**
+     *
+     */
+    protected int maxSize;
+
+    /**
+     * Bytes held by all entries; guarded by this
+     */
+    protected int size = 0;
+
+    /**
+     * Entries in least-recently-used order; guarded by this
+     */
+    protected LinkedHashMap<String, Fragment> entries = new LinkedHashMap<String, Fragment>(256, 0.75f, true);
+
+    /**
+     *
+     */
+    public FragmentCache(int myMaxSize) {
+        maxSize = myMaxSize;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized Fragment getFragment(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Renders the writable and keeps the result under key.
+     *
+     * @methodtype command
+     */
+    public Fragment putFragment(String key, Writable writable) {
+        Fragment result = Fragment.render(writable);
+        synchronized (this) {
+            Fragment old = entries.put(key, result);
+            if (old != null) {
+                size -= old.getSize();
+            }
+            size += result.getSize();
+
+            for (Iterator<Fragment> i = entries.values().iterator(); (size > maxSize) && i.hasNext(); ) {
+                size -= i.next().getSize();
+                i.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype command
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getNoFragments() {
+        return entries.size();
+    }
+
+    /**
+     * @methodtype get
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * A Writable rendered once, kept as UTF-8 bytes.
+     */
+    public static class Fragment implements Writable {
+
+        /**
+         *
+         */
+        protected static final Charset UTF_8 = Charset.forName("UTF-8");
+        protected static final int RENDER_BUFFER_SIZE = 1024;
+
+        /**
+         *
+         */
+        protected final byte[] bytes;
+
+        /**
+         *
+         */
+        protected Fragment(byte[] myBytes) {
+            bytes = myBytes;
+        }
+
+        /**
+         * Renders with a buffer of its own, as the calling thread may be writing a page already.
+         *
+         * @methodtype factory
+         */
+        public static Fragment render(Writable writable) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(RENDER_BUFFER_SIZE);
+                Utf8Writer writer = new Utf8Writer(out, new byte[RENDER_BUFFER_SIZE]);
+                writable.writeOn(writer);
+                writer.close();
+                return new Fragment(out.toByteArray());
+            } catch (IOException ex) {
+                throw new IllegalStateException("could not render fragment", ex); // in-memory streams do not fail
+            }
+        }
+
+        /**
+         * @methodtype get
+         */
+        public int getSize() {
+            return bytes.length;
+        }
+
+        /**
+         *
+         */
+        @Override
+        public boolean equals(Object other) {
+            return (other instanceof Fragment) && Arrays.equals(bytes, ((Fragment) other).bytes);
+        }
+
+        /**
+         *
+         */
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+
+        /**
+         *
+         */
+        public void writeOn(Writer out) throws IOException {
+            out.write(new String(bytes, UTF_8));
+        }
+
+        /**
+         *
+         */
+        public void writeOn(Utf8Writer out) throws IOException {
+            out.writeBytes(bytes);
+        }
+    }
+
+}
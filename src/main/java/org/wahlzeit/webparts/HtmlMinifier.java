@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+/**
+ * The HtmlMinifier shrinks template sources before they are compiled. It drops comments and collapses each run of
+ * whitespace into a single space, or a single newline if the run had one. Text whose whitespace matters is kept
+ * as is: the content of pre, textarea, script, and style elements, quoted attribute values, conditional comments,
+ * and comments holding a slot. Slot markers contain no whitespace and pass through unchanged.
+ *
+ * @author dirkriehle
+ */
+public class HtmlMinifier {
+
+    /**
+     *
+     */
+    protected static final String[] RAW_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+    /**
+     *
+     */
+    protected static final String COMMENT_START = "<!--";
+    protected static final String COMMENT_END = "-->";
+    protected static final String CONDITIONAL_COMMENT_START = "<!--[if";
+
+    /**
+     * @methodtype conversion
+     */
+    public static String minify(String source) {
+        StringBuilder result = new StringBuilder(source.length());
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (isWhitespace(c)) {
+                i = appendWhitespace(source, i, result);
+            } else if (source.startsWith(COMMENT_START, i)) {
+                i = appendComment(source, i, result);
+            } else if ((c == '<') && isTagStart(source, i + 1)) {
+                i = appendTag(source, i, result);
+            } else {
+                result.append(c);
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    protected static boolean isWhitespace(char c) {
+        return (c == ' ') || (c == '\n') || (c == '\t') || (c == '\r') || (c == '\f');
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    protected static boolean isTagStart(String source, int i) {
+        if (i >= source.length()) {
+            return false;
+        }
+        char c = source.charAt(i);
+        return Character.isLetter(c) || (c == '/') || (c == '!');
+    }
+
+    /**
+     * Appends the whitespace run starting at i, collapsed, unless the result already ends in whitespace; returns
+     * the index after the run.
+     */
+    protected static int appendWhitespace(String source, int i, StringBuilder result) {
+        boolean hasNewline = false;
+        for (; (i < source.length()) && isWhitespace(source.charAt(i)); i++) {
+            hasNewline |= (source.charAt(i) == '\n');
+        }
+
+        int last = result.length() - 1;
+        if ((last >= 0) && isWhitespace(result.charAt(last))) {
+            if (hasNewline) {
+                result.setCharAt(last, '\n');
+            }
+        } else {
+            result.append(hasNewline ? '\n' : ' ');
+        }
+        return i;
+    }
+
+    /**
+     * Drops the comment starting at i, unless it needs to be kept; returns the index after it.
+     */
+    protected static int appendComment(String source, int i, StringBuilder result) {
+        int end = source.indexOf(COMMENT_END, i + COMMENT_START.length());
+        end = (end != -1) ? end + COMMENT_END.length() : source.length();
+
+        String comment = source.substring(i, end);
+        if (comment.startsWith(CONDITIONAL_COMMENT_START) || comment.contains(WebPartTemplate.SLOT_START)) {
+            result.append(comment);
+        }
+        return end;
+    }
+
+    /**
+     * Appends the tag starting at i with its whitespace collapsed but its quoted values kept, followed by the
+     * content of a raw element as is; returns the index after both.
+     */
+    protected static int appendTag(String source, int i, StringBuilder result) {
+        int length = source.length();
+        int start = i;
+        char quote = 0;
+        for (; i < length; i++) {
+            char c = source.charAt(i);
+            if (quote != 0) {
+                result.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if ((c == '"') || (c == '\'')) {
+                result.append(c);
+                quote = c;
+            } else if (isWhitespace(c)) {
+                i = appendWhitespace(source, i, result) - 1;
+            } else {
+                result.append(c);
+                if (c == '>') {
+                    i++;
+                    break;
+                }
+            }
+        }
+
+        String element = getRawElement(source, start + 1);
+        boolean isEmptyElement = (result.length() >= 2) && (result.charAt(result.length() - 2) == '/');
+        if ((element != null) && !isEmptyElement) {
+            int end = indexOfIgnoreCase(source, "</" + element, i);
+            end = (end != -1) ? end : length;
+            result.append(source, i, end);
+            i = end;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the name of the raw element whose start tag name begins at i, or null if it is none.
+     */
+    protected static String getRawElement(String source, int i) {
+        for (String element : RAW_ELEMENTS) {
+            int end = i + element.length();
+            if (source.regionMatches(true, i, element, 0, element.length()) && (end < source.length())) {
+                char c = source.charAt(end);
+                if ((c == '>') || (c == '/') || isWhitespace(c)) {
+                    return element;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     */
+    protected static int indexOfIgnoreCase(String source, String s, int from) {
+        for (int i = from; i <= (source.length() - s.length()); i++) {
+            if (source.regionMatches(true, i, s, 0, s.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
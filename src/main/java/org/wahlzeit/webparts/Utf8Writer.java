@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Utf8Writer encodes characters as UTF-8 into a buffer that it writes to an OutputStream once full. Writables
+ * pass it text that has been encoded ahead of time as bytes, which are copied as they are; only the dynamic parts
+ * of a page are encoded per request.
+ *
+ * The buffer is kept per thread and reused by the next Utf8Writer of that thread, so a thread must not use two
+ * Utf8Writers at the same time.
+ *
+ * @author dirkriehle
+ */
+public class Utf8Writer extends Writer {
+
+    /**
+     *
+     */
+    public static final int BUFFER_SIZE = 8192;
+
+    /**
+     *
+     */
+    protected static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /**
+     *
+     */
+    protected OutputStream out;
+    protected byte[] buffer;
+    protected int count = 0;
+
+    /**
+     * A high surrogate at the end of the last write, still waiting for its low surrogate
+     */
+    protected char highSurrogate = 0;
+
+    /**
+     *
+     */
+    public Utf8Writer(OutputStream myOut) {
+        this(myOut, buffers.get());
+    }
+
+    /**
+     * Writes through the given buffer instead of the thread's.
+     */
+    public Utf8Writer(OutputStream myOut, byte[] myBuffer) {
+        out = myOut;
+        buffer = myBuffer;
+    }
+
+    /**
+     * Writes bytes that are already UTF-8 encoded.
+     */
+    public void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > (buffer.length - count)) {
+            flushBuffer();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void write(int c) throws IOException {
+        writeChar((char) c);
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void write(String s) throws IOException {
+        write(s, 0, s.length());
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void write(String s, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            char c = s.charAt(i);
+            if ((c < 0x80) && (highSurrogate == 0)) {
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[count++] = (byte) c;
+            } else {
+                writeChar(c);
+            }
+        }
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void write(char[] chars, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            writeChar(chars[i]);
+        }
+    }
+
+    /**
+     * Encodes a single char; a surrogate pair is encoded once its second half arrives.
+     */
+    protected void writeChar(char c) throws IOException {
+        if ((buffer.length - count) < 4) {
+            flushBuffer();
+        }
+
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int codePoint = Character.toCodePoint(high, c);
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                return;
+            }
+            buffer[count++] = '?'; // unpaired surrogate, as String.getBytes does
+            if ((buffer.length - count) < 4) {
+                flushBuffer();
+            }
+        }
+
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     *
+     */
+    protected void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     *
+     */
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            write('?');
+        }
+        flushBuffer();
+        out.close();
+    }
+
+}
@@ -24,14 +24,19 @@ import org.wahlzeit.utils.EnumValue;
 import org.wahlzeit.utils.HtmlUtil;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 /**
  * A WebPart is a Writable formatted as HTML, working off a template.
  * A WebPart has its data set from a client using key/value pairs.
  * A WebPart has a recursive structure; it may contain further WebParts.
+ * Values are kept in an array indexed like the keys of the template; values for keys the template has no slot for
+ * are dropped, as they would never be written.
  *
  * @author dirkriehle
  */
@@ -45,23 +50,49 @@ public class WebPart implements Writable {
     /**
      *
      */
-    protected Map<String, Object> parts = new HashMap<String, Object>();
+    protected Object[] values;
+
+    /**
+     * The number of segments written by writeHeadOn; all slots between them have been written, too
+     */
+    protected int noWrittenSegments = 0;
 
     /**
      *
      */
     public WebPart(WebPartTemplate myTemplate) {
         template = myTemplate;
+        values = new Object[template.getNoKeys()];
     }
 
+    /**
+     *
+     */
     public Object getValue(String key) {
-        return parts.get(key);
+        return getValue(WebPartKey.get(key));
+    }
+
+    /**
+     *
+     */
+    public Object getValue(WebPartKey key) {
+        int index = template.getKeyIndex(key);
+        return (index != -1) ? values[index] : null;
     }
 
     /**
      *
      */
     public void addString(String key, String value) {
+        if (value != null) {
+            putValue(WebPartKey.get(key), value);
+        }
+    }
+
+    /**
+     *
+     */
+    public void addString(WebPartKey key, String value) {
         if (value != null) {
             putValue(key, value);
         }
@@ -71,6 +102,15 @@ public class WebPart implements Writable {
      *
      */
     public void maskAndAddString(String key, String value) {
+        if (value != null) {
+            putValue(WebPartKey.get(key), HtmlUtil.maskForWeb(value));
+        }
+    }
+
+    /**
+     *
+     */
+    public void maskAndAddString(WebPartKey key, String value) {
         if (value != null) {
             putValue(key, HtmlUtil.maskForWeb(value));
         }
@@ -163,50 +203,157 @@ public class WebPart implements Writable {
      */
     public void addWritable(String key, Writable value) {
         if (value != null) {
-            putValue(key, value);
+            putValue(WebPartKey.get(key), value);
         }
     }
 
     /**
      *
      */
-    protected void putValue(String key, Object value) {
+    public void addWritable(WebPartKey key, Writable value) {
         if (value != null) {
-            parts.put(key, value);
+            putValue(key, value);
         }
     }
 
     /**
      *
      */
-    public void writeOn(Writer out) throws IOException {
-        String tmpl = template.asString();
-        String[] keys = template.getKeys();
-        int[] slots = template.getSlots();
-
-        int start = 0;
-        for (int i = 0; i < keys.length; i++) {
-            int index = slots[i];
-            out.write(tmpl, start, index - start);
-
-            String key = keys[i];
-            if (key != null) {
-                Object object = parts.get(key);
-                if (object != null) {
-                    if (object instanceof Writable) {
-                        Writable part = (Writable) object;
-                        part.writeOn(out);
-                    } else {
-                        String value = object.toString();
-                        out.write(value);
-                    }
+    protected void putValue(WebPartKey key, Object value) {
+        int index = template.getKeyIndex(key);
+        if ((value != null) && (index != -1)) {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * @methodtype get
+     */
+    public WebPartTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Renders this part into a new template that keeps slots only for the given keys, so that the rest is shared
+     * by all parts made from the new template.
+     *
+     * @methodtype conversion
+     */
+    public WebPartTemplate asTemplate(String name, WebPartKey... openKeys) {
+        List<String> segments = new ArrayList<String>();
+        List<WebPartKey> slotKeys = new ArrayList<WebPartKey>();
+        StringWriter out = new StringWriter(4096);
+
+        int noSlots = template.getNoSlots();
+        for (int i = 0; i < noSlots; i++) {
+            out.write(template.getSegment(i));
+
+            WebPartKey key = template.getKey(template.getSlot(i));
+            if (Arrays.asList(openKeys).contains(key)) {
+                segments.add(out.toString());
+                slotKeys.add(key);
+                out = new StringWriter(4096);
+            } else {
+                try {
+                    writeValueOn(out, values[template.getSlot(i)]);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("could not render part", ex); // in-memory writers do not fail
                 }
             }
+        }
+        out.write(template.getSegment(noSlots));
+        segments.add(out.toString());
+
+        WebPartTemplate result = new WebPartTemplate(name);
+        result.initialize(segments, slotKeys);
+        return result;
+    }
+
+    /**
+     *
+     */
+    public void writeOn(Writer out) throws IOException {
+        int noSlots = template.getNoSlots();
+        int i = noWrittenSegments;
+        if (i > 0) {
+            writeValueOn(out, values[template.getSlot(i - 1)]);
+        }
+        for (; i < noSlots; i++) {
+            out.write(template.getSegment(i));
+
+            writeValueOn(out, values[template.getSlot(i)]);
+        }
+
+        out.write(template.getSegment(noSlots));
+    }
+
+    /**
+     *
+     */
+    protected void writeValueOn(Writer out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.write((String) value);
+        } else if (value instanceof Writable) {
+            ((Writable) value).writeOn(out);
+        } else if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    /**
+     * Like writeOn(Writer), but copies the template's pre-encoded segments as they are.
+     */
+    public void writeOn(Utf8Writer out) throws IOException {
+        int noSlots = template.getNoSlots();
+        int i = noWrittenSegments;
+        if (i > 0) {
+            writeValueOn(out, values[template.getSlot(i - 1)]);
+        }
+        for (; i < noSlots; i++) {
+            out.writeBytes(template.getEncodedSegment(i));
+
+            writeValueOn(out, values[template.getSlot(i)]);
+        }
+
+        out.writeBytes(template.getEncodedSegment(noSlots));
+    }
+
+    /**
+     *
+     */
+    protected void writeValueOn(Utf8Writer out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.write((String) value);
+        } else if (value instanceof Writable) {
+            ((Writable) value).writeOn(out);
+        } else if (value != null) {
+            out.write(value.toString());
+        }
+    }
+
+    /**
+     * Writes the part up to the first slot for boundary and flushes it, so that the client can start on it while
+     * the rest is still being made; writeOn then writes only the rest. Writes nothing if the template has no slot
+     * for boundary or the head has been written already.
+     *
+     * @methodtype command
+     */
+    public void writeHeadOn(Utf8Writer out, WebPartKey boundary) throws IOException {
+        int keyIndex = template.getKeyIndex(boundary);
+        if ((keyIndex == -1) || (noWrittenSegments > 0)) {
+            return;
+        }
+
+        int i = 0;
+        for (; template.getSlot(i) != keyIndex; i++) {
+            out.writeBytes(template.getEncodedSegment(i));
 
-            start = index;
+            writeValueOn(out, values[template.getSlot(i)]);
         }
+        out.writeBytes(template.getEncodedSegment(i));
+        out.flush();
 
-        out.write(tmpl, start, tmpl.length() - start);
+        noWrittenSegments = i + 1;
     }
 
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A WebPartKey is the interned name of a template slot. Each distinct name has exactly one key with a small,
+ * dense id, which templates map to their slot indices; handlers resolve the keys they use once, as constants,
+ * rather than looking up the name on every request.
+ *
+ * @author dirkriehle
+ */
+public final class WebPartKey {
+
+    /**
+     *
+     */
+    protected static final Map<String, WebPartKey> keys = new ConcurrentHashMap<String, WebPartKey>();
+    protected static int noKeys = 0;
+
+    /**
+     *
+     */
+    private final String name;
+    private final int id;
+
+    /**
+     *
+     */
+    private WebPartKey(String myName, int myId) {
+        name = myName;
+        id = myId;
+    }
+
+    /**
+     * Returns the key for name, creating it on first use.
+     *
+     * @methodtype factory
+     */
+    public static WebPartKey get(String name) {
+        WebPartKey result = keys.get(name);
+        if (result == null) {
+            synchronized (keys) {
+                result = keys.get(name);
+                if (result == null) {
+                    result = new WebPartKey(name, noKeys++);
+                    keys.put(name, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     *
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
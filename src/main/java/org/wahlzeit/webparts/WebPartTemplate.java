@@ -20,13 +20,19 @@
 
 package org.wahlzeit.webparts;
 
-import java.util.LinkedList;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * A WebPartTmpl is a template for a WebPart.
  * It gets initialized once and is read-only after that.
  *
+ * Initialization compiles the source into literal segments and, between each two of them, a slot. Each slot holds
+ * the index of its key among the template's distinct keys, so that a WebPart can keep its values in an array and
+ * render without any lookup by name. The segments are also kept encoded as UTF-8, for writing them to a
+ * {@link Utf8Writer} without encoding them again.
+ *
  * @author dirkriehle
  */
 public class WebPartTemplate {
@@ -34,18 +40,35 @@ public class WebPartTemplate {
     /**
      *
      */
-    protected String name;
+    protected static final String SLOT_START = "{$";
+    protected static final char SLOT_END = '}';
+    protected static final Charset UTF_8 = Charset.forName("UTF-8");
 
     /**
      *
      */
-    protected String template;
+    protected String name;
 
     /**
-     *
+     * The literal text before, between, and after the slots; one more than there are slots
+     */
+    protected String[] segments = new String[]{""};
+    protected byte[][] encodedSegments = new byte[][]{new byte[0]};
+
+    /**
+     * The key index of each slot
+     */
+    protected int[] slots = new int[0];
+
+    /**
+     * The distinct keys of the template, in order of first occurrence
+     */
+    protected WebPartKey[] keys = new WebPartKey[0];
+
+    /**
+     * The key index by WebPartKey id, or -1 for keys not in the template
      */
-    protected String[] keys = null;
-    protected int[] slots = null;
+    protected int[] keyIndices = new int[0];
 
     /**
      *
@@ -58,39 +81,71 @@ public class WebPartTemplate {
      * @methodtype initialization
      */
     public void initialize(String source) {
-        List<String> keyList = new LinkedList<String>();
-        List<Integer> slotList = new LinkedList<Integer>();
+        List<String> segmentList = new ArrayList<String>();
+        List<WebPartKey> slotKeyList = new ArrayList<WebPartKey>();
+
+        int start = 0;
+        for (int slotStart = source.indexOf(SLOT_START); slotStart != -1; ) {
+            int slotEnd = source.indexOf(SLOT_END, slotStart + SLOT_START.length());
+            if (slotEnd == -1) {
+                break;
+            }
 
-        StringBuffer buffer = new StringBuffer(source);
+            segmentList.add(source.substring(start, slotStart));
+            slotKeyList.add(WebPartKey.get(source.substring(slotStart + SLOT_START.length(), slotEnd)));
+
+            start = slotEnd + 1;
+            slotStart = source.indexOf(SLOT_START, start);
+        }
+        segmentList.add(source.substring(start));
 
-        for (int index = 0; index != -1; ) {
-            int nextSlot = buffer.indexOf("{$", index);
-            if (nextSlot != -1) {
-                int endSlot = buffer.indexOf("}", nextSlot);
-                if (endSlot != -1) {
-                    String key = buffer.substring(nextSlot + 2, endSlot);
+        initialize(segmentList, slotKeyList);
+    }
 
-                    keyList.add(key);
-                    slotList.add(nextSlot);
+    /**
+     * Initializes the template from its literal segments and the keys of the slots between them.
+     *
+     * @methodtype initialization
+     */
+    public void initialize(List<String> segmentList, List<WebPartKey> slotKeyList) {
+        if (segmentList.size() != (slotKeyList.size() + 1)) {
+            throw new IllegalArgumentException("need one segment more than slots");
+        }
 
-                    buffer.replace(nextSlot, endSlot + 1, "");
-                    index = nextSlot;
-                }
-                index = endSlot;
-            } else {
-                index = -1;
+        List<WebPartKey> keyList = new ArrayList<WebPartKey>();
+        int[] newSlots = new int[slotKeyList.size()];
+        for (int i = 0; i < newSlots.length; i++) {
+            WebPartKey key = slotKeyList.get(i);
+            int keyIndex = keyList.indexOf(key);
+            if (keyIndex == -1) {
+                keyIndex = keyList.size();
+                keyList.add(key);
             }
+            newSlots[i] = keyIndex;
+        }
+
+        int maxKeyId = -1;
+        for (WebPartKey key : keyList) {
+            maxKeyId = Math.max(maxKeyId, key.getId());
+        }
+        int[] newKeyIndices = new int[maxKeyId + 1];
+        for (int i = 0; i < newKeyIndices.length; i++) {
+            newKeyIndices[i] = -1;
+        }
+        for (int i = 0; i < keyList.size(); i++) {
+            newKeyIndices[keyList.get(i).getId()] = i;
         }
 
-        int length = keyList.size();
-        keys = new String[length];
-        slots = new int[length];
-        for (int i = 0; i < length; i++) {
-            keys[i] = (String) keyList.get(i);
-            slots[i] = slotList.get(i);
+        byte[][] newEncodedSegments = new byte[segmentList.size()][];
+        for (int i = 0; i < newEncodedSegments.length; i++) {
+            newEncodedSegments[i] = segmentList.get(i).getBytes(UTF_8);
         }
 
-        template = buffer.toString();
+        segments = segmentList.toArray(new String[segmentList.size()]);
+        encodedSegments = newEncodedSegments;
+        slots = newSlots;
+        keys = keyList.toArray(new WebPartKey[keyList.size()]);
+        keyIndices = newKeyIndices;
     }
 
     /**
@@ -101,24 +156,98 @@ public class WebPartTemplate {
     }
 
     /**
-     *
+     * Returns the template without its slots.
      */
     public String asString() {
-        return template;
+        StringBuilder result = new StringBuilder();
+        for (String segment : segments) {
+            result.append(segment);
+        }
+        return result.toString();
     }
 
     /**
+     * Returns whether every slot of the source was closed and named by a Java identifier; the parser reads any other
+     * text as literal, which usually hides a typo.
      *
+     * @methodtype boolean-query
+     */
+    public boolean isWellFormed() {
+        for (String segment : segments) {
+            if (segment.contains(SLOT_START)) {
+                return false;
+            }
+        }
+
+        for (WebPartKey key : keys) {
+            String keyName = key.getName();
+            if (keyName.isEmpty() || !Character.isJavaIdentifierStart(keyName.charAt(0))) {
+                return false;
+            }
+            for (int i = 1; i < keyName.length(); i++) {
+                if (!Character.isJavaIdentifierPart(keyName.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoSlots() {
+        return slots.length;
+    }
+
+    /**
+     * @methodtype get
+     */
+    public String getSegment(int i) {
+        return segments[i];
+    }
+
+    /**
+     * Returns the i-th segment encoded as UTF-8; not to be modified.
+     *
+     * @methodtype get
+     */
+    public byte[] getEncodedSegment(int i) {
+        return encodedSegments[i];
+    }
+
+    /**
+     * Returns the key index of the i-th slot.
+     *
+     * @methodtype get
+     */
+    public int getSlot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @methodtype get
+     */
+    public int getNoKeys() {
+        return keys.length;
+    }
+
+    /**
+     * @methodtype get
      */
-    public String[] getKeys() {
-        return keys; // @FIXME needs cloning?
+    public WebPartKey getKey(int keyIndex) {
+        return keys[keyIndex];
     }
 
     /**
+     * Returns the index of key among the template's keys, or -1 if the template has no slot for it.
      *
+     * @methodtype get
      */
-    public int[] getSlots() {
-        return slots; // @FIXME needs cloning?
+    public int getKeyIndex(WebPartKey key) {
+        int id = key.getId();
+        return (id < keyIndices.length) ? keyIndices[id] : -1;
     }
 
 }
@@ -20,15 +20,30 @@
 
 package org.wahlzeit.webparts;
 
+import com.google.appengine.api.ThreadManager;
 import com.google.common.base.Charsets;
 import com.google.common.io.Files;
+import org.wahlzeit.services.AssetService;
 import org.wahlzeit.services.ConfigDir;
+import org.wahlzeit.services.Language;
 import org.wahlzeit.services.LogBuilder;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -36,6 +51,10 @@ import java.util.logging.Logger;
  * It requires configuration with a template directory and uses the following naming convention:
  * tmplDir/language/part-type/part-name.html
  *
+ * All templates are loaded at startup, see {@link #loadAllTemplates()}, so that request threads only read the
+ * registry; templates added later are still loaded on first request. Before compilation, paths of static files
+ * in a source are replaced by their fingerprinted ones, and the source is minified unless turned off for debugging.
+ *
  * @author dirkriehle
  */
 public class WebPartTemplateService {
@@ -45,15 +64,27 @@ public class WebPartTemplateService {
      */
     protected static final WebPartTemplateService instance = new WebPartTemplateService();
     private static final Logger log = Logger.getLogger(WebPartTemplateService.class.getName());
+
     /**
      *
      */
-    protected Map<String, WebPartTemplate> templates = new HashMap<String, WebPartTemplate>();
+    protected static final String TEMPLATE_FILE_SUFFIX = ".html";
+
+    /**
+     *
+     */
+    protected Map<String, WebPartTemplate> templates = new ConcurrentHashMap<String, WebPartTemplate>();
     /**
      *
      */
     protected ConfigDir templatesDir = null;
 
+    /**
+     *
+     */
+    protected boolean isMinifying = true;
+    protected AtomicLong noBytesSaved = new AtomicLong();
+
     /**
      *
      */
@@ -77,8 +108,8 @@ public class WebPartTemplateService {
 
         if (result == null) {
             try {
-                loadTemplate(shortName);
-                result = templates.get(shortName);
+                result = loadTemplate(shortName);
+                templates.put(shortName, result);
             } catch (IOException ioex) {
                 log.warning(LogBuilder.createSystemMessage().
                         addParameter("template name", shortName).
@@ -90,33 +121,166 @@ public class WebPartTemplateService {
     }
 
     /**
+     * @methodtype get
+     */
+    public int getNoTemplates() {
+        return templates.size();
+    }
+
+    /**
+     * Loads and compiles the templates of all languages in parallel, replacing any loaded before. Fails on the
+     * first template that cannot be read or is not well-formed, so that a broken deployment does not start.
      *
+     * @methodtype command
      */
-    protected void loadTemplate(String shortName) throws IOException {
-        WebPartTemplate template = new WebPartTemplate(shortName);
-        String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + ".html");
-        log.config(LogBuilder.createSystemMessage().
-                addAction("open html template file").
-                addParameter("file name", fileName).toString());
-        File file = new File(fileName);
+    public void loadAllTemplates() throws IOException {
+        long startTime = System.currentTimeMillis();
+        noBytesSaved.set(0);
 
+        List<String> shortNames = getAllShortNames();
+        int noThreads = Math.max(1, Math.min(shortNames.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService loader = Executors.newFixedThreadPool(noThreads, getThreadFactory());
         try {
-            String source = Files.toString(file, Charsets.UTF_8);
-            //String source = Resources.toString(Resources.getResource(fileName), Charsets.UTF_8);
+            List<Future<WebPartTemplate>> results = new ArrayList<Future<WebPartTemplate>>(shortNames.size());
+            for (final String shortName : shortNames) {
+                results.add(loader.submit(new Callable<WebPartTemplate>() {
+                    public WebPartTemplate call() throws IOException {
+                        WebPartTemplate result = loadTemplate(shortName);
+                        if (!result.isWellFormed()) {
+                            throw new IOException("malformed template: " + shortName);
+                        }
+                        return result;
+                    }
+                }));
+            }
 
-            if(source != null) {
-                template.initialize(source);
-                log.config(LogBuilder.createSystemMessage().addAction("Initialize template").toString());
+            for (int i = 0; i < results.size(); i++) {
+                templates.put(shortNames.get(i), getResult(results.get(i)));
             }
+        } finally {
+            loader.shutdownNow();
+        }
 
-            templates.put(shortName, template);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("load all templates").
+                addParameter("number of templates", shortNames.size()).
+                addParameter("number of threads", noThreads).
+                addParameter("bytes saved by minifying", noBytesSaved.get()).
+                addParameter("load time (ms)", System.currentTimeMillis() - startTime).log();
+    }
+
+    /**
+     * Returns the short names of all templates of all languages, in the default and the custom directory.
+     */
+    protected List<String> getAllShortNames() {
+        Set<String> result = new TreeSet<String>();
+        for (Language language : Language.values()) {
+            String lang = language.asIsoCode();
+            addShortNames(result, lang, new File(templatesDir.asString(), ConfigDir.DEFAULT_DIR_NAME + File.separator + lang));
+            addShortNames(result, lang, new File(templatesDir.asString(), ConfigDir.CUSTOM_DIR_NAME + File.separator + lang));
+        }
+        return new ArrayList<String>(result);
+    }
+
+    /**
+     *
+     */
+    protected void addShortNames(Set<String> shortNames, String prefix, File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
         }
-        catch (IOException e) {
-            log.warning(LogBuilder.createSystemMessage().
-                    addException("I/O Error while reading Template file", e).toString());
+
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                addShortNames(shortNames, prefix + File.separator + name, file);
+            } else if (name.endsWith(TEMPLATE_FILE_SUFFIX)) {
+                shortNames.add(prefix + File.separator + name.substring(0, name.length() - TEMPLATE_FILE_SUFFIX.length()));
+            }
         }
     }
 
+    /**
+     * Returns the result of a load, unwrapping its failure.
+     */
+    protected WebPartTemplate getResult(Future<WebPartTemplate> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while loading templates", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Returns a factory for request threads on App Engine, as only those may be started there, else the default one.
+     */
+    protected ThreadFactory getThreadFactory() {
+        ThreadFactory result = null;
+        try {
+            result = ThreadManager.currentRequestThreadFactory();
+        } catch (RuntimeException ex) {
+            // not within a request, e.g. in tools or tests
+        }
+        return (result != null) ? result : Executors.defaultThreadFactory();
+    }
+
+    /**
+     * Reads and compiles a template; safe to call from several threads at once.
+     */
+    protected WebPartTemplate loadTemplate(String shortName) throws IOException {
+        WebPartTemplate result = new WebPartTemplate(shortName);
+        String fileName = getTemplatesDir().getAbsoluteConfigFileName(shortName + TEMPLATE_FILE_SUFFIX);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("open html template file").
+                addParameter("file name", fileName).log();
+
+        String source = Files.toString(new File(fileName), Charsets.UTF_8);
+        source = AssetService.getInstance().rewritePaths(source);
+        if (isMinifying) {
+            source = minify(shortName, source);
+        }
+        result.initialize(source);
+        return result;
+    }
+
+    /**
+     *
+     */
+    protected String minify(String shortName, String source) {
+        String result = HtmlMinifier.minify(source);
+        int bytesSaved = source.getBytes(Charsets.UTF_8).length - result.getBytes(Charsets.UTF_8).length;
+        noBytesSaved.addAndGet(bytesSaved);
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("minify html template").
+                addParameter("template name", shortName).
+                addParameter("bytes saved", bytesSaved).log();
+        return result;
+    }
+
+    /**
+     * @methodtype boolean-query
+     */
+    public boolean isMinifying() {
+        return isMinifying;
+    }
+
+    /**
+     * Turns minifying templates on or off; affects templates loaded after.
+     *
+     * @methodtype set
+     */
+    public void setMinifying(boolean newIsMinifying) {
+        isMinifying = newIsMinifying;
+    }
+
     /**
      *
      */
@@ -25,6 +25,7 @@ import java.io.Writer;
 
 /**
  * A Writable can write a representation of itself to a Writer.
+ * Writing to a Utf8Writer lets it pass text it encoded ahead of time as bytes.
  *
  * @author dirkriehle
  */
@@ -35,4 +36,9 @@ public interface Writable {
      */
     public void writeOn(Writer writer) throws IOException;
 
+    /**
+     *
+     */
+    public void writeOn(Utf8Writer writer) throws IOException;
+
 }
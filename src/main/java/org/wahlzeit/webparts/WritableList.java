@@ -54,6 +54,16 @@ public class WritableList implements Writable {
         }
     }
 
+    /**
+     *
+     */
+    public void writeOn(Utf8Writer out) throws IOException {
+        for (Iterator<Writable> pi = writables.listIterator(); pi.hasNext(); ) {
+            Writable part = pi.next();
+            part.writeOn(out);
+        }
+    }
+
     /**
      *
      */
@@ -61,3 +61,55 @@ function validate(form) {
 	
 	form.submit();
 }
+
+var suggestTagsRequest = null;
+
+function suggestTags(input, listId) {
+	var value, start, head, prefix, list;
+	
+	value = input.value;
+	start = value.lastIndexOf(',') + 1;
+	head = value.substring(0, start);
+	prefix = value.substring(start).replace(/^\s+/, '');
+	if (head.length > 0) {
+		head = head + ' ';
+	}
+
+	list = document.getElementById(listId);
+	if (!list || !window.XMLHttpRequest) {
+		return;
+	}
+
+	if (prefix.length == 0) {
+		list.innerHTML = '';
+		return;
+	}
+
+	if (suggestTagsRequest != null) {
+		suggestTagsRequest.abort();
+	}
+
+	suggestTagsRequest = new XMLHttpRequest();
+	suggestTagsRequest.onreadystatechange = function() {
+		var request, result, i, option;
+		
+		request = this;
+		if ((request.readyState != 4) || (request.status != 200)) {
+			return;
+		}
+
+		result = JSON.parse(request.responseText);
+		list.innerHTML = '';
+		if (!result.tags) {
+			return;
+		}
+
+		for (i = 0; i < result.tags.length; i++) {
+			option = document.createElement('option');
+			option.value = head + result.tags[i].tag;
+			list.appendChild(option);
+		}
+	};
+	suggestTagsRequest.open('GET', '/suggestTags.json?prefix=' + encodeURIComponent(prefix), true);
+	suggestTagsRequest.send(null);
+}
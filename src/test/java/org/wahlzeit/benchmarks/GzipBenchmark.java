@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wahlzeit.servlets.GzipResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the CPU cost of gzipping a show photo page, through a GzipResponse with its per-thread deflater and, as
+ * a baseline, through a GZIPOutputStream per response at the default level; the identity benchmark sends the page
+ * through a GzipResponse to a client not accepting gzip. The page sizes are printed on setup. Run from the project
+ * directory with:
+ * gradle benchmark -Pbenchmarks=GzipBenchmark
+ *
+ * @author dirkriehle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GzipBenchmark {
+
+    /**
+     *
+     */
+    public static final String TEMPLATES_DIR = "src/main/webapp/config/templates/default/en/";
+    public static final String[] PAGE_FILES = {
+            "pages/ShowPhotoPage.html", "forms/FilterPhotosForm.html", "forms/PraisePhotoForm.html",
+            "forms/EngageGuestForm.html", "forms/TellFriendForm.html"
+    };
+
+    /**
+     *
+     */
+    protected byte[] page;
+    protected ByteArrayOutputStream bytes = new ByteArrayOutputStream(16384);
+    protected HttpServletRequest gzipRequest = createRequest("gzip, deflate");
+    protected HttpServletRequest identityRequest = createRequest(null);
+    protected HttpServletResponse response = createResponse();
+
+    /**
+     * Puts the page and its sidebar forms together, about the size of a rendered show photo page.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder source = new StringBuilder();
+        for (String fileName : PAGE_FILES) {
+            source.append(Files.toString(new File(TEMPLATES_DIR + fileName), Charsets.UTF_8));
+        }
+        page = source.toString().getBytes(Charsets.UTF_8);
+        System.out.println("page: " + page.length + " bytes, gzipped: " + gzip() + " bytes, "
+                + "gzipped per response: " + gzipPerResponse() + " bytes");
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int identity() throws IOException {
+        return send(identityRequest);
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int gzip() throws IOException {
+        return send(gzipRequest);
+    }
+
+    /**
+     *
+     */
+    protected int send(HttpServletRequest request) throws IOException {
+        bytes.reset();
+        GzipResponse gzipResponse = new GzipResponse(request, response);
+        gzipResponse.getOutputStream().write(page);
+        gzipResponse.finish();
+        return bytes.size();
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int gzipPerResponse() throws IOException {
+        bytes.reset();
+        GZIPOutputStream out = new GZIPOutputStream(bytes);
+        out.write(page);
+        out.close();
+        return bytes.size();
+    }
+
+    /**
+     *
+     */
+    protected static HttpServletRequest createRequest(final String acceptEncoding) {
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return method.getName().equals("getHeader") ? acceptEncoding : null;
+                    }
+                });
+    }
+
+    /**
+     * Returns an HTML response writing to bytes and ignoring headers.
+     */
+    protected HttpServletResponse createResponse() {
+        final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes.write(b, off, len);
+            }
+        };
+
+        return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                new Class<?>[]{HttpServletResponse.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getContentType")) {
+                            return "text/html; charset=UTF-8";
+                        } else if (method.getName().equals("getOutputStream")) {
+                            return out;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
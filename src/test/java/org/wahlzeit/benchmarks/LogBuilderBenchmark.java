@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wahlzeit.services.LogBuilder;
+import org.wahlzeit.services.Session;
+import org.wahlzeit.services.SessionManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the cost of a typical CONFIG message while CONFIG is off, as on a production server: built eagerly and
+ * then dropped by the logger, and created for the logger and level, where it is never built. Run with -prof gc to
+ * see the allocation per message. Run from the project directory with:
+ * gradle benchmark -Pbenchmarks=LogBuilderBenchmark
+ *
+ * @author dirkriehle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogBuilderBenchmark {
+
+    /**
+     *
+     */
+    protected static final Logger log = Logger.getLogger(LogBuilderBenchmark.class.getName());
+
+    /**
+     *
+     */
+    protected String photoId = "x1abz";
+    protected int noPhotos = 42;
+
+    /**
+     * Runs the messages in a guest's session, with CONFIG off.
+     */
+    @Setup
+    public void setUp() {
+        log.setLevel(Level.INFO);
+        SessionManager.setThreadLocalSession(new Session() {
+            @Override
+            public String getClientId() {
+                return null;
+            }
+        });
+    }
+
+    /**
+     *
+     */
+    @TearDown
+    public void tearDown() {
+        SessionManager.dropThreadLocalSession();
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public void eagerMessage() {
+        log.config(LogBuilder.createSystemMessage().
+                addAction("loading image").
+                addParameter("photo ID", photoId).
+                addParameter("Number of photos to show", noPhotos).toString());
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public void levelAwareMessage() {
+        LogBuilder.createSystemMessage(log, Level.CONFIG).
+                addAction("loading image").
+                addParameter("photo ID", photoId).
+                addParameter("Number of photos to show", noPhotos).log();
+    }
+
+}
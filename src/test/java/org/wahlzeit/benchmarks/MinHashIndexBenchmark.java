@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wahlzeit.model.MinHashIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of "more like this" queries for growing catalogs; it should stay flat, as only a bounded
+ * number of LSH candidates is scored per query. Run with: gradle benchmark -Pbenchmarks=MinHashIndexBenchmark
+ *
+ * @author dirkriehle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MinHashIndexBenchmark {
+
+    /**
+     *
+     */
+    public static final int NO_TAGS = 2000;
+
+    /**
+     *
+     */
+    @Param({"1000", "10000", "100000"})
+    public int noPhotos;
+
+    /**
+     *
+     */
+    protected MinHashIndex index;
+    protected Random random;
+
+    /**
+     * Photos get 3 to 8 tags drawn with a skewed (roughly Zipf-like) popularity, as real tags are.
+     */
+    @Setup
+    public void setUp() {
+        random = new Random(4711);
+        index = new MinHashIndex();
+        for (int id = 0; id < noPhotos; id++) {
+            int noPhotoTags = 3 + random.nextInt(6);
+            List<String> tags = new ArrayList<String>(noPhotoTags);
+            for (int i = 0; i < noPhotoTags; i++) {
+                double skewed = Math.pow(random.nextDouble(), 3);
+                tags.add("tag" + (int) (skewed * NO_TAGS));
+            }
+            index.update(id, tags);
+        }
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public List<Integer> querySimilar() {
+        return index.getSimilar(random.nextInt(noPhotos), 5);
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wahlzeit.model.LruSessionStore;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.SessionStore;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.model.UserSessionState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request session overhead of a UserSession: read the state, change it, write it back. The
+ * "httpSession" store serializes the session on every write, as App Engine does; the "lru" store only queues the
+ * write for its background writer. Run with: gradle benchmark -Pbenchmarks=SessionStoreBenchmark
+ *
+ * @author dirkriehle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SessionStoreBenchmark {
+
+    /**
+     *
+     */
+    public static final int NO_SESSIONS = 10000;
+
+    /**
+     *
+     */
+    @Param({"httpSession", "lru"})
+    public String store;
+
+    /**
+     *
+     */
+    protected SessionStore sessionStore;
+    protected String[] sessionIds = new String[NO_SESSIONS];
+
+    /**
+     *
+     */
+    @Setup
+    public void setUp() {
+        if ("lru".equals(store)) {
+            LruSessionStore lruStore = new InMemoryLruSessionStore(2 * NO_SESSIONS);
+            lruStore.startWriter();
+            sessionStore = lruStore;
+        } else {
+            sessionStore = new SerializingSessionStore();
+        }
+
+        for (int i = 0; i < NO_SESSIONS; i++) {
+            sessionIds[i] = "session" + i;
+            UserSessionState state = new UserSessionState();
+            state.setSiteUrl("http://localhost:8080/");
+            state.setClientId("guest" + i);
+            for (int j = 0; j < 20; j++) {
+                state.addPraisedPhotoId(PhotoId.getIdFromInt(1 + i + j));
+            }
+            sessionStore.setAttribute(sessionIds[i], UserSession.STATE, state);
+        }
+    }
+
+    /**
+     *
+     */
+    @TearDown
+    public void tearDown() {
+        if (sessionStore instanceof LruSessionStore) {
+            ((LruSessionStore) sessionStore).stopWriter();
+        }
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public Object request() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String sessionId = sessionIds[random.nextInt(NO_SESSIONS)];
+        UserSessionState state = (UserSessionState) sessionStore.getAttribute(sessionId, UserSession.STATE);
+        state.setMessage("message" + random.nextInt(100));
+        sessionStore.setAttribute(sessionId, UserSession.STATE, state);
+        return state;
+    }
+
+    /**
+     * Serializes a session's attributes on every write, as App Engine's HttpSession does.
+     */
+    public static class SerializingSessionStore implements SessionStore {
+
+        /**
+         *
+         */
+        protected Map<String, Map<String, Object>> sessions = new ConcurrentHashMap<String, Map<String, Object>>();
+        protected Map<String, byte[]> persisted = new ConcurrentHashMap<String, byte[]>();
+
+        public Object getAttribute(String sessionId, String name) {
+            Map<String, Object> attributes = sessions.get(sessionId);
+            return (attributes != null) ? attributes.get(name) : null;
+        }
+
+        public void setAttribute(String sessionId, String name, Object value) {
+            Map<String, Object> attributes = sessions.get(sessionId);
+            if (attributes == null) {
+                attributes = new HashMap<String, Object>();
+                sessions.put(sessionId, attributes);
+            }
+            synchronized (attributes) {
+                attributes.put(name, value);
+                try {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+                    ObjectOutputStream out = new ObjectOutputStream(bytes);
+                    out.writeObject(attributes);
+                    out.close();
+                    persisted.put(sessionId, bytes.toByteArray());
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        }
+
+        public void flush() {
+            // writes through
+        }
+    }
+
+    /**
+     * Keeps written sessions in memory instead of the datastore, but still serializes them in batches.
+     */
+    public static class InMemoryLruSessionStore extends LruSessionStore {
+
+        /**
+         *
+         */
+        protected Map<String, byte[]> persisted = new ConcurrentHashMap<String, byte[]>();
+
+        public InMemoryLruSessionStore(int maxSessions) {
+            super(maxSessions);
+        }
+
+        @Override
+        protected Map<String, Object> loadAttributes(String sessionId) {
+            byte[] data = persisted.get(sessionId);
+            try {
+                return (data != null) ? asAttributes(data) : null;
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        protected void saveAttributes(Map<String, Map<String, Object>> batch) {
+            for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+                persisted.put(entry.getKey(), asBytes(entry.getValue()));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wahlzeit.webparts.Utf8Writer;
+import org.wahlzeit.webparts.WebPart;
+import org.wahlzeit.webparts.WebPartKey;
+import org.wahlzeit.webparts.WebPartTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures filling in and rendering the show photo page, with the compiled template and, as a baseline, with the
+ * former rendering that looked up each slot by name in a HashMap. The *Bytes variants render to a byte stream,
+ * once through a Utf8Writer and once through an encoding Writer, as response.getWriter() would. Run from the
+ * project directory with:
+ * gradle benchmark -Pbenchmarks=WebPartBenchmark
+ *
+ * @author dirkriehle
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebPartBenchmark {
+
+    /**
+     *
+     */
+    public static final String TEMPLATE_FILE = "src/main/webapp/config/templates/default/en/pages/ShowPhotoPage.html";
+
+    /**
+     *
+     */
+    protected String source;
+    protected WebPartTemplate template;
+    protected LegacyTemplate legacyTemplate;
+    protected String[] names;
+    protected WebPartKey[] keys;
+    protected String[] values;
+    protected CharArrayWriter out = new CharArrayWriter(4096);
+    protected ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+
+    /**
+     *
+     */
+    @Setup
+    public void setUp() throws IOException {
+        source = Files.toString(new File(TEMPLATE_FILE), Charsets.UTF_8);
+        template = new WebPartTemplate("ShowPhotoPage");
+        template.initialize(source);
+        legacyTemplate = new LegacyTemplate(source);
+
+        int noKeys = template.getNoKeys();
+        names = new String[noKeys];
+        keys = new WebPartKey[noKeys];
+        values = new String[noKeys];
+        for (int i = 0; i < noKeys; i++) {
+            keys[i] = template.getKey(i);
+            names[i] = keys[i].getName();
+            values[i] = "<div class=\"" + names[i] + "\">value of " + names[i] + "</div>";
+        }
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int compile() {
+        WebPartTemplate result = new WebPartTemplate("ShowPhotoPage");
+        result.initialize(source);
+        return result.getNoSlots();
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int compileLegacy() {
+        return new LegacyTemplate(source).keys.length;
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int render() throws IOException {
+        out.reset();
+        createWebPart().writeOn(out);
+        return out.size();
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int renderBytes() throws IOException {
+        bytes.reset();
+        Utf8Writer writer = new Utf8Writer(bytes);
+        createWebPart().writeOn(writer);
+        writer.flush();
+        return bytes.size();
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int renderBytesEncoded() throws IOException {
+        bytes.reset();
+        OutputStreamWriter writer = new OutputStreamWriter(bytes, Charsets.UTF_8);
+        createWebPart().writeOn(writer);
+        writer.flush();
+        return bytes.size();
+    }
+
+    /**
+     *
+     */
+    protected WebPart createWebPart() {
+        WebPart result = new WebPart(template);
+        for (int i = 0; i < keys.length; i++) {
+            result.addString(keys[i], values[i]);
+        }
+        return result;
+    }
+
+    /**
+     *
+     */
+    @Benchmark
+    public int renderLegacy() throws IOException {
+        Map<String, Object> parts = new HashMap<String, Object>();
+        for (int i = 0; i < names.length; i++) {
+            parts.put(names[i], values[i]);
+        }
+
+        out.reset();
+        legacyTemplate.writeOn(out, parts);
+        return out.size();
+    }
+
+    /**
+     * The former template: slot keys and character offsets into the template with the slots cut out.
+     */
+    protected static class LegacyTemplate {
+
+        /**
+         *
+         */
+        protected String template;
+        protected String[] keys;
+        protected int[] slots;
+
+        /**
+         *
+         */
+        protected LegacyTemplate(String source) {
+            List<String> keyList = new ArrayList<String>();
+            List<Integer> slotList = new ArrayList<Integer>();
+            StringBuffer buffer = new StringBuffer(source);
+            for (int index = 0; index != -1; ) {
+                int nextSlot = buffer.indexOf("{$", index);
+                if (nextSlot != -1) {
+                    int endSlot = buffer.indexOf("}", nextSlot);
+                    if (endSlot != -1) {
+                        keyList.add(buffer.substring(nextSlot + 2, endSlot));
+                        slotList.add(nextSlot);
+                        buffer.replace(nextSlot, endSlot + 1, "");
+                    }
+                    index = endSlot;
+                } else {
+                    index = -1;
+                }
+            }
+
+            template = buffer.toString();
+            keys = keyList.toArray(new String[keyList.size()]);
+            slots = new int[slotList.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = slotList.get(i);
+            }
+        }
+
+        /**
+         *
+         */
+        protected void writeOn(Writer out, Map<String, Object> parts) throws IOException {
+            int start = 0;
+            for (int i = 0; i < keys.length; i++) {
+                out.write(template, start, slots[i] - start);
+                Object value = parts.get(keys[i]);
+                if (value != null) {
+                    out.write(value.toString());
+                }
+                start = slots[i];
+            }
+            out.write(template, start, template.length() - start);
+        }
+    }
+
+}
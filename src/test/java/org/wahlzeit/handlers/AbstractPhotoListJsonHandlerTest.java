@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.VoidWork;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.model.Tag;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.wahlzeit.services.OfyService.ofy;
+
+public class AbstractPhotoListJsonHandlerTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+	@Rule
+	public TestRule chain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider()).
+			around(new UserSessionProvider());
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPageStart() {
+		int[] photoIds = {3, 5, 8, 13};
+		assertEquals(0, AbstractPhotoListJsonHandler.getPageStart(photoIds, null));
+		assertEquals(0, AbstractPhotoListJsonHandler.getPageStart(photoIds, ""));
+		assertEquals(2, AbstractPhotoListJsonHandler.getPageStart(photoIds, PhotoId.getFromInt(5)));
+		assertEquals(4, AbstractPhotoListJsonHandler.getPageStart(photoIds, PhotoId.getFromInt(13)));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPageStartAfterRemovedPhoto() {
+		int[] photoIds = {3, 8, 13};
+		assertEquals(1, AbstractPhotoListJsonHandler.getPageStart(photoIds, PhotoId.getFromInt(5)));
+		assertEquals(0, AbstractPhotoListJsonHandler.getPageStart(photoIds, PhotoId.getFromInt(1)));
+		assertEquals(3, AbstractPhotoListJsonHandler.getPageStart(photoIds, PhotoId.getFromInt(20)));
+	}
+
+	/**
+	 * Writes the tags saving the photos would, without their images.
+	 */
+	protected static void writeTags(final String text, final Photo... photos) {
+		ObjectifyService.run(new VoidWork() {
+			@Override
+			public void vrun() {
+				for (Photo photo : photos) {
+					ofy().save().entity(new Tag(text, photo.getId().asString())).now();
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPagesThroughVisiblePhotos() {
+		Photo first = PhotoJsonHandlerTest.createPhoto("carol", PhotoStatus.VISIBLE);
+		Photo hidden = PhotoJsonHandlerTest.createPhoto("carol", PhotoStatus.INVISIBLE);
+		Photo second = PhotoJsonHandlerTest.createPhoto("carol", PhotoStatus.VISIBLE);
+		Photo third = PhotoJsonHandlerTest.createPhoto("carol", PhotoStatus.VISIBLE);
+		Photo other = PhotoJsonHandlerTest.createPhoto("dave", PhotoStatus.VISIBLE);
+		writeTags("un:carol", first, hidden, second, third);
+		writeTags("un:dave", other);
+
+		UserSession us = (UserSession) SessionManager.getThreadLocalSession();
+		UserPhotosJsonHandler handler = new UserPhotosJsonHandler();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(UserPhotosJsonHandler.USER, "carol");
+		args.put(AbstractPhotoListJsonHandler.MAX, "2");
+
+		String json = PhotoJsonHandlerTest.handleJson(handler, us, args, false);
+		assertTrue(json.startsWith("{\"user\":\"carol\",\"photos\":[{\"id\":\"" + first.getId().asString() + "\""));
+		assertTrue(json.contains("{\"id\":\"" + second.getId().asString() + "\""));
+		assertFalse(json.contains("\"" + hidden.getId().asString() + "\""));
+		assertFalse(json.contains("\"" + third.getId().asString() + "\""));
+		assertTrue(json.endsWith("],\"cursor\":\"" + second.getId().asString() + "\"}"));
+
+		args.put(AbstractPhotoListJsonHandler.CURSOR, second.getId().asString());
+		json = PhotoJsonHandlerTest.handleJson(handler, us, args, false);
+		assertTrue(json.startsWith("{\"user\":\"carol\",\"photos\":[{\"id\":\"" + third.getId().asString() + "\""));
+		assertFalse(json.contains(AbstractPhotoListJsonHandler.CURSOR));
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.services.Language;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.webparts.WebPartTemplate;
+
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class GuestPageCacheTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	private GuestPageCache cache;
+	private Photo photo;
+	private WebPartTemplate template;
+
+	@Before
+	public void setUp() {
+		cache = new GuestPageCache();
+		photo = new Photo(PhotoId.getNextId());
+		template = new WebPartTemplate("page");
+		template.initialize("<p>{$sidebar}</p>");
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPagesByLanguageAndSize() {
+		GuestPageCache.Page page = cache.putPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM, template);
+		assertSame(page, cache.getPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM));
+		assertNull(cache.getPage(photo, null, Language.GERMAN, PhotoSize.MEDIUM));
+		assertNull(cache.getPage(photo, null, Language.ENGLISH, PhotoSize.LARGE));
+
+		GuestPageCache.Page other = cache.putPage(photo, null, Language.ENGLISH, PhotoSize.LARGE, template);
+		assertNotEquals(page.getTag(), other.getTag());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testInvalidation() {
+		cache.putPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM, template);
+		cache.putPage(photo, null, Language.GERMAN, PhotoSize.SMALL, template);
+		cache.photoPraised(photo);
+		assertNull(cache.getPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM));
+		assertNull(cache.getPage(photo, null, Language.GERMAN, PhotoSize.SMALL));
+
+		cache.putPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM, template);
+		photo.incWriteCount(); // changed without a photo event
+		assertNull(cache.getPage(photo, null, Language.ENGLISH, PhotoSize.MEDIUM));
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.wahlzeit.model.AccessRights;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoId;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.model.User;
+import org.wahlzeit.model.UserManager;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PhotoJsonHandlerTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+	@Rule
+	public TestRule chain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider()).
+			around(new UserSessionProvider());
+
+	private UserSession session;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		session = (UserSession) SessionManager.getThreadLocalSession();
+	}
+
+	/**
+	 *
+	 */
+	static Photo createPhoto(final String ownerId, final PhotoStatus status) {
+		return ObjectifyService.run(new Work<Photo>() {
+			@Override
+			public Photo run() {
+				if (!UserManager.getInstance().hasClientById(ownerId)) {
+					new User(ownerId, ownerId, ownerId + "@example.com");
+				}
+				Photo result = new Photo(PhotoId.getNextId());
+				result.setOwnerId(ownerId);
+				result.setWidthAndHeight(640, 480);
+				result.setStatus(status);
+				PhotoManager.getInstance().addPhoto(result);
+				return result;
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	static String handleJson(final WebJsonHandler handler, final UserSession us, final Map<String, String> args,
+							 final boolean isPost) {
+		return ObjectifyService.run(new Work<String>() {
+			@Override
+			public String run() {
+				StringWriter result = new StringWriter();
+				try {
+					handler.handleJson(us, args, isPost, new JsonWriter(result));
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+				return result.toString();
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testWritesPhoto() throws IOException {
+		Photo photo = createPhoto("alice", PhotoStatus.VISIBLE);
+		PhotoJsonHandler handler = new PhotoJsonHandler();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+
+		PhotoSize maxSize = photo.getMaxPhotoSize();
+		PhotoSize size = maxSize.isSmaller(session.getPhotoSize()) ? maxSize : session.getPhotoSize();
+		StringWriter expected = new StringWriter();
+		new JsonWriter(expected).beginObject().
+				property(Photo.ID, photo.getId().asString()).
+				property(Photo.IMAGE, handler.getPhotoAsRelativeResourcePathString(photo, size)).
+				property(Photo.THUMB, handler.getPhotoAsRelativeResourcePathString(photo, PhotoSize.THUMB)).
+				property(Photo.PRAISE, photo.getPraise()).
+				property(Photo.NO_VOTES, photo.getNoVotes()).
+				property(Photo.OWNER_ID, "alice").
+				property(Photo.CAPTION, photo.getCaption(session.getConfiguration())).
+				property(Photo.DESCRIPTION, photo.getSummary(session.getConfiguration())).
+				property(Photo.TAGS, "").
+				property(Photo.STATUS, PhotoStatus.VISIBLE.asString()).
+				property(Photo.UPLOADED_ON, photo.getCreationTime()).endObject();
+		assertEquals(expected.toString(), handleJson(handler, session, args, false));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsUnknownOrInvisiblePhotos() {
+		Photo photo = createPhoto("alice", PhotoStatus.INVISIBLE);
+		PhotoJsonHandler handler = new PhotoJsonHandler();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+		assertEquals("{\"error\":\"illegalArgument\"}", handleJson(handler, session, args, false));
+
+		args.put(Photo.ID, "");
+		assertEquals("{\"error\":\"illegalArgument\"}", handleJson(handler, session, args, false));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsMissingRights() {
+		Photo photo = createPhoto("alice", PhotoStatus.VISIBLE);
+		PhotoJsonHandler handler = new PhotoJsonHandler() {
+			{
+				initialize(AccessRights.USER);
+			}
+		};
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+		assertEquals("{\"error\":\"illegalAccess\"}", handleJson(handler, session, args, false));
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.wahlzeit.model.ModelConfig;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoManager;
+import org.wahlzeit.model.PhotoSize;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PraiseAndNextJsonHandlerTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+	@Rule
+	public TestRule chain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider()).
+			around(new UserSessionProvider());
+
+	private UserSession session;
+	private PraiseAndNextJsonHandler handler;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		session = (UserSession) SessionManager.getThreadLocalSession();
+		handler = new PraiseAndNextJsonHandler();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPraisesAndAnswersNextPhoto() throws IOException {
+		Photo prior = PhotoJsonHandlerTest.createPhoto("alice", PhotoStatus.VISIBLE);
+		PhotoJsonHandlerTest.createPhoto("bob", PhotoStatus.VISIBLE);
+		session.addDisplayedPhoto(prior); // as if shown on the photo page
+		int noVotes = prior.getNoVotes();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, prior.getId().asString());
+		args.put(Photo.PRAISE, "3");
+
+		String json = PhotoJsonHandlerTest.handleJson(handler, session, args, true);
+		assertEquals(noVotes + 1, prior.getNoVotes());
+		assertTrue(session.hasPraisedPhoto(prior));
+		assertNull(session.getPriorPhoto());
+
+		assertNotNull(session.getPhotoId());
+		Photo photo = PhotoManager.getInstance().getPhotoFromId(session.getPhotoId());
+		assertNotEquals(prior, photo);
+		PhotoSize size = handler.getPhotoSize(session, photo);
+		ModelConfig config = session.getConfiguration();
+		StringWriter expected = new StringWriter();
+		new JsonWriter(expected).beginObject().
+				property(PraisePhotoJsonHandler.WAS_PRAISED, true).
+				name(NextPhotoJsonHandler.PRIOR).beginObject().
+				property(Photo.ID, prior.getId().asString()).
+				property(Photo.THUMB, handler.getPhotoAsRelativeResourcePathString(prior, PhotoSize.THUMB)).
+				property(Photo.PRAISE, prior.getPraiseAsString(config)).
+				property(Photo.CAPTION, prior.getCaption(config)).endObject().
+				name(NextPhotoJsonHandler.PHOTO).beginObject().
+				property(Photo.ID, photo.getId().asString()).
+				property(Photo.IMAGE, handler.getPhotoAsRelativeResourcePathString(photo, size)).
+				property(Photo.CAPTION, photo.getCaption(config)).endObject().endObject();
+		assertEquals(expected.toString(), json);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsGetAndInvisiblePhotos() {
+		Photo photo = PhotoJsonHandlerTest.createPhoto("alice", PhotoStatus.VISIBLE);
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+		args.put(Photo.PRAISE, "3");
+		assertEquals("{\"error\":\"illegalArgument\"}", PhotoJsonHandlerTest.handleJson(handler, session, args, false));
+
+		Photo invisible = PhotoJsonHandlerTest.createPhoto("alice", PhotoStatus.INVISIBLE);
+		args.put(Photo.ID, invisible.getId().asString());
+		assertEquals("{\"error\":\"illegalArgument\"}", PhotoJsonHandlerTest.handleJson(handler, session, args, true));
+		assertFalse(session.hasPraisedPhoto(photo));
+		assertFalse(session.hasPraisedPhoto(invisible));
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.handlers;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TestRule;
+import org.wahlzeit.model.Photo;
+import org.wahlzeit.model.PhotoStatus;
+import org.wahlzeit.model.UserSession;
+import org.wahlzeit.services.SessionManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+import org.wahlzeit.testEnvironmentProvider.SysConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
+import org.wahlzeit.utils.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PraisePhotoJsonHandlerTest {
+
+	@ClassRule
+	public static SysConfigProvider sysConfigProvider = new SysConfigProvider();
+	@Rule
+	public TestRule chain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider()).
+			around(new UserSessionProvider());
+
+	private UserSession session;
+	private PraisePhotoJsonHandler handler;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		session = (UserSession) SessionManager.getThreadLocalSession();
+		handler = new PraisePhotoJsonHandler();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRecordsPraise() throws IOException {
+		Photo photo = PhotoJsonHandlerTest.createPhoto("alice", PhotoStatus.VISIBLE);
+		int noVotes = photo.getNoVotes();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+		args.put(Photo.PRAISE, "7");
+
+		String json = PhotoJsonHandlerTest.handleJson(handler, session, args, true);
+		assertEquals(noVotes + 1, photo.getNoVotes());
+		assertTrue(session.hasPraisedPhoto(photo));
+		assertEquals(photo, session.getPriorPhoto());
+		StringWriter expected = new StringWriter();
+		new JsonWriter(expected).beginObject().
+				property(Photo.ID, photo.getId().asString()).
+				property(PraisePhotoJsonHandler.WAS_PRAISED, true).
+				property(Photo.PRAISE, photo.getPraise()).
+				property(Photo.NO_VOTES, noVotes + 1).endObject();
+		assertEquals(expected.toString(), json);
+
+		// praised once per session only
+		json = PhotoJsonHandlerTest.handleJson(handler, session, args, true);
+		assertEquals(noVotes + 1, photo.getNoVotes());
+		assertTrue(json.contains("\"" + PraisePhotoJsonHandler.WAS_PRAISED + "\":false"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsGetAndInvalidPraise() {
+		Photo photo = PhotoJsonHandlerTest.createPhoto("alice", PhotoStatus.VISIBLE);
+		int noVotes = photo.getNoVotes();
+		Map<String, String> args = new HashMap<String, String>();
+		args.put(Photo.ID, photo.getId().asString());
+		args.put(Photo.PRAISE, "7");
+		assertEquals("{\"error\":\"illegalArgument\"}", PhotoJsonHandlerTest.handleJson(handler, session, args, false));
+
+		args.put(Photo.PRAISE, "11");
+		assertEquals("{\"error\":\"illegalArgument\"}", PhotoJsonHandlerTest.handleJson(handler, session, args, true));
+		assertEquals(noVotes, photo.getNoVotes());
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AliasTableTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSampleFollowsWeights() {
+		double[] weights = {1.0, 2.0, 0.0, 5.0, 2.0};
+		AliasTable table = new AliasTable(weights);
+		assertEquals(5, table.getSize());
+
+		Random random = new Random(42);
+		int noSamples = 100000;
+		int[] counts = new int[weights.length];
+		for (int i = 0; i < noSamples; i++) {
+			counts[table.sample(random)]++;
+		}
+
+		assertEquals(0, counts[2]);
+		for (int i = 0; i < weights.length; i++) {
+			assertEquals(weights[i] / 10.0, (double) counts[i] / noSamples, 0.01);
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSingleWeight() {
+		AliasTable table = new AliasTable(new double[]{0.0, 3.0});
+		Random random = new Random(7);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1, table.sample(random));
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoPositiveWeight() {
+		new AliasTable(new double[]{0.0, 0.0});
+	}
+
+	/**
+	 *
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeWeight() {
+		new AliasTable(new double[]{1.0, -1.0});
+	}
+
+}
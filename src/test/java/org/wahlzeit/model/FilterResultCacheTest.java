@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FilterResultCacheTest {
+
+	private FilterResultCache cache;
+
+	@Before
+	public void initCache() {
+		cache = new FilterResultCache();
+		cache.put("", new int[]{1, 2, 3}, cache.getGeneration());
+		cache.put("tg:flower", new int[]{1, 2}, cache.getGeneration());
+		cache.put("tg:flower tg:sun", new int[]{1, 2, 3}, cache.getGeneration());
+		cache.put("tg:sun", new int[]{3}, cache.getGeneration());
+	}
+
+	/**
+	 *
+	 */
+	private static Set<String> asSet(String... tags) {
+		return new HashSet<String>(Arrays.asList(tags));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testKeys() {
+		assertEquals("", FilterResultCache.asKey(Collections.<String>emptyList()));
+		assertEquals("tg:flower tg:sun", FilterResultCache.asKey(Arrays.asList("tg:sun", "tg:flower", "tg:sun")));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testHits() {
+		assertArrayEquals(new int[]{1, 2}, cache.get("tg:flower"));
+		assertNull(cache.get("tg:moon"));
+		assertEquals(1, cache.getNoHits());
+		assertEquals(1, cache.getNoMisses());
+		assertEquals(0.5, cache.getHitRatio(), 0.0);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPreciseInvalidation() {
+		Set<String> oldTags = asSet("tg:flower", "un:laura");
+		cache.photoTagsChanged(null, oldTags, asSet("tg:flower", "tg:sun", "un:laura"));
+
+		assertNull(cache.get("tg:sun"));
+		assertNull(cache.get("tg:flower tg:sun"));
+		assertArrayEquals(new int[]{1, 2}, cache.get("tg:flower"));
+		assertArrayEquals(new int[]{1, 2, 3}, cache.get(""));
+
+		cache.photoTagsChanged(null, Collections.<String>emptySet(), asSet("tg:moon"));
+		assertNull(cache.get(""));
+		assertEquals(1, cache.getNoEntries());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testConcurrentInvalidation() {
+		long generation = cache.getGeneration();
+		cache.invalidate("tg:moon");
+		cache.put("tg:moon", new int[]{4}, generation);
+		assertNull(cache.get("tg:moon"));
+	}
+
+}
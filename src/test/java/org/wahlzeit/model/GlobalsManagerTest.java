@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.servlets.AbstractServlet;
+import org.wahlzeit.servlets.GuestCookie;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import javax.xml.bind.DatatypeConverter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.wahlzeit.services.OfyService.ofy;
+
+public class GlobalsManagerTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	/**
+	 *
+	 */
+	private static String getStoredSecret() {
+		return ObjectifyService.run(new Work<String>() {
+			@Override
+			public String run() {
+				return ofy().load().type(Globals.class).id(Globals.DEAULT_ID).now().getGuestCookieSecret();
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testKeepsStoredSecret() {
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				Globals globals = new Globals(); // as stored before there were guest cookies
+				globals.setLastUserId(UserManager.getInstance().getLastClientId());
+				globals.setLastPhotoId(PhotoId.getCurrentIdAsInt());
+				globals.setLastCaseId(Case.getLastCaseId().asInt());
+				globals.setLastSessionId(AbstractServlet.getLastSessionId());
+				ofy().save().entity(globals).now();
+				return null;
+			}
+		});
+
+		byte[] secret = GuestCookie.getSecret();
+		try {
+			GuestCookie.setSecret(GuestCookie.createSecret()); // an instance-local secret
+			GlobalsManager.getInstance().loadGlobals();
+			String storedSecret = getStoredSecret();
+			assertNotNull(storedSecret);
+			assertArrayEquals(DatatypeConverter.parseBase64Binary(storedSecret), GuestCookie.getSecret());
+
+			GuestCookie.setSecret(GuestCookie.createSecret());
+			GlobalsManager.getInstance().saveGlobals();
+			assertEquals(storedSecret, getStoredSecret());
+
+			GlobalsManager.getInstance().loadGlobals();
+			assertArrayEquals(DatatypeConverter.parseBase64Binary(storedSecret), GuestCookie.getSecret());
+		} finally {
+			GuestCookie.setSecret(secret);
+		}
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HammingIndexTest {
+
+	private HammingIndex index;
+	private long hash;
+
+	@Before
+	public void initIndex() {
+		index = new HammingIndex();
+		hash = 0x0123456789abcdefL;
+		index.add(1, hash);
+		index.add(2, hash ^ 0x1L); // distance 1
+		index.add(3, hash ^ 0x8000800080008000L); // distance 4, one bit per chunk
+		index.add(4, hash ^ 0xffL); // distance 8
+		index.add(5, ~hash); // distance 64
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFind() {
+		assertEquals(Arrays.asList(1, 2), index.find(hash, 1));
+		assertEquals(Arrays.asList(1, 2, 3), index.find(hash, 6));
+		assertEquals(Arrays.asList(1, 2, 3, 4), index.find(hash, 8));
+	}
+
+	/**
+	 * Checks the multi-index search against a linear scan.
+	 */
+	@Test
+	public void testAgainstLinearScan() {
+		Random random = new Random(4711);
+		long[] hashes = new long[2000];
+		HammingIndex randomIndex = new HammingIndex();
+		for (int i = 0; i < hashes.length; i++) {
+			hashes[i] = (i % 2 == 0) ? random.nextLong() : hashes[i - 1] ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+			randomIndex.add(i, hashes[i]);
+		}
+
+		for (int q = 0; q < 50; q++) {
+			long query = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+			List<Integer> found = randomIndex.find(query, 7);
+			int expected = 0;
+			for (int i = 0; i < hashes.length; i++) {
+				if (PerceptualHash.getDistance(query, hashes[i]) <= 7) {
+					expected++;
+					assertTrue(found.contains(i));
+				}
+			}
+			assertEquals(expected, found.size());
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRemove() {
+		index.remove(2);
+		index.add(3, ~hash);
+		assertEquals(Arrays.asList(1), index.find(hash, 6));
+		assertEquals(4, index.getSize());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDifferenceHash() {
+		int[] brighterLeft = new int[9 * 8];
+		for (int i = 0; i < brighterLeft.length; i++) {
+			brighterLeft[i] = 255 - (i % 9) * 20;
+		}
+		assertEquals(-1L, PerceptualHash.getDifferenceHash(brighterLeft));
+
+		int[] scaled = new int[brighterLeft.length];
+		for (int i = 0; i < scaled.length; i++) {
+			scaled[i] = brighterLeft[i] / 2 + 10; // darker and less contrast, same structure
+		}
+		assertEquals(0, PerceptualHash.getDistance(PerceptualHash.getDifferenceHash(brighterLeft), PerceptualHash.getDifferenceHash(scaled)));
+	}
+
+}
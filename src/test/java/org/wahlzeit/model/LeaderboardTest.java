@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LeaderboardTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	private Leaderboard leaderboard;
+	private Photo photo1;
+	private Photo photo2;
+	private Photo photo3;
+
+	@Before
+	public void initLeaderboard() {
+		leaderboard = new Leaderboard();
+		photo1 = createPhoto(30, 5); // praise 6
+		photo2 = createPhoto(40, 5); // praise 8
+		photo3 = createPhoto(60, 10); // praise 6, more votes than photo1
+		leaderboard.update(photo1);
+		leaderboard.update(photo2);
+		leaderboard.update(photo3);
+	}
+
+	/**
+	 *
+	 */
+	private Photo createPhoto(int praiseSum, int noVotes) {
+		Photo result = new Photo(PhotoId.getNextId());
+		result.praiseSum = praiseSum;
+		result.noVotes = noVotes;
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testOrder() {
+		assertEquals(3, leaderboard.getSize());
+		assertEquals(Arrays.asList(photo2.getId(), photo3.getId(), photo1.getId()), leaderboard.getTop(10));
+		assertEquals(Arrays.asList(photo2.getId()), leaderboard.getTop(1));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testUpdateMovesPhoto() {
+		photo1.praiseSum = 90;
+		leaderboard.update(photo1);
+		assertEquals(3, leaderboard.getSize());
+		assertEquals(Arrays.asList(photo1.getId(), photo2.getId(), photo3.getId()), leaderboard.getTop(10));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRemove() {
+		leaderboard.remove(photo2.getId());
+		assertFalse(leaderboard.contains(photo2.getId()));
+		assertTrue(leaderboard.contains(photo1.getId()));
+		assertEquals(Arrays.asList(photo3.getId(), photo1.getId()), leaderboard.getTop(10));
+
+		leaderboard.remove(photo1.getId());
+		leaderboard.remove(photo3.getId());
+		assertTrue(leaderboard.isEmpty());
+	}
+
+}
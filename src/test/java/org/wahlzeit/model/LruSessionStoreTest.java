@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LruSessionStoreTest {
+
+	/**
+	 * Keeps written sessions in a map instead of the datastore.
+	 */
+	private static class TestSessionStore extends LruSessionStore {
+
+		private Map<String, Map<String, Object>> persisted = new HashMap<String, Map<String, Object>>();
+		private List<Integer> batchSizes = new ArrayList<Integer>();
+		private int noLoads = 0;
+
+		private TestSessionStore(int maxSessions) {
+			super(maxSessions);
+		}
+
+		@Override
+		protected Map<String, Object> loadAttributes(String sessionId) {
+			noLoads++;
+			Map<String, Object> result = persisted.get(sessionId);
+			return (result != null) ? new HashMap<String, Object>(result) : null;
+		}
+
+		@Override
+		protected void saveAttributes(Map<String, Map<String, Object>> batch) {
+			batchSizes.add(batch.size());
+			for (Map.Entry<String, Map<String, Object>> entry : batch.entrySet()) {
+				persisted.put(entry.getKey(), new HashMap<String, Object>(entry.getValue()));
+			}
+		}
+	}
+
+	private TestSessionStore store;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() {
+		store = new TestSessionStore(LruSessionStore.NO_SEGMENTS);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSetAndRemove() {
+		assertNull(store.getAttribute("s1", "a"));
+		store.setAttribute("s1", "a", "x");
+		assertEquals("x", store.getAttribute("s1", "a"));
+		store.setAttribute("s1", "a", null);
+		assertNull(store.getAttribute("s1", "a"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testEvictedSessionsAreReloaded() {
+		int noSessions = 10 * LruSessionStore.NO_SEGMENTS;
+		for (int i = 0; i < noSessions; i++) {
+			store.setAttribute("s" + i, "a", i);
+		}
+		assertTrue(store.getNoCachedSessions() <= LruSessionStore.NO_SEGMENTS);
+		store.noLoads = 0;
+
+		// evicted but not yet written: taken from the pending writes
+		assertEquals(0, store.getAttribute("s0", "a"));
+		assertEquals(0, store.noLoads);
+
+		store.flush();
+		assertEquals(0, store.getNoPendingWrites());
+		for (int i = 0; i < noSessions; i++) {
+			assertEquals(i, store.getAttribute("s" + i, "a"));
+		}
+		assertTrue(store.noLoads > 0);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFlushWritesInBatches() {
+		int noSessions = LruSessionStore.BATCH_SIZE + 1;
+		for (int i = 0; i < noSessions; i++) {
+			store.setAttribute("s" + i, "a", i);
+			store.setAttribute("s" + i, "b", i);
+		}
+		assertEquals(noSessions, store.getNoPendingWrites());
+
+		store.flush();
+		assertEquals(2, store.batchSizes.size());
+		assertEquals(LruSessionStore.BATCH_SIZE, (int) store.batchSizes.get(0));
+		assertEquals(1, (int) store.batchSizes.get(1));
+		assertEquals(noSessions, store.persisted.size());
+
+		store.flush();
+		assertEquals(2, store.batchSizes.size());
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MinHashIndexTest {
+
+	private MinHashIndex index;
+
+	@Before
+	public void initIndex() {
+		index = new MinHashIndex();
+		index.update(1, Arrays.asList("flower", "red", "garden", "spring", "macro"));
+		index.update(2, Arrays.asList("flower", "red", "garden", "spring", "tulip"));
+		index.update(3, Arrays.asList("car", "street", "night"));
+		index.update(4, Arrays.asList("flower", "red", "garden", "spring", "macro"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSimilarity() {
+		int[] signature1 = MinHashIndex.asSignature(Arrays.asList("a", "b", "c", "d"));
+		int[] signature2 = MinHashIndex.asSignature(Arrays.asList("a", "b", "c", "e"));
+		double similarity = MinHashIndex.getSimilarity(signature1, signature2);
+		assertEquals(0.6, similarity, 0.2); // Jaccard similarity 3/5
+
+		assertEquals(1.0, MinHashIndex.getSimilarity(signature1, signature1), 0.0);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testGetSimilar() {
+		List<Integer> similar = index.getSimilar(1, 10);
+		assertEquals(Integer.valueOf(4), similar.get(0));
+		assertTrue(similar.contains(2));
+		assertFalse(similar.contains(1));
+		assertFalse(similar.contains(3));
+
+		assertEquals(1, index.getSimilar(1, 1).size());
+		assertTrue(index.getSimilar(Arrays.asList("car", "street", "night"), 10).contains(3));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testUpdateAndRemove() {
+		index.update(4, Arrays.asList("car", "street", "night"));
+		assertFalse(index.getSimilar(1, 10).contains(4));
+		assertTrue(index.getSimilar(3, 10).contains(4));
+
+		index.update(3, Collections.<String>emptyList());
+		index.remove(4);
+		assertEquals(2, index.getSize());
+		assertTrue(index.getSimilar(Arrays.asList("car", "street", "night"), 10).isEmpty());
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TagStatisticsTest {
+
+	private TagStatistics statistics;
+
+	@Before
+	public void initStatistics() {
+		statistics = new TagStatistics();
+		statistics.update(noTags(), asSet("tg:flower", "tg:red", "un:laura"));
+		statistics.update(noTags(), asSet("tg:flower", "tg:sun"));
+		statistics.update(noTags(), asSet("tg:flower", "tg:red"));
+	}
+
+	/**
+	 *
+	 */
+	private static Set<String> asSet(String... tags) {
+		return new HashSet<String>(Arrays.asList(tags));
+	}
+
+	/**
+	 *
+	 */
+	private static Set<String> noTags() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCounts() {
+		assertEquals(3, statistics.getCount("flower"));
+		assertEquals(2, statistics.getCount("red"));
+		assertEquals(0, statistics.getCount("laura"));
+		assertEquals(2, statistics.getCount("flower", "red"));
+		assertEquals(2, statistics.getCount("red", "flower"));
+		assertEquals(0, statistics.getCount("red", "sun"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testChangedTags() {
+		statistics.update(asSet("tg:flower", "tg:sun"), asSet("tg:flower", "tg:red"));
+		assertEquals(3, statistics.getCount("flower"));
+		assertEquals(3, statistics.getCount("red"));
+		assertEquals(0, statistics.getCount("sun"));
+		assertEquals(3, statistics.getCount("flower", "red"));
+		assertEquals(0, statistics.getCount("flower", "sun"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testTagCloud() {
+		TagCloud cloud = statistics.getTagCloud(2);
+		assertEquals(2, cloud.getSize());
+		assertEquals("flower", cloud.getTag(0));
+		assertEquals("red", cloud.getTag(1));
+		assertEquals(TagCloud.NO_BUCKETS, cloud.getBucket(0));
+
+		statistics.update(noTags(), asSet("tg:moon"));
+		assertSame(cloud, statistics.getTagCloud(2));
+
+		statistics.update(noTags(), asSet("tg:flower"));
+		assertSame(cloud, statistics.getTagCloud(2)); // red stays in the same bucket
+
+		for (int i = 0; i < 5; i++) {
+			statistics.update(noTags(), asSet("tg:flower"));
+		}
+		assertNotSame(cloud, statistics.getTagCloud(2));
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class TagTrieTest {
+
+	private TagTrie tagTrie;
+
+	@Before
+	public void initTagTrie() {
+		tagTrie = new TagTrie();
+		tagTrie.add("flower", 5);
+		tagTrie.add("flow", 2);
+		tagTrie.add("flora", 7);
+		tagTrie.add("fly", 1);
+		tagTrie.add("sun", 3);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCounts() {
+		assertEquals(5, tagTrie.getSize());
+		assertEquals(5, tagTrie.getCount("flower"));
+		assertEquals(2, tagTrie.getCount("flow"));
+		assertEquals(0, tagTrie.getCount("flo"));
+		assertEquals(0, tagTrie.getCount("flowers"));
+		assertEquals(0, tagTrie.getCount("moon"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSuggestOrdersByCount() {
+		assertEquals(Arrays.asList("flora", "flower", "flow", "fly"), tagTrie.suggest("f", 10));
+		assertEquals(Arrays.asList("flora", "flower"), tagTrie.suggest("fl", 2));
+		assertEquals(Arrays.asList("flower", "flow"), tagTrie.suggest("flow", 10));
+		assertEquals(Arrays.asList("flower"), tagTrie.suggest("flowe", 10));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSuggestUnknownPrefix() {
+		assertEquals(Collections.emptyList(), tagTrie.suggest("flx", 10));
+		assertEquals(Collections.emptyList(), tagTrie.suggest("flowers", 10));
+		assertEquals(Collections.emptyList(), tagTrie.suggest("f", 0));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDecrementRemovesTag() {
+		tagTrie.add("flora", -7);
+		assertEquals(4, tagTrie.getSize());
+		assertEquals(0, tagTrie.getCount("flora"));
+		assertEquals(Arrays.asList("flower", "flow", "fly"), tagTrie.suggest("fl", 10));
+
+		tagTrie.add("flow", -2);
+		assertEquals(5, tagTrie.getCount("flower"));
+		assertEquals(Arrays.asList("flower", "fly"), tagTrie.suggest("f", 10));
+
+		tagTrie.decrement("unknown");
+		assertEquals(3, tagTrie.getSize());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testIncrementReordersSuggestions() {
+		for (int i = 0; i < 10; i++) {
+			tagTrie.increment("fly");
+		}
+		assertEquals(Arrays.asList("fly", "flora"), tagTrie.suggest("f", 2));
+	}
+
+}
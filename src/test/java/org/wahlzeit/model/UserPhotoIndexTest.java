@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserPhotoIndexTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	private UserPhotoIndex index;
+	private Photo older;
+	private Photo newer;
+	private Photo best;
+
+	@Before
+	public void initIndex() {
+		index = new UserPhotoIndex();
+		older = createPhoto(50, 10, 1000L);
+		newer = createPhoto(50, 10, 2000L);
+		best = createPhoto(90, 10, 500L);
+		index.update(older);
+		index.update(newer);
+		index.update(best);
+	}
+
+	/**
+	 *
+	 */
+	private Photo createPhoto(int praiseSum, int noVotes, long creationTime) {
+		Photo result = new Photo(PhotoId.getNextId());
+		result.praiseSum = praiseSum;
+		result.noVotes = noVotes;
+		result.creationTime = creationTime;
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testOrderByPraiseThenUploadTime() {
+		assertEquals(Arrays.asList(best, newer, older), index.getPhotos(0, 10));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPaging() {
+		assertEquals(Arrays.asList(best, newer), index.getPhotos(0, 2));
+		assertEquals(Arrays.asList(older), index.getPhotos(2, 2));
+		assertEquals(0, index.getPhotos(4, 2).size());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testStatusChanges() {
+		best.status = PhotoStatus.INVISIBLE;
+		index.update(best);
+		assertEquals(Arrays.asList(newer, older, best), index.getPhotos(0, 10));
+
+		newer.status = PhotoStatus.DELETED;
+		index.update(newer);
+		assertEquals(2, index.getSize());
+		assertEquals(Arrays.asList(older, best), index.getPhotos(0, 10));
+	}
+
+}
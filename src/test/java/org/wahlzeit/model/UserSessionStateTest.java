@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model;
+
+import org.junit.Test;
+import org.wahlzeit.services.Language;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UserSessionStateTest {
+
+	/**
+	 *
+	 */
+	private static UserSessionState copy(UserSessionState state) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(state);
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		return (UserSessionState) in.readObject();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		PhotoId id1 = PhotoId.getNextId();
+		PhotoId id2 = PhotoId.getNextId();
+
+		UserSessionState state = new UserSessionState();
+		state.setSiteUrl("http://localhost:8080/");
+		state.setClientId("guest42");
+		state.setLanguage(Language.GERMAN);
+		state.setPhotoSize(PhotoSize.LARGE);
+		state.addPraisedPhotoId(id2);
+		state.addPraisedPhotoId(id1);
+		state.setMessage("<p>Grüße</p>");
+		state.setPhotoId(id1);
+		state.setPriorPhotoId(id2);
+		state.setConfirmationCode(1234567890123L);
+		state.setSavedArg("userId", "alice");
+
+		PhotoFilter filter = new PhotoFilter();
+		filter.setUserName("bob");
+		filter.setTags(new Tags("flower, sun"));
+		filter.setWeighted(true);
+		filter.getProcessedPhotoIds().add(id2);
+		filter.getProcessedPhotoIds().add(id1);
+		state.setPhotoFilter(filter);
+
+		UserSessionState result = copy(state);
+		assertFalse(result.isDirty());
+		assertEquals("http://localhost:8080/", result.getSiteUrl());
+		assertEquals("guest42", result.getClientId());
+		assertEquals(Language.GERMAN, result.getLanguage());
+		assertEquals(PhotoSize.LARGE, result.getPhotoSize());
+		assertTrue(result.hasPraisedPhotoId(id1));
+		assertTrue(result.hasPraisedPhotoId(id2));
+		assertEquals("<p>Grüße</p>", result.getMessage());
+		assertNull(result.getHeading());
+		assertEquals(id1, result.getPhotoId());
+		assertEquals(id2, result.getPriorPhotoId());
+		assertNull(result.getPhotoCaseId());
+		assertEquals(1234567890123L, result.getConfirmationCode());
+		assertEquals("alice", result.getSavedArgs().get("userId"));
+
+		PhotoFilter resultFilter = result.createPhotoFilter();
+		assertEquals("bob", resultFilter.getUserName());
+		assertEquals(new Tags("flower, sun"), resultFilter.getTags());
+		assertTrue(resultFilter.isWeighted());
+		assertEquals(2, resultFilter.getProcessedPhotoIds().size());
+		assertTrue(resultFilter.getProcessedPhotoIds().contains(id1));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDirty() {
+		UserSessionState state = new UserSessionState();
+		assertFalse(state.isDirty());
+
+		state.setPhotoSize(PhotoSize.MEDIUM);
+		state.setSavedArg("page", null);
+		state.setPhotoFilter(state.createPhotoFilter());
+		assertFalse(state.isDirty());
+
+		state.setSavedArg("page", 2);
+		assertTrue(state.isDirty());
+		assertEquals("2", state.getSavedArgs().get("page"));
+
+		state.resetDirty();
+		state.setSavedArg("page", "2");
+		assertFalse(state.isDirty());
+
+		PhotoFilter filter = state.createPhotoFilter();
+		filter.getProcessedPhotoIds().add(PhotoId.getNextId());
+		state.setPhotoFilter(filter);
+		assertTrue(state.isDirty());
+	}
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.model.search;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wahlzeit.utils.VarInt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchIndexTest {
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private SearchIndex index;
+
+	@Before
+	public void initIndex() {
+		index = new SearchIndex(null);
+		index.updateDocument(1, Tokenizer.tokenize("red flower garden"));
+		index.updateDocument(2, Tokenizer.tokenize("red car"));
+		index.updateDocument(3, Tokenizer.tokenize("flower flower meadow in spring"));
+		index.updateDocument(4, Tokenizer.tokenize("blue sky"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testVarIntRoundTrip() throws Exception {
+		int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (int value : values) {
+			VarInt.write(value, bytes);
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (int value : values) {
+			assertEquals(value, VarInt.read(in));
+		}
+		assertEquals(1 + 1 + 1 + 2 + 2 + 3 + 5, bytes.size());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRanking() {
+		List<SearchResult> results = index.search(Tokenizer.tokenize("Flower"), 10);
+		assertEquals(2, results.size());
+		assertEquals(3, results.get(0).getDocId());
+		assertEquals(1, results.get(1).getDocId());
+
+		results = index.search(Tokenizer.tokenize("red flower"), 10);
+		assertEquals(3, results.size());
+		assertEquals(1, results.get(0).getDocId());
+
+		assertEquals(1, index.search(Tokenizer.tokenize("red flower"), 1).size());
+		assertTrue(index.search(Tokenizer.tokenize("moon"), 10).isEmpty());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testUpdateAndDelete() {
+		assertFalse(index.updateDocument(2, Tokenizer.tokenize("red car")));
+		index.flush();
+
+		index.updateDocument(2, Tokenizer.tokenize("green car"));
+		assertTrue(index.search(Tokenizer.tokenize("red"), 10).size() == 1);
+		assertEquals(2, index.search(Tokenizer.tokenize("green"), 10).get(0).getDocId());
+
+		assertTrue(index.deleteDocument(4));
+		assertTrue(index.search(Tokenizer.tokenize("sky"), 10).isEmpty());
+		assertEquals(3, index.getNoDocuments());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testMerge() {
+		for (int i = 0; i < SearchIndex.MAX_SEGMENTS + 2; i++) {
+			index.updateDocument(100 + i, Tokenizer.tokenize("photo number " + i));
+			index.flush();
+		}
+		assertTrue(index.getNoSegments() <= SearchIndex.MAX_SEGMENTS);
+
+		index.deleteDocument(100);
+		index.merge();
+		assertEquals(SearchIndex.MAX_SEGMENTS + 1, index.search(Tokenizer.tokenize("photo"), 100).size());
+		assertEquals(2, index.search(Tokenizer.tokenize("red"), 10).size());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testPersistence() throws Exception {
+		File dir = tempFolder.newFolder("search");
+		SearchIndex persistent = new SearchIndex(dir);
+		persistent.updateDocument(1, Tokenizer.tokenize("red flower"));
+		persistent.updateDocument(2, Tokenizer.tokenize("red car"));
+		persistent.flush();
+		persistent.deleteDocument(2);
+		persistent.flush();
+
+		SearchIndex loaded = new SearchIndex(dir);
+		assertTrue(loaded.load());
+		assertEquals(1, loaded.getNoDocuments());
+		assertEquals(1, loaded.search(Tokenizer.tokenize("red"), 10).size());
+		assertFalse(loaded.updateDocument(1, Tokenizer.tokenize("red flower")));
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.services;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AssetServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private AssetService service;
+	private ConfigDir staticDir;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() throws IOException {
+		writeFile("static/default/wahlzeit.css", "p { color: black; }");
+		writeFile("static/default/en/heading.png", "png");
+		writeFile("static/default/wahlzeit.css.gz", "gz");
+		writeFile("static/custom/logo.png", "logo");
+
+		service = new AssetService();
+		staticDir = new ConfigDir(folder.getRoot().getPath(), "static");
+		service.loadAssets(staticDir);
+	}
+
+	/**
+	 *
+	 */
+	private void writeFile(String name, String content) throws IOException {
+		File file = new File(folder.getRoot(), name.replace('/', File.separatorChar));
+		file.getParentFile().mkdirs();
+		Files.write(content, file, Charsets.UTF_8);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFingerprintedPaths() throws IOException {
+		String path = service.getPath("wahlzeit.css");
+		assertTrue(path, path.matches("static/default/wahlzeit\\.[0-9a-f]{12}\\.css"));
+		assertEquals("static/default/wahlzeit.css", AssetService.asPlainPath(path));
+		assertEquals("p { color: black; }", Files.toString(service.getFile(path), Charsets.UTF_8));
+
+		String headingPath = service.getPath("en" + File.separator + "heading.png");
+		assertTrue(headingPath, headingPath.startsWith("static/default/en/heading."));
+		assertTrue(service.getPath("logo.png").startsWith("static/custom/logo."));
+		assertEquals("static/custom/none.png", service.getPath("none.png")); // missing, resolved as by ConfigDir
+		assertNull(service.getFile("static/default/wahlzeit.css"));
+
+		writeFile("static/default/wahlzeit.css", "p { color: red; }");
+		service.loadAssets(staticDir);
+		assertNotEquals(path, service.getPath("wahlzeit.css"));
+		assertNull(service.getFile(path));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRewritePaths() {
+		String path = service.getPath("wahlzeit.css");
+		assertEquals("<link href=\"" + path + "\">", service.rewritePaths("<link href=\"static/default/wahlzeit.css\">"));
+		assertEquals("<p>{$heading}</p>", service.rewritePaths("<p>{$heading}</p>"));
+		assertEquals("abc", AssetService.asPlainPath("abc"));
+		assertEquals("a/b.0123456789ab", AssetService.asPlainPath("a/b.0123456789ab.0123456789ab"));
+	}
+
+}
@@ -12,9 +12,16 @@ import org.wahlzeit.testEnvironmentProvider.UserSessionProvider;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.wahlzeit.services.LogBuilder.ACTION;
 import static org.wahlzeit.services.LogBuilder.CLIENT;
@@ -173,4 +180,36 @@ public class LogBuilderTest {
         expectedLogMessage = expectedLogMessage + INFO_SEPARATOR + ACTION + NAME_VALUE_SEPARATOR + null;
         assertEquals(expectedLogMessage, logMessage);
     }
+
+    @Test
+    public void testLevelAwareMessage() {
+        Logger logger = Logger.getLogger(LogBuilderTest.class.getName() + ".levelAware");
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        });
+        logger.setLevel(Level.INFO);
+
+        LogBuilder disabled = LogBuilder.createSystemMessage(logger, Level.CONFIG);
+        assertSame(LogBuilder.DISABLED, disabled);
+        assertSame(disabled, disabled.addAction("Yoda").addParameter("age", 900).addParameter("Han Solo", "42"));
+        disabled.log();
+        assertEquals(0, records.size());
+
+        LogBuilder.createUserMessage(logger, Level.INFO).addAction("Yoda").addParameter("age", 900L).log();
+        assertEquals(1, records.size());
+        assertEquals(Level.INFO, records.get(0).getLevel());
+        String expectedLogMessage = getExpectedUserMessage() + INFO_SEPARATOR + ACTION + NAME_VALUE_SEPARATOR + "Yoda"
+                + INFO_SEPARATOR + "age" + NAME_VALUE_SEPARATOR + "900";
+        assertEquals(expectedLogMessage, records.get(0).getMessage());
+    }
 }
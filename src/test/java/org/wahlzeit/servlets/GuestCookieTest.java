@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class GuestCookieTest {
+
+	private static final long NOW = 1400000000000L;
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRoundTrip() {
+		byte[] payload = new byte[]{1, 2, 3, (byte) 0xFF, 0, 42};
+		String value = GuestCookie.encode(payload, NOW + 1000);
+		assertArrayEquals(payload, GuestCookie.decode(value, NOW));
+		assertArrayEquals(new byte[0], GuestCookie.decode(GuestCookie.encode(new byte[0], NOW + 1000), NOW));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsExpiredValues() {
+		String value = GuestCookie.encode(new byte[]{1, 2, 3}, NOW - 1);
+		assertNull(GuestCookie.decode(value, NOW));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRejectsForgedValues() {
+		String value = GuestCookie.encode(new byte[]{1, 2, 3}, NOW + 1000);
+		char[] chars = value.toCharArray();
+		int i = chars.length / 2;
+		chars[i] = (chars[i] == 'A') ? 'B' : 'A';
+		assertNull(GuestCookie.decode(new String(chars), NOW));
+
+		assertNull(GuestCookie.decode("", NOW));
+		assertNull(GuestCookie.decode("not*base64", NOW));
+
+		byte[] secret = GuestCookie.getSecret();
+		GuestCookie.setSecret(GuestCookie.createSecret());
+		try {
+			assertNull(GuestCookie.decode(value, NOW));
+		} finally {
+			GuestCookie.setSecret(secret);
+		}
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GzipResponseTest {
+
+	private ByteArrayOutputStream bytes;
+	private HttpServletResponse response;
+
+	/**
+	 *
+	 */
+	@Before
+	public void setUp() throws IOException {
+		bytes = new ByteArrayOutputStream();
+		final OutputStream out = bytes;
+		response = mock(HttpServletResponse.class);
+		when(response.getContentType()).thenReturn("text/html; charset=UTF-8");
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+			}
+		});
+	}
+
+	/**
+	 *
+	 */
+	private static HttpServletRequest createRequest(String acceptEncoding) {
+		HttpServletRequest result = mock(HttpServletRequest.class);
+		when(result.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	private static byte[] createPage(int length) {
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = (byte) ("<p>page</p>\n".charAt(i % 12) + (i / 997) % 3);
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	private static byte[] decompress(byte[] data) throws IOException {
+		return ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testIsGzipAccepted() {
+		assertTrue(GzipResponse.isGzipAccepted(createRequest("gzip, deflate")));
+		assertTrue(GzipResponse.isGzipAccepted(createRequest("deflate, GZIP;q=0.5")));
+		assertTrue(GzipResponse.isGzipAccepted(createRequest("*")));
+		assertFalse(GzipResponse.isGzipAccepted(createRequest(null)));
+		assertFalse(GzipResponse.isGzipAccepted(createRequest("deflate, br")));
+		assertFalse(GzipResponse.isGzipAccepted(createRequest("gzip;q=0")));
+		assertFalse(GzipResponse.isGzipAccepted(createRequest("gzip; q=0.0")));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCompressesLargeOutput() throws IOException {
+		byte[] page = createPage(20000);
+		for (int i = 0; i < 2; i++) { // the second time with the reused deflater
+			bytes.reset();
+			GzipResponse gzipResponse = new GzipResponse(createRequest("gzip"), response);
+			OutputStream out = gzipResponse.getOutputStream();
+			out.write(page, 0, 100);
+			out.write(page[100]);
+			out.write(page, 101, page.length - 101);
+			gzipResponse.finish();
+
+			assertTrue(gzipResponse.isCompressing());
+			assertTrue(bytes.size() < page.length / 4);
+			assertArrayEquals(page, decompress(bytes.toByteArray()));
+		}
+		verify(response, times(2)).setHeader("Content-Encoding", "gzip");
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSendsSmallOutputAsIs() throws IOException {
+		byte[] page = createPage(GzipResponse.MIN_SIZE);
+		GzipResponse gzipResponse = new GzipResponse(createRequest("gzip"), response);
+		gzipResponse.getOutputStream().write(page);
+		gzipResponse.finish();
+
+		assertFalse(gzipResponse.isCompressing());
+		assertArrayEquals(page, bytes.toByteArray());
+		verify(response, never()).setHeader("Content-Encoding", "gzip");
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSetsContentLengthOnlyIfSentAsIs() throws IOException {
+		byte[] page = createPage(100);
+		GzipResponse gzipResponse = new GzipResponse(createRequest("gzip"), response);
+		gzipResponse.setContentLength(page.length);
+		gzipResponse.getOutputStream().write(page);
+		verify(response, never()).setContentLength(page.length);
+		gzipResponse.finish();
+		verify(response).setContentLength(page.length);
+
+		page = createPage(5000);
+		gzipResponse = new GzipResponse(createRequest("gzip"), response);
+		gzipResponse.setContentLength(page.length);
+		gzipResponse.getOutputStream().write(page);
+		gzipResponse.finish();
+		assertTrue(gzipResponse.isCompressing());
+		verify(response, never()).setContentLength(page.length);
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFlushSendsDecodableOutput() throws IOException {
+		byte[] page = createPage(5000);
+		GzipResponse gzipResponse = new GzipResponse(createRequest("gzip"), response);
+		OutputStream out = gzipResponse.getOutputStream();
+		out.write(page, 0, 10);
+		out.flush();
+		assertTrue(gzipResponse.isCompressing());
+
+		byte[] head = new byte[10];
+		ByteStreams.readFully(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), head);
+		assertArrayEquals(Arrays.copyOf(page, 10), head);
+
+		out.write(page, 10, page.length - 10);
+		out.close();
+		assertArrayEquals(page, decompress(bytes.toByteArray()));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSkipsOtherContent() throws IOException {
+		byte[] page = createPage(20000);
+		when(response.getContentType()).thenReturn("image/png");
+		GzipResponse gzipResponse = new GzipResponse(createRequest("gzip"), response);
+		gzipResponse.getOutputStream().write(page);
+		gzipResponse.finish();
+		assertArrayEquals(page, bytes.toByteArray());
+
+		bytes.reset();
+		when(response.getContentType()).thenReturn("text/html");
+		gzipResponse = new GzipResponse(createRequest("identity"), response);
+		gzipResponse.getOutputStream().write(page);
+		gzipResponse.finish();
+		assertArrayEquals(page, bytes.toByteArray());
+		verify(response).addHeader("Vary", "Accept-Encoding");
+
+		assertArrayEquals(page, decompress(GzipResponse.compress(page)));
+	}
+
+}
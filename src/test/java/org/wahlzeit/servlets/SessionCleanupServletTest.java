@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.googlecode.objectify.ObjectifyService;
+import com.googlecode.objectify.Work;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.wahlzeit.model.Client;
+import org.wahlzeit.model.Guest;
+import org.wahlzeit.model.LruSessionStore;
+import org.wahlzeit.model.UserManager;
+import org.wahlzeit.testEnvironmentProvider.LocalDatastoreServiceTestConfigProvider;
+import org.wahlzeit.testEnvironmentProvider.RegisteredOfyEnvironmentProvider;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionCleanupServletTest {
+
+	@ClassRule
+	public static RuleChain ruleChain = RuleChain.
+			outerRule(new LocalDatastoreServiceTestConfigProvider()).
+			around(new RegisteredOfyEnvironmentProvider());
+
+	/**
+	 * Stops after the first page, as if out of time.
+	 */
+	private static class OutOfTimeServlet extends SessionCleanupServlet {
+		@Override
+		protected long getMaxDuration() {
+			return -1;
+		}
+	}
+
+	/**
+	 * Fails deleting the guests of the second page.
+	 */
+	private static class FailingServlet extends SessionCleanupServlet {
+		private int noPages = 0;
+
+		@Override
+		protected void deleteGuests(List<Client> guests) {
+			if (++noPages == 2) {
+				throw new IllegalStateException("datastore unavailable");
+			}
+			super.deleteGuests(guests);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static List<Key> putSessions(String prefix, int noSessions, long expires) {
+		List<Entity> entities = new ArrayList<Entity>(noSessions);
+		for (int i = 0; i < noSessions; i++) {
+			Entity entity = new Entity(SessionCleanupServlet.SESSION_ENTITY_TYPE, "_ahs" + prefix + i);
+			entity.setProperty(SessionCleanupServlet.EXPIRES_PROP, expires);
+			entities.add(entity);
+		}
+		return DatastoreServiceFactory.getDatastoreService().put(entities);
+	}
+
+	/**
+	 *
+	 */
+	private static Key putSessionData(String sessionId, long lastWritten) {
+		Entity entity = new Entity(LruSessionStore.SESSION_ENTITY_TYPE, sessionId);
+		entity.setProperty(LruSessionStore.LAST_WRITTEN_PROP, lastWritten);
+		return DatastoreServiceFactory.getDatastoreService().put(entity);
+	}
+
+	/**
+	 *
+	 */
+	private static int countExisting(List<Key> keys) {
+		return DatastoreServiceFactory.getDatastoreService().get(keys).size();
+	}
+
+	/**
+	 *
+	 */
+	private static boolean exists(Key key) {
+		try {
+			DatastoreServiceFactory.getDatastoreService().get(key);
+			return true;
+		} catch (EntityNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static HttpServletResponse runCleanup(final SessionCleanupServlet servlet) throws IOException {
+		final HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getQueryString()).thenReturn("clear");
+		final HttpServletResponse response = mock(HttpServletResponse.class);
+		when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+		ObjectifyService.run(new Work<Void>() {
+			@Override
+			public Void run() {
+				try {
+					servlet.service(request, response);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				return null;
+			}
+		});
+		return response;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDeletesBacklogInPages() throws IOException {
+		long now = System.currentTimeMillis();
+		List<Key> expired = putSessions("a", 2 * SessionCleanupServlet.BATCH_SIZE + 234, now - 1000);
+		List<Key> current = putSessions("a-current", 10, now + 60 * 60 * 1000);
+
+		HttpServletResponse response = runCleanup(new SessionCleanupServlet());
+		verify(response).setStatus(HttpServletResponse.SC_OK);
+		assertEquals(0, countExisting(expired));
+		assertEquals(current.size(), countExisting(current));
+		assertFalse(exists(SessionCleanupServlet.CHECKPOINT_KEY));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testResumesFromCheckpoint() throws Exception {
+		List<Key> expired = putSessions("b", 2 * SessionCleanupServlet.BATCH_SIZE + 1, System.currentTimeMillis() - 1000);
+
+		runCleanup(new OutOfTimeServlet());
+		assertEquals(SessionCleanupServlet.BATCH_SIZE + 1, countExisting(expired));
+		DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+		long cutoff = (Long) datastore.get(SessionCleanupServlet.CHECKPOINT_KEY).
+				getProperty(SessionCleanupServlet.CUTOFF_PROP);
+
+		// expired since the first run, so only deleted with a new cutoff
+		Key later = putSessions("b-later", 1, cutoff).get(0);
+		Thread.sleep(5);
+
+		runCleanup(new SessionCleanupServlet());
+		assertEquals(0, countExisting(expired));
+		assertTrue(exists(later));
+		assertFalse(exists(SessionCleanupServlet.CHECKPOINT_KEY));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSavesCheckpointOnError() throws IOException {
+		List<Key> expired = putSessions("c", 2 * SessionCleanupServlet.BATCH_SIZE + 1, System.currentTimeMillis() - 1000);
+
+		HttpServletResponse response = runCleanup(new FailingServlet());
+		verify(response).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		assertTrue(countExisting(expired) <= SessionCleanupServlet.BATCH_SIZE + 1);
+		assertTrue(exists(SessionCleanupServlet.CHECKPOINT_KEY));
+
+		runCleanup(new SessionCleanupServlet());
+		assertEquals(0, countExisting(expired));
+		assertFalse(exists(SessionCleanupServlet.CHECKPOINT_KEY));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDeletesGuestsOfExpiredSessions() throws IOException {
+		long now = System.currentTimeMillis();
+		putSessions("d", 2, now - 1000);
+		putSessions("d-current", 1, now + 60 * 60 * 1000);
+		final UserManager userManager = UserManager.getInstance();
+		List<Guest> guests = ObjectifyService.run(new Work<List<Guest>>() {
+			@Override
+			public List<Guest> run() {
+				List<Guest> result = new ArrayList<Guest>();
+				for (String sessionId : new String[]{"d0", "d1", "d-current0"}) {
+					Guest guest = new Guest();
+					userManager.addHttpSessionIdToClientMapping(sessionId, guest);
+					result.add(guest);
+				}
+				return result;
+			}
+		});
+
+		runCleanup(new SessionCleanupServlet());
+		assertNull(userManager.getClientByHttpSessionId("d0"));
+		assertNull(userManager.getClientByHttpSessionId("d1"));
+		assertFalse(userManager.hasClientById(guests.get(0).getId()));
+		assertFalse(userManager.hasClientById(guests.get(1).getId()));
+		assertEquals(guests.get(2), userManager.getClientByHttpSessionId("d-current0"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testDeletesStaleSessionData() throws IOException {
+		long now = System.currentTimeMillis();
+		Key stale = putSessionData("s1", now - LruSessionStore.MAX_SESSION_DATA_AGE - 1000);
+		Key fresh = putSessionData("s2", now);
+
+		runCleanup(new SessionCleanupServlet());
+		assertFalse(exists(stale));
+		assertTrue(exists(fresh));
+	}
+
+}
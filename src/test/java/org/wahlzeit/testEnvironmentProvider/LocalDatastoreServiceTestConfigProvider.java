@@ -13,7 +13,7 @@ import org.junit.rules.ExternalResource;
 public class LocalDatastoreServiceTestConfigProvider extends ExternalResource {
 
     private final LocalServiceTestHelper helper =
-            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+            new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig().setApplyAllHighRepJobPolicy());
 
     @Override
     protected void before() throws Throwable {
@@ -5,14 +5,11 @@ import com.googlecode.objectify.Work;
 import org.junit.rules.ExternalResource;
 import org.wahlzeit.model.EnglishModelConfig;
 import org.wahlzeit.model.Guest;
-import org.wahlzeit.model.LanguageConfigs;
 import org.wahlzeit.model.UserSession;
-import org.wahlzeit.services.Language;
+import org.wahlzeit.model.UserSessionState;
 import org.wahlzeit.services.SessionManager;
 
 import javax.servlet.http.HttpSession;
-import java.util.HashMap;
-import java.util.Map;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -29,22 +26,19 @@ public class UserSessionProvider extends ExternalResource {
     @Override
     protected void before() throws Throwable {
         HttpSession httpSession = mock(HttpSession.class);
-        when(httpSession.getAttribute(UserSession.INITIALIZED)).thenReturn(UserSession.INITIALIZED);
-        when(httpSession.getAttribute(UserSession.CONFIGURATION)).thenReturn(new EnglishModelConfig());
         String guestName = ObjectifyService.run(new Work<String>() {
             @Override
             public String run() {
                 return new Guest().getId();
             }
         });
-        when(httpSession.getAttribute(UserSession.CLIENT_ID)).thenReturn(guestName);
-
-        Map<String, Object> dummyMap = new HashMap<String, Object>();
-        dummyMap.put(UserSession.MESSAGE, "dummy Message");
-        when(httpSession.getAttribute(UserSession.SAVED_ARGS)).thenReturn(dummyMap);
+        UserSessionState state = new UserSessionState();
+        state.setClientId(guestName);
+        state.setSavedArg(UserSession.MESSAGE, "dummy Message");
+        when(httpSession.getAttribute(UserSession.STATE)).thenReturn(state);
 
         UserSession userSession = new UserSession(USER_SESSION_NAME, "", httpSession, "en");
-        userSession.setConfiguration(LanguageConfigs.get(Language.ENGLISH));
+        userSession.setConfiguration(new EnglishModelConfig());
         SessionManager.setThreadLocalSession(userSession);
     }
 
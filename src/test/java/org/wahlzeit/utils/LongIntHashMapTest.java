@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LongIntHashMapTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCounters() {
+		LongIntHashMap map = new LongIntHashMap();
+		assertEquals(0, map.get(42L));
+		assertEquals(1, map.add(42L, 1));
+		assertEquals(3, map.add(42L, 2));
+		assertEquals(1, map.size());
+
+		map.add(42L, -3);
+		assertEquals(0, map.get(42L));
+		assertEquals(0, map.size());
+	}
+
+	/**
+	 * Compares against a HashMap under random puts and removals, forcing resizes and backward shifts.
+	 */
+	@Test
+	public void testAgainstHashMap() {
+		LongIntHashMap map = new LongIntHashMap();
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		Random random = new Random(4711);
+		for (int i = 0; i < 20000; i++) {
+			long key = ((long) random.nextInt(64) << 32) | random.nextInt(64);
+			int value = random.nextInt(4);
+			map.put(key, value);
+			if (value == 0) {
+				expected.remove(key);
+			} else {
+				expected.put(key, value);
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (int a = 0; a < 64; a++) {
+			for (int b = 0; b < 64; b++) {
+				long key = ((long) a << 32) | b;
+				Integer value = expected.get(key);
+				assertEquals((value != null) ? value : 0, map.get(key));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.utils;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PngReaderTest {
+
+	/**
+	 *
+	 */
+	private static byte[] asPng(BufferedImage image) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRgb() throws Exception {
+		BufferedImage image = new BufferedImage(9, 8, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 9; x++) {
+				int value = (x * 28 + y * 3) & 0xff;
+				image.setRGB(x, y, (value << 16) | (value << 8) | value);
+			}
+		}
+
+		PngReader reader = new PngReader(asPng(image));
+		assertEquals(9, reader.getWidth());
+		assertEquals(8, reader.getHeight());
+		int[] pixels = reader.getGrayPixels();
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 9; x++) {
+				assertEquals((x * 28 + y * 3) & 0xff, pixels[y * 9 + x]);
+			}
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testGrayWithAlpha() throws Exception {
+		BufferedImage image = new BufferedImage(5, 3, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(4, 2, 0xff808080);
+
+		int[] pixels = new PngReader(asPng(image)).getGrayPixels();
+		assertEquals(0, pixels[0]);
+		assertEquals(0x80, pixels[14]);
+	}
+
+	/**
+	 *
+	 */
+	@Test(expected = IOException.class)
+	public void testNoPng() throws Exception {
+		new PngReader("GIF89a".getBytes("US-ASCII"));
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class FragmentCacheTest {
+
+	/**
+	 *
+	 */
+	private static WebPart createWebPart(String value) {
+		WebPartTemplate template = new WebPartTemplate("test");
+		template.initialize("<p>{$value}</p>");
+		WebPart result = new WebPart(template);
+		result.addString("value", value);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRendersOnce() throws Exception {
+		FragmentCache cache = new FragmentCache(1024);
+		assertNull(cache.getFragment("a"));
+
+		cache.putFragment("a", createWebPart("Grüße"));
+		FragmentCache.Fragment fragment = cache.getFragment("a");
+		assertNotNull(fragment);
+		assertEquals("<p>Grüße</p>".getBytes("UTF-8").length, cache.getSize());
+
+		StringWriter chars = new StringWriter();
+		fragment.writeOn(chars);
+		assertEquals("<p>Grüße</p>", chars.toString());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		fragment.writeOn(out);
+		out.close();
+		assertEquals("<p>Grüße</p>", bytes.toString("UTF-8"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		FragmentCache cache = new FragmentCache(30); // each fragment takes 10 bytes
+		cache.putFragment("a", createWebPart("aaa"));
+		cache.putFragment("b", createWebPart("bbb"));
+		cache.putFragment("c", createWebPart("ccc"));
+		assertEquals(30, cache.getSize());
+
+		cache.getFragment("a");
+		cache.putFragment("d", createWebPart("ddd"));
+		assertEquals(3, cache.getNoFragments());
+		assertNull(cache.getFragment("b"));
+		assertNotNull(cache.getFragment("a"));
+
+		cache.putFragment("a", createWebPart("aaaaaa"));
+		assertEquals(23, cache.getSize());
+		assertNull(cache.getFragment("c"));
+	}
+
+}
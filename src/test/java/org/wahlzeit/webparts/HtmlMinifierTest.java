@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HtmlMinifierTest {
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCollapsesWhitespace() {
+		assertEquals("<div>\n<p>a b</p>\n</div>\n", HtmlMinifier.minify("<div>\n\t\t<p>a  \t b</p>\n\n\t</div>\n\n"));
+		assertEquals(" {$a} {$b}\n", HtmlMinifier.minify("\t{$a}   {$b}\n  "));
+		assertEquals("<td>&nbsp;</td>", HtmlMinifier.minify("<td>&nbsp;</td>"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testStripsComments() {
+		assertEquals("&nbsp;\n", HtmlMinifier.minify("&nbsp;<!-- Nothing here... -->\n"));
+		assertEquals("<p>a\n</p>", HtmlMinifier.minify("<p>a <!-- x -->\n<!--y--> </p>"));
+		assertEquals("<!--[if IE]><p>ie</p><![endif]-->", HtmlMinifier.minify("<!--[if IE]><p>ie</p><![endif]-->"));
+		assertEquals("<!-- {$debug} -->", HtmlMinifier.minify("<!-- {$debug} -->"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testKeepsRawContent() {
+		String pre = "<PRE class=\"code\">\n  a  {$b}\n\n</PRE>";
+		assertEquals(pre + " x", HtmlMinifier.minify(pre + "   x"));
+
+		String script = "<script type=\"text/javascript\">\n  // line comment\n  var a =  1;\n</script>";
+		assertEquals(script, HtmlMinifier.minify(script));
+
+		String form = "<textarea name=\"text\" rows=\"4\">\n  {$text}\n</textarea>";
+		assertEquals(form, HtmlMinifier.minify(form));
+
+		assertEquals("<script src=\"a.js\"/> <p>", HtmlMinifier.minify("<script src=\"a.js\"/>  <p>"));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testKeepsQuotedValues() {
+		assertEquals("<input type=\"text\"\nvalue=\"a  b\" title='c\n d'>",
+				HtmlMinifier.minify("<input   type=\"text\"\n\t\tvalue=\"a  b\"  title='c\n d'>"));
+		assertEquals("<p>it's x</p>", HtmlMinifier.minify("<p>it's   x</p>"));
+		assertEquals("a < b", HtmlMinifier.minify("a  <  b"));
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Utf8WriterTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 *
+	 */
+	@Test
+	public void testEncodesLikeString() throws Exception {
+		String text = "ascii, Grüße, €, 😀, unpaired \uD83D and \uDE00";
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		out.write(text.substring(0, 20));
+		out.write(text.toCharArray(), 20, 4); // splits the surrogate pair
+		out.write(text.substring(24));
+		out.close();
+		assertArrayEquals(text.getBytes(UTF_8), bytes.toByteArray());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testMixesEncodedBytes() throws Exception {
+		Random random = new Random(42);
+		StringBuilder expected = new StringBuilder();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		for (int i = 0; i < 1000; i++) {
+			StringBuilder chunk = new StringBuilder();
+			int length = random.nextInt(3 * Utf8Writer.BUFFER_SIZE / 100);
+			for (int j = 0; j < length; j++) {
+				chunk.append((char) (0x20 + random.nextInt(0x1000)));
+			}
+			expected.append(chunk);
+			if ((i % 2) == 0) {
+				out.write(chunk.toString());
+			} else {
+				out.writeBytes(chunk.toString().getBytes(UTF_8));
+			}
+		}
+		String large = expected.substring(0, Math.min(expected.length(), Utf8Writer.BUFFER_SIZE));
+		expected.append(large);
+		out.writeBytes(large.getBytes(UTF_8));
+		out.close();
+		assertEquals(expected.toString(), new String(bytes.toByteArray(), UTF_8));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testWritesWebPart() throws Exception {
+		WebPartTemplate template = new WebPartTemplate("test");
+		template.initialize("<p>Grüße, {$name}!</p>");
+		WebPart part = new WebPart(template);
+		part.addString("name", "Zoë");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		part.writeOn(out);
+		out.close();
+		assertEquals("<p>Grüße, Zoë!</p>", new String(bytes.toByteArray(), UTF_8));
+	}
+
+}
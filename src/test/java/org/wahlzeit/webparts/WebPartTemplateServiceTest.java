@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wahlzeit.services.ConfigDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WebPartTemplateServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 *
+	 */
+	private WebPartTemplateService createService(String... files) throws IOException {
+		File root = folder.getRoot();
+		for (int i = 0; i < files.length; i += 2) {
+			File file = new File(root, "templates" + File.separator + files[i]);
+			file.getParentFile().mkdirs();
+			Files.write(files[i + 1], file, Charsets.UTF_8);
+		}
+
+		WebPartTemplateService result = new WebPartTemplateService();
+		result.setTemplatesDir(new ConfigDir(root.getPath(), "templates"));
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testLoadAllTemplates() throws Exception {
+		WebPartTemplateService service = createService(
+				"default/en/pages/Page.html", "<p>{$heading}</p>",
+				"default/de/pages/Page.html", "<p>{$heading}!</p>",
+				"default/de/forms/Form.html", "<form/>",
+				"custom/en/forms/Form.html", "<form>{$name}</form>",
+				"default/en/ModelConfig.properties", "{$notATemplate");
+		service.loadAllTemplates();
+		assertEquals(4, service.getNoTemplates());
+
+		WebPartTemplate template = service.getTemplate("en", "pages" + File.separator + "Page");
+		assertEquals(1, template.getNoSlots());
+		assertEquals("<p>", template.getSegment(0));
+		assertSame(template, service.getTemplate("en", "pages" + File.separator + "Page"));
+		assertEquals(1, service.getTemplate("en", "forms" + File.separator + "Form").getNoSlots());
+		assertEquals(0, service.getTemplate("de", "forms" + File.separator + "Form").getNoSlots());
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testLoadShippedTemplates() throws Exception {
+		WebPartTemplateService service = new WebPartTemplateService();
+		service.setTemplatesDir(new ConfigDir("src" + File.separator + "main" + File.separator + "webapp", "config" + File.separator + "templates"));
+		service.loadAllTemplates();
+		assertTrue(service.getNoTemplates() > 0);
+
+		WebPartTemplateService unminified = new WebPartTemplateService();
+		unminified.setTemplatesDir(service.getTemplatesDir());
+		unminified.setMinifying(false);
+		unminified.loadAllTemplates();
+		assertEquals(service.getNoTemplates(), unminified.getNoTemplates());
+
+		for (String shortName : service.getAllShortNames()) {
+			WebPartTemplate template = service.templates.get(shortName);
+			WebPartTemplate source = unminified.templates.get(shortName);
+			assertEquals(shortName, source.getNoSlots(), template.getNoSlots());
+			for (int i = 0; i < template.getNoSlots(); i++) {
+				assertEquals(shortName, source.getKey(source.getSlot(i)), template.getKey(template.getSlot(i)));
+			}
+			assertTrue(shortName, template.asString().length() <= source.asString().length());
+		}
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testFailsOnMalformedTemplates() throws Exception {
+		String[] sources = {"<p>{$heading</p>", "<p>{$head ing}</p>", "<p>{$}</p>"};
+		for (String source : sources) {
+			WebPartTemplateService service = createService("default/en/pages/Page.html", source);
+			try {
+				service.loadAllTemplates();
+				fail("accepted " + source);
+			} catch (IOException ex) {
+				assertTrue(ex.getMessage().contains("Page"));
+			}
+		}
+	}
+
+}
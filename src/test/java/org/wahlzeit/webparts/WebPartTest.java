@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2006-2009 by Dirk Riehle, http://dirkriehle.com
+ *
+ * This file is part of the Wahlzeit photo rating application.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package org.wahlzeit.webparts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WebPartTest {
+
+	/**
+	 *
+	 */
+	private static WebPartTemplate createTemplate(String source) {
+		WebPartTemplate result = new WebPartTemplate("test");
+		result.initialize(source);
+		return result;
+	}
+
+	/**
+	 *
+	 */
+	private static String render(WebPart part) throws Exception {
+		StringWriter out = new StringWriter();
+		part.writeOn(out);
+		return out.toString();
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testCompile() {
+		WebPartTemplate template = createTemplate("<p>{$a}{$b} and {$a}</p>{$unclosed");
+		assertEquals(3, template.getNoSlots());
+		assertEquals(2, template.getNoKeys());
+		assertEquals("<p>", template.getSegment(0));
+		assertEquals("", template.getSegment(1));
+		assertEquals(" and ", template.getSegment(2));
+		assertEquals("</p>{$unclosed", template.getSegment(3));
+		assertEquals(0, template.getSlot(2));
+		assertEquals(1, template.getKeyIndex(WebPartKey.get("b")));
+		assertEquals(-1, template.getKeyIndex(WebPartKey.get("notInTemplate")));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testRender() throws Exception {
+		WebPartTemplate template = createTemplate("<p>{$a}{$b} and {$a}</p>");
+		WebPart part = new WebPart(template);
+		assertEquals("<p> and </p>", render(part));
+
+		part.addString("a", "1");
+		part.maskAndAddString(WebPartKey.get("b"), "<2>");
+		part.addString("notInTemplate", "3");
+		assertEquals("<p>1&lt;2&gt; and 1</p>", render(part));
+		assertNull(part.getValue("notInTemplate"));
+
+		WebPart inner = new WebPart(createTemplate("[{$a}]"));
+		inner.addString("a", "x");
+		part.addWritable("b", inner);
+		assertEquals("<p>1[x] and 1</p>", render(part));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testAsTemplate() throws Exception {
+		WebPart part = new WebPart(createTemplate("<p>{$a}, {$b}, {$c}</p>"));
+		part.addString("a", "1");
+		part.addString("b", "2");
+		part.addString("c", "3");
+
+		WebPartTemplate template = part.asTemplate("rendered", WebPartKey.get("b"));
+		assertEquals(1, template.getNoSlots());
+		assertEquals("<p>1, ", template.getSegment(0));
+		assertEquals(", 3</p>", template.getSegment(1));
+
+		WebPart result = new WebPart(template);
+		result.addString("b", "two");
+		result.addString("a", "ignored");
+		assertEquals("<p>1, two, 3</p>", render(result));
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testWriteHeadOn() throws Exception {
+		WebPart part = new WebPart(createTemplate("<head>{$title}</head>\n<h1>{$heading}</h1>{$body}<p>{$title}</p>"));
+		part.addString("title", "T\u00e4");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Utf8Writer out = new Utf8Writer(bytes);
+		part.writeHeadOn(out, WebPartKey.get("heading"));
+		assertEquals("<head>T\u00e4</head>\n<h1>", bytes.toString("UTF-8")); // flushed
+		part.writeHeadOn(out, WebPartKey.get("body"));
+		assertEquals("<head>T\u00e4</head>\n<h1>", bytes.toString("UTF-8"));
+
+		part.addString("heading", "H");
+		part.addString("body", "B");
+		assertEquals("H</h1>B<p>T\u00e4</p>", render(part));
+		part.writeOn(out);
+		out.close();
+		assertEquals("<head>T\u00e4</head>\n<h1>H</h1>B<p>T\u00e4</p>", bytes.toString("UTF-8"));
+
+		WebPart other = new WebPart(createTemplate("<p>{$body}</p>"));
+		other.writeHeadOn(new Utf8Writer(new ByteArrayOutputStream()), WebPartKey.get("heading"));
+		assertEquals("<p></p>", render(other));
+	}
+
+}